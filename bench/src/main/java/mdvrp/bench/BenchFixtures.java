@@ -0,0 +1,164 @@
+package mdvrp.bench;
+
+import mdvrp.model.CustomerPart;
+import mdvrp.model.Depot;
+import mdvrp.model.Location;
+import mdvrp.model.Pedido;
+import mdvrp.model.Truck;
+import mdvrp.model.TruckType;
+import mdvrp.planner.PlannedRoute;
+import mdvrp.planner.PlanningSolution;
+import mdvrp.simulation.InstanceGenerator;
+import mdvrp.simulation.SimulationUtils;
+import mdvrp.state.SimulationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static mdvrp.state.GlobalState.*;
+
+// Datos de los benchmarks JMH de caminos calientes: archivos fijados, pares de distancia, backlogs y rutas, los mismos
+// para todos los benchmarks y entre corridas.
+public class BenchFixtures {
+
+    public static final long SEED = 20250101L;
+    public static final int DISTANCE_PAIRS = 256;
+    public static final int MAX_ROUTE_LENGTH = 30;
+    // Épocas de bloqueo: las 08:00 de los días 1 a 7 del archivo (el día 1 empieza en el minuto 1440)
+    public static final int[] EPOCHS = {1920, 3360, 4800, 6240, 7680, 9120, 10560};
+
+    // Archivos de entrada fijados: los resultados solo son comparables entre corridas con exactamente estos datos
+    private static final Map<String, Long> PINNED = new HashMap<>();
+    static {
+        PINNED.put("pedidos.txt", 0xadb6ec89L);
+        PINNED.put("ventas202501.txt", 0xadb6ec89L);
+        PINNED.put("bloqueos.txt", 0x8e8cbdd7L);
+        PINNED.put("202501.bloqueos.txt", 0x8e8cbdd7L);
+    }
+
+    public static class Backlog {
+        public final List<CustomerPart> parts = new ArrayList<>();
+        public int time;
+    }
+
+    // Falla si los archivos no son los fijados: los resultados no serían comparables entre corridas
+    public static void requirePinned(String... files) throws IOException {
+        for (String file : files) {
+            Long expected = PINNED.get(Paths.get(file).getFileName().toString());
+            CRC32 crc = new CRC32();
+            crc.update(Files.readAllBytes(Paths.get(file)));
+            long actual = crc.getValue();
+            if (expected == null || expected != actual) {
+                throw new IllegalStateException(String.format("Entrada %s: CRC32 %08x no es la fijada", file, actual));
+            }
+        }
+    }
+
+    // Contexto recién inicializado y silencioso; 'instance' (puede ser null) reemplaza grilla, flota y depósitos
+    public static SimulationContext context(InstanceGenerator.Instance instance, String pedidosFile, String bloqueosFile) throws Exception {
+        SimulationContext ctx = new SimulationContext();
+        ctx.silence();
+        if (instance != null) instance.configure(ctx);
+        ctx.initialize(pedidosFile, bloqueosFile);
+        return ctx;
+    }
+
+    public static List<Pedido> pedidos(SimulationContext ctx) {
+        return new ArrayList<>(ctx.pendingPedidos.remaining());
+    }
+
+    // Pares (origen, destino) al azar entre depósitos y clientes, con semilla fija
+    public static Location[][] distancePairs(SimulationContext ctx, List<Pedido> pedidos) {
+        Random rnd = new Random(SEED);
+        List<Location> points = new ArrayList<>(ctx.depots);
+        for (Pedido p : pedidos) {
+            if (ctx.inGrid(p.x, p.y)) points.add(new Location(p.x, p.y));
+        }
+        Location[][] pairs = new Location[DISTANCE_PAIRS][];
+        for (int i = 0; i < DISTANCE_PAIRS; i++) {
+            pairs[i] = new Location[]{points.get(rnd.nextInt(points.size())), points.get(rnd.nextInt(points.size()))};
+        }
+        return pairs;
+    }
+
+    public static long distances(SimulationContext ctx, Location[][] pairs) {
+        long sum = 0;
+        for (Location[] pair : pairs) sum += SimulationUtils.distanciaReal(ctx, pair[0], pair[1]);
+        return sum;
+    }
+
+    public static int blockedCells(SimulationContext ctx) {
+        int count = 0;
+        for (boolean[] column : ctx.blockedNodes) {
+            for (boolean b : column) if (b) count++;
+        }
+        return count;
+    }
+
+    // Las primeras 'size' partes del archivo llegando juntas en el momento del último pedido usado, cada una con su
+    // plazo original (como InitialSolutionBenchmark); aplica los bloqueos de ese minuto
+    public static Backlog backlog(SimulationContext ctx, List<Pedido> pedidos, int size) {
+        Backlog b = new Backlog();
+        int k = 0, count = 0;
+        while (count < size && k < pedidos.size()) {
+            Pedido p = pedidos.get(k++);
+            count += (int) Math.ceil(p.volumen / MAX_TRUCK_CAPACITY_M3);
+            b.time = p.momentoPedido;
+        }
+        for (int i = 0; i < k; i++) {
+            Pedido p = pedidos.get(i);
+            double remaining = p.volumen;
+            while (remaining > 0 && b.parts.size() < size) {
+                double demand = Math.min(remaining, MAX_TRUCK_CAPACITY_M3);
+                b.parts.add(new CustomerPart(ctx.newPartId(), i + 1, p.x, p.y, demand, b.time, b.time + p.horaLimite * 60, p.idCliente));
+                remaining -= demand;
+            }
+        }
+        ctx.blockageCalendar.advanceTo(b.time);
+        return b;
+    }
+
+    // Camión de las rutas evaluadas: el más grande (TA)
+    public static Truck routeTruck(SimulationContext ctx) {
+        return ctx.fleet.stream().filter(t -> t.type == TruckType.TA).findFirst().orElse(ctx.fleet.get(0));
+    }
+
+    // Las partes del backlog en orden de vecino más cercano desde la planta. La evaluación corta en la primera
+    // violación y 30 partes no se entregan en los plazos del archivo, así que el plazo se extiende una semana para que
+    // se recorra la ruta entera.
+    public static List<CustomerPart> routeOrder(SimulationContext ctx, Backlog b) {
+        List<CustomerPart> remaining = new ArrayList<>(b.parts);
+        for (CustomerPart c : remaining) c.deadlineMinutes += 7 * 24 * 60;
+        List<CustomerPart> ordered = new ArrayList<>();
+        Location at = ctx.depots.get(0);
+        while (!remaining.isEmpty()) {
+            CustomerPart next = remaining.get(0);
+            for (CustomerPart c : remaining) {
+                if (SimulationUtils.distanciaReal(ctx, at, c) < SimulationUtils.distanciaReal(ctx, at, next)) next = c;
+            }
+            remaining.remove(next);
+            ordered.add(next);
+            at = next;
+        }
+        return ordered;
+    }
+
+    // Ruta desde la planta con las primeras 'length' partes de 'ordered'
+    public static PlannedRoute route(SimulationContext ctx, Truck truck, List<CustomerPart> ordered, int length) {
+        Depot plant = ctx.depots.get(0);
+        PlannedRoute route = new PlannedRoute(truck, plant);
+        route.sequence.addAll(ordered.subList(0, length));
+        return route;
+    }
+
+    public static long unassigned(PlanningSolution solution) {
+        return solution.unassignedParts.size() * 1_000_003L + solution.routes.size();
+    }
+}
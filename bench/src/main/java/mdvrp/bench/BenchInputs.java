@@ -0,0 +1,38 @@
+package mdvrp.bench;
+
+import mdvrp.simulation.InstanceGenerator;
+import mdvrp.state.SimulationContext;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.file.Paths;
+
+// Entradas comunes de los benchmarks JMH (-p pedidos=... -p bloqueos=...). Con 'generar' se usa una instancia
+// sintética (la fija su especificación, que incluye la semilla); si no, los archivos deben tener el CRC32 fijado.
+@State(Scope.Thread)
+public abstract class BenchInputs {
+
+    @Param({"pedidos.txt"})
+    public String pedidos;
+
+    @Param({"bloqueos.txt"})
+    public String bloqueos;
+
+    @Param({""})
+    public String generar;
+
+    private InstanceGenerator.Instance instance;
+
+    // Contexto recién inicializado; la primera vez verifica los archivos fijados o genera la instancia
+    protected SimulationContext load() throws Exception {
+        if (instance == null && !generar.isEmpty()) {
+            InstanceGenerator.Params params = InstanceGenerator.Params.parse(generar);
+            instance = InstanceGenerator.generate(params, Paths.get("instancias", params.name()));
+        }
+        if (instance == null) BenchFixtures.requirePinned(pedidos, bloqueos);
+        return instance != null
+                ? BenchFixtures.context(instance, instance.pedidosFile, instance.bloqueosFile)
+                : BenchFixtures.context(null, pedidos, bloqueos);
+    }
+}
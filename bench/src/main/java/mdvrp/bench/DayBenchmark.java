@@ -0,0 +1,42 @@
+package mdvrp.bench;
+
+import mdvrp.planner.TieredPlanner;
+import mdvrp.simulation.Simulator;
+import mdvrp.state.SimulationContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// El primer día de pedidos (minutos 1440 a 2880; el motor de eventos salta el día 0 vacío) con el planificador por
+// niveles, sobre un contexto recién inicializado en cada medición
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class DayBenchmark extends BenchInputs {
+
+    SimulationContext ctx;
+
+    @Setup(Level.Iteration)
+    public void setup() throws Exception {
+        ctx = load();
+    }
+
+    @Benchmark
+    public int simulateDay() {
+        new Simulator(ctx, new TieredPlanner()).runSimulation(2 * 24 * 60, true);
+        return ctx.partsServed;
+    }
+}
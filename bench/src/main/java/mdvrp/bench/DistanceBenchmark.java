@@ -0,0 +1,70 @@
+package mdvrp.bench;
+
+import mdvrp.model.Location;
+import mdvrp.state.SimulationContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static mdvrp.bench.BenchFixtures.DISTANCE_PAIRS;
+
+// distanciaReal sobre los mismos pares al azar, con los bloqueos vigentes en cada época (las 08:00 de los días 1 a 7):
+// "cold" vacía la caché antes de cada invocación (cada consulta es un BFS), "warm" la encuentra llena. Tiempo por consulta.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+
+    @State(Scope.Thread)
+    public static class Fixture extends BenchInputs {
+        @Param({"1920", "3360", "4800", "6240", "7680", "9120", "10560"})
+        public int epoca;
+
+        SimulationContext ctx;
+        Location[][] pairs;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            ctx = load();
+            pairs = BenchFixtures.distancePairs(ctx, BenchFixtures.pedidos(ctx));
+            ctx.blockageCalendar.advanceTo(epoca);
+            BenchFixtures.distances(ctx, pairs);
+        }
+    }
+
+    // Vacía su propia caché fuera del tiempo medido. Es una subclase y no un estado aparte que reciba el Fixture
+    // porque JMH le inyectaría otra instancia, no la del benchmark.
+    @State(Scope.Thread)
+    public static class EmptyCacheFixture extends Fixture {
+        @Setup(Level.Invocation)
+        public void clear() {
+            ctx.distanceOracle.clear();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DISTANCE_PAIRS)
+    public long cold(EmptyCacheFixture fixture) {
+        return BenchFixtures.distances(fixture.ctx, fixture.pairs);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DISTANCE_PAIRS)
+    public long warm(Fixture fixture) {
+        return BenchFixtures.distances(fixture.ctx, fixture.pairs);
+    }
+}
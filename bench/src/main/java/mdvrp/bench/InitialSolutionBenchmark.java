@@ -0,0 +1,68 @@
+package mdvrp.bench;
+
+import mdvrp.model.CustomerPart;
+import mdvrp.model.Pedido;
+import mdvrp.model.Truck;
+import mdvrp.planner.PlanningSolution;
+import mdvrp.planner.SavingsConstructor;
+import mdvrp.planner.TabuSearchPlanner;
+import mdvrp.simulation.Simulator;
+import mdvrp.state.SimulationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static mdvrp.simulation.SimulationUtils.formatCost;
+import static mdvrp.state.GlobalState.*;
+
+// Compara tiempo y costo de Best Fit contra ahorros de Clarke-Wright para ráfagas de N pedidos que llegan juntos.
+// Uso: java -cp bench/target/benchmarks.jar mdvrp.bench.InitialSolutionBenchmark [pedidos] [bloqueos] [tamaños separados por coma]
+public class InitialSolutionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String pedidosFile = args.length > 0 ? args[0] : "ventas202501.txt";
+        String bloqueosFile = args.length > 1 ? args[1] : "202501.bloqueos.txt";
+        String[] sizes = (args.length > 2 ? args[2] : "25,50,100,200").split(",");
+
+        SimulationContext ctx = new SimulationContext();
+        ctx.initialize(pedidosFile, bloqueosFile);
+        List<Pedido> pedidos = new ArrayList<>(ctx.pendingPedidos.remaining());
+        List<Truck> trucks = new ArrayList<>(ctx.fleet);
+
+        System.out.println("\nPedidos | Partes | Estrategia | Tiempo (ms) | Costo Operacional | Rutas | Sin Asignar");
+        for (String size : sizes) {
+            int count = Math.min(Integer.parseInt(size.trim()), pedidos.size());
+            // La ráfaga llega toda en el momento del último pedido, cada uno con su plazo original
+            int burstTime = pedidos.get(count - 1).momentoPedido;
+            new Simulator(ctx).updateBlockages(burstTime);
+            List<CustomerPart> parts = new ArrayList<>();
+            for (int k = 0; k < count; k++) {
+                Pedido p = pedidos.get(k);
+                double remaining = p.volumen;
+                while (remaining > 0) {
+                    double demand = Math.min(remaining, MAX_TRUCK_CAPACITY_M3);
+                    parts.add(new CustomerPart(ctx.newPartId(), k + 1, p.x, p.y, demand, burstTime, burstTime + p.horaLimite * 60, p.idCliente));
+                    remaining -= demand;
+                }
+            }
+
+            long t0 = System.nanoTime();
+            PlanningSolution bestFit = TabuSearchPlanner.createInitialSolutionBestFit(ctx, parts, trucks, burstTime);
+            long bestFitMs = (System.nanoTime() - t0) / 1_000_000;
+            report(ctx, count, parts.size(), "BEST_FIT", bestFitMs, bestFit, burstTime);
+
+            t0 = System.nanoTime();
+            PlanningSolution savings = SavingsConstructor.createInitialSolutionSavings(ctx, parts, trucks, burstTime);
+            long savingsMs = (System.nanoTime() - t0) / 1_000_000;
+            report(ctx, count, parts.size(), "SAVINGS", savingsMs, savings, burstTime);
+        }
+    }
+
+    private static void report(SimulationContext ctx, int pedidos, int parts, String strategy, long millis, PlanningSolution solution, int time) {
+        TabuSearchPlanner.evaluateSolution(ctx, solution, time);
+        // Con partes sin asignar totalCost es INF; el combustible de las rutas factibles sí es comparable
+        double fuel = solution.routes.stream().filter(r -> r.feasible).mapToDouble(r -> r.estimatedFuel).sum();
+        System.out.println(pedidos + " | " + parts + " | " + strategy + " | " + millis + " | " + formatCost(fuel) +
+                " | " + solution.routes.size() + " | " + solution.unassignedParts.size());
+    }
+}
@@ -0,0 +1,53 @@
+package mdvrp.bench;
+
+import mdvrp.bench.BenchFixtures.Backlog;
+import mdvrp.planner.PlanningSolution;
+import mdvrp.planner.TabuSearchPlanner;
+import mdvrp.state.SimulationContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Solución inicial (best fit) y planRoutes completo (inicial + búsqueda tabú) para un backlog de las primeras
+// 'partes' partes del archivo llegando juntas. Las búsquedas grandes duran segundos: pocas iteraciones largas.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlannerBenchmark extends BenchInputs {
+
+    @Param({"10", "50", "200", "1000"})
+    public int partes;
+
+    SimulationContext ctx;
+    Backlog backlog;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        ctx = load();
+        backlog = BenchFixtures.backlog(ctx, BenchFixtures.pedidos(ctx), partes);
+    }
+
+    @Benchmark
+    public PlanningSolution initialSolution() {
+        return TabuSearchPlanner.createInitialSolutionBestFit(ctx, backlog.parts, ctx.fleet, backlog.time);
+    }
+
+    @Benchmark
+    public PlanningSolution planRoutes() {
+        return TabuSearchPlanner.planRoutes(ctx, backlog.parts, backlog.time);
+    }
+}
@@ -0,0 +1,53 @@
+package mdvrp.bench;
+
+import mdvrp.bench.BenchFixtures.Backlog;
+import mdvrp.planner.PlannedRoute;
+import mdvrp.planner.TabuSearchPlanner;
+import mdvrp.state.SimulationContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// calculatePlannedRouteCostAndFuel para la ruta del camión más grande con las primeras 'largo' partes del backlog en
+// orden de vecino más cercano (plazos extendidos, ver BenchFixtures.routeOrder), con la caché de distancias llena
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RouteBenchmark extends BenchInputs {
+
+    @Param({"1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15",
+            "16", "17", "18", "19", "20", "21", "22", "23", "24", "25", "26", "27", "28", "29", "30"})
+    public int largo;
+
+    SimulationContext ctx;
+    PlannedRoute route;
+    int time;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        ctx = load();
+        Backlog b = BenchFixtures.backlog(ctx, BenchFixtures.pedidos(ctx), BenchFixtures.MAX_ROUTE_LENGTH);
+        route = BenchFixtures.route(ctx, BenchFixtures.routeTruck(ctx), BenchFixtures.routeOrder(ctx, b), largo);
+        time = b.time;
+        TabuSearchPlanner.calculatePlannedRouteCostAndFuel(ctx, route, time);
+    }
+
+    @Benchmark
+    public Object evaluate() {
+        return TabuSearchPlanner.calculatePlannedRouteCostAndFuel(ctx, route, time);
+    }
+}
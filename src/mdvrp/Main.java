@@ -5,12 +5,14 @@ import mdvrp.model.Depot;
 import mdvrp.model.Location;
 import mdvrp.model.Truck;
 import mdvrp.planner.PlannedRoute;
-import mdvrp.planner.TabuSearchPlanner;
+import mdvrp.planner.RoutePlanner;
+import mdvrp.planner.TieredPlanner;
 import mdvrp.simulation.Simulator;
 import mdvrp.simulation.TruckState;
-import mdvrp.state.GlobalState;
+import mdvrp.state.SimulationContext;
 import mdvrp.ui.SimulationVisualizer;
 
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
@@ -18,12 +20,15 @@ import java.util.List;
 public class Main {
     public static void main(String[] args) {
         try {
-            // 1. Inicializar el Estado Global
-            GlobalState.initialize("pedidos.txt", "bloqueos.txt");
+            // 1. Inicializar el contexto de la simulación
+            SimulationContext ctx = new SimulationContext();
+            ctx.initialize("pedidos.txt", "bloqueos.txt");
 
-            // 2. Crear instancias de los componentes principales
-            TabuSearchPlanner planner = new TabuSearchPlanner();
-            Simulator simulator = new Simulator(planner);
+            // 2. Crear instancias de los componentes principales (motor elegido por backlog y holgura en cada replanificación)
+            RoutePlanner planner = new TieredPlanner();
+            Simulator simulator = new Simulator(ctx, planner);
+            ctx.metrics.registerJmx("main");   // jconsole: mdvrp/SimMetrics
+            simulator.setMetricsFile(Paths.get("metricas.json"));
 
             // 3. Configurar y correr la simulación
             int simulationDuration = 8 * 24 * 60; // 1 semana (ejemplo)
@@ -31,7 +36,7 @@ public class Main {
             simulator.runSimulation(simulationDuration, enableReplanning);
 
             // 4. Planificación Final (Opcional, si quedan partes no servidas)
-            List<CustomerPart> finalUnserved = GlobalState.activeCustomerParts;
+            List<CustomerPart> finalUnserved = ctx.customerParts.active();
 
             if (!finalUnserved.isEmpty()) {
                 System.out.println(" T_T Quedaron " + finalUnserved.size() + " partes sin servir al final de la simulación.");
@@ -43,11 +48,11 @@ public class Main {
             }
 
             System.out.println("\n--- Historial Completo de Rutas por Camión ---");
-            printAllTruckHistories();
+            printAllTruckHistories(ctx);
 
             // 5. Visualizar el resultado final (historial de rutas)
             System.out.println("\n📈 Mostrando visualización del historial de rutas...");
-            SimulationVisualizer.visualizeSolution();
+            SimulationVisualizer.visualizeSolution(ctx);
 
         } catch (Exception e) {
             System.err.println("Error fatal en la aplicación:");
@@ -57,13 +62,13 @@ public class Main {
         }
     }
 
-    public static void printAllTruckHistories() {
+    public static void printAllTruckHistories(SimulationContext ctx) {
         // Es buena idea ordenar la flota por ID para una salida consistente
-        List<Truck> sortedFleet = new ArrayList<>(GlobalState.fleet);
+        List<Truck> sortedFleet = new ArrayList<>(ctx.fleet);
         sortedFleet.sort(Comparator.comparing(truck -> truck.id));
 
         for (Truck truck : sortedFleet) {
-            TruckState ts = GlobalState.truckStates.get(truck.id);
+            TruckState ts = ctx.truckStates.get(truck.id);
             StringBuilder sb = new StringBuilder();
             sb.append(truck.id).append(": ");
 
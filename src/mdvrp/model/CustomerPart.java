@@ -11,11 +11,10 @@ public class CustomerPart extends Location {
     public boolean served = false;
     public int originalClientId;
 
-    public static int nextPartId = 1;
-
-    public CustomerPart(int originalOrderId, int x, int y, double demand, int tArrival, int deadline, int originalClientId) {
+    // partId lo asigna el SimulationContext (SimulationContext.newPartId) para que sea único dentro de la simulación
+    public CustomerPart(int partId, int originalOrderId, int x, int y, double demand, int tArrival, int deadline, int originalClientId) {
         super(x, y);
-        this.partId = nextPartId++;
+        this.partId = partId;
         this.originalOrderId = originalOrderId;
         this.demandM3 = demand;
         this.arrivalTimeMinutes = tArrival;
@@ -3,8 +3,6 @@ package mdvrp.model;
 import java.awt.*;
 import java.util.Objects;
 
-import static mdvrp.simulation.SimulationUtils.distanciaReal;
-
 public class Location {
 
     public int x, y;
@@ -15,6 +13,5 @@ public class Location {
         if (o == null || getClass() != o.getClass()) return false;
         Location loc = (Location) o; return x == loc.x && y == loc.y; }
     @Override public int hashCode() { return Objects.hash(x, y); }
-    public int distanceTo(Location other) { return distanciaReal(this, other); }
 
 }
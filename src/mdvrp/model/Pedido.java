@@ -1,6 +1,7 @@
 package mdvrp.model;
 
 public class Pedido {
+    public int idPedido; // Id estable asignado al cargar, en orden de llegada
     public int idCliente;
     public int x,y;
     public double volumen;
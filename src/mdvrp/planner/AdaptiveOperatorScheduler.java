@@ -0,0 +1,130 @@
+package mdvrp.planner;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static mdvrp.state.GlobalState.*;
+
+// Selección adaptativa de vecindarios al estilo ALNS: cada operador acumula puntaje por los movimientos que aporta,
+// dividido por las evaluaciones que gastó. Al cerrar cada segmento el puntaje se mezcla en su peso, y el peso
+// decide el orden de recorrido y qué fracción del vecindario se muestrea en la siguiente iteración.
+public class AdaptiveOperatorScheduler {
+
+    public static final double SCORE_NEW_BEST = 33.0;   // El movimiento dio una nueva mejor solución global
+    public static final double SCORE_IMPROVED = 9.0;    // Mejoró la solución actual
+    public static final double SCORE_ACCEPTED = 1.0;    // Aceptado sin mejorar (diversificación)
+
+    public static class OperatorStats {
+        public final NeighborhoodOperator operator;
+        public double weight = 1.0;
+        public double lastSamplingRate = 1.0;
+        public long evaluations = 0;
+        public long nanos = 0;
+        public int accepted = 0;
+        public int improved = 0;
+        public int newBest = 0;
+        double segmentScore = 0;
+        long segmentEvaluations = 0;
+
+        OperatorStats(NeighborhoodOperator operator) { this.operator = operator; }
+    }
+
+    private final int segmentLength;
+    private final double reaction;
+    private final double minSamplingRate;
+    private final Map<NeighborhoodOperator, OperatorStats> stats = new EnumMap<>(NeighborhoodOperator.class);
+    private int iterationsInSegment = 0;
+
+    public AdaptiveOperatorScheduler() {
+        this(TS_OPERATOR_SEGMENT, TS_OPERATOR_REACTION, TS_MIN_SAMPLING_RATE);
+    }
+
+    public AdaptiveOperatorScheduler(int segmentLength, double reaction, double minSamplingRate) {
+        this.segmentLength = segmentLength;
+        this.reaction = reaction;
+        this.minSamplingRate = minSamplingRate;
+        for (NeighborhoodOperator op : NeighborhoodOperator.values()) {
+            stats.put(op, new OperatorStats(op));
+        }
+    }
+
+    // Obligatorios primero, luego por peso descendente (empates en orden del enum)
+    public List<NeighborhoodOperator> orderedOperators() {
+        List<NeighborhoodOperator> ordered = new ArrayList<>(stats.keySet());
+        ordered.sort((a, b) -> {
+            if (a.mandatory != b.mandatory) return a.mandatory ? -1 : 1;
+            return Double.compare(stats.get(b).weight, stats.get(a).weight);
+        });
+        return ordered;
+    }
+
+    // Fracción de candidatos a evaluar: el operador con mayor peso se recorre completo, el resto en proporción a su peso
+    public double samplingRate(NeighborhoodOperator op) {
+        OperatorStats s = stats.get(op);
+        double rate = 1.0;
+        if (!op.mandatory) {
+            double maxWeight = 0;
+            for (OperatorStats other : stats.values()) {
+                if (!other.operator.mandatory) maxWeight = Math.max(maxWeight, other.weight);
+            }
+            if (maxWeight > 0) rate = Math.max(minSamplingRate, Math.min(1.0, s.weight / maxWeight));
+        }
+        s.lastSamplingRate = rate;
+        return rate;
+    }
+
+    public void recordScan(NeighborhoodOperator op, int evaluations, long nanos) {
+        OperatorStats s = stats.get(op);
+        s.evaluations += evaluations;
+        s.segmentEvaluations += evaluations;
+        s.nanos += nanos;
+    }
+
+    public void recordOutcome(NeighborhoodOperator op, double previousCost, double newCost, boolean newGlobalBest) {
+        OperatorStats s = stats.get(op);
+        s.accepted++;
+        if (newGlobalBest) {
+            s.newBest++;
+            s.segmentScore += SCORE_NEW_BEST;
+        } else if (newCost < previousCost) {
+            s.improved++;
+            s.segmentScore += SCORE_IMPROVED;
+        } else {
+            s.segmentScore += SCORE_ACCEPTED;
+        }
+    }
+
+    public void endIteration() {
+        if (++iterationsInSegment < segmentLength) return;
+        iterationsInSegment = 0;
+
+        // Puntaje por evaluación gastada, normalizado contra el operador más eficiente del segmento
+        double maxEfficiency = 0;
+        for (OperatorStats s : stats.values()) {
+            maxEfficiency = Math.max(maxEfficiency, efficiency(s));
+        }
+        for (OperatorStats s : stats.values()) {
+            // Un segmento sin movimientos aceptados no aporta información: se conservan los pesos
+            if (maxEfficiency > 0) {
+                s.weight = (1 - reaction) * s.weight + reaction * efficiency(s) / maxEfficiency;
+            }
+            s.segmentScore = 0;
+            s.segmentEvaluations = 0;
+        }
+    }
+
+    private static double efficiency(OperatorStats s) {
+        return s.segmentScore / Math.max(1, s.segmentEvaluations);
+    }
+
+    public Collection<OperatorStats> getStats() {
+        return stats.values();
+    }
+
+    public OperatorStats getStats(NeighborhoodOperator op) {
+        return stats.get(op);
+    }
+}
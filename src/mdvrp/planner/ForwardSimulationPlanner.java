@@ -0,0 +1,114 @@
+package mdvrp.planner;
+
+import mdvrp.model.CustomerPart;
+import mdvrp.simulation.ForwardSimulation;
+import mdvrp.simulation.SimLog;
+import mdvrp.state.SimulationContext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static mdvrp.simulation.SimulationUtils.formatCost;
+import static mdvrp.state.GlobalState.*;
+
+// Genera varios planes candidatos (el motor interno con distinta semilla y tenencia tabú, cada uno sobre su propia
+// bifurcación del contexto) y los simula hacia adelante en paralelo con las reglas reales del Simulator.
+// Aplica el que mejor resiste (menor costo de robustez); el candidato 0 es el que daría el motor interno solo.
+public class ForwardSimulationPlanner implements RoutePlanner {
+
+    private final Supplier<RoutePlanner> innerFactory;   // Una instancia por candidato: los motores no son thread-safe
+    private final int candidates;
+    private final int horizonMinutes;
+
+    public ForwardSimulationPlanner() {
+        this(TabuSearchPlanner::new, FORWARD_SIM_CANDIDATES, FORWARD_SIM_HORIZON_MINUTES);
+    }
+
+    public ForwardSimulationPlanner(Supplier<RoutePlanner> innerFactory, int candidates, int horizonMinutes) {
+        this.innerFactory = innerFactory;
+        this.candidates = Math.max(1, candidates);
+        this.horizonMinutes = horizonMinutes;
+    }
+
+    @Override
+    public String getName() { return "FORWARD_SIM"; }
+
+    private static class Candidate {
+        final int index;
+        final PlanningSolution solution;
+        final ForwardSimulation.Outcome outcome;
+
+        Candidate(int index, PlanningSolution solution, ForwardSimulation.Outcome outcome) {
+            this.index = index;
+            this.solution = solution;
+            this.outcome = outcome;
+        }
+    }
+
+    @Override
+    public PlanningSolution plan(SimulationContext ctx, List<CustomerPart> customersToServe, int planningStartTime) {
+        if (customersToServe == null || customersToServe.isEmpty()) {
+            return new PlanningSolution();
+        }
+        long startTime = System.currentTimeMillis();
+
+        // Las bifurcaciones se crean en serie (leen el contexto vivo); planificar y simular corre en paralelo
+        List<SimulationContext> forks = new ArrayList<>();
+        for (int k = 0; k < candidates; k++) {
+            SimulationContext fork = ctx.fork();
+            fork.silence();
+            fork.tsRandomSeed = ctx.tsRandomSeed + k;
+            fork.tsTabuTenure = ctx.tsTabuTenure + 5 * k;
+            forks.add(fork);
+        }
+        List<Candidate> results = IntStream.range(0, candidates).parallel()
+                .mapToObj(k -> evaluate(k, forks.get(k), customersToServe, planningStartTime))
+                .collect(Collectors.toList());
+
+        Candidate best = null;
+        for (Candidate c : results) {
+            if (c.solution == null) continue;
+            if (best == null || c.outcome.robustnessCost() < best.outcome.robustnessCost()) best = c;
+        }
+        if (best == null) {
+            ctx.log.warn(SimLog.Subsystem.PLANNER, "Planificador con simulación: ningún candidato produjo un plan en t=" + planningStartTime);
+            return null;
+        }
+        if (ctx.log.on(SimLog.Level.DEBUG, SimLog.Subsystem.PLANNER)) {
+            for (Candidate c : results) {
+                if (c.solution == null) continue;
+                ctx.log.debug(SimLog.Subsystem.PLANNER, "  Candidato " + c.index + ": costo plan " + formatCost(c.solution.totalCost) + " | simulado: " +
+                        c.outcome + (c == best ? "  <- elegido" : ""));
+            }
+            ctx.log.debug(SimLog.Subsystem.PLANNER, "🔮 Simulación hacia adelante de " + candidates + " candidatos (" + horizonMinutes / 60 + " h) en " +
+                    (System.currentTimeMillis() - startTime) + " ms.");
+        }
+        return toLive(ctx, customersToServe, best.solution);
+    }
+
+    private Candidate evaluate(int k, SimulationContext fork, List<CustomerPart> customersToServe, int planningStartTime) {
+        List<CustomerPart> parts = new ArrayList<>(customersToServe.size());
+        for (CustomerPart cp : customersToServe) {
+            CustomerPart copy = fork.customerParts.get(cp.partId);
+            parts.add(copy != null ? copy : cp);
+        }
+
+        PlanningSolution solution = innerFactory.get().plan(fork, parts, planningStartTime);
+        if (solution == null) return new Candidate(k, null, null);
+        // Las rutas se copian: la simulación las agrega al historial de la bifurcación
+        ForwardSimulation.Outcome outcome = ForwardSimulation.run(fork, new PlanningSolution(solution), planningStartTime, horizonMinutes);
+        return new Candidate(k, solution, outcome);
+    }
+
+    // El plan elegido apunta a partes, camiones y depósitos de su bifurcación; se traduce a los del contexto vivo
+    private static PlanningSolution toLive(SimulationContext ctx, List<CustomerPart> customersToServe, PlanningSolution forked) {
+        Map<Integer, CustomerPart> parts = new HashMap<>();
+        for (CustomerPart cp : customersToServe) parts.put(cp.partId, cp);
+        return forked.remapTo(ctx, parts);
+    }
+}
@@ -0,0 +1,41 @@
+package mdvrp.planner;
+
+import mdvrp.model.CustomerPart;
+import mdvrp.model.Truck;
+import mdvrp.simulation.SimLog;
+import mdvrp.state.SimulationContext;
+
+import java.util.List;
+
+import static mdvrp.simulation.SimulationUtils.formatCost;
+
+// Solo construcción (Best Fit o ahorros), sin búsqueda: latencia acotada cuando llega una ráfaga de pedidos
+public class GreedyInsertionPlanner implements RoutePlanner {
+
+    @Override
+    public String getName() { return "GREEDY"; }
+
+    @Override
+    public PlanningSolution plan(SimulationContext ctx, List<CustomerPart> customersToServe, int planningStartTime) {
+        if (customersToServe == null || customersToServe.isEmpty()) {
+            return new PlanningSolution();
+        }
+        long startTime = System.currentTimeMillis();
+        List<Truck> availableTrucks = TabuSearchPlanner.findAvailableTrucks(ctx, planningStartTime);
+        PlanningSolution solution = availableTrucks.isEmpty() ? null
+                : TabuSearchPlanner.createInitialSolution(ctx, customersToServe, availableTrucks, planningStartTime);
+        if (solution == null) {
+            ctx.log.warn(SimLog.Subsystem.PLANNER, "Planificador Greedy: No hay camiones disponibles en t=" + planningStartTime);
+            solution = new PlanningSolution();
+            solution.unassignedParts.addAll(customersToServe);
+            return solution;
+        }
+        TabuSearchPlanner.evaluateSolution(ctx, solution, planningStartTime);
+        if (ctx.log.on(SimLog.Level.DEBUG, SimLog.Subsystem.PLANNER)) {
+            ctx.log.debug(SimLog.Subsystem.PLANNER, "  Greedy completado en " + (System.currentTimeMillis() - startTime) + " ms | Costo: " +
+                    formatCost(solution.totalCost) + " | Rutas: " + solution.routes.size() +
+                    " | Sin Asignar: " + solution.unassignedParts.size());
+        }
+        return solution;
+    }
+}
@@ -0,0 +1,7 @@
+package mdvrp.planner;
+
+public enum InitialSolutionStrategy {
+    BEST_FIT,   // Inserción Best Fit parte por parte
+    SAVINGS,    // Ahorros de Clarke-Wright en paralelo + Best Fit para las sobrantes
+    AUTO        // SAVINGS cuando el lote alcanza SAVINGS_MIN_PARTS, si no BEST_FIT
+}
@@ -0,0 +1,19 @@
+package mdvrp.planner;
+
+import java.util.Objects;
+
+public class Move_2OptStar implements Move {
+    public String truckIdA, truckIdB;
+    public int cutA, cutB;
+    public Move_2OptStar(String tA, String tB, int cA, int cB){
+        if(tA.compareTo(tB)<=0){ truckIdA=tA; truckIdB=tB; cutA=cA; cutB=cB; }
+        else { truckIdA=tB; truckIdB=tA; cutA=cB; cutB=cA; }
+    }
+    @Override public String toString(){return "2Opt*(T:"+truckIdA+"/"+cutA+",T:"+truckIdB+"/"+cutB+")";}
+    @Override public boolean equals(Object o){
+        if(this==o) return true;
+        if(o==null||getClass()!=o.getClass()) return false;
+        Move_2OptStar m=(Move_2OptStar)o;
+        return cutA==m.cutA && cutB==m.cutB && Objects.equals(truckIdA, m.truckIdA) && Objects.equals(truckIdB, m.truckIdB);}
+    @Override public int hashCode(){ return Objects.hash(truckIdA, truckIdB, cutA, cutB); }
+}
@@ -0,0 +1,21 @@
+package mdvrp.planner;
+
+import java.util.Objects;
+
+public class Move_OrOpt implements Move {
+    public String truckId;
+    public int firstPartId, segmentLength, destPos;
+    public Move_OrOpt(String t, int cpId, int len, int pos){
+        truckId=t;
+        firstPartId=cpId;
+        segmentLength=len;
+        destPos=pos;
+    }
+    @Override public String toString(){return "OrOpt(T:"+truckId+",CP:"+firstPartId+"x"+segmentLength+",P:"+destPos+")";}
+    @Override public boolean equals(Object o){
+        if(this==o) return true;
+        if(o==null||getClass()!=o.getClass()) return false;
+        Move_OrOpt m=(Move_OrOpt)o;
+        return firstPartId==m.firstPartId && segmentLength==m.segmentLength && destPos==m.destPos && Objects.equals(truckId, m.truckId);}
+    @Override public int hashCode(){ return Objects.hash(truckId, firstPartId, segmentLength, destPos); }
+}
@@ -0,0 +1,16 @@
+package mdvrp.planner;
+
+public class Move_Swap implements Move {
+    public int partIdA, partIdB;
+    public Move_Swap(int a, int b){
+        partIdA=Math.min(a,b);
+        partIdB=Math.max(a,b);
+    }
+    @Override public String toString(){return "Swap(CP:"+partIdA+"<->CP:"+partIdB+")";}
+    @Override public boolean equals(Object o){
+        if(this==o) return true;
+        if(o==null||getClass()!=o.getClass()) return false;
+        Move_Swap m=(Move_Swap)o;
+        return partIdA==m.partIdA && partIdB==m.partIdB;}
+    @Override public int hashCode(){ return 31*partIdA+partIdB; }
+}
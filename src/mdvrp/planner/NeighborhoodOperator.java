@@ -0,0 +1,18 @@
+package mdvrp.planner;
+
+public enum NeighborhoodOperator {
+    INSERT_UNASSIGNED("Insertar", true),
+    TWO_OPT("2-Opt", false),
+    RELOCATE("Relocate", false),
+    SWAP("Swap", false),
+    OR_OPT("Or-Opt", false),
+    TWO_OPT_STAR("2-Opt*", false);
+
+    public final String label;
+    public final boolean mandatory; // Siempre se recorre completo (sin él no se asignan partes pendientes)
+
+    NeighborhoodOperator(String label, boolean mandatory) {
+        this.label = label;
+        this.mandatory = mandatory;
+    }
+}
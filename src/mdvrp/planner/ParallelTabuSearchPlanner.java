@@ -0,0 +1,68 @@
+package mdvrp.planner;
+
+import mdvrp.model.CustomerPart;
+import mdvrp.model.Truck;
+import mdvrp.simulation.SimLog;
+import mdvrp.state.SimulationContext;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static mdvrp.simulation.SimulationUtils.formatCost;
+import static mdvrp.state.GlobalState.*;
+
+// Varias búsquedas tabú independientes desde la misma solución inicial, cada una con su semilla y tenencia tabú,
+// corriendo en paralelo. Se queda con la mejor (a igual costo, la de menor índice, para que sea reproducible).
+public class ParallelTabuSearchPlanner implements RoutePlanner {
+
+    private final int runs;
+
+    public ParallelTabuSearchPlanner() {
+        this(PARALLEL_TS_RUNS);
+    }
+
+    public ParallelTabuSearchPlanner(int runs) {
+        this.runs = Math.max(1, runs);
+    }
+
+    @Override
+    public String getName() { return "PARALLEL_TABU"; }
+
+    @Override
+    public PlanningSolution plan(SimulationContext ctx, List<CustomerPart> customersToServe, int planningStartTime) {
+        if (customersToServe == null || customersToServe.isEmpty()) {
+            return new PlanningSolution();
+        }
+        long startTime = System.currentTimeMillis();
+        List<Truck> availableTrucks = TabuSearchPlanner.findAvailableTrucks(ctx, planningStartTime);
+        PlanningSolution initial = availableTrucks.isEmpty() ? null
+                : TabuSearchPlanner.createInitialSolution(ctx, customersToServe, availableTrucks, planningStartTime);
+        if (initial == null) {
+            ctx.log.warn(SimLog.Subsystem.PLANNER, "Planificador Paralelo: No hay camiones disponibles en t=" + planningStartTime);
+            PlanningSolution noSolution = new PlanningSolution();
+            noSolution.unassignedParts.addAll(customersToServe);
+            return noSolution;
+        }
+        TabuSearchPlanner.evaluateSolution(ctx, initial, planningStartTime);
+
+        List<PlanningSolution> results = IntStream.range(0, runs).parallel()
+                .mapToObj(k -> TabuSearchPlanner.improveSolution(ctx, new PlanningSolution(initial), planningStartTime,
+                        ctx.tsMaxIterations, ctx.tsTabuTenure + 5 * k, new Random(ctx.tsRandomSeed + k),
+                        new AdaptiveOperatorScheduler(), false))
+                .collect(Collectors.toList());
+
+        PlanningSolution best = results.get(0);
+        for (PlanningSolution candidate : results) {
+            if (candidate.totalCost < best.totalCost) best = candidate;
+        }
+        if (ctx.log.on(SimLog.Level.DEBUG, SimLog.Subsystem.PLANNER)) {
+            ctx.log.debug(SimLog.Subsystem.PLANNER, "\n🏁 Búsqueda Tabú paralela (" + runs + " corridas) completada en " +
+                    (System.currentTimeMillis() - startTime) + " ms. Inicial: " + formatCost(initial.totalCost) +
+                    " | Mejor: " + formatCost(best.totalCost));
+        }
+        TabuSearchPlanner.printPlanningSummary(ctx, best, null);
+        return best;
+    }
+}
@@ -14,6 +14,7 @@ public class PlannedRoute {
     public boolean feasible = false;
     public double estimatedFuel = Double.POSITIVE_INFINITY;
     public int routeTimeSlackMinutes = 0; // Nuevo campo
+    public int startTime = -1; // Inicio propio de la ruta; -1 usa el minuto de la planificación
 
     public PlannedRoute(Truck t, Depot d) {
         truck = t; startDepot = d; endDepot = d;
@@ -28,6 +29,7 @@ public class PlannedRoute {
         this.feasible = other.feasible;
         this.estimatedFuel = other.estimatedFuel;
         this.routeTimeSlackMinutes = other.routeTimeSlackMinutes; // Copiar nuevo campo
+        this.startTime = other.startTime;
     }
 
     @Override public String toString() {
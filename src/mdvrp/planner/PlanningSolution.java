@@ -1,11 +1,16 @@
 package mdvrp.planner;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import mdvrp.model.*;
+import mdvrp.state.SimulationContext;
 
 public class PlanningSolution {
     public List<PlannedRoute> routes = new ArrayList<>();
@@ -27,4 +32,33 @@ public class PlanningSolution {
         this.operationalFuelCost = other.operationalFuelCost;
         this.totalSolutionTimeSlackMinutes = other.totalSolutionTimeSlackMinutes; // Copiar nuevo campo
     }
+
+    // Copia del plan (hecho sobre una bifurcación del contexto) con camiones, depósitos y partes del contexto 'ctx',
+    // tomados por id. Las partes que no están en 'parts' (ya servidas o tomadas por otro camión) se quitan de las
+    // rutas; una ruta que se queda sin partes por eso se descarta.
+    public PlanningSolution remapTo(SimulationContext ctx, Map<Integer, CustomerPart> parts) {
+        Map<String, Depot> depots = new HashMap<>();
+        for (Depot d : ctx.depots) depots.put(d.id, d);
+        Map<String, Truck> trucks = new HashMap<>();
+        for (Truck t : ctx.fleet) trucks.put(t.id, t);
+
+        PlanningSolution live = new PlanningSolution(this);
+        Iterator<PlannedRoute> it = live.routes.iterator();
+        while (it.hasNext()) {
+            PlannedRoute route = it.next();
+            boolean hadParts = !route.sequence.isEmpty();
+            route.truck = trucks.get(route.truck.id);
+            route.startDepot = depots.get(route.startDepot.id);
+            route.endDepot = depots.get(route.endDepot.id);
+            route.sequence.replaceAll(cp -> parts.get(cp.partId));
+            route.sequence.removeIf(Objects::isNull);
+            if (hadParts && route.sequence.isEmpty()) it.remove();
+        }
+        live.unassignedParts.clear();
+        for (CustomerPart cp : unassignedParts) {
+            CustomerPart mapped = parts.get(cp.partId);
+            if (mapped != null) live.unassignedParts.add(mapped);
+        }
+        return live;
+    }
 }
\ No newline at end of file
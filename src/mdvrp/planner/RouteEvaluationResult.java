@@ -9,4 +9,5 @@ public class RouteEvaluationResult {
     public double penaltyCost = 0;
     public int extraTimeFromReloads = 0;
     public int totalTimeSlackMinutes = 0;
+    public boolean dominated = false; // Evaluación cortada: no puede mejorar el cutoff pedido
 }
\ No newline at end of file
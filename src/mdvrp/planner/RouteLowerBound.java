@@ -0,0 +1,27 @@
+package mdvrp.planner;
+
+import mdvrp.model.CustomerPart;
+import mdvrp.model.Location;
+import mdvrp.simulation.SimulationUtils;
+
+// Cota inferior del combustible que aún falta gastar en una ruta, usada para cortar evaluaciones que ya no pueden ganar
+public interface RouteLowerBound {
+
+    // Combustible mínimo para ir desde 'from' por route.sequence[nextIndex..] y volver a route.endDepot
+    double remainingFuel(PlannedRoute route, int nextIndex, Location from);
+
+    RouteLowerBound NONE = (route, nextIndex, from) -> 0.0;
+
+    // distanciaReal nunca es menor que la distancia Manhattan y el camión nunca pesa menos que su tara
+    RouteLowerBound MANHATTAN = (route, nextIndex, from) -> {
+        int distance = 0;
+        Location current = from;
+        for (int i = nextIndex; i < route.sequence.size(); i++) {
+            CustomerPart next = route.sequence.get(i);
+            distance += Math.abs(current.x - next.x) + Math.abs(current.y - next.y);
+            current = next;
+        }
+        distance += Math.abs(current.x - route.endDepot.x) + Math.abs(current.y - route.endDepot.y);
+        return SimulationUtils.calculateFuelConsumed(distance, 0.0, route.truck);
+    };
+}
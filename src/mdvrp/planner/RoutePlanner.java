@@ -0,0 +1,15 @@
+package mdvrp.planner;
+
+import mdvrp.model.CustomerPart;
+import mdvrp.state.SimulationContext;
+
+import java.util.List;
+
+// Motor de planificación que el Simulator invoca al replanificar
+public interface RoutePlanner {
+
+    String getName();
+
+    // Planifica las partes dadas sobre los camiones disponibles del contexto en planningStartTime
+    PlanningSolution plan(SimulationContext ctx, List<CustomerPart> customersToServe, int planningStartTime);
+}
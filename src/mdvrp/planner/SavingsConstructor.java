@@ -0,0 +1,184 @@
+package mdvrp.planner;
+
+import mdvrp.model.CustomerPart;
+import mdvrp.model.Depot;
+import mdvrp.model.Location;
+import mdvrp.model.Truck;
+import mdvrp.simulation.SimLog;
+import mdvrp.simulation.SimulationUtils;
+import mdvrp.state.SimulationContext;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static mdvrp.planner.TabuSearchPlanner.*;
+
+// Constructor de ahorros de Clarke-Wright para ráfagas grandes de partes.
+// Cada parte empieza en su propia ruta desde el depósito base más cercano; los pares se unen en orden de ahorro
+// d(D,i) + d(D,j) - d(i,j) mientras la ruta unida quepa en el camión más grande y siga siendo factible
+// (combustible y hora límite). Luego las rutas se reparten a los camiones por Best Fit de capacidad.
+public class SavingsConstructor {
+
+    private static class Saving {
+        final int i, j;
+        final int value;
+        Saving(int i, int j, int value) { this.i = i; this.j = j; this.value = value; }
+    }
+
+    private static class SavingsRoute {
+        final Depot depot;
+        final LinkedList<Integer> parts = new LinkedList<>();
+        double load;
+        SavingsRoute(Depot depot) { this.depot = depot; }
+    }
+
+    public static PlanningSolution createInitialSolutionSavings(SimulationContext ctx, List<CustomerPart> customersToServe, List<Truck> availableTrucks, int planningStartTime) {
+        if (availableTrucks.isEmpty()) return null;
+        PlanningSolution solution = new PlanningSolution();
+        int n = customersToServe.size();
+        CustomerPart[] parts = customersToServe.toArray(new CustomerPart[0]);
+
+        // Campos de distancia BFS: uno por ubicación distinta (partes del mismo pedido comparten celda) y por depósito base
+        List<Depot> homeDepots = availableTrucks.stream().map(t -> t.homeDepot).distinct().collect(Collectors.toList());
+        Set<Location> sources = new HashSet<>(homeDepots);
+        for (CustomerPart part : parts) sources.add(new Location(part.x, part.y));
+        Map<Location, int[][]> fields = new ConcurrentHashMap<>();
+        sources.parallelStream().forEach(src -> fields.put(new Location(src.x, src.y), SimulationUtils.distanceField(ctx, src)));
+
+        // Depósito de cada parte: el depósito base más cercano por el que pueda llegar
+        Depot[] depotOf = new Depot[n];
+        for (int i = 0; i < n; i++) {
+            int best = Integer.MAX_VALUE;
+            for (Depot depot : homeDepots) {
+                int d = distance(ctx, fields, depot, parts[i]);
+                if (d < best) { best = d; depotOf[i] = depot; }
+            }
+        }
+
+        // Ahorros de todos los pares con el mismo depósito, calculados y ordenados en paralelo
+        Saving[] savings = java.util.stream.IntStream.range(0, n).parallel().boxed().flatMap(i -> {
+            List<Saving> row = new ArrayList<>();
+            if (depotOf[i] == null) return row.stream();
+            int dDi = distance(ctx, fields, depotOf[i], parts[i]);
+            for (int j = i + 1; j < n; j++) {
+                if (depotOf[j] != depotOf[i]) continue;
+                int dDj = distance(ctx, fields, depotOf[i], parts[j]);
+                int dij = distance(ctx, fields, parts[i], parts[j]);
+                if (dij == Integer.MAX_VALUE) continue;
+                int value = dDi + dDj - dij;
+                if (value > 0) row.add(new Saving(i, j, value));
+            }
+            return row.stream();
+        }).toArray(Saving[]::new);
+        Arrays.parallelSort(savings, Comparator.comparingInt((Saving sv) -> -sv.value)
+                .thenComparingInt(sv -> sv.i).thenComparingInt(sv -> sv.j));
+
+        // Camión de referencia para unir rutas: el de mayor capacidad en cada depósito
+        Map<Depot, Truck> largestTruck = new HashMap<>();
+        for (Truck truck : availableTrucks) {
+            Truck current = largestTruck.get(truck.homeDepot);
+            if (current == null || truck.type.capacidadM3 > current.type.capacidadM3) largestTruck.put(truck.homeDepot, truck);
+        }
+
+        SavingsRoute[] routeOf = new SavingsRoute[n];
+        for (int i = 0; i < n; i++) {
+            if (depotOf[i] == null || parts[i].demandM3 > largestTruck.get(depotOf[i]).type.capacidadM3) {
+                solution.unassignedParts.add(parts[i]);
+                continue;
+            }
+            SavingsRoute route = new SavingsRoute(depotOf[i]);
+            route.parts.add(i);
+            route.load = parts[i].demandM3;
+            routeOf[i] = route;
+        }
+
+        int merges = 0;
+        for (Saving sv : savings) {
+            SavingsRoute ri = routeOf[sv.i], rj = routeOf[sv.j];
+            if (ri == null || rj == null || ri == rj) continue;
+            Truck reference = largestTruck.get(ri.depot);
+            if (ri.load + rj.load > reference.type.capacidadM3) continue;
+            List<Integer> merged = mergeAtEndpoints(ri, rj, sv.i, sv.j);
+            if (merged == null) continue;
+            if (!isFeasible(ctx, merged, parts, reference, ri.depot, planningStartTime)) continue;
+            ri.parts.clear();
+            ri.parts.addAll(merged);
+            ri.load += rj.load;
+            for (int idx : rj.parts) routeOf[idx] = ri;
+            merges++;
+        }
+
+        // Asignación por Best Fit de capacidad: rutas más cargadas primero, al camión más chico donde quepan y sean factibles
+        List<SavingsRoute> mergedRoutes = Arrays.stream(routeOf).filter(Objects::nonNull).distinct()
+                .sorted(Comparator.comparingDouble((SavingsRoute r) -> -r.load)).collect(Collectors.toList());
+        List<Truck> freeTrucks = new ArrayList<>(availableTrucks);
+        freeTrucks.sort(Comparator.comparingDouble((Truck t) -> t.type.capacidadM3).thenComparing(t -> t.id));
+        for (SavingsRoute route : mergedRoutes) {
+            PlannedRoute assigned = null;
+            for (Truck truck : freeTrucks) {
+                if (truck.homeDepot != route.depot || truck.type.capacidadM3 < route.load) continue;
+                PlannedRoute candidate = new PlannedRoute(truck, truck.homeDepot);
+                for (int idx : route.parts) candidate.sequence.add(parts[idx]);
+                evaluatePlannedRoute(ctx, candidate, planningStartTime);
+                if (candidate.feasible) { assigned = candidate; break; }
+            }
+            if (assigned != null) {
+                freeTrucks.remove(assigned.truck);
+                solution.routes.add(assigned);
+            } else {
+                for (int idx : route.parts) solution.unassignedParts.add(parts[idx]);
+            }
+        }
+
+        // Las partes que no entraron en ninguna ruta se intentan colocar por Best Fit (también en camiones libres)
+        for (Truck truck : freeTrucks) solution.routes.add(new PlannedRoute(truck, truck.homeDepot));
+        if (!solution.unassignedParts.isEmpty()) {
+            insertUnassignedBestFit(ctx, solution, planningStartTime);
+        }
+        solution.routes.removeIf(route -> route.sequence.isEmpty());
+
+        if (ctx.log.on(SimLog.Level.DEBUG, SimLog.Subsystem.PLANNER)) {
+            ctx.log.debug(SimLog.Subsystem.PLANNER, "  Ahorros: " + savings.length + " pares, " + merges + " uniones, " + mergedRoutes.size() +
+                    " rutas candidatas, " + solution.routes.size() + " asignadas, " + solution.unassignedParts.size() + " sin asignar.");
+        }
+        return solution;
+    }
+
+    private static int distance(SimulationContext ctx, Map<Location, int[][]> fields, Location from, Location to) {
+        int[][] field = fields.get(new Location(from.x, from.y));
+        if (field == null) return SimulationUtils.distanciaReal(ctx, from, to);
+        // Fuera del grid (p. ej. pedidos en x = GRID_WIDTH) distanciaReal también es inalcanzable
+        if (to.x < 0 || to.x >= field.length || to.y < 0 || to.y >= field[0].length) return Integer.MAX_VALUE;
+        return field[to.x][to.y];
+    }
+
+    // Une dos rutas por sus extremos de modo que i y j queden adyacentes; null si alguno es interior
+    private static List<Integer> mergeAtEndpoints(SavingsRoute ri, SavingsRoute rj, int i, int j) {
+        boolean iFirst = ri.parts.getFirst() == i, iLast = ri.parts.getLast() == i;
+        boolean jFirst = rj.parts.getFirst() == j, jLast = rj.parts.getLast() == j;
+        List<Integer> merged = new ArrayList<>();
+        if (iLast && jFirst) {
+            merged.addAll(ri.parts); merged.addAll(rj.parts);
+        } else if (jLast && iFirst) {
+            merged.addAll(rj.parts); merged.addAll(ri.parts);
+        } else if (iFirst && jFirst) {
+            List<Integer> reversed = new ArrayList<>(ri.parts);
+            Collections.reverse(reversed);
+            merged.addAll(reversed); merged.addAll(rj.parts);
+        } else if (iLast && jLast) {
+            List<Integer> reversed = new ArrayList<>(rj.parts);
+            Collections.reverse(reversed);
+            merged.addAll(ri.parts); merged.addAll(reversed);
+        } else {
+            return null;
+        }
+        return merged;
+    }
+
+    private static boolean isFeasible(SimulationContext ctx, List<Integer> sequence, CustomerPart[] parts, Truck truck, Depot depot, int planningStartTime) {
+        PlannedRoute route = new PlannedRoute(truck, depot);
+        for (int idx : sequence) route.sequence.add(parts[idx]);
+        return calculatePlannedRouteCostAndFuel(ctx, route, planningStartTime).feasible;
+    }
+}
@@ -0,0 +1,187 @@
+package mdvrp.planner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Traza por iteración de la búsqueda tabú, en CSV: costo actual y mejor, operador del movimiento elegido, decisiones
+// tabú/aspiración, vecinos factibles y descartados, y evaluaciones y nanosegundos por vecindario.
+// Cada búsqueda arma sus filas en su propio buffer y las escribe juntas al terminar, así que varias búsquedas (tabú
+// paralela, planificación asíncrona) comparten el archivo sin mezclar filas y sin candado por iteración.
+// Se activa con ctx.searchTrace = new SearchTrace(archivo); summarize() (o main) resume dónde se fue el tiempo.
+public class SearchTrace implements AutoCloseable {
+
+    private static final NeighborhoodOperator[] OPS = NeighborhoodOperator.values();
+    private static final String NONE = "-";
+
+    private final Writer out;
+    private int nextSearch = 0;
+
+    public SearchTrace(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        StringBuilder header = new StringBuilder("busqueda,minuto,iter,costo_actual,mejor,operador,tabu,aspiracion,aceptado," +
+                "nueva_mejor,factibles,descartados,tabu_vistos");
+        for (NeighborhoodOperator op : OPS) header.append(",eval_").append(column(op)).append(",ns_").append(column(op));
+        out.write(header.append('\n').toString());
+    }
+
+    // Una búsqueda (una llamada a improveSolution)
+    public synchronized Run begin(int planningStartTime) {
+        return new Run(this, nextSearch++, planningStartTime);
+    }
+
+    private synchronized void write(CharSequence rows) {
+        try {
+            out.append(rows);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    private static String column(NeighborhoodOperator op) {
+        return op.name().toLowerCase(Locale.ROOT);
+    }
+
+    public static class Run {
+        private final SearchTrace trace;
+        private final int search;
+        private final int minute;
+        private final StringBuilder rows = new StringBuilder(4096);
+        private final int[] evaluations = new int[OPS.length];
+        private final long[] nanos = new long[OPS.length];
+
+        private Run(SearchTrace trace, int search, int minute) {
+            this.trace = trace;
+            this.search = search;
+            this.minute = minute;
+        }
+
+        void scan(NeighborhoodOperator op, int evals, long elapsedNanos) {
+            evaluations[op.ordinal()] += evals;
+            nanos[op.ordinal()] += elapsedNanos;
+        }
+
+        // operator null: no hubo vecino (última iteración)
+        void iteration(int iter, double currentCost, double bestCost, NeighborhoodOperator operator, boolean tabu, boolean accepted,
+                       boolean newBest, int feasible, int discarded, int tabuSeen) {
+            rows.append(search).append(',').append(minute).append(',').append(iter).append(',');
+            cost(currentCost).append(',');
+            cost(bestCost).append(',');
+            rows.append(operator == null ? NONE : column(operator)).append(',')
+                    .append(tabu ? 1 : 0).append(',')
+                    .append(tabu && accepted ? 1 : 0).append(',')
+                    .append(accepted ? 1 : 0).append(',')
+                    .append(newBest ? 1 : 0).append(',')
+                    .append(feasible).append(',').append(discarded).append(',').append(tabuSeen);
+            for (int i = 0; i < OPS.length; i++) {
+                rows.append(',').append(evaluations[i]).append(',').append(nanos[i]);
+                evaluations[i] = 0;
+                nanos[i] = 0;
+            }
+            rows.append('\n');
+            if (rows.length() > 1 << 16) flush();
+        }
+
+        void end() {
+            flush();
+        }
+
+        private void flush() {
+            if (rows.length() == 0) return;
+            trace.write(rows);
+            rows.setLength(0);
+        }
+
+        private StringBuilder cost(double c) {
+            return c == Double.POSITIVE_INFINITY ? rows.append("inf") : rows.append(Math.round(c * 1000) / 1000.0);
+        }
+    }
+
+    // --- Resumen ---
+
+    // Tiempo y evaluaciones por vecindario, operadores ganadores y decisiones tabú de un archivo de traza
+    public static void summarize(Path file, PrintStream out) throws IOException {
+        long[] evals = new long[OPS.length];
+        long[] nanos = new long[OPS.length];
+        Map<String, int[]> wins = new TreeMap<>();   // operador -> {elegido, nueva mejor}
+        Map<Integer, Integer> lastBestIter = new TreeMap<>();   // búsqueda -> iteración de su última nueva mejor
+        Set<Integer> searches = new HashSet<>();
+        long iterations = 0, tabu = 0, aspiration = 0, accepted = 0, feasible = 0, discarded = 0, tabuSeen = 0;
+        try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = r.readLine();   // Encabezado
+            while ((line = r.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                String[] f = line.split(",");
+                iterations++;
+                searches.add(Integer.parseInt(f[0]));
+                tabu += Integer.parseInt(f[6]);
+                aspiration += Integer.parseInt(f[7]);
+                accepted += Integer.parseInt(f[8]);
+                feasible += Long.parseLong(f[10]);
+                discarded += Long.parseLong(f[11]);
+                tabuSeen += Long.parseLong(f[12]);
+                if (!f[5].equals(NONE) && f[8].equals("1")) {
+                    int[] w = wins.computeIfAbsent(f[5], k -> new int[2]);
+                    w[0]++;
+                    if (f[9].equals("1")) w[1]++;
+                }
+                if (f[9].equals("1")) lastBestIter.put(Integer.parseInt(f[0]), Integer.parseInt(f[2]));
+                for (int i = 0; i < OPS.length; i++) {
+                    evals[i] += Long.parseLong(f[13 + 2 * i]);
+                    nanos[i] += Long.parseLong(f[14 + 2 * i]);
+                }
+            }
+        }
+        long totalNanos = 0, totalEvals = 0;
+        for (int i = 0; i < OPS.length; i++) {
+            totalNanos += nanos[i];
+            totalEvals += evals[i];
+        }
+        out.println(String.format(Locale.ROOT, "Traza %s: %d búsquedas, %d iteraciones, %d vecinos evaluados en %.1f ms (%.0f vecinos/s)",
+                file, searches.size(), iterations, totalEvals, totalNanos / 1e6, totalNanos == 0 ? 0.0 : totalEvals / (totalNanos / 1e9)));
+        out.println("  Vecindario      | tiempo ms |   % | evaluaciones | µs/vecino | elegido | nueva mejor");
+        for (int i = 0; i < OPS.length; i++) {
+            int[] w = wins.getOrDefault(column(OPS[i]), new int[2]);
+            out.println(String.format(Locale.ROOT, "  %-15s | %9.1f | %3.0f | %12d | %9.2f | %7d | %d",
+                    OPS[i].label, nanos[i] / 1e6, totalNanos == 0 ? 0.0 : 100.0 * nanos[i] / totalNanos, evals[i],
+                    evals[i] == 0 ? 0.0 : nanos[i] / 1e3 / evals[i], w[0], w[1]));
+        }
+        out.println(String.format(Locale.ROOT, "  Movimientos aceptados: %d de %d iteraciones; mejor vecino tabú: %d (%d por aspiración, %d rechazados)",
+                accepted, iterations, tabu, aspiration, tabu - aspiration));
+        out.println(String.format(Locale.ROOT, "  Vecinos: %d con costo finito, %d descartados (infactibles o cortados por la cota), %d tabú",
+                feasible, discarded, tabuSeen));
+        if (!lastBestIter.isEmpty()) {
+            int[] last = lastBestIter.values().stream().mapToInt(Integer::intValue).sorted().toArray();
+            out.println(String.format(Locale.ROOT, "  Última mejora por búsqueda: mediana iter %d, máx iter %d (búsquedas con mejora: %d)",
+                    last[last.length / 2], last[last.length - 1], last.length));
+        }
+    }
+
+    // Uso: SearchTrace traza.csv
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Uso: SearchTrace <traza.csv>");
+            return;
+        }
+        summarize(Paths.get(args[0]), System.out);
+    }
+}
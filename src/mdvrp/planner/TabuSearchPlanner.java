@@ -4,186 +4,164 @@ import mdvrp.model.CustomerPart;
 import mdvrp.model.Depot;
 import mdvrp.model.Location;
 import mdvrp.model.Truck;
+import mdvrp.simulation.JfrEvents;
+import mdvrp.simulation.SimLog;
 import mdvrp.simulation.SimulationUtils;
-import mdvrp.state.GlobalState;
 import mdvrp.simulation.TruckState;
+import mdvrp.state.GlobalState;
+import mdvrp.state.SimulationContext;
 
 import java.util.*;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
+import static mdvrp.simulation.SimLog.Subsystem.*;
 import static mdvrp.simulation.SimulationUtils.*;
 import static mdvrp.state.GlobalState.*;
 
-public class TabuSearchPlanner {
+public class TabuSearchPlanner implements RoutePlanner {
 
-    private static final int TS_MAX_ITERATIONS = GlobalState.TS_MAX_ITERATIONS;
-    private static final int TS_TABU_TENURE = GlobalState.TS_TABU_TENURE;
+    @Override
+    public String getName() { return "TABU"; }
 
-    private static final Queue<Move> tabuQueue = new LinkedList<>();
-    private static final Set<Move> tabuSet = new HashSet<>();
+    @Override
+    public PlanningSolution plan(SimulationContext ctx, List<CustomerPart> customersToServe, int planningStartTime) {
+        return planRoutes(ctx, customersToServe, planningStartTime);
+    }
 
-    public static PlanningSolution planRoutes(List<CustomerPart> customersToServe, int planningStartTime) {
+    public static List<Truck> findAvailableTrucks(SimulationContext ctx, int planningStartTime) {
+        return ctx.fleet.stream()
+                .filter(t -> ctx.truckStates.get(t.id).getStatus() == TruckState.Status.IDLE &&
+                        ctx.truckStates.get(t.id).getTimeAvailable() <= planningStartTime)
+                .collect(Collectors.toList());
+    }
+
+    public static PlanningSolution planRoutes(SimulationContext ctx, List<CustomerPart> customersToServe, int planningStartTime) {
         if (customersToServe == null || customersToServe.isEmpty()) {
-            System.out.println("Planificador: No hay clientes para servir.");
+            ctx.log.debug(PLANNER, "Planificador: No hay clientes para servir.");
             return new PlanningSolution();
         }
 
         long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        JfrEvents.PlanRoutes planEvent = new JfrEvents.PlanRoutes();
+        planEvent.begin();
 
-        List<Truck> availableTrucks = fleet.stream()
-                .filter(t -> truckStates.get(t.id).status == TruckState.Status.IDLE &&
-                        truckStates.get(t.id).timeAvailable <= planningStartTime)
-                .collect(Collectors.toList());
+        List<Truck> availableTrucks = findAvailableTrucks(ctx, planningStartTime);
 
         if (availableTrucks.isEmpty()) {
-            System.err.println("Planificador: No hay camiones disponibles en t=" + planningStartTime);
+            ctx.log.warn(PLANNER, "Planificador: No hay camiones disponibles en t=" + planningStartTime);
             PlanningSolution noSolution = new PlanningSolution();
             noSolution.unassignedParts.addAll(customersToServe);
             return noSolution;
         }
-        System.out.println("Planificador: " + availableTrucks.size() + " camiones disponibles.");
+        ctx.log.debug(PLANNER, () -> "Planificador: " + availableTrucks.size() + " camiones disponibles.");
 
 
-        // Crear solución inicial con heurística Best Fit Insertion
-        System.out.println("  Generando solución inicial con Best Fit (ref t=" + planningStartTime + ")...");
-        PlanningSolution currentSolution = createInitialSolutionBestFit(customersToServe, availableTrucks, planningStartTime);
+        // Crear solución inicial (Best Fit Insertion o ahorros de Clarke-Wright)
+        PlanningSolution currentSolution = createInitialSolution(ctx, customersToServe, availableTrucks, planningStartTime);
 
         if (currentSolution == null) {
-            System.err.println("Planificador: Falló la creación de la solución inicial.");
+            ctx.log.warn(PLANNER, "Planificador: Falló la creación de la solución inicial.");
             PlanningSolution failedSolution = new PlanningSolution();
             failedSolution.unassignedParts.addAll(customersToServe);
             return failedSolution;
         }
 
         // Se evalúa solución inicial
-        evaluateSolution(currentSolution, planningStartTime);
-        PlanningSolution bestSolution = new PlanningSolution(currentSolution);
+        evaluateSolution(ctx, currentSolution, planningStartTime);
 
-        System.out.println("  Solución Inicial | Costo: " + formatCost(bestSolution.totalCost) +
-                   " | Rutas: " + bestSolution.routes.size() +
-                   " | Sin Asignar: " + bestSolution.unassignedParts.size() +
-                   " | Factible: " + bestSolution.fullyFeasible +
-                   " | Holgura Total (min): " + bestSolution.totalSolutionTimeSlackMinutes);
+        if (ctx.log.on(SimLog.Level.DEBUG, PLANNER)) ctx.log.debug(PLANNER, "  Solución Inicial | Costo: " + formatCost(currentSolution.totalCost) +
+                   " | Rutas: " + currentSolution.routes.size() +
+                   " | Sin Asignar: " + currentSolution.unassignedParts.size() +
+                   " | Factible: " + currentSolution.fullyFeasible +
+                   " | Holgura Total (min): " + currentSolution.totalSolutionTimeSlackMinutes);
 
         // Si la solución inicial ya es buena y asignó todo, quizás no necesitemos TS intensivo
-        if (bestSolution.fullyFeasible && bestSolution.unassignedParts.isEmpty() && bestSolution.totalCost < Double.POSITIVE_INFINITY) { // Podríamos hacer un TS corto o saltarlo
-            System.out.println("  Solución inicial parece completa y factible.");
+        if (currentSolution.fullyFeasible && currentSolution.unassignedParts.isEmpty() && currentSolution.totalCost < Double.POSITIVE_INFINITY) { // Podríamos hacer un TS corto o saltarlo
+            ctx.log.debug(PLANNER, "  Solución inicial parece completa y factible.");
         }
 
-        // Búsqueda Tabú en sí
-        tabuQueue.clear();
-        tabuSet.clear();
-
-        for (int iter = 0; iter < TS_MAX_ITERATIONS; iter++) {
-            PlanningSolution bestNeighborOverall = null;
-            Move bestMoveOverall = null;
-            double bestNeighborCostOverall = Double.POSITIVE_INFINITY;
-            boolean bestMoveIsTabuOverall = false;
-
-            // Vecindario 1: 2-Opt
-            for (PlannedRoute currentPRoute : currentSolution.routes) {
-                if (currentPRoute.sequence.size() < 2) continue;
-                for (int i = 0; i < currentPRoute.sequence.size() - 1; i++) {
-                    for (int j = i + 1; j < currentPRoute.sequence.size(); j++) {
-                        Move_2Opt move = new Move_2Opt(currentPRoute.truck.id, i, j);
-                        PlanningSolution neighborSolution = new PlanningSolution(currentSolution);
-                        PlannedRoute routeToModify = findPlannedRouteInSolution(neighborSolution, currentPRoute.truck.id);
-                        if (routeToModify != null) {
-                            apply2OptToPlannedRoute(routeToModify, i, j);
-                            evaluateSolution(neighborSolution, planningStartTime);
-                            boolean isTabu = tabuSet.contains(move);
-                            if (neighborSolution.totalCost < bestNeighborCostOverall) {
-                                bestNeighborCostOverall=neighborSolution.totalCost;
-                                bestNeighborOverall=neighborSolution;
-                                bestMoveOverall=move;
-                                bestMoveIsTabuOverall=isTabu;
-                            }
-                        }
-                    }
-                }
-            }
-
-            // Vecindario 2: Reallocate
-            for (int routeIdxA = 0; routeIdxA < currentSolution.routes.size(); routeIdxA++) {
-                PlannedRoute routeA = currentSolution.routes.get(routeIdxA);
-                if (routeA.sequence.isEmpty()) continue;
-                for (int custIdxA = routeA.sequence.size() - 1; custIdxA >= 0; custIdxA--) {
-                    CustomerPart customerToMove = routeA.sequence.get(custIdxA);
-                    for (int routeIdxB = 0; routeIdxB < currentSolution.routes.size(); routeIdxB++) {
-                        if (routeIdxA == routeIdxB) continue;
-                        PlannedRoute routeB = currentSolution.routes.get(routeIdxB);
-                        for (int posB = 0; posB <= routeB.sequence.size(); posB++) {
-                            PlanningSolution neighborSolution = new PlanningSolution(currentSolution);
-                            PlannedRoute neighborRouteA = findPlannedRouteInSolution(neighborSolution, routeA.truck.id);
-                            PlannedRoute neighborRouteB = findPlannedRouteInSolution(neighborSolution, routeB.truck.id);
-                            if(neighborRouteA == null || neighborRouteB == null) continue;
-
-                            if (calculatePlannedRouteLoad(neighborRouteB) + customerToMove.demandM3 > neighborRouteB.truck.type.capacidadM3) {
-                                continue;
-                            }
+        double initialCost = currentSolution.totalCost;
 
-                            CustomerPart movedCustomer = neighborRouteA.sequence.remove(custIdxA);
-                            neighborRouteB.sequence.add(posB, movedCustomer);
-
-                            evaluateSolution(neighborSolution, planningStartTime);
-                            Move_Relocate move = new Move_Relocate(movedCustomer.partId, routeA.truck.id, routeB.truck.id);
-                            boolean isTabu = tabuSet.contains(move);
-                            if (neighborSolution.totalCost < bestNeighborCostOverall) {
-                                bestNeighborCostOverall=neighborSolution.totalCost;
-                                bestNeighborOverall=neighborSolution;
-                                bestMoveOverall=move;
-                                bestMoveIsTabuOverall=isTabu;
-                            }
-                        }
-                    }
-                }
-            }
-
-            // Vecindario 3: Insertar no Asignados
-            if (!currentSolution.unassignedParts.isEmpty()) {
-                List<CustomerPart> customersToTryAssigning = new ArrayList<>(currentSolution.unassignedParts);
-                for(CustomerPart customer : customersToTryAssigning) {
-                    for(PlannedRoute route : currentSolution.routes) {
-                        for (int pos = 0; pos <= route.sequence.size(); pos++) {
-                            PlanningSolution neighborSolution = new PlanningSolution(currentSolution);
-                            PlannedRoute routeToInsert = findPlannedRouteInSolution(neighborSolution, route.truck.id);
-                            Set<CustomerPart> neighborUnassigned = neighborSolution.unassignedParts;
-                            if(routeToInsert == null) continue;
-
-                            if (calculatePlannedRouteLoad(routeToInsert) + customer.demandM3 > routeToInsert.truck.type.capacidadM3) {
-                                continue;
-                            }
-
-                            routeToInsert.sequence.add(pos, customer);
-                            neighborUnassigned.remove(customer);
+        // Búsqueda Tabú en sí
+        AdaptiveOperatorScheduler scheduler = new AdaptiveOperatorScheduler();
+        PlanningSolution bestSolution = improveSolution(ctx, currentSolution, planningStartTime, ctx.tsMaxIterations, ctx.tsTabuTenure,
+                new Random(ctx.tsRandomSeed), scheduler, true);
 
-                            evaluateSolution(neighborSolution, planningStartTime);
+        long endTime = System.currentTimeMillis();
+        if (ctx.log.on(SimLog.Level.DEBUG, PLANNER)) ctx.log.debug(PLANNER, "\n🏁 Búsqueda Tabú completada en " + (endTime - startTime) + " ms.");
+        printPlanningSummary(ctx, bestSolution, scheduler);
+        ctx.metrics.histogram("tabu.planRoutes").record(System.nanoTime() - startNanos);
+        if (planEvent.shouldCommit()) {
+            planEvent.minute = planningStartTime;
+            planEvent.parts = customersToServe.size();
+            planEvent.trucks = availableTrucks.size();
+            planEvent.initialCost = initialCost;
+            planEvent.cost = bestSolution.totalCost;
+            planEvent.unassigned = bestSolution.unassignedParts.size();
+            planEvent.commit();
+        }
+        return bestSolution;
+    }
 
-                            // Crear un "Move" representativo
-                            Move assignmentMove = null;
-                            boolean isTabu = false;
+    // Búsqueda tabú a partir de una solución ya evaluada. La lista tabú es local a la corrida,
+    // así que varias búsquedas pueden correr en paralelo sobre copias distintas.
+    public static PlanningSolution improveSolution(SimulationContext ctx, PlanningSolution initialSolution, int planningStartTime, int maxIterations, int tabuTenure,
+                                                   Random rng, AdaptiveOperatorScheduler scheduler, boolean verbose) {
+        return improveSolution(ctx, initialSolution, planningStartTime, maxIterations, tabuTenure, rng, scheduler, verbose, null);
+    }
 
-                            // Priorizar la asignación de clientes
-                            // Si asigna un cliente y es factible, puede ser mejor que una ruta óptima pero incompleta.
-                            // Se puede aceptar la primera inserción factible pero evaluarlo mejor
-                            // Por ahora, la comparación normal por costo total (que incluye penalización por no asignados) debería funcionar
-                            if (neighborSolution.totalCost < bestNeighborCostOverall) {
-                                bestNeighborCostOverall=neighborSolution.totalCost; bestNeighborOverall=neighborSolution;
-                                bestMoveOverall=assignmentMove;
-                                bestMoveIsTabuOverall=isTabu;
-                            }
-                        }
-                    }
+    // stopCondition (opcional) se consulta en cada iteración para abandonar una búsqueda que ya no sirve
+    public static PlanningSolution improveSolution(SimulationContext ctx, PlanningSolution initialSolution, int planningStartTime, int maxIterations, int tabuTenure,
+                                                   Random rng, AdaptiveOperatorScheduler scheduler, boolean verbose,
+                                                   BooleanSupplier stopCondition) {
+        PlanningSolution currentSolution = initialSolution;
+        PlanningSolution bestSolution = new PlanningSolution(currentSolution);
+        Queue<Move> tabuQueue = new LinkedList<>();
+        Set<Move> tabuSet = new HashSet<>();
+        long searchStart = System.nanoTime();
+        long neighbours = 0;
+        int iterations = 0;
+        SearchTrace.Run trace = ctx.searchTrace == null ? null : ctx.searchTrace.begin(planningStartTime);
+
+        for (int iter = 0; iter < maxIterations; iter++) {
+            if (stopCondition != null && stopCondition.getAsBoolean()) break;
+            iterations++;
+            BestNeighbor bestNeighbor = new BestNeighbor(tabuSet, trace != null);
+
+            // Vecindarios en orden de puntaje; los de bajo puntaje solo se recorren parcialmente
+            for (NeighborhoodOperator op : scheduler.orderedOperators()) {
+                double samplingRate = scheduler.samplingRate(op);
+                JfrEvents.NeighbourhoodScan scanEvent = new JfrEvents.NeighbourhoodScan();
+                scanEvent.begin();
+                long opStart = System.nanoTime();
+                int evaluations = scanNeighborhood(ctx, op, currentSolution, planningStartTime, bestNeighbor, samplingRate, rng);
+                long opNanos = System.nanoTime() - opStart;
+                if (scanEvent.shouldCommit()) {
+                    scanEvent.operator = op.label;
+                    scanEvent.iteration = iter;
+                    scanEvent.evaluations = evaluations;
+                    scanEvent.samplingRate = samplingRate;
+                    scanEvent.commit();
                 }
+                scheduler.recordScan(op, evaluations, opNanos);
+                if (trace != null) trace.scan(op, evaluations, opNanos);
+                neighbours += evaluations;
             }
 
-
             // Selección y actualizaciónn
-            if (bestNeighborOverall == null) { System.out.println("  Iter " + iter + ": No se encontraron vecinos válidos/mejoradores."); break; }
+            if (bestNeighbor.solution == null) {
+                if (trace != null) trace.iteration(iter, currentSolution.totalCost, bestSolution.totalCost, null, false, false, false,
+                        bestNeighbor.feasible, bestNeighbor.discarded, bestNeighbor.tabuSeen);
+                if (verbose && ctx.log.on(SimLog.Level.TRACE, SEARCH)) ctx.log.log(SimLog.Level.TRACE, SEARCH, "  Iter " + iter + ": No se encontraron vecinos válidos/mejoradores.");
+                break;
+            }
+            double previousCost = currentSolution.totalCost;
             boolean moveChosen = false;
-            if (bestMoveIsTabuOverall) {
-                if (bestNeighborCostOverall < bestSolution.totalCost) {
-                    currentSolution = bestNeighborOverall;
+            if (bestNeighbor.tabu) {
+                if (bestNeighbor.cost < bestSolution.totalCost) {
+                    currentSolution = bestNeighbor.solution;
                     moveChosen = true;
                 } else
                 {
@@ -191,50 +169,348 @@ public class TabuSearchPlanner {
                 }
             }
             else {
-                currentSolution = bestNeighborOverall;
+                currentSolution = bestNeighbor.solution;
                 moveChosen = true;
             }
 
-            if (moveChosen && bestMoveOverall != null) { // Solo aplicar tabú si fue un movimiento real (2opt/reloc)
-                tabuQueue.offer(bestMoveOverall); tabuSet.add(bestMoveOverall);
-                while (tabuQueue.size() > TS_TABU_TENURE) { tabuSet.remove(tabuQueue.poll()); }
+            if (moveChosen && bestNeighbor.move != null) { // Solo aplicar tabú si fue un movimiento real (no inserción)
+                tabuQueue.offer(bestNeighbor.move); tabuSet.add(bestNeighbor.move);
+                while (tabuQueue.size() > tabuTenure) { tabuSet.remove(tabuQueue.poll()); }
             }
+            boolean newGlobalBest = false;
             if (currentSolution.totalCost < bestSolution.totalCost) {
+                newGlobalBest = true;
                 bestSolution = new PlanningSolution(currentSolution);
-                System.out.println("  Iter " + iter + ": ✨ Nueva Mejor Solución! Costo: " + formatCost(bestSolution.totalCost) +
+                if (verbose && ctx.log.on(SimLog.Level.TRACE, SEARCH)) ctx.log.log(SimLog.Level.TRACE, SEARCH, "  Iter " + iter + ": ✨ Nueva Mejor Solución! Costo: " + formatCost(bestSolution.totalCost) +
                        " | Sin Asignar: " + bestSolution.unassignedParts.size() +
                        " | Factible: " + bestSolution.fullyFeasible +
-                       " | Holgura Total (min): " + bestSolution.totalSolutionTimeSlackMinutes);
+                       " | Holgura Total (min): " + bestSolution.totalSolutionTimeSlackMinutes +
+                       " | Operador: " + bestNeighbor.operator.label);
+            }
+            if (moveChosen) {
+                scheduler.recordOutcome(bestNeighbor.operator, previousCost, bestNeighbor.cost, newGlobalBest);
             }
-            if (iter > 0 && iter % 100 == 0) {
-                System.out.println("  Iter " + iter + " | Costo Actual: " + formatCost(currentSolution.totalCost) +
+            if (trace != null) trace.iteration(iter, currentSolution.totalCost, bestSolution.totalCost, bestNeighbor.operator,
+                    bestNeighbor.tabu, moveChosen, newGlobalBest, bestNeighbor.feasible, bestNeighbor.discarded, bestNeighbor.tabuSeen);
+            JfrEvents.MoveDecision decision = new JfrEvents.MoveDecision();
+            if (decision.shouldCommit()) {
+                decision.iteration = iter;
+                decision.operator = bestNeighbor.operator.label;
+                decision.tabu = bestNeighbor.tabu;
+                decision.aspiration = bestNeighbor.tabu && moveChosen;
+                decision.accepted = moveChosen;
+                decision.newBest = newGlobalBest;
+                decision.cost = currentSolution.totalCost;
+                decision.bestCost = bestSolution.totalCost;
+                decision.commit();
+            }
+            scheduler.endIteration();
+            if (verbose && iter > 0 && iter % 100 == 0 && ctx.log.on(SimLog.Level.TRACE, SEARCH)) {
+                ctx.log.log(SimLog.Level.TRACE, SEARCH, "  Iter " + iter + " | Costo Actual: " + formatCost(currentSolution.totalCost) +
                        " | Mejor: " + formatCost(bestSolution.totalCost) +
                        " | Sin Asignar: " + currentSolution.unassignedParts.size() +
                        " | Holgura Actual (min): " + currentSolution.totalSolutionTimeSlackMinutes);
             }
 
         }
+        if (trace != null) trace.end();
+        ctx.metrics.counter("tabu.iterations").add(iterations);
+        ctx.metrics.counter("tabu.neighbours").add(neighbours);
+        ctx.metrics.counter("tabu.search_nanos").add(System.nanoTime() - searchStart);
+        return bestSolution;
+    }
 
-        long endTime = System.currentTimeMillis();
-        System.out.println("\n🏁 Búsqueda Tabú completada en " + (endTime - startTime) + " ms.");
-        System.out.println("🏆 Mejor solución encontrada:");
-        System.out.println("  Costo Total (para Optimizador): " + formatCost(bestSolution.totalCost));
-        System.out.println("  Costo Operacional (Rutas Factibles): " + formatCost(bestSolution.operationalFuelCost));
-        System.out.println("  Totalmente Factible: " + bestSolution.fullyFeasible);
-        System.out.println("  Clientes Sin Asignar: " + bestSolution.unassignedParts.size());
-        System.out.println("  Holgura Total (min): " + bestSolution.totalSolutionTimeSlackMinutes); // Añadido
-        bestSolution.unassignedParts.forEach(p -> System.out.println("Ruta sin asignar: " + p.originalOrderId));
-        System.out.println("  Rutas (" + bestSolution.routes.size() + "):");
-        bestSolution.routes.forEach(r ->
-                System.out.println("    " + r + " | Costo: " + formatCost(r.cost) +
-                                " | Fuel: " + String.format("%.2f", r.estimatedFuel) + " Gal" +
-                                " | Feasible: " + r.feasible +
-                                " | Holgura Ruta (min): " + r.routeTimeSlackMinutes)); // Añadido para cada ruta
+    public static void printPlanningSummary(SimulationContext ctx, PlanningSolution bestSolution, AdaptiveOperatorScheduler scheduler) {
+        if (ctx.log.on(SimLog.Level.DEBUG, PLANNER)) {
+            ctx.log.debug(PLANNER, "🏆 Mejor solución encontrada:");
+            ctx.log.debug(PLANNER, "  Costo Total (para Optimizador): " + formatCost(bestSolution.totalCost));
+            ctx.log.debug(PLANNER, "  Costo Operacional (Rutas Factibles): " + formatCost(bestSolution.operationalFuelCost));
+            ctx.log.debug(PLANNER, "  Totalmente Factible: " + bestSolution.fullyFeasible);
+            ctx.log.debug(PLANNER, "  Clientes Sin Asignar: " + bestSolution.unassignedParts.size());
+            ctx.log.debug(PLANNER, "  Holgura Total (min): " + bestSolution.totalSolutionTimeSlackMinutes); // Añadido
+            bestSolution.unassignedParts.forEach(p -> ctx.log.debug(PLANNER, "Ruta sin asignar: " + p.originalOrderId));
+            ctx.log.debug(PLANNER, "  Rutas (" + bestSolution.routes.size() + "):");
+            bestSolution.routes.forEach(r ->
+                    ctx.log.debug(PLANNER, "    " + r + " | Costo: " + formatCost(r.cost) +
+                                    " | Fuel: " + String.format("%.2f", r.estimatedFuel) + " Gal" +
+                                    " | Feasible: " + r.feasible +
+                                    " | Holgura Ruta (min): " + r.routeTimeSlackMinutes)); // Añadido para cada ruta
+        }
+        if (scheduler == null || !ctx.log.on(SimLog.Level.DEBUG, SEARCH)) return;
+        ctx.log.debug(SEARCH, "  Operadores (peso | muestreo | evaluaciones | aceptados/mejoras/nuevas mejores | tiempo):");
+        for (NeighborhoodOperator op : scheduler.orderedOperators()) {
+            AdaptiveOperatorScheduler.OperatorStats st = scheduler.getStats(op);
+            ctx.log.debug(SEARCH, String.format("    %-9s | %.2f | %3.0f%% | %d | %d/%d/%d | %d ms",
+                    op.label, st.weight, st.lastSamplingRate * 100, st.evaluations,
+                    st.accepted, st.improved, st.newBest, st.nanos / 1_000_000));
+        }
+    }
 
-        return bestSolution;
+    // Mejor vecino de la iteración, compartido por todos los vecindarios para que cada uno corte contra el mismo costo
+    private static class BestNeighbor {
+        final Set<Move> tabuSet;
+        PlanningSolution solution = null;
+        Move move = null;
+        double cost = Double.POSITIVE_INFINITY;
+        boolean tabu = false;
+        NeighborhoodOperator operator = null;
+        final boolean traced;   // Con traza: contar vecinos factibles/descartados/tabú
+        int feasible = 0, discarded = 0, tabuSeen = 0;
+
+        BestNeighbor(Set<Move> tabuSet, boolean traced) {
+            this.tabuSet = tabuSet;
+            this.traced = traced;
+        }
+
+        void consider(PlanningSolution neighbor, Move neighborMove, NeighborhoodOperator op) {
+            if (traced) {
+                if (neighbor.totalCost == Double.POSITIVE_INFINITY) discarded++; else feasible++;
+                if (neighborMove != null && tabuSet.contains(neighborMove)) tabuSeen++;
+            }
+            if (neighbor.totalCost < cost) {
+                cost = neighbor.totalCost;
+                solution = neighbor;
+                move = neighborMove;
+                tabu = neighborMove != null && tabuSet.contains(neighborMove);
+                operator = op;
+            }
+        }
+    }
+
+    // Con muestreo parcial, cada candidato se evalúa con probabilidad samplingRate
+    private static boolean skipCandidate(double samplingRate, Random rng) {
+        return samplingRate < 1.0 && rng.nextDouble() >= samplingRate;
     }
 
-    public static PlanningSolution createInitialSolutionBestFit(List<CustomerPart> customersToServe, List<Truck> availableTrucks, int planningStartTime) {
+    // Recorre un vecindario y devuelve cuántos vecinos evaluó
+    private static int scanNeighborhood(SimulationContext ctx, NeighborhoodOperator op, PlanningSolution currentSolution, int planningStartTime,
+                                        BestNeighbor best, double samplingRate, Random rng) {
+        switch (op) {
+            case TWO_OPT: return scanTwoOpt(ctx, currentSolution, planningStartTime, best, samplingRate, rng);
+            case RELOCATE: return scanRelocate(ctx, currentSolution, planningStartTime, best, samplingRate, rng);
+            case INSERT_UNASSIGNED: return scanInsertUnassigned(ctx, currentSolution, planningStartTime, best);
+            case SWAP: return scanSwap(ctx, currentSolution, planningStartTime, best, samplingRate, rng);
+            case OR_OPT: return scanOrOpt(ctx, currentSolution, planningStartTime, best, samplingRate, rng);
+            case TWO_OPT_STAR: return scanTwoOptStar(ctx, currentSolution, planningStartTime, best, samplingRate, rng);
+            default: return 0;
+        }
+    }
+
+    // Vecindario 2-Opt: invertir un tramo dentro de una ruta
+    private static int scanTwoOpt(SimulationContext ctx, PlanningSolution currentSolution, int planningStartTime, BestNeighbor best, double samplingRate, Random rng) {
+        int evaluations = 0;
+        for (PlannedRoute currentPRoute : currentSolution.routes) {
+            if (currentPRoute.sequence.size() < 2) continue;
+            for (int i = 0; i < currentPRoute.sequence.size() - 1; i++) {
+                for (int j = i + 1; j < currentPRoute.sequence.size(); j++) {
+                    if (skipCandidate(samplingRate, rng)) continue;
+                    Move_2Opt move = new Move_2Opt(currentPRoute.truck.id, i, j);
+                    PlanningSolution neighborSolution = new PlanningSolution(currentSolution);
+                    PlannedRoute routeToModify = findPlannedRouteInSolution(neighborSolution, currentPRoute.truck.id);
+                    if (routeToModify != null) {
+                        apply2OptToPlannedRoute(routeToModify, i, j);
+                        evaluateSolution(ctx, neighborSolution, planningStartTime, best.cost);
+                        evaluations++;
+                        best.consider(neighborSolution, move, NeighborhoodOperator.TWO_OPT);
+                    }
+                }
+            }
+        }
+        return evaluations;
+    }
+
+    // Vecindario Relocate: mover una parte a otra ruta
+    private static int scanRelocate(SimulationContext ctx, PlanningSolution currentSolution, int planningStartTime, BestNeighbor best, double samplingRate, Random rng) {
+        int evaluations = 0;
+        for (int routeIdxA = 0; routeIdxA < currentSolution.routes.size(); routeIdxA++) {
+            PlannedRoute routeA = currentSolution.routes.get(routeIdxA);
+            if (routeA.sequence.isEmpty()) continue;
+            for (int custIdxA = routeA.sequence.size() - 1; custIdxA >= 0; custIdxA--) {
+                CustomerPart customerToMove = routeA.sequence.get(custIdxA);
+                for (int routeIdxB = 0; routeIdxB < currentSolution.routes.size(); routeIdxB++) {
+                    if (routeIdxA == routeIdxB) continue;
+                    PlannedRoute routeB = currentSolution.routes.get(routeIdxB);
+                    if (calculatePlannedRouteLoad(routeB) + customerToMove.demandM3 > routeB.truck.type.capacidadM3) {
+                        continue;
+                    }
+                    for (int posB = 0; posB <= routeB.sequence.size(); posB++) {
+                        if (skipCandidate(samplingRate, rng)) continue;
+                        PlanningSolution neighborSolution = new PlanningSolution(currentSolution);
+                        PlannedRoute neighborRouteA = findPlannedRouteInSolution(neighborSolution, routeA.truck.id);
+                        PlannedRoute neighborRouteB = findPlannedRouteInSolution(neighborSolution, routeB.truck.id);
+                        if(neighborRouteA == null || neighborRouteB == null) continue;
+
+                        CustomerPart movedCustomer = neighborRouteA.sequence.remove(custIdxA);
+                        neighborRouteB.sequence.add(posB, movedCustomer);
+
+                        evaluateSolution(ctx, neighborSolution, planningStartTime, best.cost);
+                        evaluations++;
+                        Move_Relocate move = new Move_Relocate(movedCustomer.partId, routeA.truck.id, routeB.truck.id);
+                        best.consider(neighborSolution, move, NeighborhoodOperator.RELOCATE);
+                    }
+                }
+            }
+        }
+        return evaluations;
+    }
+
+    // Vecindario Insertar no Asignados: siempre completo, es la única forma de bajar el costo desde INF
+    private static int scanInsertUnassigned(SimulationContext ctx, PlanningSolution currentSolution, int planningStartTime, BestNeighbor best) {
+        int evaluations = 0;
+        if (currentSolution.unassignedParts.isEmpty()) return evaluations;
+        List<CustomerPart> customersToTryAssigning = new ArrayList<>(currentSolution.unassignedParts);
+        for(CustomerPart customer : customersToTryAssigning) {
+            for(PlannedRoute route : currentSolution.routes) {
+                if (calculatePlannedRouteLoad(route) + customer.demandM3 > route.truck.type.capacidadM3) {
+                    continue;
+                }
+                for (int pos = 0; pos <= route.sequence.size(); pos++) {
+                    PlanningSolution neighborSolution = new PlanningSolution(currentSolution);
+                    PlannedRoute routeToInsert = findPlannedRouteInSolution(neighborSolution, route.truck.id);
+                    if(routeToInsert == null) continue;
+
+                    routeToInsert.sequence.add(pos, customer);
+                    neighborSolution.unassignedParts.remove(customer);
+
+                    evaluateSolution(ctx, neighborSolution, planningStartTime, best.cost);
+                    evaluations++;
+
+                    // La inserción no genera atributo tabú; compite por costo total (que penaliza no asignados)
+                    best.consider(neighborSolution, null, NeighborhoodOperator.INSERT_UNASSIGNED);
+                }
+            }
+        }
+        return evaluations;
+    }
+
+    // Vecindario Swap: intercambiar dos partes entre rutas distintas
+    private static int scanSwap(SimulationContext ctx, PlanningSolution currentSolution, int planningStartTime, BestNeighbor best, double samplingRate, Random rng) {
+        int evaluations = 0;
+        List<PlannedRoute> routes = currentSolution.routes;
+        for (int a = 0; a < routes.size(); a++) {
+            PlannedRoute routeA = routes.get(a);
+            double loadA = calculatePlannedRouteLoad(routeA);
+            for (int b = a + 1; b < routes.size(); b++) {
+                PlannedRoute routeB = routes.get(b);
+                double loadB = calculatePlannedRouteLoad(routeB);
+                for (int i = 0; i < routeA.sequence.size(); i++) {
+                    CustomerPart partA = routeA.sequence.get(i);
+                    for (int j = 0; j < routeB.sequence.size(); j++) {
+                        CustomerPart partB = routeB.sequence.get(j);
+                        if (loadA - partA.demandM3 + partB.demandM3 > routeA.truck.type.capacidadM3 ||
+                                loadB - partB.demandM3 + partA.demandM3 > routeB.truck.type.capacidadM3) {
+                            continue;
+                        }
+                        if (skipCandidate(samplingRate, rng)) continue;
+                        PlanningSolution neighborSolution = new PlanningSolution(currentSolution);
+                        neighborSolution.routes.get(a).sequence.set(i, partB);
+                        neighborSolution.routes.get(b).sequence.set(j, partA);
+                        evaluateSolution(ctx, neighborSolution, planningStartTime, best.cost);
+                        evaluations++;
+                        best.consider(neighborSolution, new Move_Swap(partA.partId, partB.partId), NeighborhoodOperator.SWAP);
+                    }
+                }
+            }
+        }
+        return evaluations;
+    }
+
+    // Vecindario Or-Opt: mover un tramo corto (1..TS_OR_OPT_MAX_SEGMENT partes) a otra posición de la misma ruta
+    private static int scanOrOpt(SimulationContext ctx, PlanningSolution currentSolution, int planningStartTime, BestNeighbor best, double samplingRate, Random rng) {
+        int evaluations = 0;
+        for (int r = 0; r < currentSolution.routes.size(); r++) {
+            PlannedRoute route = currentSolution.routes.get(r);
+            int n = route.sequence.size();
+            for (int segLen = 1; segLen <= Math.min(TS_OR_OPT_MAX_SEGMENT, n - 1); segLen++) {
+                for (int i = 0; i + segLen <= n; i++) {
+                    for (int pos = 0; pos <= n - segLen; pos++) {
+                        if (pos == i) continue;
+                        if (skipCandidate(samplingRate, rng)) continue;
+                        PlanningSolution neighborSolution = new PlanningSolution(currentSolution);
+                        List<CustomerPart> seq = neighborSolution.routes.get(r).sequence;
+                        List<CustomerPart> segment = new ArrayList<>(seq.subList(i, i + segLen));
+                        seq.subList(i, i + segLen).clear();
+                        seq.addAll(pos, segment);
+                        evaluateSolution(ctx, neighborSolution, planningStartTime, best.cost);
+                        evaluations++;
+                        Move_OrOpt move = new Move_OrOpt(route.truck.id, segment.get(0).partId, segLen, pos);
+                        best.consider(neighborSolution, move, NeighborhoodOperator.OR_OPT);
+                    }
+                }
+            }
+        }
+        return evaluations;
+    }
+
+    // Vecindario 2-Opt*: cruzar las colas de dos rutas (A[0..i) + B[j..] y B[0..j) + A[i..])
+    private static int scanTwoOptStar(SimulationContext ctx, PlanningSolution currentSolution, int planningStartTime, BestNeighbor best, double samplingRate, Random rng) {
+        int evaluations = 0;
+        List<PlannedRoute> routes = currentSolution.routes;
+        for (int a = 0; a < routes.size(); a++) {
+            PlannedRoute routeA = routes.get(a);
+            double[] prefixA = prefixLoads(routeA);
+            for (int b = a + 1; b < routes.size(); b++) {
+                PlannedRoute routeB = routes.get(b);
+                double[] prefixB = prefixLoads(routeB);
+                int nA = routeA.sequence.size(), nB = routeB.sequence.size();
+                for (int i = 0; i <= nA; i++) {
+                    for (int j = 0; j <= nB; j++) {
+                        if (i == nA && j == nB) continue; // Colas vacías: no cambia nada
+                        double newLoadA = prefixA[i] + (prefixB[nB] - prefixB[j]);
+                        double newLoadB = prefixB[j] + (prefixA[nA] - prefixA[i]);
+                        if (newLoadA > routeA.truck.type.capacidadM3 || newLoadB > routeB.truck.type.capacidadM3) continue;
+                        if (skipCandidate(samplingRate, rng)) continue;
+                        PlanningSolution neighborSolution = new PlanningSolution(currentSolution);
+                        PlannedRoute neighborA = neighborSolution.routes.get(a);
+                        PlannedRoute neighborB = neighborSolution.routes.get(b);
+                        List<CustomerPart> newSeqA = new ArrayList<>(routeA.sequence.subList(0, i));
+                        newSeqA.addAll(routeB.sequence.subList(j, nB));
+                        List<CustomerPart> newSeqB = new ArrayList<>(routeB.sequence.subList(0, j));
+                        newSeqB.addAll(routeA.sequence.subList(i, nA));
+                        neighborA.sequence = newSeqA;
+                        neighborB.sequence = newSeqB;
+                        evaluateSolution(ctx, neighborSolution, planningStartTime, best.cost);
+                        evaluations++;
+                        best.consider(neighborSolution, new Move_2OptStar(routeA.truck.id, routeB.truck.id, i, j), NeighborhoodOperator.TWO_OPT_STAR);
+                    }
+                }
+            }
+        }
+        return evaluations;
+    }
+
+    private static double[] prefixLoads(PlannedRoute route) {
+        double[] prefix = new double[route.sequence.size() + 1];
+        for (int i = 0; i < route.sequence.size(); i++) {
+            prefix[i + 1] = prefix[i] + route.sequence.get(i).demandM3;
+        }
+        return prefix;
+    }
+
+    // Solución inicial según la estrategia configurada (AUTO usa ahorros cuando llega una ráfaga grande de partes)
+    public static PlanningSolution createInitialSolution(SimulationContext ctx, List<CustomerPart> customersToServe, List<Truck> availableTrucks, int planningStartTime) {
+        InitialSolutionStrategy strategy = ctx.initialSolutionStrategy;
+        if (strategy == InitialSolutionStrategy.AUTO) {
+            strategy = customersToServe.size() >= SAVINGS_MIN_PARTS ? InitialSolutionStrategy.SAVINGS : InitialSolutionStrategy.BEST_FIT;
+        }
+        if (ctx.log.on(SimLog.Level.DEBUG, PLANNER)) ctx.log.debug(PLANNER, "  Generando solución inicial con " + strategy + " (ref t=" + planningStartTime + ", " + customersToServe.size() + " partes)...");
+        JfrEvents.InitialSolution event = new JfrEvents.InitialSolution();
+        event.begin();
+        PlanningSolution solution = strategy == InitialSolutionStrategy.SAVINGS
+                ? SavingsConstructor.createInitialSolutionSavings(ctx, customersToServe, availableTrucks, planningStartTime)
+                : createInitialSolutionBestFit(ctx, customersToServe, availableTrucks, planningStartTime);
+        if (event.shouldCommit()) {
+            event.strategy = strategy.name();
+            event.parts = customersToServe.size();
+            event.trucks = availableTrucks.size();
+            event.routes = solution == null ? 0 : solution.routes.size();
+            event.unassigned = solution == null ? customersToServe.size() : solution.unassignedParts.size();
+            event.commit();
+        }
+        return solution;
+    }
+
+    public static PlanningSolution createInitialSolutionBestFit(SimulationContext ctx, List<CustomerPart> customersToServe, List<Truck> availableTrucks, int planningStartTime) {
         PlanningSolution initialSol = new PlanningSolution();
         initialSol.unassignedParts.addAll(customersToServe);
 
@@ -244,6 +520,14 @@ public class TabuSearchPlanner {
 
         if (initialSol.routes.isEmpty()) return null;
 
+        insertUnassignedBestFit(ctx, initialSol, planningStartTime);
+
+        initialSol.routes.removeIf(route -> route.sequence.isEmpty());
+        return initialSol;
+    }
+
+    // Inserta repetidamente la parte sin asignar de menor incremento de costo en su mejor posición, hasta que ninguna quepa
+    public static void insertUnassignedBestFit(SimulationContext ctx, PlanningSolution initialSol, int planningStartTime) {
         int customersAssignedThisPass;
         do {
             customersAssignedThisPass = 0;
@@ -265,11 +549,12 @@ public class TabuSearchPlanner {
 
                         // Verificar capacidad
                         if (calculatePlannedRouteLoad(testRoute) <= route.truck.type.capacidadM3) {
-                            // Evaluar costo y factibilidad completo de la ruta modificada
-                            RouteEvaluationResult result = calculatePlannedRouteCostAndFuel(testRoute, planningStartTime);
+                            // Evaluar costo y factibilidad de la ruta modificada, cortando apenas no pueda mejorar al mejor incremento visto
+                            double originalRouteCost = (route.cost == Double.POSITIVE_INFINITY || route.sequence.isEmpty()) ? 0 : route.cost;
+                            double costCutoff = originalRouteCost + Math.min(currentMinCostInc, minGlobalCostIncrease);
+                            RouteEvaluationResult result = calculatePlannedRouteCostAndFuel(ctx, testRoute, planningStartTime, costCutoff, RouteLowerBound.MANHATTAN);
                             double potentialCost = result.cost;
                             if (potentialCost < Double.POSITIVE_INFINITY) {
-                                double originalRouteCost = (route.cost == Double.POSITIVE_INFINITY || route.sequence.isEmpty()) ? 0 : route.cost;
                                 double costIncrease = potentialCost - originalRouteCost;
                                 if (costIncrease < currentMinCostInc) {
                                     currentMinCostInc = costIncrease; currentBestRoute = route; currentBestPos = pos;
@@ -289,16 +574,13 @@ public class TabuSearchPlanner {
 
             if (bestPartToAssign != null) {
                 bestRouteForPart.sequence.add(bestInsertionPos, bestPartToAssign);
-                evaluatePlannedRoute(bestRouteForPart, planningStartTime);
+                evaluatePlannedRoute(ctx, bestRouteForPart, planningStartTime);
                 initialSol.unassignedParts.remove(bestPartToAssign);
                 customersAssignedThisPass++;
-                // System.out.println("  Init Sol: Asignado CPart" + bestPartToAssign.partId + " a " + bestRouteForPart.truck.id);
+                // ctx.out.println("  Init Sol: Asignado CPart" + bestPartToAssign.partId + " a " + bestRouteForPart.truck.id);
             }
 
         } while (customersAssignedThisPass > 0 && !initialSol.unassignedParts.isEmpty());
-
-        initialSol.routes.removeIf(route -> route.sequence.isEmpty());
-        return initialSol;
     }
 
     // Evaluación de soluciones y rutas
@@ -307,15 +589,33 @@ public class TabuSearchPlanner {
         return route.sequence.stream().mapToDouble(c -> c.demandM3).sum();
     }
 
-    public static void evaluateSolution(PlanningSolution solution, int planningStartTime) {
+    public static void evaluateSolution(SimulationContext ctx, PlanningSolution solution, int planningStartTime) {
+        evaluateSolution(ctx, solution, planningStartTime, Double.POSITIVE_INFINITY);
+    }
+
+    // Igual que evaluateSolution, pero deja de evaluar en cuanto el costo acumulado no puede quedar por debajo de costCutoff.
+    // Una solución dominada queda con costo INF, así que nunca gana una comparación estricta contra el cutoff.
+    public static void evaluateSolution(SimulationContext ctx, PlanningSolution solution, int planningStartTime, double costCutoff) {
         solution.totalCost = 0;
         solution.operationalFuelCost = 0; // Costo real de fuel
         solution.fullyFeasible = true;
         solution.totalSolutionTimeSlackMinutes = 0; // Reseteo de holgura total
         if(solution.routes == null) { return; }
 
+        // Con partes sin asignar el costo será INF de todos modos
+        if (costCutoff != Double.POSITIVE_INFINITY && !solution.unassignedParts.isEmpty()) {
+            markDominated(solution);
+            return;
+        }
+
         for (PlannedRoute r : solution.routes) {
-            evaluatePlannedRoute(r, planningStartTime);
+            // El resto de rutas cuesta >= 0, así que a esta le queda como máximo lo que no se ha gastado del cutoff
+            double routeCutoff = costCutoff == Double.POSITIVE_INFINITY ? costCutoff : costCutoff - solution.totalCost;
+            RouteEvaluationResult result = evaluatePlannedRoute(ctx, r, planningStartTime, routeCutoff);
+            if (result.dominated) {
+                markDominated(solution);
+                return;
+            }
             if (!r.feasible) {
                 solution.fullyFeasible = false;
             }
@@ -346,23 +646,43 @@ public class TabuSearchPlanner {
         }
     }
 
-    public static void evaluatePlannedRoute(PlannedRoute route, int planningStartTime) {
+    private static void markDominated(PlanningSolution solution) {
+        solution.totalCost = Double.POSITIVE_INFINITY;
+        solution.operationalFuelCost = Double.POSITIVE_INFINITY;
+        solution.fullyFeasible = false;
+    }
+
+    public static void evaluatePlannedRoute(SimulationContext ctx, PlannedRoute route, int planningStartTime) {
+        evaluatePlannedRoute(ctx, route, planningStartTime, Double.POSITIVE_INFINITY);
+    }
+
+    public static RouteEvaluationResult evaluatePlannedRoute(SimulationContext ctx, PlannedRoute route, int planningStartTime, double costCutoff) {
         if (route == null || route.truck == null) {
             route.cost = Double.POSITIVE_INFINITY;
             route.feasible = false;
             route.estimatedFuel = Double.POSITIVE_INFINITY;
             route.routeTimeSlackMinutes = 0; // Asegurar reseteo
-            return;
+            return new RouteEvaluationResult();
         }
-        RouteEvaluationResult result = calculatePlannedRouteCostAndFuel(route, planningStartTime);
+        int routeStartTime = route.startTime >= 0 ? route.startTime : planningStartTime;
+        RouteEvaluationResult result = calculatePlannedRouteCostAndFuel(ctx, route, routeStartTime, costCutoff, RouteLowerBound.MANHATTAN);
         route.cost = result.cost;
         route.estimatedFuel = result.fuel;
         route.feasible = result.feasible;
         route.routeTimeSlackMinutes = result.totalTimeSlackMinutes; // Asignar holgura
+        return result;
     }
 
-    public static RouteEvaluationResult calculatePlannedRouteCostAndFuel(PlannedRoute route, int startTime) {
+    public static RouteEvaluationResult calculatePlannedRouteCostAndFuel(SimulationContext ctx, PlannedRoute route, int startTime) {
+        return calculatePlannedRouteCostAndFuel(ctx, route, startTime, Double.POSITIVE_INFINITY, RouteLowerBound.NONE);
+    }
+
+    // Evaluación con corte: si el combustible acumulado más la cota inferior de lo que falta alcanza costCutoff,
+    // se devuelve un resultado "dominated" (costo INF, no factible) sin recorrer el resto de la secuencia.
+    public static RouteEvaluationResult calculatePlannedRouteCostAndFuel(SimulationContext ctx, PlannedRoute route, int startTime,
+                                                                         double costCutoff, RouteLowerBound lowerBound) {
         RouteEvaluationResult result = new RouteEvaluationResult();
+        boolean useCutoff = costCutoff != Double.POSITIVE_INFINITY && lowerBound != null;
         double totalFuelConsumed = 0;
         double currentLoadM3 = 0;
         int routeTotalSlack = 0; // Para acumular la holgura de la ruta
@@ -377,16 +697,22 @@ public class TabuSearchPlanner {
         double initialNeededLoad = route.sequence.stream().mapToDouble(c -> c.demandM3).sum();
         currentLoadM3 = Math.min(initialNeededLoad, route.truck.type.capacidadM3);
         double fuelRemaining = GlobalState.MAX_FUEL_GAL;
-    
-        for (CustomerPart customer : route.sequence) {
+
+        if (useCutoff && lowerBound.remainingFuel(route, 0, currentLocation) >= costCutoff) {
+            result.dominated = true;
+            return result;
+        }
+
+        for (int idx = 0; idx < route.sequence.size(); idx++) {
+            CustomerPart customer = route.sequence.get(idx);
 
             // Si la carga actual es menor que la demanda del siguiente cliente (con tolerancia)
             if (currentLoadM3 < customer.demandM3 - 0.01) {
                 result.hypotheticalReloads++;
-                Depot reloadDepot = SimulationUtils.findBestDepotForReload(currentLocation, customer.demandM3);
+                Depot reloadDepot = SimulationUtils.findBestDepotForReload(ctx, currentLocation, customer.demandM3);
                 if (reloadDepot == null) { result.feasible = false; return result; }
-                int distToDepot = SimulationUtils.distanciaReal(currentLocation, reloadDepot);
-                int distDepotToCustomer = SimulationUtils.distanciaReal(reloadDepot, customer);
+                int distToDepot = SimulationUtils.distanciaReal(ctx, currentLocation, reloadDepot);
+                int distDepotToCustomer = SimulationUtils.distanciaReal(ctx, reloadDepot, customer);
                 if (distToDepot == Integer.MAX_VALUE || distDepotToCustomer == Integer.MAX_VALUE) { result.feasible = false; return result; }
                 int travelTimeToDepot = (int) Math.round(distToDepot * SimulationUtils.MINUTOS_POR_KM);
                 int currentTotalExtraTime = travelTimeToDepot + GlobalState.RELOAD_GLP_MINUTES;
@@ -402,7 +728,7 @@ public class TabuSearchPlanner {
                 currentLocation = reloadDepot;
             }
 
-            int distToCustomer = SimulationUtils.distanciaReal(currentLocation, customer);
+            int distToCustomer = SimulationUtils.distanciaReal(ctx, currentLocation, customer);
             if (distToCustomer == Integer.MAX_VALUE) {
                 result.feasible = false; return result;
             }
@@ -433,9 +759,14 @@ public class TabuSearchPlanner {
             currentLocation = customer;
             currentLoadM3 -= customer.demandM3;
             if (currentLoadM3 < -0.01) { currentLoadM3 = 0; }
+
+            if (useCutoff && totalFuelConsumed + result.penaltyCost + lowerBound.remainingFuel(route, idx + 1, currentLocation) >= costCutoff) {
+                result.dominated = true;
+                return result;
+            }
         }
 
-        int distReturn = SimulationUtils.distanciaReal(currentLocation, route.endDepot);
+        int distReturn = SimulationUtils.distanciaReal(ctx, currentLocation, route.endDepot);
         if (distReturn == Integer.MAX_VALUE) { result.feasible = false; return result; }
 
         double fuelReturn = SimulationUtils.calculateFuelConsumed(distReturn, currentLoadM3, route.truck);
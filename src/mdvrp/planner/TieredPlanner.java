@@ -0,0 +1,73 @@
+package mdvrp.planner;
+
+import mdvrp.model.CustomerPart;
+import mdvrp.simulation.SimLog;
+import mdvrp.state.SimulationContext;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static mdvrp.state.GlobalState.*;
+
+// Elige el motor según el tamaño del backlog y el tiempo que queda hasta la hora límite más cercana:
+// Greedy en ráfagas o con plazos apretados, tabú paralelo cuando el sistema está tranquilo, tabú simple en el resto.
+public class TieredPlanner implements RoutePlanner {
+
+    public enum Tier { GREEDY, TABU, PARALLEL_TABU }
+
+    private final Map<Tier, RoutePlanner> engines = new EnumMap<>(Tier.class);
+    private final Map<Tier, Integer> usage = new EnumMap<>(Tier.class);
+
+    public TieredPlanner() {
+        this(new GreedyInsertionPlanner(), new TabuSearchPlanner(), new ParallelTabuSearchPlanner());
+    }
+
+    public TieredPlanner(RoutePlanner greedy, RoutePlanner tabu, RoutePlanner parallelTabu) {
+        engines.put(Tier.GREEDY, greedy);
+        engines.put(Tier.TABU, tabu);
+        engines.put(Tier.PARALLEL_TABU, parallelTabu);
+        for (Tier tier : Tier.values()) usage.put(tier, 0);
+    }
+
+    @Override
+    public String getName() { return "TIERED"; }
+
+    @Override
+    public PlanningSolution plan(SimulationContext ctx, List<CustomerPart> customersToServe, int planningStartTime) {
+        Tier tier = selectTier(customersToServe, planningStartTime);
+        usage.merge(tier, 1, Integer::sum);
+        if (ctx.log.on(SimLog.Level.DEBUG, SimLog.Subsystem.PLANNER)) {
+            ctx.log.debug(SimLog.Subsystem.PLANNER, "Planificador escalonado: " + customersToServe.size() + " partes, holgura mínima " +
+                    minSlackMinutes(customersToServe, planningStartTime) + " min -> " + engines.get(tier).getName());
+        }
+        return engines.get(tier).plan(ctx, customersToServe, planningStartTime);
+    }
+
+    public Tier selectTier(List<CustomerPart> customersToServe, int planningStartTime) {
+        int backlog = customersToServe.size();
+        int minSlack = minSlackMinutes(customersToServe, planningStartTime);
+        if (backlog >= TIER_BURST_PARTS || minSlack < TIER_URGENT_SLACK_MINUTES) {
+            return Tier.GREEDY;
+        }
+        if (backlog <= TIER_QUIET_PARTS && minSlack >= TIER_QUIET_SLACK_MINUTES) {
+            return Tier.PARALLEL_TABU;
+        }
+        return Tier.TABU;
+    }
+
+    // Minutos hasta la hora límite más próxima del backlog (presupuesto de tiempo de la replanificación).
+    // Las partes ya vencidas no cuentan: no hay plan que las salve y forzarían Greedy indefinidamente.
+    private static int minSlackMinutes(List<CustomerPart> customersToServe, int planningStartTime) {
+        int minSlack = Integer.MAX_VALUE;
+        for (CustomerPart part : customersToServe) {
+            int slack = part.deadlineMinutes - planningStartTime;
+            if (slack >= 0) minSlack = Math.min(minSlack, slack);
+        }
+        return minSlack;
+    }
+
+    public Map<Tier, Integer> getUsage() {
+        return usage;
+    }
+}
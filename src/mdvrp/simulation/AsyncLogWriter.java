@@ -0,0 +1,125 @@
+package mdvrp.simulation;
+
+// Hilo de escritura de la SimLog. Los eventos van a un anillo de ranuras preasignadas (minuto, nivel, subsistema,
+// mensaje), así que encolar no reserva memoria más allá del mensaje; el hilo los saca por tandas y los escribe fuera
+// del candado. Si el anillo se llena, quien loguea espera (no se pierden eventos) y se cuenta como espera.
+public class AsyncLogWriter {
+
+    private final SimLog log;
+    private final int[] minutes;
+    private final SimLog.Level[] levels;
+    private final SimLog.Subsystem[] subsystems;
+    private final String[] messages;
+    private final Object lock = new Object();
+    private long head = 0;      // Siguiente a escribir
+    private long tail = 0;      // Siguiente ranura libre
+    private long written = 0;   // Escritos por el hilo (flush espera a que alcance a tail)
+    private boolean closed = false;
+    private final Thread thread;
+
+    // Estadísticas
+    public long events = 0;
+    public long producerWaits = 0;
+    public int maxBacklog = 0;
+
+    public AsyncLogWriter(SimLog log, int capacity) {
+        this.log = log;
+        int size = Math.max(16, capacity);
+        minutes = new int[size];
+        levels = new SimLog.Level[size];
+        subsystems = new SimLog.Subsystem[size];
+        messages = new String[size];
+        thread = new Thread(this::drain, "sim-log-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void offer(int minute, SimLog.Level level, SimLog.Subsystem subsystem, String message) {
+        synchronized (lock) {
+            while (tail - head == messages.length && !closed) {
+                producerWaits++;
+                waitOn();
+            }
+            if (closed) {
+                log.write(minute, level, subsystem, message);
+                return;
+            }
+            int slot = (int) (tail % messages.length);
+            minutes[slot] = minute;
+            levels[slot] = level;
+            subsystems[slot] = subsystem;
+            messages[slot] = message;
+            tail++;
+            events++;
+            maxBacklog = Math.max(maxBacklog, (int) (tail - head));
+            lock.notifyAll();
+        }
+    }
+
+    void flush() {
+        synchronized (lock) {
+            while (written < tail && thread.isAlive()) waitOn();
+        }
+    }
+
+    void close() {
+        flush();
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        int size = messages.length;
+        int[] batchMinutes = new int[size];
+        SimLog.Level[] batchLevels = new SimLog.Level[size];
+        SimLog.Subsystem[] batchSubsystems = new SimLog.Subsystem[size];
+        String[] batchMessages = new String[size];
+        while (true) {
+            int n = 0;
+            synchronized (lock) {
+                while (head == tail && !closed) waitOn();
+                if (head == tail) return;
+                while (head < tail) {
+                    int slot = (int) (head % size);
+                    batchMinutes[n] = minutes[slot];
+                    batchLevels[n] = levels[slot];
+                    batchSubsystems[n] = subsystems[slot];
+                    batchMessages[n] = messages[slot];
+                    messages[slot] = null;
+                    n++;
+                    head++;
+                }
+                lock.notifyAll();   // Hay lugar en el anillo
+            }
+            for (int i = 0; i < n; i++) {
+                log.write(batchMinutes[i], batchLevels[i], batchSubsystems[i], batchMessages[i]);
+                batchMessages[i] = null;
+            }
+            synchronized (lock) {
+                written += n;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void waitOn() {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Escritura de bitácora interrumpida", e);
+        }
+    }
+
+    public String summary() {
+        return "Bitácora asíncrona: " + events + " eventos, anillo de " + messages.length + ", backlog máx " + maxBacklog +
+                ", " + producerWaits + " esperas por anillo lleno.";
+    }
+}
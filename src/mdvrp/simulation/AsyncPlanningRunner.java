@@ -0,0 +1,163 @@
+package mdvrp.simulation;
+
+import mdvrp.model.CustomerPart;
+import mdvrp.planner.PlanningSolution;
+import mdvrp.planner.RoutePlanner;
+import mdvrp.state.SimulationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Planificación asíncrona: el Simulator envía cada replanificación a un hilo aparte junto con una bifurcación del
+// estado y sigue avanzando. El plan terminado se aplica en el primer minuto procesado después de que termine, y a más
+// tardar 'maxLagMinutes' minutos simulados después del envío (ahí la simulación espera al planificador).
+// Un envío nuevo reemplaza al que estaba en curso: si no empezó se cancela y si ya corre su resultado se descarta.
+// El reemplazo hereda el plazo del trabajo reemplazado, así que llegadas seguidas no posponen el plan indefinidamente.
+// Con maxLagMinutes = 0 equivale a planificar de forma síncrona. Con más retraso el minuto de aplicación depende
+// de cuánto tarda el planificador en tiempo real, así que la corrida deja de ser reproducible.
+public class AsyncPlanningRunner {
+
+    public static class Result {
+        public final PlanningSolution solution;   // Sobre la bifurcación; el Simulator lo traduce al contexto vivo
+        public final int submitMinute;
+        public final int firstSubmitMinute;     // Envío más antiguo que este plan reemplaza
+        public final int backlogSize;
+        public final long planNanos;
+
+        Result(PlanningSolution solution, int submitMinute, int firstSubmitMinute, int backlogSize, long planNanos) {
+            this.solution = solution;
+            this.submitMinute = submitMinute;
+            this.firstSubmitMinute = firstSubmitMinute;
+            this.backlogSize = backlogSize;
+            this.planNanos = planNanos;
+        }
+    }
+
+    private static class Job {
+        final int submitMinute;
+        final int firstSubmitMinute;
+        final int deadline;
+        final int backlogSize;
+        volatile long planNanos;
+        Future<PlanningSolution> future;
+
+        Job(int submitMinute, int firstSubmitMinute, int deadline, int backlogSize) {
+            this.submitMinute = submitMinute;
+            this.firstSubmitMinute = firstSubmitMinute;
+            this.deadline = deadline;
+            this.backlogSize = backlogSize;
+        }
+    }
+
+    private final int maxLagMinutes;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "async-planner");
+        t.setDaemon(true);
+        return t;
+    });
+    private Job current = null;   // Solo lo toca el hilo de simulación
+
+    // Estadísticas
+    public int submitted = 0;
+    public int superseded = 0;
+    public int completed = 0;
+    public int failed = 0;
+    public long lagMinutesSum = 0;
+    public int lagMinutesMax = 0;
+    public long planNanosSum = 0;
+    public long planNanosMax = 0;
+
+    public AsyncPlanningRunner(int maxLagMinutes) {
+        this.maxLagMinutes = Math.max(0, maxLagMinutes);
+    }
+
+    public void submit(SimulationContext ctx, RoutePlanner planner, List<CustomerPart> parts, int minute) {
+        int firstSubmit = minute, deadline = minute + maxLagMinutes;
+        if (current != null) {
+            current.future.cancel(false);
+            superseded++;
+            firstSubmit = current.firstSubmitMinute;
+            deadline = current.deadline;
+        }
+        SimulationContext snapshot = ctx.fork();
+        snapshot.silence();
+        List<CustomerPart> toPlan = new ArrayList<>(parts.size());
+        for (CustomerPart cp : parts) {
+            CustomerPart copy = snapshot.customerParts.get(cp.partId);
+            toPlan.add(copy != null ? copy : cp);
+        }
+
+        Job job = new Job(minute, firstSubmit, deadline, parts.size());
+        job.future = executor.submit(() -> {
+            JfrEvents.Replan event = new JfrEvents.Replan();
+            event.begin();
+            long start = System.nanoTime();
+            PlanningSolution solution = planner.plan(snapshot, toPlan, minute);
+            job.planNanos = System.nanoTime() - start;
+            if (event.shouldCommit()) {
+                event.minute = minute;
+                event.parts = toPlan.size();
+                event.async = true;
+                event.planner = planner.getName();
+                event.cost = solution == null ? Double.NaN : solution.totalCost;
+                event.unassigned = solution == null ? toPlan.size() : solution.unassignedParts.size();
+                event.commit();
+            }
+            return solution;
+        });
+        current = job;
+        submitted++;
+    }
+
+    public boolean hasPending() {
+        return current != null;
+    }
+
+    // Minuto en que la simulación deja de avanzar sin el plan en curso (Integer.MAX_VALUE si no hay ninguno)
+    public int applyDeadline() {
+        return current == null ? Integer.MAX_VALUE : current.deadline;
+    }
+
+    // El plan en curso si ya terminó o si se alcanzó el retraso máximo (en ese caso espera a que termine); si no, null
+    public Result poll(SimulationContext ctx, int minute) {
+        if (current == null) return null;
+        if (!current.future.isDone() && minute < applyDeadline()) return null;
+        Job job = current;
+        current = null;
+        try {
+            PlanningSolution solution = job.future.get();
+            int lag = minute - job.firstSubmitMinute;
+            completed++;
+            lagMinutesSum += lag;
+            lagMinutesMax = Math.max(lagMinutesMax, lag);
+            planNanosSum += job.planNanos;
+            planNanosMax = Math.max(planNanosMax, job.planNanos);
+            return new Result(solution, job.submitMinute, job.firstSubmitMinute, job.backlogSize, job.planNanos);
+        } catch (ExecutionException e) {
+            failed++;
+            ctx.log.error(SimLog.Subsystem.PLANNER, "ERROR: La planificación asíncrona enviada en t=" + job.submitMinute + " falló: " + e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    public void shutdown() {
+        if (current != null) current.future.cancel(false);
+        current = null;
+        executor.shutdownNow();
+    }
+
+    public String summary() {
+        return String.format("Planificación asíncrona (retraso máx %d min): %d enviadas, %d reemplazadas, %d aplicadas, %d fallidas. " +
+                        "Retraso simulado: media %.1f min, máx %d min. Tiempo real: media %.1f ms, máx %.1f ms.",
+                maxLagMinutes, submitted, superseded, completed, failed,
+                completed == 0 ? 0.0 : (double) lagMinutesSum / completed, lagMinutesMax,
+                completed == 0 ? 0.0 : planNanosSum / 1e6 / completed, planNanosMax / 1e6);
+    }
+}
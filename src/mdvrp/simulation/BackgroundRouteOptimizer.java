@@ -0,0 +1,124 @@
+package mdvrp.simulation;
+
+import mdvrp.planner.AdaptiveOperatorScheduler;
+import mdvrp.planner.PlanningSolution;
+import mdvrp.planner.TabuSearchPlanner;
+import mdvrp.state.SimulationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static mdvrp.state.GlobalState.*;
+
+// Hilo que sigue mejorando, entre eventos de la simulación, los planes de camiones que aún no salieron del depósito.
+// Trabaja sobre una copia (Snapshot) con su propia bifurcación del contexto, así la búsqueda nunca lee bloqueos,
+// depósitos ni flota mientras el hilo de simulación los cambia, y publica la mejor versión encontrada de forma
+// atómica; el Simulator la traduce al contexto vivo, la valida contra el estado real y la aplica en su siguiente
+// punto seguro.
+public class BackgroundRouteOptimizer {
+
+    public static class Snapshot {
+        final long version;                                  // Versión de planes del Simulator al tomar la copia
+        final PlanningSolution solution;                     // Rutas de camiones IDLE/PRE_TRIP en depósito, ya evaluadas
+        final Map<String, List<Integer>> originalPartIds;    // Plan de cada camión al tomar la copia (para validar)
+        final SimulationContext fork;                        // Bifurcación del contexto al tomar la copia
+        final PlanningSolution forkSolution;                 // 'solution' con partes, camiones y depósitos de 'fork'
+
+        Snapshot(long version, PlanningSolution solution, Map<String, List<Integer>> originalPartIds, SimulationContext fork, PlanningSolution forkSolution) {
+            this.version = version;
+            this.solution = solution;
+            this.originalPartIds = originalPartIds;
+            this.fork = fork;
+            this.forkSolution = forkSolution;
+        }
+    }
+
+    public static class Improvement {
+        final Snapshot base;
+        final PlanningSolution solution;   // Sobre base.fork: el Simulator la traduce con remapTo
+
+        Improvement(Snapshot base, PlanningSolution solution) {
+            this.base = base;
+            this.solution = solution;
+        }
+    }
+
+    private final SimulationContext ctx;
+    private final AtomicReference<Snapshot> pending = new AtomicReference<>();
+    private final AtomicReference<Improvement> published = new AtomicReference<>();
+    private final Object signal = new Object();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private volatile long latestVersion = -1;
+
+    public final AtomicInteger improvementsPublished = new AtomicInteger();
+    public int improvementsApplied = 0;   // Solo los modifica el hilo de simulación
+    public int improvementsDiscarded = 0;
+
+    public BackgroundRouteOptimizer(SimulationContext ctx) {
+        this.ctx = ctx;
+        worker = new Thread(this::runLoop, "background-route-optimizer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Reemplaza cualquier copia pendiente: solo interesa optimizar la más reciente
+    public void submit(Snapshot snapshot) {
+        latestVersion = snapshot.version;
+        pending.set(snapshot);
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+    }
+
+    public Improvement takeImprovement() {
+        return published.getAndSet(null);
+    }
+
+    public void shutdown() {
+        running = false;
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+    }
+
+    private void runLoop() {
+        while (running) {
+            Snapshot snapshot = pending.getAndSet(null);
+            if (snapshot == null) {
+                synchronized (signal) {
+                    try {
+                        signal.wait(50);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                continue;
+            }
+            optimize(snapshot);
+        }
+    }
+
+    private void optimize(Snapshot snapshot) {
+        PlanningSolution current = new PlanningSolution(snapshot.forkSolution);
+        double bestCost = snapshot.forkSolution.totalCost;
+        for (int round = 0; round < BACKGROUND_MAX_ROUNDS && isCurrent(snapshot); round++) {
+            // Cada ruta lleva su propio startTime, así que el minuto de planificación no se usa
+            PlanningSolution improved = TabuSearchPlanner.improveSolution(snapshot.fork, new PlanningSolution(current), 0,
+                    BACKGROUND_TS_ITERATIONS, ctx.tsTabuTenure, new Random(ctx.tsRandomSeed + round),
+                    new AdaptiveOperatorScheduler(), false, () -> !isCurrent(snapshot));
+            if (!isCurrent(snapshot) || !(improved.totalCost < bestCost - 1e-6)) break;
+            bestCost = improved.totalCost;
+            current = improved;
+            published.set(new Improvement(snapshot, new PlanningSolution(improved)));
+            improvementsPublished.incrementAndGet();
+        }
+    }
+
+    private boolean isCurrent(Snapshot snapshot) {
+        return running && latestVersion == snapshot.version;
+    }
+}
@@ -0,0 +1,174 @@
+package mdvrp.simulation;
+
+import mdvrp.model.Bloqueo;
+import mdvrp.state.SimulationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Calendario de bloqueos: los Bloqueo se compilan en eventos de inicio/fin ordenados por minuto y cada celda lleva
+// un contador de bloqueos activos. Activar o liberar un bloqueo cuesta O(sus celdas) y solo ocurre en sus bordes.
+// ctx.blockedNodes sigue siendo la vista que leen el resto de componentes; se mantiene como contador > 0.
+public class BlockageCalendar {
+
+    // Celdas que cambiaron de estado en un minuto (una celda cubierta por otro bloqueo activo no aparece)
+    public static class Change {
+        public final int minute;
+        public final List<int[]> blockedCells;
+        public final List<int[]> releasedCells;
+
+        Change(int minute, List<int[]> blockedCells, List<int[]> releasedCells) {
+            this.minute = minute;
+            this.blockedCells = blockedCells;
+            this.releasedCells = releasedCells;
+        }
+    }
+
+    public interface Listener {
+        void onBlockageChange(Change change);
+    }
+
+    private final SimulationContext ctx;
+    private final List<Bloqueo> bloqueos;
+    private final int[] eventTimes;    // Ordenados; un bloqueo aporta inicio y fin
+    private final int[] eventBloqueo;  // Índice del bloqueo; negativo (-i-1) para fin
+    private final int[][] refCount;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private int cursor = 0;
+    private int lastMinute = Integer.MIN_VALUE;
+
+    public BlockageCalendar(SimulationContext ctx, List<Bloqueo> bloqueos) {
+        this.ctx = ctx;
+        this.refCount = new int[ctx.gridWidth][ctx.gridHeight];
+        this.bloqueos = new ArrayList<>(bloqueos);
+        int n = this.bloqueos.size();
+        long[] packed = new long[2 * n];
+        for (int i = 0; i < n; i++) {
+            Bloqueo b = this.bloqueos.get(i);
+            // Minuto en los 32 bits altos; en el mismo minuto los fines van antes que los inicios
+            packed[2 * i] = ((long) b.inicioMinutos << 32) | (1L << 31) | i;
+            packed[2 * i + 1] = ((long) b.finMinutos << 32) | i;
+        }
+        Arrays.sort(packed);
+        eventTimes = new int[packed.length];
+        eventBloqueo = new int[packed.length];
+        for (int k = 0; k < packed.length; k++) {
+            eventTimes[k] = (int) (packed[k] >> 32);
+            int low = (int) (packed[k] & 0xFFFFFFFFL);
+            int index = low & Integer.MAX_VALUE;
+            eventBloqueo[k] = (low & (1 << 31)) != 0 ? index : -index - 1;
+        }
+    }
+
+    // Copia para un contexto bifurcado: comparte los eventos compilados y copia los contadores y el cursor.
+    // No hereda los listeners.
+    private BlockageCalendar(BlockageCalendar other, SimulationContext ctx) {
+        this.ctx = ctx;
+        this.bloqueos = other.bloqueos;
+        this.eventTimes = other.eventTimes;
+        this.eventBloqueo = other.eventBloqueo;
+        this.refCount = new int[other.refCount.length][];
+        for (int x = 0; x < refCount.length; x++) refCount[x] = other.refCount[x].clone();
+        this.cursor = other.cursor;
+        this.lastMinute = other.lastMinute;
+    }
+
+    public BlockageCalendar fork(SimulationContext ctx) {
+        return new BlockageCalendar(this, ctx);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Minuto del siguiente inicio o fin pendiente, o Integer.MAX_VALUE si no quedan
+    public int nextEventTime() {
+        return cursor < eventTimes.length ? eventTimes[cursor] : Integer.MAX_VALUE;
+    }
+
+    public boolean nextEventIsStart() {
+        return cursor < eventTimes.length && eventBloqueo[cursor] >= 0;
+    }
+
+    // Aplica todos los bordes con minuto <= 'minute' y actualiza blockedNodes. Devuelve true si alguna celda cambió.
+    // Retroceder en el tiempo reconstruye el estado desde cero.
+    public boolean advanceTo(int minute) {
+        if (minute < lastMinute) reset();
+        lastMinute = minute;
+        if (cursor >= eventTimes.length || eventTimes[cursor] > minute) return false;
+
+        List<int[]> blocked = new ArrayList<>();
+        List<int[]> released = new ArrayList<>();
+        boolean[][] touched = new boolean[ctx.gridWidth][ctx.gridHeight];
+        List<int[]> touchedCells = new ArrayList<>();
+        while (cursor < eventTimes.length && eventTimes[cursor] <= minute) {
+            int code = eventBloqueo[cursor++];
+            boolean start = code >= 0;
+            Bloqueo b = bloqueos.get(start ? code : -code - 1);
+            for (int[] punto : b.puntosBloqueados) {
+                int x = punto[0], y = punto[1];
+                if (!ctx.inGrid(x, y)) continue;
+                refCount[x][y] += start ? 1 : -1;
+                if (!touched[x][y]) {
+                    touched[x][y] = true;
+                    touchedCells.add(new int[]{x, y});
+                }
+            }
+        }
+        for (int[] cell : touchedCells) {
+            boolean nowBlocked = refCount[cell[0]][cell[1]] > 0;
+            if (nowBlocked == ctx.blockedNodes[cell[0]][cell[1]]) continue;
+            ctx.blockedNodes[cell[0]][cell[1]] = nowBlocked;
+            (nowBlocked ? blocked : released).add(cell);
+        }
+        if (blocked.isEmpty() && released.isEmpty()) return false;
+
+        Change change = new Change(minute, Collections.unmodifiableList(blocked), Collections.unmodifiableList(released));
+        for (Listener listener : listeners) {
+            listener.onBlockageChange(change);
+        }
+        return true;
+    }
+
+    // Libera todas las celdas y vuelve al inicio del calendario (notifica las celdas liberadas)
+    public void reset() {
+        List<int[]> released = new ArrayList<>();
+        for (int x = 0; x < ctx.gridWidth; x++) {
+            Arrays.fill(refCount[x], 0);
+            for (int y = 0; y < ctx.gridHeight; y++) {
+                if (ctx.blockedNodes[x][y]) {
+                    ctx.blockedNodes[x][y] = false;
+                    released.add(new int[]{x, y});
+                }
+            }
+        }
+        cursor = 0;
+        lastMinute = Integer.MIN_VALUE;
+        if (!released.isEmpty()) {
+            Change change = new Change(lastMinute, Collections.<int[]>emptyList(), Collections.unmodifiableList(released));
+            for (Listener listener : listeners) {
+                listener.onBlockageChange(change);
+            }
+        }
+    }
+
+    // Último minuto aplicado con advanceTo (Integer.MIN_VALUE si no se aplicó ninguno)
+    public int lastMinute() {
+        return lastMinute;
+    }
+
+    public List<Bloqueo> getBloqueos() {
+        return Collections.unmodifiableList(bloqueos);
+    }
+
+    public int activeCount(int x, int y) {
+        return refCount[x][y];
+    }
+}
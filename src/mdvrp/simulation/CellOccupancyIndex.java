@@ -0,0 +1,228 @@
+package mdvrp.simulation;
+
+import mdvrp.model.Location;
+import mdvrp.model.Truck;
+import mdvrp.state.SimulationContext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Índice invertido celda -> camiones cuyo tramo en curso o ruta planificada (resto del plan y regreso a casa) pasa
+// por ella. Escucha el BlockageCalendar: cuando se bloquean celdas marca solo los camiones afectados, y el Simulator
+// desvía esos tramos y revisa esas rutas en vez de replanificar todo.
+// El Simulator llama a sync() después de cada minuto procesado solo por los camiones que el FleetStore marcó como
+// modificados, y a syncStale() por los que quedaron con la ruta invalidada aquí.
+public class CellOccupancyIndex implements BlockageCalendar.Listener {
+
+    private static class Indexed {
+        final TruckState ts;
+        TruckLeg leg = null;
+        int[] legCells = new int[0];
+        List<Object> routeKey = null;   // Origen + plan con que se indexó la ruta; null obliga a reindexar
+        int[] routeCells = new int[0];
+        List<int[]> routeSegments = new ArrayList<>();   // {desdeX, desdeY, hastaX, hastaY, distancia} de cada tramo de la ruta
+        int version = -1;               // Versión del camión en el FleetStore con que se indexó
+
+        Indexed(TruckState ts) {
+            this.ts = ts;
+        }
+    }
+
+    private final SimulationContext ctx;
+    private final Map<Integer, Set<String>> legsByCell = new HashMap<>();
+    private final Map<Integer, Set<String>> routesByCell = new HashMap<>();
+    private final Map<String, Indexed> indexed = new HashMap<>();
+    private final Set<String> affectedLegs = new HashSet<>();
+    private final Set<String> affectedRoutes = new HashSet<>();
+    private final Set<Indexed> stale = new LinkedHashSet<>();   // Rutas invalidadas que faltan reindexar
+    private BlockageCalendar calendar = null;
+
+    // Estadísticas (las actualiza el Simulator)
+    public int legsRerouted = 0;
+    public int routesChecked = 0;
+    public int partsReleased = 0;
+
+    public CellOccupancyIndex(SimulationContext ctx) {
+        this.ctx = ctx;
+    }
+
+    // Se engancha al calendario vigente del contexto (cambia al restaurar un checkpoint). Devuelve true si es nuevo:
+    // en ese caso el índice empezó vacío y hay que sincronizar todos los camiones.
+    public boolean attach(BlockageCalendar calendar) {
+        if (this.calendar == calendar) return false;
+        if (this.calendar != null) this.calendar.removeListener(this);
+        this.calendar = calendar;
+        calendar.addListener(this);
+        legsByCell.clear();
+        routesByCell.clear();
+        indexed.clear();
+        affectedLegs.clear();
+        affectedRoutes.clear();
+        stale.clear();
+        return true;
+    }
+
+    public void detach() {
+        if (calendar != null) calendar.removeListener(this);
+        calendar = null;
+    }
+
+    // Reindexa el tramo y la ruta del camión si cambiaron desde la última vez
+    public void sync(TruckState ts) {
+        Indexed entry = indexed.get(ts.truck.id);
+        if (entry == null) {
+            entry = new Indexed(ts);
+            indexed.put(ts.truck.id, entry);
+        }
+        // Sin cambios en el camión desde la última vez (y la ruta no quedó invalidada): nada que recalcular
+        if (entry.version == ts.getVersion() && entry.routeKey != null) return;
+        entry.version = ts.getVersion();
+        if (entry.leg != ts.getCurrentLeg()) {
+            unregister(legsByCell, entry.legCells, ts.truck.id);
+            entry.leg = ts.getCurrentLeg();
+            entry.legCells = ts.getCurrentLeg() == null ? new int[0] : ts.getCurrentLeg().cells;
+            register(legsByCell, entry.legCells, ts.truck.id);
+        }
+        List<Object> routeKey = routeKey(ts);
+        if (!routeKey.equals(entry.routeKey)) {
+            unregister(routesByCell, entry.routeCells, ts.truck.id);
+            entry.routeKey = routeKey;
+            entry.routeCells = routeCells(ts, entry.routeSegments);
+            register(routesByCell, entry.routeCells, ts.truck.id);
+        }
+    }
+
+    public void invalidateRoute(String truckId) {
+        Indexed entry = indexed.get(truckId);
+        if (entry != null) invalidate(entry);
+    }
+
+    // Reindexa las rutas invalidadas desde la última vez (aunque el camión no haya cambiado)
+    public void syncStale() {
+        if (stale.isEmpty()) return;
+        List<Indexed> pending = new ArrayList<>(stale);
+        stale.clear();
+        for (Indexed entry : pending) sync(entry.ts);
+    }
+
+    private void invalidate(Indexed entry) {
+        entry.routeKey = null;
+        stale.add(entry);
+    }
+
+    @Override
+    public void onBlockageChange(BlockageCalendar.Change change) {
+        for (int[] c : change.blockedCells) {
+            int cell = c[0] * ctx.gridHeight + c[1];
+            Set<String> legs = legsByCell.get(cell);
+            if (legs != null) affectedLegs.addAll(legs);
+            Set<String> routes = routesByCell.get(cell);
+            if (routes != null) affectedRoutes.addAll(routes);
+        }
+        // Al liberar celdas un camino mínimo puede acortarse por celdas no indexadas: se reindexan solo las rutas con
+        // algún tramo que pueda acortarse (mismo criterio que DistanceOracle). Los tramos en curso no cambian.
+        if (!change.releasedCells.isEmpty()) {
+            for (Indexed entry : indexed.values()) {
+                if (entry.routeKey != null && mayShorten(entry, change.releasedCells)) invalidate(entry);
+            }
+        }
+    }
+
+    // Camiones con el tramo en curso sobre celdas recién bloqueadas, en el orden de la flota; vacía la marca
+    public List<TruckState> takeAffectedLegs() {
+        return take(affectedLegs);
+    }
+
+    // Camiones con la ruta planificada sobre celdas recién bloqueadas, en el orden de la flota; vacía la marca
+    public List<TruckState> takeAffectedRoutes() {
+        return take(affectedRoutes);
+    }
+
+    public int indexedCells() {
+        Set<Integer> cells = new HashSet<>(legsByCell.keySet());
+        cells.addAll(routesByCell.keySet());
+        return cells.size();
+    }
+
+    public String summary() {
+        return "Índice de ocupación: " + legsRerouted + " tramos desviados, " + routesChecked + " rutas revisadas, " +
+                partsReleased + " partes devueltas a planificación.";
+    }
+
+    private List<TruckState> take(Set<String> truckIds) {
+        List<TruckState> trucks = new ArrayList<>();
+        if (truckIds.isEmpty()) return trucks;
+        for (Truck t : ctx.fleet) {
+            if (truckIds.contains(t.id)) {
+                TruckState ts = ctx.truckStates.get(t.id);
+                if (ts != null) trucks.add(ts);
+            }
+        }
+        truckIds.clear();
+        return trucks;
+    }
+
+    // Origen de la ruta (destino del tramo en curso, o la ubicación actual) seguido del plan pendiente
+    private static List<Object> routeKey(TruckState ts) {
+        List<Object> key = new ArrayList<>(ts.currentRoutePlan.size() + 1);
+        key.add(ts.getDestination() != null ? ts.getDestination() : ts.getCurrentLocation());
+        key.addAll(ts.currentRoutePlan);
+        return key;
+    }
+
+    // Celdas de los caminos entre paradas del plan pendiente y de vuelta al depósito de origen
+    private int[] routeCells(TruckState ts, List<int[]> segments) {
+        segments.clear();
+        if (ts.getStatus() == TruckState.Status.INACTIVE) return new int[0];
+        if (ts.currentRoutePlan.isEmpty() && ts.getStatus() == TruckState.Status.IDLE) return new int[0];
+        Set<Integer> cells = new HashSet<>();
+        Location prev = ts.getDestination() != null ? ts.getDestination() : ts.getCurrentLocation();
+        for (Object step : ts.currentRoutePlan) {
+            if (step == prev) continue;   // El destino del tramo en curso sigue al frente del plan
+            addPath(cells, segments, prev, (Location) step);
+            prev = (Location) step;
+        }
+        addPath(cells, segments, prev, ts.truck.homeDepot);
+        int[] result = new int[cells.size()];
+        int i = 0;
+        for (int cell : cells) result[i++] = cell;
+        return result;
+    }
+
+    private void addPath(Set<Integer> cells, List<int[]> segments, Location from, Location to) {
+        int[] path = ctx.distanceOracle.path(from, to);
+        segments.add(new int[]{from.x, from.y, to.x, to.y, path == null ? Integer.MAX_VALUE : path.length - 1});
+        if (path == null) return;
+        for (int cell : path) cells.add(cell);
+    }
+
+    // Un camino nuevo debe pasar por una celda liberada y no puede ser más corto que Manhattan pasando por ella
+    private static boolean mayShorten(Indexed entry, List<int[]> releasedCells) {
+        for (int[] s : entry.routeSegments) {
+            for (int[] c : releasedCells) {
+                if (s[4] == Integer.MAX_VALUE || Math.abs(s[0] - c[0]) + Math.abs(s[1] - c[1]) + Math.abs(c[0] - s[2]) + Math.abs(c[1] - s[3]) < s[4]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void register(Map<Integer, Set<String>> byCell, int[] cells, String truckId) {
+        for (int cell : cells) byCell.computeIfAbsent(cell, k -> new HashSet<>()).add(truckId);
+    }
+
+    private static void unregister(Map<Integer, Set<String>> byCell, int[] cells, String truckId) {
+        for (int cell : cells) {
+            Set<String> trucks = byCell.get(cell);
+            if (trucks == null) continue;
+            trucks.remove(truckId);
+            if (trucks.isEmpty()) byCell.remove(cell);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package mdvrp.simulation;
+
+import mdvrp.model.Location;
+import mdvrp.state.SimulationContext;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static mdvrp.state.GlobalState.DISTANCE_CACHE_MAX_ENTRIES;
+
+// Caché de distanciaReal (BFS sobre el grid con bloqueos) con invalidación dirigida por el BlockageCalendar.
+// Cada entrada guarda un camino mínimo: al bloquear celdas solo se descartan las entradas cuyo camino las cruza;
+// al liberar celdas solo las que podrían acortarse pasando por ellas (cota Manhattan) y las inalcanzables.
+public class DistanceOracle implements BlockageCalendar.Listener {
+
+    private static final int[][] DIRS = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}};
+
+    private static class Entry {
+        final int distance;
+        final int[] path;   // Celdas intermedias (x * gridHeight + y), sin origen ni destino
+        final int cellsExpanded;   // Celdas que expandió la búsqueda que la calculó (evento JFR)
+
+        Entry(int distance, int[] path, int cellsExpanded) {
+            this.distance = distance;
+            this.path = path;
+            this.cellsExpanded = cellsExpanded;
+        }
+    }
+
+    private static final Entry UNREACHABLE = new Entry(Integer.MAX_VALUE, new int[0], 0);
+
+    private final SimulationContext ctx;
+    private final Map<Long, Entry> cache = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private final LongAdder hits;           // Métricas del contexto (distance.*): las de un oráculo bifurcado suman al original
+    private final LongAdder misses;
+    private final LongAdder invalidated;
+    private final LongAdder cellsExpanded;
+    private final LatencyHistogram bfsNanos;
+    private volatile DistanceOracle parent = null;   // Caché de la que se bifurcó; se lee mientras ninguno cambie de bloqueos
+    private long parentVersion;
+
+    public DistanceOracle(SimulationContext ctx) {
+        this.ctx = ctx;
+        this.hits = ctx.metrics.counter("distance.hits");
+        this.misses = ctx.metrics.counter("distance.misses");
+        this.invalidated = ctx.metrics.counter("distance.invalidated");
+        this.cellsExpanded = ctx.metrics.counter("distance.bfs_cells");
+        this.bfsNanos = ctx.metrics.histogram("distance.bfs");
+    }
+
+    // Oráculo para un contexto bifurcado: empieza vacío y consulta la caché del padre mientras los bloqueos de ambos
+    // sigan siendo los del momento de la bifurcación, así que bifurcar no copia entradas.
+    public DistanceOracle fork(SimulationContext ctx) {
+        DistanceOracle child = new DistanceOracle(ctx);
+        child.parentVersion = version.get();
+        child.parent = this;
+        return child;
+    }
+
+    public int distance(Location f, Location t) {
+        Entry entry = lookup(f, t);
+        return entry == null ? 0 : entry.distance;
+    }
+
+    // Celdas de un camino mínimo de f a t, incluidos origen y destino; null si no hay camino
+    public int[] path(Location f, Location t) {
+        if (f == null || t == null || !ctx.inGrid(f.x, f.y) || !ctx.inGrid(t.x, t.y)) return null;
+        Entry entry = lookup(f, t);
+        int source = f.x * ctx.gridHeight + f.y, target = t.x * ctx.gridHeight + t.y;
+        if (entry == null) return new int[]{source};
+        if (entry.distance == Integer.MAX_VALUE) return null;
+        int[] cells = new int[entry.path.length + 2];
+        cells[0] = source;
+        System.arraycopy(entry.path, 0, cells, 1, entry.path.length);
+        cells[cells.length - 1] = target;
+        return cells;
+    }
+
+    // Entrada de la caché para f -> t (la calcula si falta); null si origen y destino son la misma celda
+    private Entry lookup(Location f, Location t) {
+        if (f == null || t == null) return UNREACHABLE;
+        if (!ctx.inGrid(f.x, f.y) || !ctx.inGrid(t.x, t.y)) return UNREACHABLE;
+        int source = f.x * ctx.gridHeight + f.y, target = t.x * ctx.gridHeight + t.y;
+        if (source == target) return null;
+
+        // En long: source * celdas desborda int con grillas de más de 46.340 celdas
+        Long key = (long) source * (ctx.gridWidth * ctx.gridHeight) + target;
+        Entry entry = cache.get(key);
+        if (entry == null) entry = fromParent(key);
+        if (entry != null) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        long seen = version.get();
+        JfrEvents.DistanceMiss event = new JfrEvents.DistanceMiss();
+        event.begin();
+        long start = System.nanoTime();
+        entry = search(source, target);
+        bfsNanos.record(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.fromX = f.x;
+            event.fromY = f.y;
+            event.toX = t.x;
+            event.toY = t.y;
+            event.cellsExpanded = entry.cellsExpanded;
+            event.distance = entry.distance == Integer.MAX_VALUE ? -1 : entry.distance;
+            event.commit();
+        }
+        if (cache.size() >= DISTANCE_CACHE_MAX_ENTRIES) cache.clear();
+        cache.put(key, entry);
+        // Si los bloqueos cambiaron durante la búsqueda, la entrada pudo perderse la invalidación
+        if (version.get() != seen) cache.remove(key, entry);
+        return entry;
+    }
+
+    private Entry fromParent(Long key) {
+        DistanceOracle p = parent;
+        if (p == null) return null;
+        Entry entry = p.cache.get(key);
+        // Válida solo si el padre no cambió de bloqueos antes ni durante la lectura
+        if (p.version.get() != parentVersion) {
+            parent = null;
+            return null;
+        }
+        return entry;
+    }
+
+    // Misma semántica que el BFS original: el destino se acepta aunque esté bloqueado, las celdas bloqueadas no se expanden
+    private Entry search(int source, int target) {
+        int cells = ctx.gridWidth * ctx.gridHeight;
+        int[] parent = new int[cells];
+        Arrays.fill(parent, -1);
+        int[] dist = new int[cells];
+        int[] queue = new int[cells];
+        int head = 0, tail = 0;
+        queue[tail++] = source;
+        parent[source] = source;
+        while (head < tail) {
+            int cell = queue[head++];
+            int cx = cell / ctx.gridHeight, cy = cell % ctx.gridHeight;
+            for (int[] dir : DIRS) {
+                int nx = cx + dir[0], ny = cy + dir[1];
+                if (!ctx.inGrid(nx, ny)) continue;
+                int next = nx * ctx.gridHeight + ny;
+                if (next == target) {
+                    cellsExpanded.add(head);
+                    int[] path = new int[dist[cell]];
+                    for (int k = path.length - 1, c = cell; k >= 0; k--, c = parent[c]) path[k] = c;
+                    return new Entry(dist[cell] + 1, path, head);
+                }
+                if (parent[next] != -1 || ctx.blockedNodes[nx][ny]) continue;
+                parent[next] = cell;
+                dist[next] = dist[cell] + 1;
+                queue[tail++] = next;
+            }
+        }
+        cellsExpanded.add(head);
+        return new Entry(Integer.MAX_VALUE, UNREACHABLE.path, head);
+    }
+
+    @Override
+    public void onBlockageChange(BlockageCalendar.Change change) {
+        version.incrementAndGet();
+        parent = null;
+        if (!change.blockedCells.isEmpty()) {
+            boolean[] newlyBlocked = new boolean[ctx.gridWidth * ctx.gridHeight];
+            for (int[] c : change.blockedCells) newlyBlocked[c[0] * ctx.gridHeight + c[1]] = true;
+            cache.entrySet().removeIf(e -> {
+                for (int cell : e.getValue().path) {
+                    if (newlyBlocked[cell]) {
+                        invalidated.increment();
+                        return true;
+                    }
+                }
+                return false;
+            });
+        }
+        if (!change.releasedCells.isEmpty()) {
+            int cells = ctx.gridWidth * ctx.gridHeight;
+            cache.entrySet().removeIf(e -> {
+                int d = e.getValue().distance;
+                int source = (int) (e.getKey() / cells), target = (int) (e.getKey() % cells);
+                int sx = source / ctx.gridHeight, sy = source % ctx.gridHeight;
+                int tx = target / ctx.gridHeight, ty = target % ctx.gridHeight;
+                for (int[] c : change.releasedCells) {
+                    // Un camino nuevo debe pasar por una celda liberada y no puede ser más corto que Manhattan
+                    if (d == Integer.MAX_VALUE || Math.abs(sx - c[0]) + Math.abs(sy - c[1]) + Math.abs(c[0] - tx) + Math.abs(c[1] - ty) < d) {
+                        invalidated.increment();
+                        return true;
+                    }
+                }
+                return false;
+            });
+        }
+    }
+
+    public void clear() {
+        version.incrementAndGet();
+        parent = null;
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+}
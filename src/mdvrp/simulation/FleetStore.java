@@ -0,0 +1,411 @@
+package mdvrp.simulation;
+
+import mdvrp.model.CustomerPart;
+import mdvrp.model.Depot;
+import mdvrp.model.Location;
+import mdvrp.model.Truck;
+import mdvrp.state.SimulationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static mdvrp.state.GlobalState.MAX_FUEL_GAL;
+
+// Estado de la flota en arreglos paralelos indexados por número de camión (el orden de ctx.fleet): estado, celda,
+// carga, combustible, timeAvailable y ETA en arreglos primitivos, y el plan de cada camión como una cola de enteros
+// (partId >= 0; depósito = -(índice en ctx.depots + 1)). TruckState es solo una vista sobre un índice.
+// Un heap de (minuto, camión) guarda cuándo le toca a cada camión, así que updateTrucks recorre solo los que vencen
+// y el motor de eventos programa un único evento de camión por minuto en vez de uno por camión.
+public class FleetStore {
+
+    private static final TruckState.Status[] STATUSES = TruckState.Status.values();
+    private static final int NO_WAKE = Integer.MAX_VALUE;
+
+    private final SimulationContext ctx;
+    private int size = 0;
+
+    // Datos calientes
+    byte[] status = new byte[0];
+    int[] cell = new int[0];              // Celda de currentLocation (x * gridHeight + y)
+    double[] load = new double[0];
+    double[] fuel = new double[0];
+    int[] timeAvailable = new int[0];
+    int[] eta = new int[0];               // arrivalTimeAtDestination
+    int[][] plan = new int[0][];
+    int[] planHead = new int[0];
+    int[] planSize = new int[0];
+    int[] version = new int[0];           // Cambia con cada modificación del camión (para índices derivados)
+
+    // Referencias (la identidad de partes y depósitos importa al comparar ubicaciones)
+    Location[] location = new Location[0];
+    Location[] destination = new Location[0];
+    TruckLeg[] leg = new TruckLeg[0];
+    private TruckState[] views = new TruckState[0];
+
+    // Heap de vencimientos: (minuto << 32 | camión); las entradas cuyo minuto ya no es el programado se descartan al salir
+    private long[] heap = new long[16];
+    private int heapSize = 0;
+    private int[] scheduled = new int[0];
+    private boolean deferWakes = false;   // Transiciones en paralelo: el heap no se toca hasta la fusión
+
+    // Camiones modificados desde el último drainChanged (cada uno una vez), para que los índices derivados no recorran
+    // toda la flota por minuto
+    private boolean[] changed = new boolean[0];
+    private int[] changedList = new int[0];
+    private int changedCount = 0;
+
+    public FleetStore(SimulationContext ctx) {
+        this.ctx = ctx;
+    }
+
+    public TruckState add(Truck truck) {
+        int i = size++;
+        ensureCapacity(size);
+        status[i] = (byte) TruckState.Status.IDLE.ordinal();
+        location[i] = truck.homeDepot;
+        cell[i] = cellOf(truck.homeDepot);
+        fuel[i] = MAX_FUEL_GAL;
+        eta[i] = -1;
+        plan[i] = new int[4];
+        scheduled[i] = NO_WAKE;
+        views[i] = new TruckState(this, i, truck, new ArrayList<>());
+        return views[i];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TruckState get(int index) {
+        return views[index];
+    }
+
+    public int count(TruckState.Status s) {
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (status[i] == s.ordinal()) n++;
+        }
+        return n;
+    }
+
+    // Vistas en orden de flota
+    public List<TruckState> all() {
+        return Arrays.asList(views).subList(0, size);
+    }
+
+    // Copia para un contexto bifurcado: arreglos copiados y ubicaciones reemplazadas por las copias de partes y
+    // depósitos del contexto nuevo; el historial de rutas se comparte (solo se agrega al final)
+    public FleetStore fork(SimulationContext f, List<Truck> fleetCopies, Map<Integer, CustomerPart> parts, Map<String, Depot> depots) {
+        FleetStore copy = new FleetStore(f);
+        copy.size = size;
+        copy.status = status.clone();
+        copy.cell = cell.clone();
+        copy.load = load.clone();
+        copy.fuel = fuel.clone();
+        copy.timeAvailable = timeAvailable.clone();
+        copy.eta = eta.clone();
+        copy.planHead = planHead.clone();
+        copy.planSize = planSize.clone();
+        copy.version = version.clone();
+        copy.scheduled = scheduled.clone();
+        copy.changed = new boolean[changed.length];   // La copia arranca sin cambios pendientes
+        copy.changedList = new int[changedList.length];
+        copy.heap = heap.clone();
+        copy.heapSize = heapSize;
+        copy.plan = new int[plan.length][];
+        copy.location = new Location[location.length];
+        copy.destination = new Location[destination.length];
+        copy.leg = new TruckLeg[leg.length];
+        copy.views = new TruckState[views.length];
+        for (int i = 0; i < size; i++) {
+            copy.plan[i] = plan[i].clone();
+            copy.location[i] = remap(location[i], parts, depots);
+            copy.destination[i] = remap(destination[i], parts, depots);
+            copy.leg[i] = leg[i] == null ? null : leg[i].withDestination(copy.destination[i]);
+            copy.views[i] = new TruckState(copy, i, fleetCopies.get(i), new ArrayList<>(views[i].routes));
+        }
+        return copy;
+    }
+
+    // --- Vencimientos ---
+
+    // Camiones a los que updateTrucks les toca en 'minute', en orden de flota
+    public List<TruckState> dueTrucks(int minute) {
+        List<Integer> due = new ArrayList<>();
+        while (heapSize > 0 && (int) (heap[0] >>> 32) <= minute) {
+            long top = pop();
+            int i = (int) top;
+            if (scheduled[i] == (int) (top >>> 32)) {
+                scheduled[i] = NO_WAKE;
+                due.add(i);
+            }
+        }
+        if (due.size() > 1) due.sort(null);
+        List<TruckState> trucks = new ArrayList<>(due.size());
+        for (int i : due) trucks.add(views[i]);
+        return trucks;
+    }
+
+    // Vuelve a programar al camión según su estado (después de procesarlo, aunque no haya cambiado)
+    public void reschedule(TruckState ts) {
+        scheduled[ts.index] = NO_WAKE;
+        touch(ts.index);
+    }
+
+    // Minuto más próximo en que algún camión vence (Integer.MAX_VALUE si ninguno)
+    public int nextWakeTime() {
+        while (heapSize > 0) {
+            int i = (int) heap[0];
+            int time = (int) (heap[0] >>> 32);
+            if (scheduled[i] == time) return time;
+            pop();
+        }
+        return NO_WAKE;
+    }
+
+    // Entrega (y olvida) los camiones modificados desde la llamada anterior, en orden de modificación
+    public void drainChanged(Consumer<TruckState> action) {
+        for (int k = 0; k < changedCount; k++) {
+            int i = changedList[k];
+            changed[i] = false;
+            action.accept(views[i]);
+        }
+        changedCount = 0;
+    }
+
+    // Mientras está activo, los cambios de camión no reprograman (el heap no es seguro entre hilos); quien lo activa
+    // llama a reschedule() por cada camión tocado al desactivarlo
+    void deferWakes(boolean defer) {
+        this.deferWakes = defer;
+    }
+
+    // Copia de la fila de un camión, para deshacer una transición calculada en paralelo que hay que repetir
+    static final class Row {
+        byte status;
+        int cell, timeAvailable, eta, planHead, planSize, version;
+        double load, fuel;
+        int[] plan;
+        Location location, destination;
+        TruckLeg leg;
+    }
+
+    Row saveRow(int i) {
+        Row row = new Row();
+        row.status = status[i];
+        row.cell = cell[i];
+        row.timeAvailable = timeAvailable[i];
+        row.eta = eta[i];
+        row.planHead = planHead[i];
+        row.planSize = planSize[i];
+        row.version = version[i];
+        row.load = load[i];
+        row.fuel = fuel[i];
+        row.plan = plan[i].clone();
+        row.location = location[i];
+        row.destination = destination[i];
+        row.leg = leg[i];
+        return row;
+    }
+
+    void restoreRow(int i, Row row) {
+        status[i] = row.status;
+        cell[i] = row.cell;
+        timeAvailable[i] = row.timeAvailable;
+        eta[i] = row.eta;
+        planHead[i] = row.planHead;
+        planSize[i] = row.planSize;
+        version[i] = row.version;
+        load[i] = row.load;
+        fuel[i] = row.fuel;
+        plan[i] = row.plan;
+        location[i] = row.location;
+        destination[i] = row.destination;
+        leg[i] = row.leg;
+    }
+
+    // --- Acceso desde TruckState ---
+
+    TruckState.Status status(int i) {
+        return STATUSES[status[i]];
+    }
+
+    void setStatus(int i, TruckState.Status s) {
+        byte from = status[i];
+        status[i] = (byte) s.ordinal();
+        touch(i);
+        // En paralelo la fila puede deshacerse y recalcularse: ParallelTransitions emite el cambio neto al fusionar
+        if (from != status[i] && !deferWakes) emitTransition(i, from);
+    }
+
+    void emitTransition(int i, byte from) {
+        JfrEvents.TruckTransition event = new JfrEvents.TruckTransition();
+        if (!event.shouldCommit()) return;
+        event.truckId = views[i].truck.id;
+        event.from = STATUSES[from].name();
+        event.to = STATUSES[status[i]].name();
+        event.minute = ctx.currentSimTime;
+        event.forked = ctx.metrics.isFork();
+        event.commit();
+    }
+
+    void setLocation(int i, Location loc) {
+        location[i] = loc;
+        cell[i] = cellOf(loc);
+        markChanged(i);
+    }
+
+    void setTimeAvailable(int i, int t) {
+        timeAvailable[i] = t;
+        touch(i);
+    }
+
+    Location decode(int step) {
+        return step >= 0 ? ctx.customerParts.get(step) : ctx.depots.get(-step - 1);
+    }
+
+    int encode(Object step) {
+        if (step instanceof CustomerPart) return ((CustomerPart) step).partId;
+        if (step instanceof Depot) {
+            for (int d = 0; d < ctx.depots.size(); d++) {
+                if (ctx.depots.get(d).id.equals(((Depot) step).id)) return -d - 1;
+            }
+        }
+        throw new IllegalArgumentException("Paso de plan no soportado: " + step);
+    }
+
+    void planInsert(int i, int position, int step) {
+        int[] q = plan[i];
+        if (planHead[i] + planSize[i] == q.length) {
+            // Compactar al inicio y, si hace falta, crecer
+            int[] bigger = planSize[i] + 1 > q.length / 2 ? new int[q.length * 2] : q;
+            System.arraycopy(q, planHead[i], bigger, 0, planSize[i]);
+            plan[i] = q = bigger;
+            planHead[i] = 0;
+        }
+        int at = planHead[i] + position;
+        System.arraycopy(q, at, q, at + 1, planSize[i] - position);
+        q[at] = step;
+        planSize[i]++;
+        touch(i);
+    }
+
+    int planRemove(int i, int position) {
+        int[] q = plan[i];
+        int at = planHead[i] + position;
+        int step = q[at];
+        if (position == 0) {
+            planHead[i]++;
+        } else {
+            System.arraycopy(q, at + 1, q, at, planSize[i] - position - 1);
+        }
+        if (--planSize[i] == 0) planHead[i] = 0;
+        touch(i);
+        return step;
+    }
+
+    void planClear(int i) {
+        planHead[i] = 0;
+        planSize[i] = 0;
+        touch(i);
+    }
+
+    int planStep(int i, int position) {
+        return plan[i][planHead[i] + position];
+    }
+
+    // --- Internos ---
+
+    // Nueva versión del camión. En paralelo solo cambia la versión (la lista no es segura entre hilos): la fusión
+    // llama a reschedule() por cada camión procesado y ahí queda registrado.
+    void markChanged(int i) {
+        version[i]++;
+        if (deferWakes || changed[i]) return;
+        changed[i] = true;
+        changedList[changedCount++] = i;
+    }
+
+    private void touch(int i) {
+        markChanged(i);
+        if (deferWakes) return;
+        int wake = wakeTime(i);
+        if (wake == scheduled[i]) return;
+        scheduled[i] = wake;
+        if (wake != NO_WAKE) push(((long) wake << 32) | i);
+    }
+
+    // Mismo criterio que el bucle original: los INACTIVE y los IDLE sin plan no tienen nada que hacer
+    private int wakeTime(int i) {
+        if (status[i] == TruckState.Status.INACTIVE.ordinal() || timeAvailable[i] == Integer.MAX_VALUE) return NO_WAKE;
+        if (status[i] == TruckState.Status.IDLE.ordinal() && planSize[i] == 0) return NO_WAKE;
+        return timeAvailable[i];
+    }
+
+    private int cellOf(Location loc) {
+        return loc == null ? -1 : loc.x * ctx.gridHeight + loc.y;
+    }
+
+    private void push(long entry) {
+        if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+        int k = heapSize++;
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (heap[parent] <= entry) break;
+            heap[k] = heap[parent];
+            k = parent;
+        }
+        heap[k] = entry;
+    }
+
+    private long pop() {
+        long top = heap[0];
+        long last = heap[--heapSize];
+        int k = 0;
+        while (true) {
+            int child = 2 * k + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) child++;
+            if (last <= heap[child]) break;
+            heap[k] = heap[child];
+            k = child;
+        }
+        if (heapSize > 0) heap[k] = last;
+        return top;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= status.length) return;
+        int cap = Math.max(16, Math.max(n, status.length * 2));
+        status = Arrays.copyOf(status, cap);
+        cell = Arrays.copyOf(cell, cap);
+        load = Arrays.copyOf(load, cap);
+        fuel = Arrays.copyOf(fuel, cap);
+        timeAvailable = Arrays.copyOf(timeAvailable, cap);
+        eta = Arrays.copyOf(eta, cap);
+        plan = Arrays.copyOf(plan, cap);
+        planHead = Arrays.copyOf(planHead, cap);
+        planSize = Arrays.copyOf(planSize, cap);
+        version = Arrays.copyOf(version, cap);
+        changed = Arrays.copyOf(changed, cap);
+        changedList = Arrays.copyOf(changedList, cap);
+        scheduled = Arrays.copyOf(scheduled, cap);
+        location = Arrays.copyOf(location, cap);
+        destination = Arrays.copyOf(destination, cap);
+        leg = Arrays.copyOf(leg, cap);
+        views = Arrays.copyOf(views, cap);
+    }
+
+    private static Location remap(Location loc, Map<Integer, CustomerPart> parts, Map<String, Depot> depots) {
+        if (loc instanceof CustomerPart) {
+            CustomerPart copy = parts.get(((CustomerPart) loc).partId);
+            return copy != null ? copy : loc;
+        }
+        if (loc instanceof Depot) {
+            Depot copy = depots.get(((Depot) loc).id);
+            return copy != null ? copy : loc;
+        }
+        return loc;
+    }
+}
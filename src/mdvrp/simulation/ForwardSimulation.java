@@ -0,0 +1,55 @@
+package mdvrp.simulation;
+
+import mdvrp.model.Pedido;
+import mdvrp.planner.PlanningSolution;
+import mdvrp.state.SimulationContext;
+
+import java.util.Collections;
+
+import static mdvrp.state.GlobalState.*;
+
+// Ejecuta un plan candidato con las reglas reales del Simulator (inventario de los depósitos, combustible, recargas)
+// sobre un contexto bifurcado, sin pedidos futuros ni replanificación, y mide qué tan bien resiste.
+public class ForwardSimulation {
+
+    public static class Outcome {
+        public double fuelGal;
+        public int partsServed;
+        public int partsServedLate;
+        public int partsUnserved;     // Activas al final del horizonte
+        public int trucksInactive;
+
+        // Combustible más penalizaciones por lo que el costo estático del planificador no ve
+        public double robustnessCost() {
+            return fuelGal + partsServedLate * FORWARD_SIM_LATE_PENALTY_GAL + partsUnserved * FORWARD_SIM_UNSERVED_PENALTY_GAL
+                    + trucksInactive * FORWARD_SIM_INACTIVE_PENALTY_GAL;
+        }
+
+        @Override public String toString() {
+            return String.format("combustible %.2f Gal, servidas %d (%d tarde), sin servir %d, inactivos %d",
+                    fuelGal, partsServed, partsServedLate, partsUnserved, trucksInactive);
+        }
+    }
+
+    // 'fork' debe ser una copia desechable (SimulationContext.fork): queda en el minuto final del horizonte
+    public static Outcome run(SimulationContext fork, PlanningSolution plan, int minute, int horizonMinutes) {
+        fork.pendingPedidos = new OrderReleaseQueue(Collections.<Pedido>emptyList());
+        double fuelBefore = fork.fuelConsumedGal;
+        int servedBefore = fork.partsServed, lateBefore = fork.partsServedLate;
+
+        Simulator simulator = new Simulator(fork, null);
+        simulator.applyPlannedRoutes(plan, minute);
+        fork.currentSimTime = minute + 1;
+        simulator.runSimulation(minute + horizonMinutes, false);
+
+        Outcome outcome = new Outcome();
+        outcome.fuelGal = fork.fuelConsumedGal - fuelBefore;
+        outcome.partsServed = fork.partsServed - servedBefore;
+        outcome.partsServedLate = fork.partsServedLate - lateBefore;
+        outcome.partsUnserved = fork.customerParts.activeCount();
+        for (TruckState ts : fork.fleetStore.all()) {
+            if (ts.getStatus() == TruckState.Status.INACTIVE) outcome.trucksInactive++;
+        }
+        return outcome;
+    }
+}
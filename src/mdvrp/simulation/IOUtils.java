@@ -1,8 +1,11 @@
 package mdvrp.simulation;
 
 import mdvrp.model.Bloqueo;
+import mdvrp.model.Depot;
 import mdvrp.model.Pedido;
+import mdvrp.model.TruckType;
 
+import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -12,35 +15,57 @@ import java.util.List;
 public class IOUtils {
 
     public static List<Pedido> cargarPedidos(String a) throws Exception {
-        System.out.println("Cargando pedidos desde: " + a);
+        return cargarPedidos(a, System.out, System.err);
+    }
+
+    // out/err: salida del escenario que carga el archivo (un lote no mezcla sus mensajes en la consola)
+    public static List<Pedido> cargarPedidos(String a, PrintStream out, PrintStream err) throws Exception {
+        out.println("Cargando pedidos desde: " + a);
         List<Pedido> p=new ArrayList<>();
         List<String> l= Files.readAllLines(Paths.get(a));
         for(String s:l){
-            try{
-                String[] p1=s.split(":");
-                if(p1.length!=2)continue;
-                int m= TiempoUtils.parsearMarcaDeTiempo(p1[0].trim());
-                String[] d=p1[1].split(",");
-                if(d.length!=5)continue;
-                int x=Integer.parseInt(d[0].trim());
-                int y=Integer.parseInt(d[1].trim());
-                String[] client=d[2].split("-");
-                int id=Integer.parseInt(client[1].trim());
-                double v=Double.parseDouble(d[3].trim().replace("m3",""));
-                int h=Integer.parseInt(d[4].trim().replace("h",""));
-                p.add(new Pedido(x,y,v,h,m,id));
-            } catch(Exception e)
-            {
-                System.err.println("Error P: "+s+" - "+e.getMessage());
-            }
+            Pedido pd=parsearPedido(s, err);
+            if(pd!=null)p.add(pd);
         }
         p.sort(Comparator.comparingInt(pd->pd.momentoPedido));
-        System.out.println("Pedidos cargados: "+p.size());
+        // Id estable: posición en orden de llegada (el orden es estable, así que coincide con el streaming)
+        for(int i=0;i<p.size();i++)p.get(i).idPedido=i+1;
+        out.println("Pedidos cargados: "+p.size());
         return p;
     }
 
+    // Una línea "01d00h24m:16,13,c-198,3m3,4h"; null si la línea no es un pedido válido
+    public static Pedido parsearPedido(String s) {
+        return parsearPedido(s, System.err);
+    }
+
+    public static Pedido parsearPedido(String s, PrintStream err) {
+        try{
+            String[] p1=s.split(":");
+            if(p1.length!=2)return null;
+            int m= TiempoUtils.parsearMarcaDeTiempo(p1[0].trim());
+            String[] d=p1[1].split(",");
+            if(d.length!=5)return null;
+            int x=Integer.parseInt(d[0].trim());
+            int y=Integer.parseInt(d[1].trim());
+            String[] client=d[2].split("-");
+            int id=Integer.parseInt(client[1].trim());
+            double v=Double.parseDouble(d[3].trim().replace("m3",""));
+            int h=Integer.parseInt(d[4].trim().replace("h",""));
+            return new Pedido(x,y,v,h,m,id);
+        } catch(Exception e)
+        {
+            err.println("Error P: "+s+" - "+e.getMessage());
+            return null;
+        }
+    }
+
     public static List<Bloqueo> cargarBloqueos(String a) throws Exception {
-        System.out.println("Cargando bloqueos desde: " + a);
+        return cargarBloqueos(a, System.out, System.err);
+    }
+
+    public static List<Bloqueo> cargarBloqueos(String a, PrintStream out, PrintStream err) throws Exception {
+        out.println("Cargando bloqueos desde: " + a);
         List<Bloqueo> b=new ArrayList<>();
         List<String> l=Files.readAllLines(Paths.get(a));
         for(String s:l){
@@ -59,11 +84,57 @@ public class IOUtils {
                 if(!pts.isEmpty()) b.add(new Bloqueo(i,f,pts));
             } catch(Exception e)
             {
-                System.err.println("Error B: "+s+" - "+e.getMessage());
+                err.println("Error B: "+s+" - "+e.getMessage());
             }
         }
-        System.out.println("Bloqueos cargados: "+b.size());
+        out.println("Bloqueos cargados: "+b.size());
         return b;
     }
 
+    // Una línea "TD 500 Norte" por grupo de camiones: tipo, cantidad y depósito de origen (opcional, el principal si
+    // falta). Devuelve {tipo, cantidad, depósito o null}; las líneas vacías y las que empiezan con '#' se ignoran.
+    public static List<String[]> cargarFlota(String a, PrintStream out, PrintStream err) throws Exception {
+        out.println("Cargando flota desde: " + a);
+        List<String[]> f=new ArrayList<>();
+        for(String s:Files.readAllLines(Paths.get(a))){
+            String t=s.trim();
+            if(t.isEmpty()||t.startsWith("#"))continue;
+            String[] c=t.split("\\s+");
+            try{
+                if(c.length<2||c.length>3)throw new IllegalArgumentException("se espera TIPO cantidad [depósito]");
+                TruckType.valueOf(c[0]);
+                if(Integer.parseInt(c[1])<0)throw new IllegalArgumentException("cantidad negativa");
+                f.add(new String[]{c[0],c[1],c.length==3?c[2]:null});
+            } catch(Exception e)
+            {
+                err.println("Error F: "+s+" - "+e.getMessage());
+            }
+        }
+        out.println("Grupos de flota cargados: "+f.size());
+        return f;
+    }
+
+    // Una línea "Norte 42 42 160" por depósito: nombre, x, y y capacidad en m3 ("inf" para la planta, que no se agota).
+    // El primero es el depósito principal (origen de la flota por defecto); '#' y líneas vacías se ignoran.
+    public static List<Depot> cargarDepositos(String a, PrintStream out, PrintStream err) throws Exception {
+        out.println("Cargando depósitos desde: " + a);
+        List<Depot> d=new ArrayList<>();
+        for(String s:Files.readAllLines(Paths.get(a))){
+            String t=s.trim();
+            if(t.isEmpty()||t.startsWith("#"))continue;
+            String[] c=t.split("\\s+");
+            try{
+                if(c.length!=4)throw new IllegalArgumentException("se espera nombre x y capacidad");
+                double cap=c[3].equals("inf")?Double.POSITIVE_INFINITY:Double.parseDouble(c[3]);
+                if(cap<=0)throw new IllegalArgumentException("capacidad no positiva");
+                d.add(new Depot(c[0],Integer.parseInt(c[1]),Integer.parseInt(c[2]),cap));
+            } catch(Exception e)
+            {
+                err.println("Error D: "+s+" - "+e.getMessage());
+            }
+        }
+        out.println("Depósitos cargados: "+d.size());
+        return d;
+    }
+
 }
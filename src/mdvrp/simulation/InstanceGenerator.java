@@ -0,0 +1,320 @@
+package mdvrp.simulation;
+
+import mdvrp.model.TruckType;
+import mdvrp.state.SimulationContext;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+// Instancias sintéticas para estudiar cómo escala el planificador: pedidos y bloqueos en el formato de los archivos de
+// enero, más los archivos de flota y de depósitos, todo determinado por los parámetros y la semilla.
+// - Llegadas: proceso de Poisson por ráfagas. Las ráfagas llegan a ritmo pedidosPorDia / tamaño medio y traen una
+//   cantidad geométrica de pedidos de media 1 / (1 - rafagas), separados por pocos minutos. Con rafagas = 0 es Poisson
+//   simple, y el ritmo medio de pedidos no depende de rafagas.
+// - Plazo: horas enteras uniformes entre plazoMin y plazoMax.
+// - Volumen: volumenMin más una exponencial, de media volumenMedio y truncada en volumenMax (enero: muchos pedidos
+//   de 1 a 3 m3 y una cola hasta 54).
+// - Bloqueos: poligonales ortogonales de 1 a 5 tramos y largo total entre largoMin y largoMax, que nunca pasan por
+//   un depósito. Su duración es uniforme entre duracionMin y duracionMax horas.
+// Con los valores por defecto se parece a enero en una grilla de 70x50: unos 46 pedidos y 10 bloqueos por día.
+// Uso: InstanceGenerator <directorio> [especificación, p. ej. "grilla=140x100+pedidos_dia=200+dias=3+semilla=7"]
+public class InstanceGenerator {
+
+    public static class Params {
+        public long seed = 1;
+        public int gridWidth = 70;
+        public int gridHeight = 50;
+        public int days = 7;
+        public double ordersPerDay = 46;
+        public double burstiness = 0.0;        // En [0, 1): fracción de la llegada que viene en ráfaga
+        public int deadlineMinHours = 4;
+        public int deadlineMaxHours = 36;
+        public double volumeMin = 1;
+        public double volumeMean = 8.5;
+        public double volumeMax = 54;
+        public double blockagesPerDay = 10;
+        public int blockageMinHours = 9;
+        public int blockageMaxHours = 24;
+        public int blockageMinLength = 8;
+        public int blockageMaxLength = 45;
+        public int depots = 3;
+        public double depotCapacityM3 = 160;
+        public int[] fleetCounts = {2, 4, 4, 10};   // Por tipo, en el orden de TruckType
+        public boolean spreadFleet = false;        // Repartir cada tipo entre los depósitos (si no, todos en la planta)
+
+        // Especificación "clave=valor+clave=valor..." (sin comas, así entra en una lista de ScenarioRunner):
+        //   semilla grilla=AxB dias pedidos_dia rafagas plazo=min-max volumen=min-media-max bloqueos_dia
+        //   duracion_bloqueo=min-max largo_bloqueo=min-max depositos capacidad_deposito flota=2/4/4/10 repartir=0|1
+        public static Params parse(String spec) {
+            Params p = new Params();
+            if (spec == null || spec.trim().isEmpty()) return p;
+            for (String pair : spec.split("\\+")) {
+                int eq = pair.indexOf('=');
+                if (eq <= 0) throw new IllegalArgumentException("Parámetro de instancia inválido (se espera clave=valor): " + pair);
+                String key = pair.substring(0, eq).trim(), value = pair.substring(eq + 1).trim();
+                switch (key) {
+                    case "semilla": p.seed = Long.parseLong(value); break;
+                    case "grilla": { int[] v = ints(value, "x", 2); p.gridWidth = v[0]; p.gridHeight = v[1]; break; }
+                    case "dias": p.days = Integer.parseInt(value); break;
+                    case "pedidos_dia": p.ordersPerDay = Double.parseDouble(value); break;
+                    case "rafagas": p.burstiness = Double.parseDouble(value); break;
+                    case "plazo": { int[] v = ints(value, "-", 2); p.deadlineMinHours = v[0]; p.deadlineMaxHours = v[1]; break; }
+                    case "volumen": {
+                        String[] v = value.split("-");
+                        if (v.length != 3) throw new IllegalArgumentException("volumen=min-media-max: " + value);
+                        p.volumeMin = Double.parseDouble(v[0]);
+                        p.volumeMean = Double.parseDouble(v[1]);
+                        p.volumeMax = Double.parseDouble(v[2]);
+                        break;
+                    }
+                    case "bloqueos_dia": p.blockagesPerDay = Double.parseDouble(value); break;
+                    case "duracion_bloqueo": { int[] v = ints(value, "-", 2); p.blockageMinHours = v[0]; p.blockageMaxHours = v[1]; break; }
+                    case "largo_bloqueo": { int[] v = ints(value, "-", 2); p.blockageMinLength = v[0]; p.blockageMaxLength = v[1]; break; }
+                    case "depositos": p.depots = Integer.parseInt(value); break;
+                    case "capacidad_deposito": p.depotCapacityM3 = Double.parseDouble(value); break;
+                    case "flota": p.fleetCounts = ints(value, "/", TruckType.values().length); break;
+                    case "repartir": p.spreadFleet = value.equals("1"); break;
+                    default: throw new IllegalArgumentException("Parámetro de instancia desconocido: " + key);
+                }
+            }
+            p.validate();
+            return p;
+        }
+
+        void validate() {
+            if (gridWidth < 2 || gridHeight < 2) throw new IllegalArgumentException("Grilla demasiado chica: " + gridWidth + "x" + gridHeight);
+            if (days < 1 || ordersPerDay <= 0) throw new IllegalArgumentException("Se necesita al menos un día y un ritmo de pedidos positivo");
+            if (burstiness < 0 || burstiness >= 1) throw new IllegalArgumentException("rafagas debe estar en [0, 1): " + burstiness);
+            if (deadlineMinHours < 1 || deadlineMaxHours < deadlineMinHours) throw new IllegalArgumentException("Plazo inválido");
+            if (volumeMin < 1 || volumeMean < volumeMin || volumeMax < volumeMean) throw new IllegalArgumentException("Volumen inválido (min <= media <= max, min >= 1)");
+            if (blockageMinHours < 1 || blockageMaxHours < blockageMinHours) throw new IllegalArgumentException("Duración de bloqueo inválida");
+            if (blockageMinLength < 1 || blockageMaxLength < blockageMinLength) throw new IllegalArgumentException("Largo de bloqueo inválido");
+            if (depots < 1 || depots > gridWidth * gridHeight / 4) throw new IllegalArgumentException("Cantidad de depósitos inválida: " + depots);
+            if (Arrays.stream(fleetCounts).anyMatch(c -> c < 0) || Arrays.stream(fleetCounts).sum() == 0) throw new IllegalArgumentException("Flota vacía o negativa");
+        }
+
+        // Especificación completa y canónica (parse(spec()) da los mismos parámetros)
+        public String spec() {
+            return String.format(Locale.ROOT, "semilla=%d+grilla=%dx%d+dias=%d+pedidos_dia=%s+rafagas=%s+plazo=%d-%d+volumen=%s-%s-%s" +
+                            "+bloqueos_dia=%s+duracion_bloqueo=%d-%d+largo_bloqueo=%d-%d+depositos=%d+capacidad_deposito=%s+flota=%s+repartir=%d",
+                    seed, gridWidth, gridHeight, days, number(ordersPerDay), number(burstiness), deadlineMinHours, deadlineMaxHours,
+                    number(volumeMin), number(volumeMean), number(volumeMax), number(blockagesPerDay), blockageMinHours, blockageMaxHours,
+                    blockageMinLength, blockageMaxLength, depots, number(depotCapacityM3),
+                    Arrays.stream(fleetCounts).mapToObj(String::valueOf).collect(Collectors.joining("/")), spreadFleet ? 1 : 0);
+        }
+
+        // Nombre corto y estable de la instancia (directorio, columna del CSV del barrido): las dimensiones principales
+        // y un hash de la especificación completa, para que dos instancias distintas nunca compartan nombre
+        public String name() {
+            CRC32 crc = new CRC32();
+            crc.update(spec().getBytes(StandardCharsets.UTF_8));
+            return String.format(Locale.ROOT, "g%dx%d-d%d-p%s-r%s-b%s-dep%d-f%d-s%d-%06x", gridWidth, gridHeight, days, number(ordersPerDay),
+                    number(burstiness), number(blockagesPerDay), depots, Arrays.stream(fleetCounts).sum(), seed, crc.getValue() & 0xffffff);
+        }
+
+        private static int[] ints(String value, String sep, int count) {
+            String[] v = value.split(sep);
+            if (v.length != count) throw new IllegalArgumentException("Se esperan " + count + " valores separados por '" + sep + "': " + value);
+            return Arrays.stream(v).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+        }
+
+        private static String number(double v) {
+            return v == Math.rint(v) ? String.valueOf((long) v) : String.valueOf(v);
+        }
+    }
+
+    // Archivos de una instancia generada y la grilla que necesitan
+    public static class Instance {
+        public final String name;
+        public final String pedidosFile;
+        public final String bloqueosFile;
+        public final String fleetFile;
+        public final String depotFile;
+        public final int gridWidth;
+        public final int gridHeight;
+        public int orders;
+        public int blockages;
+
+        Instance(Params p, Path dir) {
+            this.name = p.name();
+            this.pedidosFile = dir.resolve("pedidos.txt").toString();
+            this.bloqueosFile = dir.resolve("bloqueos.txt").toString();
+            this.fleetFile = dir.resolve("flota.txt").toString();
+            this.depotFile = dir.resolve("depositos.txt").toString();
+            this.gridWidth = p.gridWidth;
+            this.gridHeight = p.gridHeight;
+        }
+
+        // Deja el contexto listo para initialize(pedidosFile, bloqueosFile)
+        public void configure(SimulationContext ctx) {
+            ctx.gridWidth = gridWidth;
+            ctx.gridHeight = gridHeight;
+            ctx.fleetFile = fleetFile;
+            ctx.depotFile = depotFile;
+        }
+    }
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int BURST_SPREAD_MINUTES = 10;   // Los pedidos de una ráfaga llegan dentro de estos minutos
+
+    // Escribe la instancia en 'dir' (pedidos.txt, bloqueos.txt, flota.txt, depositos.txt)
+    public static Instance generate(Params p, Path dir) throws IOException {
+        p.validate();
+        Files.createDirectories(dir);
+        Instance instance = new Instance(p, dir);
+        Random rnd = new Random(p.seed);
+
+        // Depósitos: la planta donde estaría en enero (proporcional a la grilla), los demás en celdas al azar
+        List<int[]> depotCells = new ArrayList<>();
+        Set<Integer> depotSet = new HashSet<>();
+        depotCells.add(new int[]{p.gridWidth * 12 / 70, p.gridHeight * 8 / 50});
+        depotSet.add(cell(p, depotCells.get(0)[0], depotCells.get(0)[1]));
+        while (depotCells.size() < p.depots) {
+            int x = rnd.nextInt(p.gridWidth), y = rnd.nextInt(p.gridHeight);
+            if (depotSet.add(cell(p, x, y))) depotCells.add(new int[]{x, y});
+        }
+        String[] depotNames = new String[p.depots];
+        try (Writer w = Files.newBufferedWriter(Paths.get(instance.depotFile), StandardCharsets.UTF_8)) {
+            w.write("# " + p.spec() + "\n");
+            for (int i = 0; i < p.depots; i++) {
+                depotNames[i] = i == 0 ? "Planta" : "Deposito" + i;
+                w.write(depotNames[i] + " " + depotCells.get(i)[0] + " " + depotCells.get(i)[1] + " " +
+                        (i == 0 ? "inf" : Params.number(p.depotCapacityM3)) + "\n");
+            }
+        }
+
+        TruckType[] types = TruckType.values();
+        try (Writer w = Files.newBufferedWriter(Paths.get(instance.fleetFile), StandardCharsets.UTF_8)) {
+            w.write("# " + p.spec() + "\n");
+            for (int t = 0; t < types.length; t++) {
+                if (!p.spreadFleet) {
+                    if (p.fleetCounts[t] > 0) w.write(types[t].name() + " " + p.fleetCounts[t] + " " + depotNames[0] + "\n");
+                    continue;
+                }
+                for (int d = 0; d < p.depots; d++) {
+                    int share = p.fleetCounts[t] / p.depots + (d < p.fleetCounts[t] % p.depots ? 1 : 0);
+                    if (share > 0) w.write(types[t].name() + " " + share + " " + depotNames[d] + "\n");
+                }
+            }
+        }
+
+        // Pedidos
+        double meanBurst = 1.0 / (1.0 - p.burstiness);
+        double burstsPerMinute = p.ordersPerDay / meanBurst / MINUTES_PER_DAY;
+        int end = (p.days + 1) * MINUTES_PER_DAY;
+        try (Writer w = Files.newBufferedWriter(Paths.get(instance.pedidosFile), StandardCharsets.UTF_8)) {
+            List<Integer> times = new ArrayList<>();
+            double t = MINUTES_PER_DAY;
+            while (true) {
+                t += -Math.log(1.0 - rnd.nextDouble()) / burstsPerMinute;
+                if (t >= end) break;
+                int size = 1;
+                while (rnd.nextDouble() < p.burstiness) size++;
+                for (int k = 0; k < size; k++) {
+                    int minute = (int) t + (k == 0 ? 0 : rnd.nextInt(BURST_SPREAD_MINUTES + 1));
+                    if (minute < end) times.add(minute);
+                }
+            }
+            times.sort(null);
+            for (int minute : times) {
+                int x, y;
+                do {
+                    x = rnd.nextInt(p.gridWidth);
+                    y = rnd.nextInt(p.gridHeight);
+                } while (depotSet.contains(cell(p, x, y)));
+                int client = 1 + rnd.nextInt(Math.max(200, (int) (p.ordersPerDay * 5)));
+                double extra = -Math.log(1.0 - rnd.nextDouble()) * (p.volumeMean - p.volumeMin);
+                long volume = Math.max(1, Math.round(Math.min(p.volumeMax, p.volumeMin + extra)));
+                int deadline = p.deadlineMinHours + rnd.nextInt(p.deadlineMaxHours - p.deadlineMinHours + 1);
+                w.write(TiempoUtils.formatearMarcaDeTiempo(minute) + ":" + x + "," + y + ",c-" + client + "," + volume + "m3," + deadline + "h\n");
+                instance.orders++;
+            }
+        }
+
+        // Bloqueos
+        try (Writer w = Files.newBufferedWriter(Paths.get(instance.bloqueosFile), StandardCharsets.UTF_8)) {
+            List<String> lines = new ArrayList<>();
+            double t = MINUTES_PER_DAY;
+            double perMinute = p.blockagesPerDay / MINUTES_PER_DAY;
+            while (perMinute > 0) {
+                t += -Math.log(1.0 - rnd.nextDouble()) / perMinute;
+                if (t >= end) break;
+                List<int[]> points = blockagePolyline(p, rnd, depotSet);
+                if (points == null) continue;
+                int start = (int) t;
+                int duration = 60 * (p.blockageMinHours + rnd.nextInt(p.blockageMaxHours - p.blockageMinHours + 1)) - rnd.nextInt(60);
+                StringBuilder sb = new StringBuilder();
+                sb.append(TiempoUtils.formatearMarcaDeTiempo(start)).append('-').append(TiempoUtils.formatearMarcaDeTiempo(start + duration)).append(':');
+                for (int i = 0; i < points.size(); i++) {
+                    if (i > 0) sb.append(',');
+                    sb.append(points.get(i)[0]).append(',').append(points.get(i)[1]);
+                }
+                lines.add(sb.toString());
+            }
+            for (String line : lines) w.write(line + "\n");
+            instance.blockages = lines.size();
+        }
+        return instance;
+    }
+
+    // Poligonal ortogonal (vértices, como en los archivos de enero) dentro de la grilla y lejos de los depósitos;
+    // null si tras varios intentos no hay una que cumpla
+    private static List<int[]> blockagePolyline(Params p, Random rnd, Set<Integer> depotSet) {
+        for (int attempt = 0; attempt < 20; attempt++) {
+            int length = p.blockageMinLength + rnd.nextInt(p.blockageMaxLength - p.blockageMinLength + 1);
+            int segments = 1 + rnd.nextInt(Math.min(5, length));
+            int x = rnd.nextInt(p.gridWidth), y = rnd.nextInt(p.gridHeight);
+            List<int[]> points = new ArrayList<>();
+            points.add(new int[]{x, y});
+            boolean horizontal = rnd.nextBoolean();
+            boolean ok = !depotSet.contains(cell(p, x, y));
+            for (int s = 0; s < segments && ok; s++) {
+                int step = Math.max(1, length / segments);
+                int sign = rnd.nextBoolean() ? 1 : -1;
+                for (int i = 0; i < step; i++) {
+                    int nx = x + (horizontal ? sign : 0), ny = y + (horizontal ? 0 : sign);
+                    if (nx < 0 || nx >= p.gridWidth || ny < 0 || ny >= p.gridHeight) break;   // Se corta en el borde
+                    x = nx;
+                    y = ny;
+                    if (depotSet.contains(cell(p, x, y))) {
+                        ok = false;
+                        break;
+                    }
+                }
+                int[] last = points.get(points.size() - 1);
+                if (last[0] != x || last[1] != y) points.add(new int[]{x, y});
+                horizontal = !horizontal;
+            }
+            if (ok && points.size() >= 2) return points;
+        }
+        return null;
+    }
+
+    private static int cell(Params p, int x, int y) {
+        return x * p.gridHeight + y;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Uso: InstanceGenerator <directorio> [clave=valor+clave=valor...]");
+            return;
+        }
+        Params p = Params.parse(args.length > 1 ? args[1] : "");
+        Instance instance = generate(p, Paths.get(args[0]));
+        System.out.println("Instancia " + instance.name + " en " + args[0] + ": " + instance.orders + " pedidos, " +
+                instance.blockages + " bloqueos, grilla " + instance.gridWidth + "x" + instance.gridHeight + ".");
+    }
+}
@@ -0,0 +1,106 @@
+package mdvrp.simulation;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Eventos de Java Flight Recorder del planificador y del simulador (categoría MDVRP en JMC). Se usan con el patrón
+// habitual: crear, begin(), trabajo, y solo si shouldCommit() llenar los campos y commit(); sin una grabación activa
+// shouldCommit() es false y el JIT elimina el objeto, así que el costo es casi nulo.
+// Los eventos instantáneos (decisión de movimiento, transición de camión) se emiten sin begin().
+// Grabar: java -XX:StartFlightRecording=filename=sim.jfr ... (requiere un JDK con jdk.jfr: 8u262+ u 11+)
+public final class JfrEvents {
+
+    private JfrEvents() {}
+
+    @Name("mdvrp.Replan")
+    @Label("Replanificación")
+    @Category({"MDVRP", "Simulación"})
+    @Description("Una llamada al planificador desde el simulador (en el hilo de la simulación o en el asíncrono)")
+    public static class Replan extends Event {
+        @Label("Minuto") public int minute;
+        @Label("Partes") public int parts;
+        @Label("Asíncrona") public boolean async;
+        @Label("Planificador") public String planner;
+        @Label("Costo") public double cost;
+        @Label("Sin asignar") public int unassigned;
+    }
+
+    @Name("mdvrp.PlanRoutes")
+    @Label("Búsqueda tabú")
+    @Category({"MDVRP", "Planificador"})
+    public static class PlanRoutes extends Event {
+        @Label("Minuto") public int minute;
+        @Label("Partes") public int parts;
+        @Label("Camiones") public int trucks;
+        @Label("Costo inicial") public double initialCost;
+        @Label("Costo") public double cost;
+        @Label("Sin asignar") public int unassigned;
+    }
+
+    @Name("mdvrp.InitialSolution")
+    @Label("Solución inicial")
+    @Category({"MDVRP", "Planificador"})
+    public static class InitialSolution extends Event {
+        @Label("Estrategia") public String strategy;
+        @Label("Partes") public int parts;
+        @Label("Camiones") public int trucks;
+        @Label("Rutas") public int routes;
+        @Label("Sin asignar") public int unassigned;
+    }
+
+    @Name("mdvrp.NeighbourhoodScan")
+    @Label("Recorrido de vecindario")
+    @Category({"MDVRP", "Planificador", "Búsqueda"})
+    @StackTrace(false)
+    public static class NeighbourhoodScan extends Event {
+        @Label("Operador") public String operator;
+        @Label("Iteración") public int iteration;
+        @Label("Evaluaciones") public int evaluations;
+        @Label("Muestreo") public double samplingRate;
+    }
+
+    @Name("mdvrp.MoveDecision")
+    @Label("Decisión de movimiento")
+    @Category({"MDVRP", "Planificador", "Búsqueda"})
+    @StackTrace(false)
+    public static class MoveDecision extends Event {
+        @Label("Iteración") public int iteration;
+        @Label("Operador") public String operator;
+        @Label("Tabú") public boolean tabu;
+        @Label("Aspiración") public boolean aspiration;
+        @Label("Aceptado") public boolean accepted;
+        @Label("Nueva mejor") public boolean newBest;
+        @Label("Costo actual") public double cost;
+        @Label("Mejor costo") public double bestCost;
+    }
+
+    @Name("mdvrp.DistanceMiss")
+    @Label("BFS de distancia")
+    @Category({"MDVRP", "Distancias"})
+    @Description("Falta en la caché del DistanceOracle: BFS sobre la grilla")
+    @StackTrace(false)
+    public static class DistanceMiss extends Event {
+        @Label("Desde X") public int fromX;
+        @Label("Desde Y") public int fromY;
+        @Label("Hasta X") public int toX;
+        @Label("Hasta Y") public int toY;
+        @Label("Celdas expandidas") public int cellsExpanded;
+        @Label("Distancia") public int distance;   // -1: sin camino
+    }
+
+    @Name("mdvrp.TruckTransition")
+    @Label("Transición de camión")
+    @Category({"MDVRP", "Simulación"})
+    @StackTrace(false)
+    public static class TruckTransition extends Event {
+        @Label("Camión") public String truckId;
+        @Label("Desde") public String from;
+        @Label("Hacia") public String to;
+        @Label("Minuto") public int minute;
+        @Label("Contexto bifurcado") public boolean forked;
+    }
+}
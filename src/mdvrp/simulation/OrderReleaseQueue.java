@@ -0,0 +1,180 @@
+package mdvrp.simulation;
+
+import mdvrp.model.Pedido;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+// Cola de liberación de pedidos ordenada por momentoPedido. Un cursor avanza sobre los pedidos ya liberados,
+// así que cada minuto cuesta O(liberados) en vez de recorrer todos los pendientes.
+// En modo streaming lee el archivo línea a línea (debe venir ordenado por tiempo, como los archivos mensuales).
+public class OrderReleaseQueue {
+
+    private final List<Pedido> pedidos;   // Modo en memoria: todos los pedidos ordenados
+    private int cursor = 0;
+
+    private final BufferedReader reader;  // Modo streaming: siguiente pedido leído por adelantado
+    private final String source;
+    private Pedido lookahead = null;
+    private boolean exhausted = false;
+    private int nextId = 1;
+    private int released = 0;
+    private int taken = 0;               // Pedidos sacados de la cola (liberados o descartados)
+    private PrintStream err = System.err;
+
+    // Los pedidos deben venir ordenados (cargarPedidos ya los ordena y numera)
+    public OrderReleaseQueue(List<Pedido> pedidos) {
+        this.pedidos = new ArrayList<>(pedidos);
+        this.pedidos.sort(Comparator.comparingInt(p -> p.momentoPedido));
+        this.reader = null;
+        this.source = null;
+    }
+
+    private OrderReleaseQueue(String source, BufferedReader reader, PrintStream err) {
+        this.pedidos = null;
+        this.reader = reader;
+        this.source = source;
+        this.err = err;
+        advance();
+    }
+
+    // Copia para un contexto bifurcado. En memoria comparte la lista (no se modifica) con su propio cursor;
+    // en streaming no se puede duplicar el lector, así que la copia no tiene pedidos futuros.
+    public OrderReleaseQueue fork() {
+        if (isStreaming()) {
+            OrderReleaseQueue empty = new OrderReleaseQueue(Collections.<Pedido>emptyList());
+            empty.err = err;
+            return empty;
+        }
+        OrderReleaseQueue copy = new OrderReleaseQueue(this);
+        copy.cursor = cursor;
+        copy.released = released;
+        copy.taken = taken;
+        copy.err = err;
+        return copy;
+    }
+
+    private OrderReleaseQueue(OrderReleaseQueue other) {
+        this.pedidos = other.pedidos;
+        this.reader = null;
+        this.source = null;
+    }
+
+    public static OrderReleaseQueue streaming(String pedidosFile) throws IOException {
+        return streaming(pedidosFile, System.out, System.err);
+    }
+
+    public static OrderReleaseQueue streaming(String pedidosFile, PrintStream out, PrintStream err) throws IOException {
+        out.println("Leyendo pedidos en streaming desde: " + pedidosFile);
+        return new OrderReleaseQueue(pedidosFile, Files.newBufferedReader(Paths.get(pedidosFile), StandardCharsets.UTF_8), err);
+    }
+
+    // Destino de los avisos (pedidos descartados o fuera de orden)
+    public void setErr(PrintStream err) {
+        this.err = err;
+    }
+
+    public boolean isStreaming() {
+        return reader != null;
+    }
+
+    // Minuto del siguiente pedido por liberar, o Integer.MAX_VALUE si no quedan
+    public int peekTime() {
+        Pedido next = peek();
+        return next == null ? Integer.MAX_VALUE : next.momentoPedido;
+    }
+
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+
+    // Pedidos cuyo momentoPedido es 'minute'. Los anteriores a 'minute' se descartan sin liberar
+    // (igual que el recorrido por minuto, que solo activaba pedidos con momentoPedido == minute).
+    public List<Pedido> release(int minute) {
+        List<Pedido> due = null;
+        Pedido next;
+        while ((next = peek()) != null && next.momentoPedido <= minute) {
+            take();
+            if (next.momentoPedido < minute) {
+                err.println("WARN: Pedido " + next.idPedido + " con momento " + next.momentoPedido + " anterior a t=" + minute + " descartado.");
+                continue;
+            }
+            if (due == null) due = new ArrayList<>();
+            due.add(next);
+            released++;
+        }
+        return due == null ? Collections.emptyList() : due;
+    }
+
+    public int releasedCount() {
+        return released;
+    }
+
+    // Pedidos aún no liberados (solo en memoria; en streaming no se conocen sin leer todo el archivo)
+    public List<Pedido> remaining() {
+        if (isStreaming()) throw new UnsupportedOperationException("remaining() no disponible en modo streaming");
+        return Collections.unmodifiableList(pedidos.subList(cursor, pedidos.size()));
+    }
+
+    private Pedido peek() {
+        if (!isStreaming()) return cursor < pedidos.size() ? pedidos.get(cursor) : null;
+        return lookahead;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public int takenCount() {
+        return taken;
+    }
+
+    // Restauración desde un checkpoint: vuelve a saltar los pedidos ya sacados (en streaming relee el archivo
+    // hasta ese punto, con la misma numeración) y fija el contador de liberados.
+    void fastForward(int takenCount, int releasedCount) {
+        while (taken < takenCount && peek() != null) take();
+        released = releasedCount;
+    }
+
+    private void take() {
+        taken++;
+        if (!isStreaming()) {
+            cursor++;
+        } else {
+            advance();
+        }
+    }
+
+    private void advance() {
+        Pedido previous = lookahead;
+        lookahead = null;
+        if (exhausted) return;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Pedido p = IOUtils.parsearPedido(line, err);
+                if (p == null) continue;
+                if (previous != null && p.momentoPedido < previous.momentoPedido) {
+                    err.println("Error P: " + line + " - fuera de orden en " + source + ", ignorado.");
+                    continue;
+                }
+                p.idPedido = nextId++;
+                lookahead = p;
+                return;
+            }
+            exhausted = true;
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error leyendo pedidos de " + source, e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package mdvrp.simulation;
+
+import mdvrp.model.Depot;
+import mdvrp.state.SimulationContext;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Transiciones de los camiones que vencen en un mismo minuto, repartidas en tramos contiguos entre hilos.
+// Cada transición escribe solo la fila de su camión y deja el resto como intenciones (TransitionEffects); la fusión
+// las aplica en orden de flota, igual que el recorrido en serie. El único estado compartido que una transición lee
+// es el inventario de GLP de los depósitos: si leyó un depósito que un camión anterior ya cambió en este minuto, se
+// deshace su fila y se repite en serie sobre el inventario vigente. El resultado es idéntico al del recorrido en serie.
+public class ParallelTransitions {
+
+    interface Transition {
+        void run(TruckState ts, int minute, TransitionEffects fx);
+    }
+
+    private final int threads;
+    private final int minTrucks;
+    private final ExecutorService executor;
+
+    // Estadísticas
+    public int batches = 0;
+    public long trucksProcessed = 0;
+    public int reruns = 0;
+    public long nanosSum = 0;
+
+    public ParallelTransitions(int threads, int minTrucks) {
+        this.threads = Math.max(1, threads);
+        this.minTrucks = Math.max(1, minTrucks);
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread t = new Thread(r, "truck-transitions-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // true si conviene repartir 'dueTrucks' camiones (con pocos, el recorrido en serie es más barato)
+    public boolean worthIt(int dueTrucks) {
+        return threads > 1 && dueTrucks >= minTrucks;
+    }
+
+    void run(SimulationContext ctx, List<TruckState> due, int minute, Transition transition) {
+        long start = System.nanoTime();
+        FleetStore store = ctx.fleetStore;
+        int n = due.size();
+        TransitionEffects[] effects = new TransitionEffects[n];
+        FleetStore.Row[] saved = new FleetStore.Row[n];
+        int chunk = (n + threads - 1) / threads;
+        List<Future<?>> futures = new ArrayList<>();
+        store.deferWakes(true);
+        try {
+            for (int from = 0; from < n; from += chunk) {
+                int first = from, last = Math.min(n, from + chunk);
+                futures.add(executor.submit(() -> {
+                    for (int i = first; i < last; i++) {
+                        TruckState ts = due.get(i);
+                        saved[i] = store.saveRow(ts.getIndex());
+                        effects[i] = TransitionEffects.buffered(ctx);
+                        transition.run(ts, minute, effects[i]);
+                    }
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Transiciones interrumpidas en t=" + minute, e);
+        } finally {
+            store.deferWakes(false);
+        }
+
+        // Fusión en orden de flota
+        Set<Depot> written = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            TruckState ts = due.get(i);
+            TransitionEffects fx = effects[i];
+            if (!written.isEmpty() && fx.readAny(written)) {
+                store.restoreRow(ts.getIndex(), saved[i]);
+                fx = TransitionEffects.buffered(ctx);
+                transition.run(ts, minute, fx);
+                reruns++;
+            }
+            fx.apply(ctx);
+            written.addAll(fx.depotsWritten());
+            store.reschedule(ts);
+            if (saved[i].status != store.status[ts.getIndex()]) store.emitTransition(ts.getIndex(), saved[i].status);
+        }
+        batches++;
+        trucksProcessed += n;
+        nanosSum += System.nanoTime() - start;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public String summary() {
+        return String.format("Transiciones en paralelo (%d hilos, desde %d camiones): %d minutos, %d transiciones, %d repetidas en serie. " +
+                        "Tiempo medio por minuto: %.2f ms.",
+                threads, minTrucks, batches, trucksProcessed, reruns, batches == 0 ? 0.0 : nanosSum / 1e6 / batches);
+    }
+}
@@ -0,0 +1,147 @@
+package mdvrp.simulation;
+
+import mdvrp.model.CustomerPart;
+
+import java.util.List;
+
+import static mdvrp.state.GlobalState.*;
+
+// Política de replanificación por lotes: en vez de replanificar en cada minuto con llegadas, agrupa las llegadas
+// durante una ventana de espera (debounce). El lote se cierra antes si:
+//  - la hora límite más cercana del backlog ya no deja margen para esperar el resto de la ventana, o
+//  - el lote alcanzó el tamaño que el planificador procesa dentro de su presupuesto de tiempo, según su
+//    rendimiento medido (partes planificadas por ms, media móvil).
+// Lleva la cuenta de las replanificaciones evitadas y de la latencia que la espera agrega a cada parte.
+public class ReplanBatcher {
+
+    private final int debounceMinutes;
+    private final int deadlineMarginMinutes;
+    private final double planBudgetMs;
+
+    // Lote abierto
+    private int pendingParts = 0;
+    private int firstPendingMinute = -1;
+    private long pendingArrivalMinuteSum = 0;
+    private int decisionTime = Integer.MAX_VALUE;   // Minuto en que el lote abierto se cierra si nada cambia
+
+    // Rendimiento medido del planificador
+    private double partsPerMs = -1.0;
+
+    // Estadísticas
+    public int arrivalMinutes = 0;      // Minutos con llegadas: replanificaciones de la política anterior
+    public int replans = 0;
+    public int closedByWindow = 0;
+    public int closedByDeadline = 0;
+    public int closedBySize = 0;
+    public long partsBatched = 0;
+    public long addedLatencyMinutes = 0;
+    public int maxAddedLatencyMinutes = 0;
+    public int largestBatch = 0;
+
+    public ReplanBatcher() {
+        this(REPLAN_DEBOUNCE_MINUTES, REPLAN_DEADLINE_MARGIN_MINUTES, REPLAN_BUDGET_MS);
+    }
+
+    public ReplanBatcher(int debounceMinutes, int deadlineMarginMinutes, double planBudgetMs) {
+        this.debounceMinutes = Math.max(0, debounceMinutes);
+        this.deadlineMarginMinutes = deadlineMarginMinutes;
+        this.planBudgetMs = planBudgetMs;
+    }
+
+    public void onArrivals(int minute, int parts) {
+        if (parts <= 0) return;
+        arrivalMinutes++;
+        if (pendingParts == 0) firstPendingMinute = minute;
+        pendingParts += parts;
+        pendingArrivalMinuteSum += (long) parts * minute;
+    }
+
+    public boolean hasPending() {
+        return pendingParts > 0;
+    }
+
+    // Decide si el lote abierto se cierra en 'minute'. 'backlog' son las partes que se replanificarían.
+    public boolean shouldReplan(int minute, List<CustomerPart> backlog) {
+        if (pendingParts == 0) {
+            decisionTime = Integer.MAX_VALUE;
+            return false;
+        }
+        int windowClose = firstPendingMinute + debounceMinutes;
+        int deadlineClose = earliestDeadline(backlog, minute) - deadlineMarginMinutes;
+        decisionTime = Math.min(windowClose, deadlineClose);
+        if (minute >= windowClose) {
+            closedByWindow++;
+            return true;
+        }
+        if (minute >= deadlineClose) {
+            closedByDeadline++;
+            return true;
+        }
+        if (pendingParts >= maxBatchParts()) {
+            closedBySize++;
+            return true;
+        }
+        return false;
+    }
+
+    // Siguiente minuto en que hay que volver a evaluar el lote (el motor de eventos programa un evento ahí)
+    public int nextDecisionTime(int minute) {
+        if (pendingParts == 0 || decisionTime == Integer.MAX_VALUE) return Integer.MAX_VALUE;
+        return Math.max(decisionTime, minute + 1);
+    }
+
+    // Se replanificó en 'minute' con 'backlogSize' partes y tardó 'nanos'; cierra el lote abierto
+    public void onReplan(int minute, int backlogSize, long nanos) {
+        closeBatch(minute);
+        recordPlanTime(backlogSize, nanos);
+    }
+
+    // Con planificación asíncrona el lote se cierra al enviar el trabajo y el tiempo se conoce al terminar
+    public void closeBatch(int minute) {
+        replans++;
+        partsBatched += pendingParts;
+        addedLatencyMinutes += (long) pendingParts * minute - pendingArrivalMinuteSum;
+        if (pendingParts > 0) maxAddedLatencyMinutes = Math.max(maxAddedLatencyMinutes, minute - firstPendingMinute);
+        largestBatch = Math.max(largestBatch, pendingParts);
+        pendingParts = 0;
+        firstPendingMinute = -1;
+        pendingArrivalMinuteSum = 0;
+        decisionTime = Integer.MAX_VALUE;
+    }
+
+    public void recordPlanTime(int backlogSize, long nanos) {
+        double ms = Math.max(nanos / 1e6, 0.01);
+        double measured = backlogSize / ms;
+        partsPerMs = partsPerMs < 0 ? measured : REPLAN_THROUGHPUT_SMOOTHING * measured + (1 - REPLAN_THROUGHPUT_SMOOTHING) * partsPerMs;
+    }
+
+    // Tamaño de lote que el planificador procesa dentro del presupuesto; sin mediciones aún, no limita
+    public int maxBatchParts() {
+        if (partsPerMs < 0) return Integer.MAX_VALUE;
+        return Math.max(1, (int) (partsPerMs * planBudgetMs));
+    }
+
+    public int replansAvoided() {
+        return arrivalMinutes - replans;
+    }
+
+    public double averageAddedLatencyMinutes() {
+        return partsBatched == 0 ? 0.0 : (double) addedLatencyMinutes / partsBatched;
+    }
+
+    public String summary() {
+        return String.format("Replanificación por lotes (ventana %d min): %d replanificaciones para %d minutos con llegadas (%d evitadas; " +
+                        "cierres por ventana %d, plazo %d, tamaño %d). Latencia agregada por parte: media %.1f min, máx %d min. Lote máx %d partes.",
+                debounceMinutes, replans, arrivalMinutes, replansAvoided(), closedByWindow, closedByDeadline, closedBySize,
+                averageAddedLatencyMinutes(), maxAddedLatencyMinutes, largestBatch);
+    }
+
+    // Hora límite más próxima entre las partes que aún pueden llegar a tiempo (las vencidas no adelantan el lote)
+    private static int earliestDeadline(List<CustomerPart> backlog, int minute) {
+        int earliest = Integer.MAX_VALUE;
+        for (CustomerPart part : backlog) {
+            if (part.deadlineMinutes >= minute) earliest = Math.min(earliest, part.deadlineMinutes);
+        }
+        return earliest;
+    }
+}
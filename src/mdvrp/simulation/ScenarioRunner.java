@@ -0,0 +1,454 @@
+package mdvrp.simulation;
+
+import mdvrp.model.CustomerPart;
+import mdvrp.planner.ForwardSimulationPlanner;
+import mdvrp.planner.GreedyInsertionPlanner;
+import mdvrp.planner.ParallelTabuSearchPlanner;
+import mdvrp.planner.RoutePlanner;
+import mdvrp.planner.SearchTrace;
+import mdvrp.planner.TabuSearchPlanner;
+import mdvrp.planner.TieredPlanner;
+import mdvrp.state.SimulationContext;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static mdvrp.state.GlobalState.*;
+
+// Corre varios escenarios (archivos de pedidos, mezclas de flota, parámetros del tabú, política de replanificación...)
+// en paralelo sobre un pool de hilos. Cada escenario tiene su propio SimulationContext y su salida va a su archivo
+// de log (o se descarta). En un barrido solo hay tantos escenarios vivos como hilos y cada fila de indicadores se
+// escribe al CSV apenas termina su escenario, así que la memoria no crece con el tamaño de la grilla.
+// Uso: ScenarioRunner clave=v1,v2,... (ver main)
+public class ScenarioRunner {
+
+    public static final String[] POLICIES = {"tiered", "tabu", "tabu-paralelo", "greedy", "simulada", "ninguna"};
+
+    public static class Scenario {
+        public final String name;
+        public final String pedidosFile;
+        public final String bloqueosFile;
+        public int durationMinutes = 8 * 24 * 60;
+        public int[] fleetCounts = {2, 4, 4, 10};
+        public String fleetFile = null;       // Si no es null reemplaza a fleetCounts (ver IOUtils.cargarFlota)
+        public int tsMaxIterations = TS_MAX_ITERATIONS;
+        public int tsTabuTenure = TS_TABU_TENURE;
+        public String policy = "tiered";
+        public int replanWindowMinutes = -1;   // Ventana del ReplanBatcher; -1: replanificar en cada minuto con llegadas
+        public boolean replanning = true;
+        public Supplier<RoutePlanner> plannerFactory = TieredPlanner::new;
+        public Consumer<SimulationContext> configure = ctx -> {};   // Ajustes extra, se aplica antes de initialize
+        public String startCheckpoint = null;                        // Si no es null, parte de ese checkpoint en vez del minuto 0
+        public Consumer<SimulationContext> branch = ctx -> {};      // Cambios sobre el estado ya cargado (p. ej. una avería)
+
+        public Scenario(String name, String pedidosFile, String bloqueosFile) {
+            this.name = name;
+            this.pedidosFile = pedidosFile;
+            this.bloqueosFile = bloqueosFile;
+        }
+
+        // Fija el planificador y si se replanifica a partir del nombre de la política (ver POLICIES)
+        public Scenario withPolicy(String policy) {
+            switch (policy) {
+                case "tiered": plannerFactory = TieredPlanner::new; replanning = true; break;
+                case "tabu": plannerFactory = TabuSearchPlanner::new; replanning = true; break;
+                case "tabu-paralelo": plannerFactory = ParallelTabuSearchPlanner::new; replanning = true; break;
+                case "greedy": plannerFactory = GreedyInsertionPlanner::new; replanning = true; break;
+                case "simulada": plannerFactory = ForwardSimulationPlanner::new; replanning = true; break;
+                case "ninguna": plannerFactory = TieredPlanner::new; replanning = false; break;
+                default: throw new IllegalArgumentException("Política de replanificación desconocida: " + policy);
+            }
+            this.policy = policy;
+            return this;
+        }
+    }
+
+    // Indicadores de un escenario; no guarda el contexto para que un barrido largo no retenga simulaciones terminadas
+    public static class ScenarioResult {
+        public final Scenario scenario;
+        public long wallMillis;
+        public int partsCreated;
+        public int partsServed;
+        public int partsServedLate;
+        public int partsUnserved;
+        public int partsExpired;       // Sin servir y con el plazo vencido al terminar
+        public int trucksInactive;
+        public int routesExecuted;
+        public double fuelConsumedGal;
+        public int planningCalls;
+        public double planningP50Ms;
+        public double planningP90Ms;
+        public double planningP99Ms;
+        public double planningMaxMs;
+        public int replansAvoided;
+        public double batchLatencyAvgMin;
+        public Exception error;
+
+        ScenarioResult(Scenario scenario) {
+            this.scenario = scenario;
+        }
+    }
+
+    private static final String CSV_HEADER = "escenario,pedidos,bloqueos,flota,ts_iteraciones,ts_tenencia,politica,ventana_min,duracion_min," +
+            "partes,servidas,servidas_tarde,sin_servir,vencidas,camiones_inactivos,rutas,combustible_gal," +
+            "replanificaciones,plan_p50_ms,plan_p90_ms,plan_p99_ms,plan_max_ms,replan_evitadas,latencia_lote_media_min,tiempo_ms,error";
+
+    private final int threads;
+    private final File logDir;   // null: la salida de cada escenario se descarta
+    private String logLevels = null;   // Niveles de la SimLog de cada escenario (ver SimLog.configure); null: INFO
+    private boolean traceSearch = false;   // Traza por iteración del tabú de cada escenario (<escenario>-busqueda.csv, solo con logs)
+
+    public ScenarioRunner(int threads, File logDir) {
+        this.threads = Math.max(1, threads);
+        this.logDir = logDir;
+    }
+
+    public void setLogLevels(String spec) {
+        this.logLevels = spec;
+    }
+
+    public void setTraceSearch(boolean traceSearch) {
+        this.traceSearch = traceSearch;
+    }
+
+    // Resultados en el mismo orden que los escenarios; un escenario que falla deja su excepción en el resultado
+    public List<ScenarioResult> runAll(List<Scenario> scenarios) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<ScenarioResult>> futures = new ArrayList<>();
+            for (Scenario scenario : scenarios) {
+                futures.add(pool.submit(() -> run(scenario)));
+            }
+            List<ScenarioResult> results = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(failed(scenarios.get(i), e));
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Barrido: corre los escenarios con a lo sumo 'threads' en vuelo y escribe una fila CSV por escenario en orden de
+    // término. Los escenarios se piden al iterador recién cuando hay un hilo libre. Devuelve cuántos escenarios corrió.
+    public int sweep(Iterator<Scenario> scenarios, Writer csv) throws InterruptedException, IOException {
+        PrintWriter out = new PrintWriter(csv);
+        out.println(CSV_HEADER);
+        out.flush();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<ScenarioResult> completion = new ExecutorCompletionService<>(pool);
+        Map<Future<ScenarioResult>, Scenario> inFlight = new HashMap<>();
+        int done = 0;
+        try {
+            while (scenarios.hasNext() || !inFlight.isEmpty()) {
+                while (inFlight.size() < threads && scenarios.hasNext()) {
+                    Scenario scenario = scenarios.next();
+                    inFlight.put(completion.submit(() -> run(scenario)), scenario);
+                }
+                Future<ScenarioResult> finished = completion.take();
+                Scenario scenario = inFlight.remove(finished);
+                ScenarioResult result;
+                try {
+                    result = finished.get();
+                } catch (ExecutionException e) {
+                    result = failed(scenario, e);
+                }
+                out.println(toCsvRow(result));
+                out.flush();
+                if (out.checkError()) throw new IOException("Error escribiendo el CSV del barrido");
+                done++;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return done;
+    }
+
+    public ScenarioResult run(Scenario scenario) {
+        ScenarioResult result = new ScenarioResult(scenario);
+        SimulationContext ctx = new SimulationContext();
+        ctx.fleetCounts = scenario.fleetCounts.clone();
+        ctx.fleetFile = scenario.fleetFile;
+        ctx.tsMaxIterations = scenario.tsMaxIterations;
+        ctx.tsTabuTenure = scenario.tsTabuTenure;
+        if (logDir == null) {
+            ctx.log.setLevel(SimLog.Level.OFF);   // La salida se descarta: ni se arman los mensajes
+        } else {
+            ctx.log.configure(logLevels);
+        }
+        scenario.configure.accept(ctx);
+        long start = System.currentTimeMillis();
+        try (PrintStream log = openLog(scenario);
+             SearchTrace trace = traceSearch && logDir != null ? new SearchTrace(new File(logDir, scenario.name + "-busqueda.csv").toPath()) : null) {
+            ctx.out = log;
+            ctx.err = log;
+            ctx.searchTrace = trace;
+            if (scenario.startCheckpoint != null) {
+                SimulationCheckpoint.restore(ctx, Paths.get(scenario.startCheckpoint));
+            } else {
+                ctx.initialize(scenario.pedidosFile, scenario.bloqueosFile);
+            }
+            scenario.branch.accept(ctx);
+            Simulator simulator = new Simulator(ctx, scenario.plannerFactory.get());
+            if (scenario.replanWindowMinutes >= 0) simulator.setReplanBatcher(new ReplanBatcher(scenario.replanWindowMinutes,
+                    REPLAN_DEADLINE_MARGIN_MINUTES, REPLAN_BUDGET_MS));
+            if (logDir != null) simulator.setMetricsFile(new File(logDir, scenario.name + "-metricas.json").toPath());
+            simulator.runSimulation(scenario.durationMinutes, scenario.replanning);
+            collect(result, ctx);
+            ReplanBatcher batcher = simulator.getReplanBatcher();
+            if (batcher != null) {
+                result.replansAvoided = batcher.replansAvoided();
+                result.batchLatencyAvgMin = batcher.averageAddedLatencyMinutes();
+            }
+        } catch (Exception e) {
+            result.error = e;
+        }
+        result.wallMillis = System.currentTimeMillis() - start;
+        return result;
+    }
+
+    private static ScenarioResult failed(Scenario scenario, ExecutionException e) {
+        ScenarioResult failed = new ScenarioResult(scenario);
+        failed.error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        return failed;
+    }
+
+    private PrintStream openLog(Scenario scenario) throws Exception {
+        if (logDir == null) {
+            return new PrintStream(new OutputStream() {
+                @Override public void write(int b) {}
+                @Override public void write(byte[] b, int off, int len) {}
+            });
+        }
+        logDir.mkdirs();
+        return new PrintStream(new FileOutputStream(new File(logDir, scenario.name + ".log")), false, "UTF-8");
+    }
+
+    private static void collect(ScenarioResult result, SimulationContext ctx) {
+        result.partsCreated = ctx.nextPartId;
+        result.partsServed = ctx.partsServed;
+        result.partsServedLate = ctx.partsServedLate;
+        result.partsUnserved = ctx.customerParts.activeCount();
+        for (CustomerPart part : ctx.customerParts.active()) {
+            if (part.deadlineMinutes < ctx.currentSimTime) result.partsExpired++;
+        }
+        for (TruckState ts : ctx.fleetStore.all()) {
+            if (ts.getStatus() == TruckState.Status.INACTIVE) result.trucksInactive++;
+            result.routesExecuted += ts.routes.size();
+        }
+        result.fuelConsumedGal = ctx.fuelConsumedGal;
+
+        long[] nanos = new long[ctx.planningNanos.size()];
+        for (int i = 0; i < nanos.length; i++) nanos[i] = ctx.planningNanos.get(i);
+        Arrays.sort(nanos);
+        result.planningCalls = nanos.length;
+        result.planningP50Ms = percentileMillis(nanos, 0.50);
+        result.planningP90Ms = percentileMillis(nanos, 0.90);
+        result.planningP99Ms = percentileMillis(nanos, 0.99);
+        result.planningMaxMs = nanos.length == 0 ? 0.0 : nanos[nanos.length - 1] / 1e6;
+    }
+
+    // Percentil por rango más cercano sobre tiempos ordenados
+    private static double percentileMillis(long[] sorted, double p) {
+        if (sorted.length == 0) return 0.0;
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+
+    private static String toCsvRow(ScenarioResult r) {
+        Scenario s = r.scenario;
+        StringBuilder sb = new StringBuilder();
+        sb.append(csv(s.name)).append(',').append(csv(s.pedidosFile)).append(',').append(csv(s.bloqueosFile)).append(',')
+                .append(s.fleetFile != null ? csv(s.fleetFile) : fleetLabel(s.fleetCounts)).append(',').append(s.tsMaxIterations).append(',').append(s.tsTabuTenure).append(',')
+                .append(s.policy).append(',').append(s.replanWindowMinutes).append(',').append(s.durationMinutes).append(',');
+        if (r.error == null) {
+            sb.append(r.partsCreated).append(',').append(r.partsServed).append(',').append(r.partsServedLate).append(',')
+                    .append(r.partsUnserved).append(',').append(r.partsExpired).append(',').append(r.trucksInactive).append(',')
+                    .append(r.routesExecuted).append(',').append(String.format(Locale.ROOT, "%.2f", r.fuelConsumedGal)).append(',')
+                    .append(r.planningCalls).append(',')
+                    .append(String.format(Locale.ROOT, "%.1f,%.1f,%.1f,%.1f", r.planningP50Ms, r.planningP90Ms, r.planningP99Ms, r.planningMaxMs))
+                    .append(',').append(r.replansAvoided).append(',').append(String.format(Locale.ROOT, "%.1f", r.batchLatencyAvgMin)).append(',').append(r.wallMillis).append(',');
+        } else {
+            sb.append(",,,,,,,,,,,,,,,").append(r.wallMillis).append(',').append(csv(r.error.toString()));
+        }
+        return sb.toString();
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return value;
+        return '"' + value.replace("\"", "\"\"").replace('\n', ' ') + '"';
+    }
+
+    private static String fleetLabel(int[] counts) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < counts.length; i++) {
+            if (i > 0) sb.append('/');
+            sb.append(counts[i]);
+        }
+        return sb.toString();
+    }
+
+    // Producto cartesiano de los valores de cada dimensión, generado bajo demanda
+    // Cada flota es una mezcla "2/4/4/10" o la ruta de un archivo de flota
+    public static Iterator<Scenario> grid(List<String> pedidos, List<String> bloqueos, List<String> fleets, List<Integer> iterations,
+                                          List<Integer> tenures, List<String> policies, List<Integer> windows, int durationMinutes) {
+        return product(new int[]{pedidos.size(), bloqueos.size(), fleets.size()}, iterations, tenures, policies, windows, durationMinutes,
+                (name, idx) -> {
+                    Scenario s = new Scenario(name, pedidos.get(idx[0]), bloqueos.get(idx[1]));
+                    String fleet = fleets.get(idx[2]);
+                    if (fleet.matches("[0-9/]+")) {
+                        s.fleetCounts = Arrays.stream(fleet.split("/")).mapToInt(Integer::parseInt).toArray();
+                    } else {
+                        s.fleetFile = fleet;
+                    }
+                    return s;
+                });
+    }
+
+    // Barrido sobre instancias generadas (InstanceGenerator): cada una trae sus pedidos, bloqueos, grilla, depósitos y flota
+    public static Iterator<Scenario> grid(List<InstanceGenerator.Instance> instances, List<Integer> iterations, List<Integer> tenures,
+                                          List<String> policies, List<Integer> windows, int durationMinutes) {
+        return product(new int[]{instances.size()}, iterations, tenures, policies, windows, durationMinutes, (name, idx) -> {
+            InstanceGenerator.Instance instance = instances.get(idx[0]);
+            Scenario s = new Scenario(name, instance.pedidosFile, instance.bloqueosFile);
+            s.fleetFile = instance.fleetFile;
+            s.configure = instance::configure;
+            return s;
+        });
+    }
+
+    private interface ScenarioFactory {
+        Scenario create(String name, int[] inputIndex);
+    }
+
+    // Las primeras dimensiones (entradas) las arma 'factory'; las de parámetros del tabú y política son comunes
+    private static Iterator<Scenario> product(int[] inputSizes, List<Integer> iterations, List<Integer> tenures, List<String> policies,
+                                              List<Integer> windows, int durationMinutes, ScenarioFactory factory) {
+        for (String policy : policies) new Scenario("", "", "").withPolicy(policy);   // Validar antes de empezar
+        int inputs = inputSizes.length;
+        int[] sizes = Arrays.copyOf(inputSizes, inputs + 4);
+        sizes[inputs] = iterations.size();
+        sizes[inputs + 1] = tenures.size();
+        sizes[inputs + 2] = policies.size();
+        sizes[inputs + 3] = windows.size();
+        int total = 1;
+        for (int size : sizes) total *= size;
+        final int count = total;
+        return new Iterator<Scenario>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public Scenario next() {
+                int[] idx = new int[sizes.length];
+                for (int d = sizes.length - 1, rest = next; d >= 0; d--) {
+                    idx[d] = rest % sizes[d];
+                    rest /= sizes[d];
+                }
+                Scenario s = factory.create(String.format("esc%04d", next), Arrays.copyOf(idx, inputs));
+                s.tsMaxIterations = iterations.get(idx[inputs]);
+                s.tsTabuTenure = tenures.get(idx[inputs + 1]);
+                s.withPolicy(policies.get(idx[inputs + 2]));
+                s.replanWindowMinutes = windows.get(idx[inputs + 3]);
+                s.durationMinutes = durationMinutes;
+                next++;
+                return s;
+            }
+        };
+    }
+
+    // Argumentos clave=v1,v2,... (cada lista es una dimensión de la grilla):
+    //   pedidos=pedidos.txt,ventas202501.txt  bloqueos=bloqueos.txt  flota=2/4/4/10,2/3/3/6,flota.txt  iteraciones=400
+    //   tenencia=15  politica=tiered,tabu,tabu-paralelo,greedy,simulada,ninguna  ventana=-1,10,30 (-1: sin lotes)  dias=8  hilos=<núcleos>  csv=barrido.csv  logs=<dir> (log y métricas JSON de cada escenario)
+    //   bitacora=INFO,PLANNER=DEBUG (niveles de la bitácora de cada escenario, solo con logs)
+    //   traza=1 (traza por iteración del tabú de cada escenario, solo con logs; resumen: SearchTrace <archivo>)
+    //   generar=pedidos_dia=50+grilla=70x50,pedidos_dia=400+grilla=140x100 (instancias sintéticas, ver InstanceGenerator;
+    //   reemplazan a pedidos, bloqueos y flota)  instancias=<dir> (dónde se escriben, por defecto "instancias")
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("Argumento inválido (se espera clave=valor): " + arg);
+            opts.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        List<String> pedidos = list(opts.getOrDefault("pedidos", "pedidos.txt"));
+        List<String> bloqueos = list(opts.getOrDefault("bloqueos", "bloqueos.txt"));
+        List<String> fleets = list(opts.getOrDefault("flota", "2/4/4/10"));
+        List<Integer> iterations = ints(opts.getOrDefault("iteraciones", String.valueOf(TS_MAX_ITERATIONS)));
+        List<Integer> tenures = ints(opts.getOrDefault("tenencia", String.valueOf(TS_TABU_TENURE)));
+        List<String> policies = list(opts.getOrDefault("politica", "tiered"));
+        List<Integer> windows = ints(opts.getOrDefault("ventana", "-1"));
+        int duration = Integer.parseInt(opts.getOrDefault("dias", "8")) * 24 * 60;
+        int threads = Integer.parseInt(opts.getOrDefault("hilos", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        File csvFile = new File(opts.getOrDefault("csv", "barrido.csv"));
+        File logDir = opts.containsKey("logs") ? new File(opts.get("logs")) : null;
+
+        List<InstanceGenerator.Instance> instances = new ArrayList<>();
+        for (String spec : list(opts.getOrDefault("generar", ""))) {
+            InstanceGenerator.Params params = InstanceGenerator.Params.parse(spec);
+            InstanceGenerator.Instance instance = InstanceGenerator.generate(params,
+                    Paths.get(opts.getOrDefault("instancias", "instancias"), params.name()));
+            System.out.println("Instancia " + instance.name + ": " + instance.orders + " pedidos, " + instance.blockages + " bloqueos.");
+            instances.add(instance);
+        }
+
+        int inputs = instances.isEmpty() ? pedidos.size() * bloqueos.size() * fleets.size() : instances.size();
+        int total = inputs * iterations.size() * tenures.size() * policies.size() * windows.size();
+        System.out.println("Barrido de " + total + " escenarios con " + threads + " hilos -> " + csvFile);
+        long start = System.currentTimeMillis();
+        int done;
+        try (Writer csv = new OutputStreamWriter(new FileOutputStream(csvFile), StandardCharsets.UTF_8)) {
+            ScenarioRunner runner = new ScenarioRunner(threads, logDir);
+            runner.setLogLevels(opts.get("bitacora"));
+            runner.setTraceSearch("1".equals(opts.get("traza")));
+            done = runner.sweep(instances.isEmpty() ? grid(pedidos, bloqueos, fleets, iterations, tenures, policies, windows, duration)
+                    : grid(instances, iterations, tenures, policies, windows, duration), csv);
+        }
+        System.out.println("Barrido de " + done + " escenarios terminado en " + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    private static List<String> list(String csv) {
+        if (csv.trim().isEmpty()) return Collections.emptyList();
+        List<String> values = new ArrayList<>();
+        for (String v : csv.split(",")) values.add(v.trim());
+        return values;
+    }
+
+    private static List<Integer> ints(String csv) {
+        List<Integer> values = new ArrayList<>();
+        for (String v : list(csv)) values.add(Integer.parseInt(v));
+        return values;
+    }
+}
@@ -0,0 +1,195 @@
+package mdvrp.simulation;
+
+import mdvrp.state.SimulationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+// Bitácora de una simulación, con nivel por subsistema. Reemplaza los println directos: los mensajes de nivel
+// desactivado no se construyen (on() antes de concatenar, o un Supplier), así que en el nivel por defecto (INFO) las
+// transiciones de camión, los pedidos y las iteraciones del tabú no cuestan nada.
+// Formato TEXT: el mensaje tal cual, WARN y ERROR a ctx.err y el resto a ctx.out (como antes). Formato CSV: una fila
+// minuto,nivel,subsistema,mensaje por evento. Con startAsync() la escritura la hace un hilo aparte desde un anillo.
+// Configuración: configure("INFO,TRUCKS=DEBUG,SEARCH=OFF").
+public class SimLog {
+
+    public enum Level { TRACE, DEBUG, INFO, WARN, ERROR, OFF }
+
+    public enum Subsystem {
+        SIM,         // Reloj, inicio y fin, resúmenes, checkpoints
+        IO,          // Carga de archivos
+        ORDERS,      // Llegada de pedidos
+        TRUCKS,      // Transiciones de camión
+        BLOCKAGES,   // Desvíos y rutas cortadas por bloqueos
+        PLANNER,     // Cada replanificación y su resultado
+        SEARCH       // Detalle de la búsqueda (iteraciones, operadores)
+    }
+
+    public enum Format { TEXT, CSV }
+
+    private static final Level[] LEVELS = Level.values();
+    private static final Subsystem[] SUBSYSTEMS = Subsystem.values();
+    public static final String CSV_HEADER = "minuto,nivel,subsistema,mensaje";
+
+    private final SimulationContext ctx;
+    private final byte[] thresholds = new byte[SUBSYSTEMS.length];
+    private Format format = Format.TEXT;
+    private PrintStream csvOut = null;
+    private AsyncLogWriter async = null;
+
+    public SimLog(SimulationContext ctx) {
+        this.ctx = ctx;
+        setLevel(Level.INFO);
+    }
+
+    // Misma configuración para un contexto bifurcado, siempre en texto y sin hilo de escritura
+    public SimLog fork(SimulationContext f) {
+        SimLog copy = new SimLog(f);
+        System.arraycopy(thresholds, 0, copy.thresholds, 0, thresholds.length);
+        return copy;
+    }
+
+    // --- Configuración ---
+
+    public void setLevel(Level level) {
+        Arrays.fill(thresholds, (byte) level.ordinal());
+    }
+
+    public void setLevel(Subsystem subsystem, Level level) {
+        thresholds[subsystem.ordinal()] = (byte) level.ordinal();
+    }
+
+    public Level getLevel(Subsystem subsystem) {
+        return LEVELS[thresholds[subsystem.ordinal()]];
+    }
+
+    // "NIVEL" para todos y/o "SUBSISTEMA=NIVEL", separados por comas; se aplican en orden
+    public void configure(String spec) {
+        if (spec == null) return;
+        for (String part : spec.split(",")) {
+            String p = part.trim();
+            if (p.isEmpty()) continue;
+            int eq = p.indexOf('=');
+            if (eq < 0) {
+                setLevel(Level.valueOf(p.toUpperCase()));
+            } else {
+                setLevel(Subsystem.valueOf(p.substring(0, eq).trim().toUpperCase()), Level.valueOf(p.substring(eq + 1).trim().toUpperCase()));
+            }
+        }
+    }
+
+    // Eventos como filas CSV en 'out' (en lugar de ctx.out/ctx.err)
+    public void useCsv(PrintStream out) {
+        flush();
+        this.format = Format.CSV;
+        this.csvOut = out;
+        out.println(CSV_HEADER);
+    }
+
+    public void useText() {
+        flush();
+        this.format = Format.TEXT;
+        this.csvOut = null;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    // La escritura pasa a un hilo aparte con un anillo de 'capacity' eventos; si se llena, quien loguea espera
+    public void startAsync(int capacity) {
+        if (async != null) return;
+        async = new AsyncLogWriter(this, capacity);
+    }
+
+    // Espera a que el hilo de escritura vacíe el anillo (sin hilo no hace nada)
+    public void flush() {
+        if (async != null) async.flush();
+    }
+
+    public void stopAsync() {
+        if (async == null) return;
+        async.close();
+        async = null;
+    }
+
+    public AsyncLogWriter getAsyncWriter() {
+        return async;
+    }
+
+    // --- Registro ---
+
+    public boolean on(Level level, Subsystem subsystem) {
+        return level.ordinal() >= thresholds[subsystem.ordinal()];
+    }
+
+    public void log(Level level, Subsystem subsystem, String message) {
+        if (!on(level, subsystem)) return;
+        AsyncLogWriter writer = async;
+        if (writer != null) {
+            writer.offer(ctx.currentSimTime, level, subsystem, message);
+        } else {
+            write(ctx.currentSimTime, level, subsystem, message);
+        }
+    }
+
+    public void log(Level level, Subsystem subsystem, Supplier<String> message) {
+        if (on(level, subsystem)) log(level, subsystem, message.get());
+    }
+
+    public void trace(Subsystem subsystem, Supplier<String> message) { log(Level.TRACE, subsystem, message); }
+    public void debug(Subsystem subsystem, Supplier<String> message) { log(Level.DEBUG, subsystem, message); }
+    public void debug(Subsystem subsystem, String message) { log(Level.DEBUG, subsystem, message); }
+    public void info(Subsystem subsystem, String message) { log(Level.INFO, subsystem, message); }
+    public void warn(Subsystem subsystem, String message) { log(Level.WARN, subsystem, message); }
+    public void error(Subsystem subsystem, String message) { log(Level.ERROR, subsystem, message); }
+
+    // Adaptador para código que escribe en un PrintStream (carga de archivos): cada línea es un evento
+    public PrintStream stream(Level level, Subsystem subsystem) {
+        OutputStream lines = new OutputStream() {
+            private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+            @Override public synchronized void write(int b) {
+                if (b == '\n') {
+                    log(level, subsystem, new String(line.toByteArray(), StandardCharsets.UTF_8));
+                    line.reset();
+                } else if (b != '\r') {
+                    line.write(b);
+                }
+            }
+        };
+        try {
+            return new PrintStream(lines, true, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Escritura efectiva (hilo que loguea o hilo de escritura)
+    void write(int minute, Level level, Subsystem subsystem, String message) {
+        if (format == Format.CSV) {
+            PrintStream out = csvOut;
+            out.print(minute);
+            out.print(',');
+            out.print(level.name());
+            out.print(',');
+            out.print(subsystem.name());
+            out.print(',');
+            out.println(csvField(message));
+        } else if (level.ordinal() >= Level.WARN.ordinal()) {
+            ctx.err.println(message);
+        } else {
+            ctx.out.println(message);
+        }
+    }
+
+    private static String csvField(String value) {
+        String v = value.trim();
+        if (v.indexOf(',') < 0 && v.indexOf('"') < 0 && v.indexOf('\n') < 0) return v;
+        return '"' + v.replace("\"", "\"\"").replace('\n', ' ') + '"';
+    }
+}
@@ -0,0 +1,253 @@
+package mdvrp.simulation;
+
+import mdvrp.state.SimulationContext;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+// Métricas de una simulación: contadores, indicadores calculados al leerlos e histogramas de latencia, por nombre
+// ("subsistema.métrica"). Se publican por JMX (registerJmx) y se vuelcan a JSON al terminar (writeJson).
+// Un contexto bifurcado (planificación asíncrona, simulación hacia adelante) suma sus contadores e histogramas a los
+// del contexto original: su trabajo de CPU es real. Sus indicadores no se publican y el Simulator no registra sus
+// minutos (isFork).
+public class SimMetrics implements DynamicMBean {
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    private final SimMetrics root;   // null: este es el registro original
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentSkipListMap<>();
+    private ObjectName jmxName = null;
+
+    public SimMetrics(SimulationContext ctx) {
+        this.root = null;
+        gauge("distance.queries", () -> count("distance.hits") + count("distance.misses"));
+        gauge("distance.hit_rate", () -> ratio(count("distance.hits"), count("distance.hits") + count("distance.misses")));
+        gauge("distance.cells_per_bfs", () -> ratio(count("distance.bfs_cells"), count("distance.misses")));
+        gauge("tabu.neighbours_per_second", () -> ratio(count("tabu.neighbours"), count("tabu.search_nanos") / 1e9));
+        for (TruckState.Status s : TruckState.Status.values()) {
+            gauge("trucks." + s.name(), () -> ctx.fleetStore.count(s));
+        }
+    }
+
+    private SimMetrics(SimMetrics root) {
+        this.root = root;
+    }
+
+    // Registro para un contexto bifurcado: comparte contadores e histogramas con este
+    public SimMetrics fork() {
+        return new SimMetrics(root != null ? root : this);
+    }
+
+    public boolean isFork() {
+        return root != null;
+    }
+
+    // --- Registro ---
+
+    public LongAdder counter(String name) {
+        if (root != null) return root.counter(name);
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    public LatencyHistogram histogram(String name) {
+        if (root != null) return root.histogram(name);
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    // Indicador calculado al leerlo; reemplaza al anterior del mismo nombre (en un registro bifurcado no hace nada)
+    public void gauge(String name, DoubleSupplier value) {
+        if (root == null) gauges.put(name, value);
+    }
+
+    public long count(String name) {
+        if (root != null) return root.count(name);
+        LongAdder c = counters.get(name);
+        return c == null ? 0 : c.sum();
+    }
+
+    // Pone en cero contadores e histogramas (quien guardó una referencia sigue usando el mismo objeto)
+    public void reset() {
+        if (root != null) return;
+        for (LongAdder c : counters.values()) c.reset();
+        for (LatencyHistogram h : histograms.values()) h.reset();
+    }
+
+    private static double ratio(double num, double den) {
+        return den == 0 ? 0.0 : num / den;
+    }
+
+    // --- JSON ---
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("{\n  \"counters\": {");
+        String sep = "\n";
+        for (Map.Entry<String, LongAdder> e : counters.entrySet()) {
+            sb.append(sep).append("    \"").append(e.getKey()).append("\": ").append(e.getValue().sum());
+            sep = ",\n";
+        }
+        sb.append("\n  },\n  \"gauges\": {");
+        sep = "\n";
+        for (Map.Entry<String, DoubleSupplier> e : gauges.entrySet()) {
+            sb.append(sep).append("    \"").append(e.getKey()).append("\": ").append(number(e.getValue().getAsDouble()));
+            sep = ",\n";
+        }
+        sb.append("\n  },\n  \"histograms\": {");
+        sep = "\n";
+        for (Map.Entry<String, LatencyHistogram> e : histograms.entrySet()) {
+            LatencyHistogram h = e.getValue();
+            sb.append(sep).append("    \"").append(e.getKey()).append("\": {\"count\": ").append(h.count())
+                    .append(", \"mean_ms\": ").append(number(h.meanNanos() / 1e6));
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                sb.append(", \"").append(PERCENTILE_NAMES[i]).append("_ms\": ").append(number(h.percentileNanos(PERCENTILES[i]) / 1e6));
+            }
+            sb.append(", \"max_ms\": ").append(number(h.maxNanos() / 1e6)).append('}');
+            sep = ",\n";
+        }
+        sb.append("\n  }\n}\n");
+        return sb.toString();
+    }
+
+    public void writeJson(Path file) throws IOException {
+        if (root != null) {
+            root.writeJson(file);
+            return;
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Files.write(file, toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String number(double v) {
+        if (Double.isNaN(v) || Double.isInfinite(v)) return "null";
+        return String.format(Locale.ROOT, "%.4f", v);
+    }
+
+    // --- JMX ---
+
+    // Publica el registro como mdvrp:type=SimMetrics,name=<name> en el servidor de la plataforma (jconsole, VisualVM)
+    public void registerJmx(String name) {
+        if (root != null) throw new IllegalStateException("Un registro bifurcado no se publica por JMX");
+        unregisterJmx();
+        try {
+            ObjectName objectName = new ObjectName("mdvrp:type=SimMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            jmxName = objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("No se pudo registrar las métricas por JMX: " + e.getMessage(), e);
+        }
+    }
+
+    public void unregisterJmx() {
+        if (jmxName == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(jmxName);
+        } catch (JMException e) {
+            // Ya no estaba registrado
+        }
+        jmxName = null;
+    }
+
+    // Atributos: cada contador (Long), cada indicador (Double) y por histograma <nombre>.count, .mean_ms, .p50_ms ...
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        LongAdder c = counters.get(attribute);
+        if (c != null) return c.sum();
+        DoubleSupplier g = gauges.get(attribute);
+        if (g != null) return g.getAsDouble();
+        int dot = attribute.lastIndexOf('.');
+        LatencyHistogram h = dot < 0 ? null : histograms.get(attribute.substring(0, dot));
+        if (h != null) {
+            String field = attribute.substring(dot + 1);
+            if (field.equals("count")) return (double) h.count();
+            if (field.equals("mean_ms")) return h.meanNanos() / 1e6;
+            if (field.equals("max_ms")) return h.maxNanos() / 1e6;
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                if (field.equals(PERCENTILE_NAMES[i] + "_ms")) return h.percentileNanos(PERCENTILES[i]) / 1e6;
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Las métricas son de solo lectura: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String name : attributes) {
+            try {
+                list.add(new Attribute(name, getAttribute(name)));
+            } catch (AttributeNotFoundException e) {
+                // Se omite, como pide la interfaz
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        if (actionName.equals("toJson")) return toJson();
+        if (actionName.equals("reset")) {
+            reset();
+            return null;
+        }
+        throw new UnsupportedOperationException(actionName);
+    }
+
+    // Se arma en cada consulta: las métricas aparecen a medida que se usan
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attrs = new ArrayList<>();
+        for (String name : counters.keySet()) {
+            attrs.add(new MBeanAttributeInfo(name, "java.lang.Long", "Contador", true, false, false));
+        }
+        for (String name : gauges.keySet()) {
+            attrs.add(new MBeanAttributeInfo(name, "java.lang.Double", "Indicador", true, false, false));
+        }
+        for (String name : histograms.keySet()) {
+            attrs.add(new MBeanAttributeInfo(name + ".count", "java.lang.Double", "Mediciones", true, false, false));
+            attrs.add(new MBeanAttributeInfo(name + ".mean_ms", "java.lang.Double", "Media (ms)", true, false, false));
+            for (String p : PERCENTILE_NAMES) {
+                attrs.add(new MBeanAttributeInfo(name + "." + p + "_ms", "java.lang.Double", "Percentil (ms)", true, false, false));
+            }
+            attrs.add(new MBeanAttributeInfo(name + ".max_ms", "java.lang.Double", "Máximo (ms)", true, false, false));
+        }
+        MBeanOperationInfo[] ops = {
+                new MBeanOperationInfo("toJson", "Todas las métricas en JSON", new MBeanParameterInfo[0], "java.lang.String", MBeanOperationInfo.INFO),
+                new MBeanOperationInfo("reset", "Pone en cero contadores e histogramas", new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION)
+        };
+        return new MBeanInfo(SimMetrics.class.getName(), "Métricas de la simulación",
+                attrs.toArray(new MBeanAttributeInfo[0]), null, ops, new MBeanNotificationInfo[0]);
+    }
+}
@@ -0,0 +1,433 @@
+package mdvrp.simulation;
+
+import mdvrp.model.*;
+import mdvrp.planner.PlannedRoute;
+import mdvrp.state.CustomerPartRegistry;
+import mdvrp.state.SimulationContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Checkpoint binario del estado completo de una simulación: reloj, depósitos, flota y estados de camión (con su plan,
+// tramo en curso e historial de rutas), partes, pedidos pendientes, bloqueos e indicadores. Se escribe con un
+// FileChannel y se lee mapeando el archivo, así que restaurar cuesta milisegundos y una rama "¿qué pasa si...?" parte del minuto guardado
+// sin volver a simular desde el minuto 0.
+// Las partes y depósitos se guardan una sola vez y el resto del estado los referencia por índice, para que tras
+// restaurar los planes, el historial y el registro de partes vuelvan a compartir los mismos objetos. Los estados del
+// registro no se guardan: salen de las partes activas y de los planes de los camiones.
+// Los pedidos en memoria se guardan enteros; en streaming solo el archivo y cuántos pedidos ya se sacaron.
+// La caché de distancias no se guarda: se reconstruye sola y da los mismos valores.
+public class SimulationCheckpoint {
+
+    private static final int MAGIC = 0x4D445650;   // "MDVP"
+    private static final int FORMAT_VERSION = 2;   // 2: tramo en curso de cada camión
+
+    private static final byte LOC_NULL = 0, LOC_DEPOT = 1, LOC_PART = 2, LOC_POINT = 3;
+    private static final byte ORDERS_IN_MEMORY = 0, ORDERS_STREAMING = 1;
+
+    // Estado al terminar una corrida (ctx.currentSimTime ya es el siguiente minuto por simular)
+    public static void write(SimulationContext ctx, Path file) throws IOException {
+        write(ctx, ctx.currentSimTime, file);
+    }
+
+    // Estado tras procesar el minuto resumeMinute - 1; la simulación restaurada sigue en resumeMinute
+    public static void write(SimulationContext ctx, int resumeMinute, Path file) throws IOException {
+        Writer w = new Writer();
+        w.putInt(MAGIC);
+        w.putInt(FORMAT_VERSION);
+        w.putInt(resumeMinute);
+        w.putInt(ctx.nextPartId);
+        w.putInt(ctx.gridWidth);
+        w.putInt(ctx.gridHeight);
+
+        w.putDouble(ctx.fuelConsumedGal);
+        w.putInt(ctx.partsServed);
+        w.putInt(ctx.partsServedLate);
+        w.putInt(ctx.planningNanos.size());
+        for (long nanos : ctx.planningNanos) w.putLong(nanos);
+
+        Map<String, Integer> depotIndex = new HashMap<>();
+        w.putInt(ctx.depots.size());
+        for (Depot d : ctx.depots) {
+            depotIndex.put(d.id, depotIndex.size());
+            w.putString(d.id);
+            w.putInt(d.x);
+            w.putInt(d.y);
+            w.putDouble(d.capacidadMaximaM3);
+            w.putDouble(d.capacidadActualM3);
+        }
+
+        Map<String, Integer> truckIndex = new HashMap<>();
+        w.putInt(ctx.fleet.size());
+        for (Truck t : ctx.fleet) {
+            truckIndex.put(t.id, truckIndex.size());
+            w.putString(t.id);
+            w.putByte((byte) t.type.ordinal());
+            w.putInt(depotIndex.get(t.homeDepot.id));
+        }
+
+        // Tabla de partes: activas, en planes de camión y en el historial de rutas (ya servidas)
+        Map<Integer, Integer> partIndex = new HashMap<>();
+        List<CustomerPart> parts = new ArrayList<>();
+        for (CustomerPart cp : ctx.customerParts.active()) addPart(cp, parts, partIndex);
+        for (Truck t : ctx.fleet) {
+            TruckState ts = ctx.truckStates.get(t.id);
+            for (Object step : ts.currentRoutePlan) if (step instanceof CustomerPart) addPart((CustomerPart) step, parts, partIndex);
+            if (ts.getCurrentLocation() instanceof CustomerPart) addPart((CustomerPart) ts.getCurrentLocation(), parts, partIndex);
+            if (ts.getDestination() instanceof CustomerPart) addPart((CustomerPart) ts.getDestination(), parts, partIndex);
+            for (PlannedRoute route : ts.routes) for (CustomerPart cp : route.sequence) addPart(cp, parts, partIndex);
+        }
+        w.putInt(parts.size());
+        for (CustomerPart cp : parts) {
+            w.putInt(cp.partId);
+            w.putInt(cp.originalOrderId);
+            w.putInt(cp.x);
+            w.putInt(cp.y);
+            w.putDouble(cp.demandM3);
+            w.putInt(cp.arrivalTimeMinutes);
+            w.putInt(cp.deadlineMinutes);
+            w.putByte((byte) (cp.served ? 1 : 0));
+            w.putInt(cp.originalClientId);
+        }
+        List<CustomerPart> active = ctx.customerParts.active();
+        w.putInt(active.size());
+        for (CustomerPart cp : active) w.putInt(partIndex.get(cp.partId));
+
+        for (Truck t : ctx.fleet) {
+            TruckState ts = ctx.truckStates.get(t.id);
+            w.putByte((byte) ts.getStatus().ordinal());
+            putLocation(w, ts.getCurrentLocation(), depotIndex, partIndex);
+            w.putDouble(ts.getCurrentLoadM3());
+            w.putDouble(ts.getCurrentFuelGal());
+            w.putInt(ts.getTimeAvailable());
+            w.putInt(ts.currentRoutePlan.size());
+            for (Object step : ts.currentRoutePlan) putLocation(w, (Location) step, depotIndex, partIndex);
+            putLocation(w, ts.getDestination(), depotIndex, partIndex);
+            w.putInt(ts.getArrivalTimeAtDestination());
+            TruckLeg leg = ts.getCurrentLeg();
+            w.putByte((byte) (leg == null ? 0 : 1));
+            if (leg != null) {
+                w.putInt(leg.departureMinute);
+                w.putInt(leg.arrivalMinute);
+                w.putInt(leg.distance);
+                w.putDouble(leg.fuelGal);
+                w.putInt(leg.cells.length);
+                for (int cell : leg.cells) w.putInt(cell);
+            }
+            w.putInt(ts.routes.size());
+            for (PlannedRoute route : ts.routes) {
+                w.putInt(truckIndex.get(route.truck.id));
+                w.putInt(depotIndex.get(route.startDepot.id));
+                w.putInt(depotIndex.get(route.endDepot.id));
+                w.putInt(route.sequence.size());
+                for (CustomerPart cp : route.sequence) w.putInt(partIndex.get(cp.partId));
+                w.putDouble(route.cost);
+                w.putByte((byte) (route.feasible ? 1 : 0));
+                w.putDouble(route.estimatedFuel);
+                w.putInt(route.routeTimeSlackMinutes);
+                w.putInt(route.startTime);
+            }
+        }
+
+        List<Bloqueo> bloqueos = ctx.blockageCalendar.getBloqueos();
+        w.putInt(bloqueos.size());
+        for (Bloqueo b : bloqueos) {
+            w.putInt(b.inicioMinutos);
+            w.putInt(b.finMinutos);
+            w.putInt(b.puntosBloqueados.size());
+            for (int[] punto : b.puntosBloqueados) {
+                w.putShort((short) punto[0]);
+                w.putShort((short) punto[1]);
+            }
+        }
+        w.putInt(ctx.blockageCalendar.lastMinute());
+
+        OrderReleaseQueue queue = ctx.pendingPedidos;
+        if (queue.isStreaming()) {
+            w.putByte(ORDERS_STREAMING);
+            w.putString(queue.getSource());
+            w.putInt(queue.takenCount());
+            w.putInt(queue.releasedCount());
+        } else {
+            w.putByte(ORDERS_IN_MEMORY);
+            w.putInt(queue.releasedCount());
+            List<Pedido> remaining = queue.remaining();
+            w.putInt(remaining.size());
+            for (Pedido p : remaining) {
+                w.putInt(p.idPedido);
+                w.putInt(p.idCliente);
+                w.putInt(p.x);
+                w.putInt(p.y);
+                w.putDouble(p.volumen);
+                w.putInt(p.horaLimite);
+                w.putInt(p.momentoPedido);
+            }
+        }
+
+        ByteBuffer buffer = w.finish();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(false);
+        }
+    }
+
+    // Reemplaza el estado de ctx por el del checkpoint. Los parámetros del escenario (tabú, salida...) se conservan.
+    public static void restore(SimulationContext ctx, Path file) throws IOException {
+        ByteBuffer r;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            r = mapped;
+        }
+        if (r.getInt() != MAGIC) throw new IOException("No es un checkpoint de simulación: " + file);
+        int version = r.getInt();
+        if (version != FORMAT_VERSION) throw new IOException("Versión de checkpoint no soportada (" + version + "): " + file);
+
+        int currentSimTime = r.getInt();
+        int nextPartId = r.getInt();
+        ctx.gridWidth = r.getInt();
+        ctx.gridHeight = r.getInt();
+
+        ctx.fuelConsumedGal = r.getDouble();
+        ctx.partsServed = r.getInt();
+        ctx.partsServedLate = r.getInt();
+        int planningCalls = r.getInt();
+        ctx.planningNanos = new ArrayList<>(planningCalls);
+        for (int i = 0; i < planningCalls; i++) ctx.planningNanos.add(r.getLong());
+
+        int depotCount = r.getInt();
+        List<Depot> depots = new ArrayList<>(depotCount);
+        for (int i = 0; i < depotCount; i++) {
+            Depot d = new Depot(getString(r), r.getInt(), r.getInt(), r.getDouble());
+            d.capacidadActualM3 = r.getDouble();
+            depots.add(d);
+        }
+
+        int truckCount = r.getInt();
+        TruckType[] types = TruckType.values();
+        List<Truck> fleet = new ArrayList<>(truckCount);
+        for (int i = 0; i < truckCount; i++) {
+            fleet.add(new Truck(getString(r), types[r.get()], depots.get(r.getInt())));
+        }
+
+        int partCount = r.getInt();
+        List<CustomerPart> parts = new ArrayList<>(partCount);
+        for (int i = 0; i < partCount; i++) {
+            CustomerPart cp = new CustomerPart(r.getInt(), r.getInt(), r.getInt(), r.getInt(), r.getDouble(), r.getInt(), r.getInt(), 0);
+            cp.served = r.get() != 0;
+            cp.originalClientId = r.getInt();
+            parts.add(cp);
+        }
+        int activeCount = r.getInt();
+        List<CustomerPart> active = new ArrayList<>(activeCount);
+        for (int i = 0; i < activeCount; i++) active.add(parts.get(r.getInt()));
+
+        // Los camiones se leen a registros; el fleetStore se arma al final, cuando el registro de partes ya existe
+        TruckState.Status[] statuses = TruckState.Status.values();
+        List<TruckRecord> records = new ArrayList<>(truckCount);
+        for (Truck t : fleet) {
+            TruckRecord rec = new TruckRecord();
+            rec.status = statuses[r.get()];
+            rec.location = getLocation(r, depots, parts);
+            rec.load = r.getDouble();
+            rec.fuel = r.getDouble();
+            rec.timeAvailable = r.getInt();
+            int planSize = r.getInt();
+            for (int i = 0; i < planSize; i++) rec.plan.add(getLocation(r, depots, parts));
+            rec.destination = getLocation(r, depots, parts);
+            rec.eta = r.getInt();
+            if (r.get() != 0) {
+                int departure = r.getInt(), arrival = r.getInt(), distance = r.getInt();
+                double fuel = r.getDouble();
+                int[] cells = new int[r.getInt()];
+                for (int i = 0; i < cells.length; i++) cells[i] = r.getInt();
+                rec.leg = new TruckLeg(rec.destination, departure, arrival, distance, fuel, cells, ctx.gridHeight);
+            }
+            int routeCount = r.getInt();
+            for (int i = 0; i < routeCount; i++) {
+                PlannedRoute route = new PlannedRoute(fleet.get(r.getInt()), depots.get(r.getInt()));
+                route.endDepot = depots.get(r.getInt());
+                int sequenceSize = r.getInt();
+                for (int k = 0; k < sequenceSize; k++) route.sequence.add(parts.get(r.getInt()));
+                route.cost = r.getDouble();
+                route.feasible = r.get() != 0;
+                route.estimatedFuel = r.getDouble();
+                route.routeTimeSlackMinutes = r.getInt();
+                route.startTime = r.getInt();
+                rec.routes.add(route);
+            }
+            records.add(rec);
+        }
+
+        int bloqueoCount = r.getInt();
+        List<Bloqueo> bloqueos = new ArrayList<>(bloqueoCount);
+        for (int i = 0; i < bloqueoCount; i++) {
+            int inicio = r.getInt(), fin = r.getInt(), pointCount = r.getInt();
+            List<int[]> puntos = new ArrayList<>(pointCount);
+            for (int k = 0; k < pointCount; k++) puntos.add(new int[]{r.getShort(), r.getShort()});
+            bloqueos.add(new Bloqueo(inicio, fin, puntos));
+        }
+        int blockageMinute = r.getInt();
+
+        OrderReleaseQueue queue;
+        if (r.get() == ORDERS_STREAMING) {
+            String source = getString(r);
+            int taken = r.getInt(), released = r.getInt();
+            queue = OrderReleaseQueue.streaming(source, ctx.log.stream(SimLog.Level.INFO, SimLog.Subsystem.IO),
+                    ctx.log.stream(SimLog.Level.WARN, SimLog.Subsystem.IO));
+            queue.fastForward(taken, released);
+        } else {
+            int released = r.getInt();
+            int remainingCount = r.getInt();
+            List<Pedido> remaining = new ArrayList<>(remainingCount);
+            for (int i = 0; i < remainingCount; i++) {
+                int idPedido = r.getInt(), idCliente = r.getInt(), x = r.getInt(), y = r.getInt();
+                Pedido p = new Pedido(x, y, r.getDouble(), r.getInt(), r.getInt(), idCliente);
+                p.idPedido = idPedido;
+                remaining.add(p);
+            }
+            queue = new OrderReleaseQueue(remaining);
+            queue.setErr(ctx.log.stream(SimLog.Level.WARN, SimLog.Subsystem.IO));
+            queue.fastForward(0, released);
+        }
+
+        // Reemplazar el estado del contexto; los bloqueos vigentes se reconstruyen con el calendario
+        ctx.currentSimTime = currentSimTime;
+        ctx.nextPartId = nextPartId;
+        ctx.depots = depots;
+        ctx.customerParts = rebuildRegistry(parts, active, fleet, records, currentSimTime);
+        ctx.fleet = new ArrayList<>(truckCount);
+        ctx.fleetStore = new FleetStore(ctx);
+        ctx.truckStates = new HashMap<>();
+        for (int i = 0; i < truckCount; i++) records.get(i).applyTo(ctx.addTruck(fleet.get(i)));
+        ctx.pendingPedidos = queue;
+        ctx.definedBloqueos = bloqueos;
+        ctx.blockedNodes = new boolean[ctx.gridWidth][ctx.gridHeight];
+        ctx.distanceOracle = new DistanceOracle(ctx);
+        ctx.blockageCalendar = new BlockageCalendar(ctx, bloqueos);
+        ctx.blockageCalendar.addListener(ctx.distanceOracle);
+        if (blockageMinute != Integer.MIN_VALUE) ctx.blockageCalendar.advanceTo(blockageMinute);
+        ctx.log.info(SimLog.Subsystem.SIM, "Checkpoint restaurado desde " + file + ": t=" + currentSimTime + ", " + active.size() + " partes activas.");
+    }
+
+    private static CustomerPartRegistry rebuildRegistry(List<CustomerPart> parts, List<CustomerPart> active, List<Truck> fleet,
+                                                        List<TruckRecord> records, int currentSimTime) {
+        CustomerPartRegistry registry = new CustomerPartRegistry();
+        for (CustomerPart cp : parts) if (cp.served) registry.addServed(cp);
+        for (CustomerPart cp : active) registry.add(cp);
+        for (int i = 0; i < fleet.size(); i++) {
+            TruckRecord rec = records.get(i);
+            boolean dispatched = rec.status != TruckState.Status.IDLE && rec.status != TruckState.Status.INACTIVE;
+            for (Location step : rec.plan) {
+                if (step instanceof CustomerPart) registry.assign((CustomerPart) step, fleet.get(i).id, dispatched);
+            }
+        }
+        registry.expireUpTo(currentSimTime - 1);
+        return registry;
+    }
+
+    // Estado de un camión leído del archivo, antes de volcarlo al fleetStore
+    private static class TruckRecord {
+        TruckState.Status status;
+        Location location;
+        double load;
+        double fuel;
+        int timeAvailable;
+        List<Location> plan = new ArrayList<>();
+        Location destination;
+        int eta;
+        TruckLeg leg;
+        List<PlannedRoute> routes = new ArrayList<>();
+
+        void applyTo(TruckState ts) {
+            ts.setCurrentLocation(location);
+            ts.setCurrentLoadM3(load);
+            ts.setCurrentFuelGal(fuel);
+            ts.currentRoutePlan.addAll(plan);
+            ts.setDestination(destination);
+            ts.setArrivalTimeAtDestination(eta);
+            ts.setCurrentLeg(leg);
+            ts.routes.addAll(routes);
+            ts.setStatus(status);
+            ts.setTimeAvailable(timeAvailable);
+        }
+    }
+
+    private static void addPart(CustomerPart cp, List<CustomerPart> parts, Map<Integer, Integer> partIndex) {
+        if (partIndex.containsKey(cp.partId)) return;
+        partIndex.put(cp.partId, parts.size());
+        parts.add(cp);
+    }
+
+    private static void putLocation(Writer w, Location loc, Map<String, Integer> depotIndex, Map<Integer, Integer> partIndex) {
+        if (loc == null) {
+            w.putByte(LOC_NULL);
+        } else if (loc instanceof Depot) {
+            w.putByte(LOC_DEPOT);
+            w.putInt(depotIndex.get(((Depot) loc).id));
+        } else if (loc instanceof CustomerPart) {
+            w.putByte(LOC_PART);
+            w.putInt(partIndex.get(((CustomerPart) loc).partId));
+        } else {
+            w.putByte(LOC_POINT);
+            w.putInt(loc.x);
+            w.putInt(loc.y);
+        }
+    }
+
+    private static Location getLocation(ByteBuffer r, List<Depot> depots, List<CustomerPart> parts) throws IOException {
+        byte tag = r.get();
+        switch (tag) {
+            case LOC_NULL: return null;
+            case LOC_DEPOT: return depots.get(r.getInt());
+            case LOC_PART: return parts.get(r.getInt());
+            case LOC_POINT: return new Location(r.getInt(), r.getInt());
+            default: throw new IOException("Checkpoint corrupto: ubicación con etiqueta " + tag);
+        }
+    }
+
+    private static String getString(ByteBuffer r) {
+        byte[] bytes = new byte[r.getShort() & 0xFFFF];
+        r.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ByteBuffer que crece al doble cuando se llena
+    private static class Writer {
+        private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() >= bytes) return;
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+
+        void putByte(byte v) { ensure(1); buffer.put(v); }
+        void putShort(short v) { ensure(2); buffer.putShort(v); }
+        void putInt(int v) { ensure(4); buffer.putInt(v); }
+        void putLong(long v) { ensure(8); buffer.putLong(v); }
+        void putDouble(double v) { ensure(8); buffer.putDouble(v); }
+
+        void putString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            ensure(2 + bytes.length);
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+
+        ByteBuffer finish() {
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
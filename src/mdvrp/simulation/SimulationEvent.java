@@ -0,0 +1,49 @@
+package mdvrp.simulation;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Evento con marca de tiempo para el motor de eventos discretos del Simulator.
+// Varios eventos en el mismo minuto se procesan juntos como un único minuto de simulación.
+public class SimulationEvent implements Comparable<SimulationEvent> {
+
+    public enum Type {
+        CLOCK,              // Inicio de la corrida y reporte horario
+        ORDER_ARRIVAL,      // Llega un pedido (momentoPedido)
+        BLOCKAGE_START,     // Se activa un bloqueo
+        BLOCKAGE_END,       // Se libera un bloqueo
+        DEPOT_REFILL,       // Medianoche: reabastecimiento de depósitos intermedios
+        TRUCK_TRANSITION,   // Próximo vencimiento en el FleetStore (llegada, fin de descarga, de recarga o de PRE_TRIP)
+        REPLAN_DUE,         // Se cierra el lote de llegadas del ReplanBatcher
+        PLAN_DUE            // Retraso máximo de una planificación asíncrona: hay que aplicar su plan
+    }
+
+    private static final AtomicLong sequenceCounter = new AtomicLong();
+
+    public final int time;
+    public final Type type;
+    public final String truckId;   // Solo para TRUCK_TRANSITION
+    private final long sequence;   // Desempate estable entre eventos del mismo minuto y tipo
+
+    public SimulationEvent(int time, Type type) {
+        this(time, type, null);
+    }
+
+    public SimulationEvent(int time, Type type, String truckId) {
+        this.time = time;
+        this.type = type;
+        this.truckId = truckId;
+        this.sequence = sequenceCounter.getAndIncrement();
+    }
+
+    @Override
+    public int compareTo(SimulationEvent other) {
+        if (time != other.time) return Integer.compare(time, other.time);
+        if (type != other.type) return type.compareTo(other.type);
+        return Long.compare(sequence, other.sequence);
+    }
+
+    @Override
+    public String toString() {
+        return type + "@" + SimulationUtils.formatTime(time) + (truckId != null ? "[" + truckId + "]" : "");
+    }
+}
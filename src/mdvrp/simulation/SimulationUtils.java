@@ -4,11 +4,11 @@ import mdvrp.model.CustomerPart;
 import mdvrp.model.Depot;
 import mdvrp.model.Location;
 import mdvrp.model.Truck;
-import mdvrp.state.GlobalState;
+import mdvrp.state.SimulationContext;
 
-import java.awt.*;
 import java.util.*;
 import java.util.List;
+import java.util.function.ToDoubleFunction;
 
 import static mdvrp.state.GlobalState.*;
 
@@ -36,21 +36,34 @@ public class SimulationUtils {
         return (double)d*pt/180.0;
     }
 
-    public static int distanciaReal(Location f, Location t) {
-        if(f==null || t==null) return Integer.MAX_VALUE;
-        if(f.x<0||f.x>=GRID_WIDTH||f.y<0||f.y>=GRID_HEIGHT) return Integer.MAX_VALUE;
-        if(t.x<0||t.x>=GRID_WIDTH||t.y<0||t.y>=GRID_HEIGHT) return Integer.MAX_VALUE;
-        Queue<int[]> q=new LinkedList<>(); Map<Point,Integer> ds=new HashMap<>(); Set<Point> v=new HashSet<>();
-        Point s=f.toPoint(), e=t.toPoint(); if(s.equals(e)) return 0;
-        q.add(new int[]{f.x,f.y}); ds.put(s,0); v.add(s); int[][] DIRS={{0,1},{0,-1},{1,0},{-1,0}};
-        while(!q.isEmpty()){ int[] c=q.poll(); Point p=new Point(c[0],c[1]); int d=ds.get(p);
-            for(int[] dir:DIRS){ int nx=c[0]+dir[0],ny=c[1]+dir[1]; Point n=new Point(nx,ny);
-                if(n.equals(e)) return d+1;
-                if(nx>=0&&nx<GRID_WIDTH&&ny>=0&&ny<GRID_HEIGHT&&!v.contains(n)&&!blockedNodes[nx][ny]){
-                    v.add(n); ds.put(n,d+1); q.add(new int[]{nx,ny});}
+    // Distancia BFS con bloqueos; la resuelve la caché de distancias del contexto
+    public static int distanciaReal(SimulationContext ctx, Location f, Location t) {
+        return ctx.distanceOracle.distance(f, t);
+    }
+
+    // Distancias BFS desde 'source' a todas las celdas del grid (Integer.MAX_VALUE si no hay camino).
+    // Da los mismos valores que distanciaReal: una celda bloqueada recibe distancia (puede ser destino) pero no se expande.
+    public static int[][] distanceField(SimulationContext ctx, Location source) {
+        int[][] dist = new int[ctx.gridWidth][ctx.gridHeight];
+        for (int[] column : dist) Arrays.fill(column, Integer.MAX_VALUE);
+        if (source == null || !ctx.inGrid(source.x, source.y)) return dist;
+        int[] queue = new int[ctx.gridWidth * ctx.gridHeight];
+        int head = 0, tail = 0;
+        dist[source.x][source.y] = 0;
+        queue[tail++] = source.x * ctx.gridHeight + source.y;
+        int[][] DIRS={{0,1},{0,-1},{1,0},{-1,0}};
+        while (head < tail) {
+            int cell = queue[head++];
+            int cx = cell / ctx.gridHeight, cy = cell % ctx.gridHeight;
+            int d = dist[cx][cy];
+            for (int[] dir : DIRS) {
+                int nx = cx + dir[0], ny = cy + dir[1];
+                if (!ctx.inGrid(nx, ny) || dist[nx][ny] != Integer.MAX_VALUE) continue;
+                dist[nx][ny] = d + 1;
+                if (!ctx.blockedNodes[nx][ny]) queue[tail++] = nx * ctx.gridHeight + ny;
             }
         }
-        return Integer.MAX_VALUE;
+        return dist;
     }
 
     public static double calculateRequiredLoadForPlan(List<Object> plan) {
@@ -63,21 +76,25 @@ public class SimulationUtils {
         return requiredLoad;
     }
 
-    public static Depot findBestDepotForReload(Location currentLocation, double minRequiredGLP) {
+    public static Depot findBestDepotForReload(SimulationContext ctx, Location currentLocation, double minRequiredGLP) {
+        return findBestDepotForReload(ctx, currentLocation, minRequiredGLP, d -> d.capacidadActualM3);
+    }
+
+    // capacity: GLP disponible de cada depósito según quien pregunta (una transición en paralelo ve su propia vista).
+    // null si ninguno sirve; no escribe nada (se llama desde el bucle interno del planificador)
+    public static Depot findBestDepotForReload(SimulationContext ctx, Location currentLocation, double minRequiredGLP,
+                                               ToDoubleFunction<Depot> capacity) {
         Depot bestDepot = null;
         int minDistance = Integer.MAX_VALUE;
-        for (Depot depot : GlobalState.depots) {
+        for (Depot depot : ctx.depots) {
             if (depot.isMainPlant()) continue;
-            if (depot.capacidadActualM3 < minRequiredGLP - 0.01) continue;
-            int distance = distanciaReal(currentLocation, depot);
+            if (capacity.applyAsDouble(depot) < minRequiredGLP - 0.01) continue;
+            int distance = distanciaReal(ctx, currentLocation, depot);
             if (distance != Integer.MAX_VALUE && distance < minDistance) {
                 minDistance = distance;
                 bestDepot = depot;
             }
         }
-        if(bestDepot == null){
-            System.out.println("    WARN (findBestDepotForReload): No se encontró depósito intermedio adecuado desde " + currentLocation + " necesitando " + minRequiredGLP + " m3.");
-        }
         return bestDepot;
     }
 
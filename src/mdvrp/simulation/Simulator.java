@@ -2,426 +2,819 @@ package mdvrp.simulation;
 import mdvrp.model.*;
 import mdvrp.planner.PlannedRoute;
 import mdvrp.planner.PlanningSolution;
+import mdvrp.planner.RoutePlanner;
 import mdvrp.planner.TabuSearchPlanner;
 import mdvrp.state.GlobalState;
+import mdvrp.state.SimulationContext;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
-import static mdvrp.planner.TabuSearchPlanner.planRoutes;
+import static mdvrp.simulation.SimLog.Subsystem.*;
 import static mdvrp.simulation.SimulationUtils.*;
 import static mdvrp.state.GlobalState.*;
 
 public class Simulator {
 
-    private TabuSearchPlanner planner;
+    private final SimulationContext ctx;
+    private RoutePlanner planner;
+    private BackgroundRouteOptimizer backgroundOptimizer = null;
+    private long planVersion = 0; // Cambia cada vez que se asignan planes; invalida copias del optimizador en segundo plano
+    private boolean eventDriven = true; // false: bucle minuto a minuto (referencia para verificar equivalencia)
+    private int checkpointEveryMinutes = 0; // 0: sin checkpoints periódicos
+    private Path checkpointDir = null;
+    private ReplanBatcher replanBatcher = null; // null: se replanifica en cada minuto con llegadas
+    private AsyncPlanningRunner asyncPlanner = null; // null: la simulación espera a cada planificación
+    private final CellOccupancyIndex occupancy; // Celda -> camiones que la cruzan; dirige los desvíos por bloqueos
+    private ParallelTransitions parallelTransitions = null; // null: las transiciones de camión se calculan en serie
+    private Path metricsFile = null; // Si no es null, las métricas del contexto se vuelcan ahí en JSON al terminar
+    private final LatencyHistogram minuteNanos; // null en un contexto bifurcado: sus minutos no son de la corrida
+    private volatile long runStartNanos = 0, runEndNanos = 0;
+    private volatile int runStartMinute = 0;
 
-    public Simulator(TabuSearchPlanner planner) {
+    public Simulator(SimulationContext ctx, RoutePlanner planner) {
+        this.ctx = ctx;
         this.planner = planner;
+        this.occupancy = new CellOccupancyIndex(ctx);
+        this.minuteNanos = ctx.metrics.isFork() ? null : ctx.metrics.histogram("sim.minute");
     }
-    public Simulator() {
-        this.planner = new TabuSearchPlanner();
+    public Simulator(SimulationContext ctx) {
+        this(ctx, new TabuSearchPlanner());
     }
 
     public void runSimulation(int durationMinutes, boolean enableReplanning) {
-        System.out.println("--- Iniciando Simulación por " + durationMinutes + " minutos ---");
-        while (currentSimTime <= durationMinutes) {
-            boolean newOrderActivated = activateNewPedidos(currentSimTime);
-            boolean blockadeChanged = updateBlockages(currentSimTime);
-            refillIntermediateDepotsIfNeeded(currentSimTime);
-
-            // Actualizar estado de los camiones (útil luego para averías y mantenimientos)
-            updateTrucks(currentSimTime);
-
-            // Replanificación
-            if (enableReplanning && (newOrderActivated /*|| truckBecameInactive */ )) {
-                List<CustomerPart> unservedParts = getUnservedCustomerParts();
-                if (!unservedParts.isEmpty()) {
-                    System.out.println("\n=== REPLANIFICANDO RUTAS en t=" + currentSimTime + " para " + unservedParts.size() + " partes ===");
-                    // La replanificación debería considerar el estado ACTUAL de los camiones
-                    PlanningSolution replannedSolution = planRoutes(unservedParts, currentSimTime); // Pasar tiempo actual
-                    if (replannedSolution != null) {
-                        System.out.println("  (Replanificación completada, costo: " + formatCost(replannedSolution.totalCost) + ", Sin asignar: " + replannedSolution.unassignedParts.size() + ")");
-                        // APLICAR la nueva planificación a los camiones IDLE o que puedan ser redirigidos
-                        applyPlannedRoutes(replannedSolution, currentSimTime);
-                    } else {
-                        System.err.println("  (Replanificación falló o no fue necesaria)");
-                    }
+        ctx.log.info(SIM, "--- Iniciando Simulación por " + durationMinutes + " minutos ---");
+        registerRunMetrics();
+        if (eventDriven) {
+            runEventLoop(durationMinutes, enableReplanning);
+        } else {
+            while (ctx.currentSimTime <= durationMinutes) {
+                processMinute(ctx.currentSimTime, enableReplanning);
+                writeCheckpointIfDue(ctx.currentSimTime);
+                ctx.currentSimTime++;
+            }
+        }
+        if (replanBatcher != null) {
+            ctx.log.info(SIM, replanBatcher.summary());
+        }
+        if (asyncPlanner != null) {
+            asyncPlanner.shutdown();
+            ctx.log.info(SIM, asyncPlanner.summary());
+        }
+        occupancy.detach();
+        ctx.log.info(SIM, occupancy.summary());
+        if (parallelTransitions != null) {
+            parallelTransitions.shutdown();
+            ctx.log.info(SIM, parallelTransitions.summary());
+        }
+        if (backgroundOptimizer != null) {
+            backgroundOptimizer.shutdown();
+            ctx.log.info(SIM, "Optimizador en segundo plano: " + backgroundOptimizer.improvementsPublished.get() + " mejoras publicadas, " +
+                    backgroundOptimizer.improvementsApplied + " aplicadas, " + backgroundOptimizer.improvementsDiscarded + " descartadas.");
+        }
+        ctx.log.info(SIM, "\n✅ Simulación finalizada en minuto " + (ctx.currentSimTime - 1));
+        runEndNanos = System.nanoTime();
+        if (metricsFile != null) {
+            try {
+                ctx.metrics.writeJson(metricsFile);
+                ctx.log.info(SIM, "Métricas escritas en " + metricsFile);
+            } catch (IOException e) {
+                ctx.log.error(SIM, "ERROR: No se pudo escribir las métricas en " + metricsFile + ": " + e.getMessage());
+            }
+        }
+        if (ctx.log.getAsyncWriter() != null) ctx.log.info(SIM, ctx.log.getAsyncWriter().summary());
+        ctx.log.flush();
+    }
+
+    // Motor de eventos discretos: salta directamente al siguiente minuto en que algo puede cambiar y
+    // lo procesa igual que el bucle minuto a minuto (los minutos omitidos no tendrían efecto alguno).
+    // El optimizador en segundo plano solo aplica sus mejoras en minutos con eventos.
+    private void runEventLoop(int durationMinutes, boolean enableReplanning) {
+        PriorityQueue<SimulationEvent> events = new PriorityQueue<>();
+        int scheduledTruckWake = Integer.MAX_VALUE;
+        int scheduledReplan = Integer.MAX_VALUE;
+        int scheduledPlanDeadline = Integer.MAX_VALUE;
+        seedEvents(events, ctx.currentSimTime, durationMinutes);
+
+        while (!events.isEmpty() && events.peek().time <= durationMinutes) {
+            int minute = events.peek().time;
+            boolean due = false, orderDue = false, blockageDue = false;
+            while (!events.isEmpty() && events.peek().time == minute) {
+                SimulationEvent event = events.poll();
+                switch (event.type) {
+                    case TRUCK_TRANSITION:
+                        // Un solo evento para toda la flota (el próximo vencimiento del fleetStore); los reprogramados se ignoran
+                        if (minute == scheduledTruckWake) {
+                            scheduledTruckWake = Integer.MAX_VALUE;
+                            due = true;
+                        }
+                        break;
+                    case CLOCK:
+                        if (minute % 60 == 0 && minute + 60 <= durationMinutes) {
+                            events.add(new SimulationEvent(minute + 60, SimulationEvent.Type.CLOCK));
+                        }
+                        due = true;
+                        break;
+                    case BLOCKAGE_START:
+                    case BLOCKAGE_END:
+                        blockageDue = true;
+                        due = true;
+                        break;
+                    case ORDER_ARRIVAL:
+                        orderDue = true;
+                        due = true;
+                        break;
+                    case REPLAN_DUE:
+                        // Igual que los camiones: solo cuenta el último cierre programado
+                        if (minute == scheduledReplan) {
+                            scheduledReplan = Integer.MAX_VALUE;
+                            due = true;
+                        }
+                        break;
+                    case PLAN_DUE:
+                        if (minute == scheduledPlanDeadline) {
+                            scheduledPlanDeadline = Integer.MAX_VALUE;
+                            due = true;
+                        }
+                        break;
+                    case DEPOT_REFILL:
+                        if (minute + 24 * 60 <= durationMinutes) {
+                            events.add(new SimulationEvent(minute + 24 * 60, SimulationEvent.Type.DEPOT_REFILL));
+                        }
+                        due = true;
+                        break;
+                    default:
+                        due = true;
                 }
             }
+            if (!due) continue;
 
-            if (currentSimTime > 0 && currentSimTime % 60 == 0) {
-                System.out.println("--- Tiempo: " + formatTime(currentSimTime) + " --- (" + activeCustomerParts.size() + " partes activas)");
+            ctx.currentSimTime = minute;
+            processMinute(minute, enableReplanning);
+            writeCheckpointIfDue(minute);
+            int truckWake = ctx.fleetStore.nextWakeTime();
+            if (truckWake != Integer.MAX_VALUE) truckWake = Math.max(truckWake, minute + 1);
+            if (truckWake != scheduledTruckWake && truckWake <= durationMinutes) {
+                events.add(new SimulationEvent(truckWake, SimulationEvent.Type.TRUCK_TRANSITION));
+            }
+            scheduledTruckWake = truckWake;
+            if (replanBatcher != null) {
+                int next = replanBatcher.nextDecisionTime(minute);
+                if (next != scheduledReplan && next <= durationMinutes) {
+                    events.add(new SimulationEvent(next, SimulationEvent.Type.REPLAN_DUE));
+                }
+                scheduledReplan = next;
+            }
+            if (asyncPlanner != null) {
+                int deadline = asyncPlanner.applyDeadline();
+                if (deadline != scheduledPlanDeadline && deadline <= durationMinutes) {
+                    events.add(new SimulationEvent(Math.max(deadline, minute + 1), SimulationEvent.Type.PLAN_DUE));
+                }
+                scheduledPlanDeadline = deadline;
             }
+            if (orderDue) scheduleNextOrder(events, durationMinutes);
+            if (blockageDue) scheduleNextBlockage(events, durationMinutes);
+        }
+        ctx.currentSimTime = durationMinutes + 1;
+    }
 
-            currentSimTime++;
+    // Escribe un checkpoint cada N horas simuladas en checkpointDir/checkpoint-<minuto siguiente>.bin.
+    // Para partir de uno: SimulationCheckpoint.restore(ctx, archivo) y runSimulation sobre ese contexto.
+    public void enableCheckpoints(int everyHours, Path dir) throws IOException {
+        Files.createDirectories(dir);
+        this.checkpointEveryMinutes = everyHours * 60;
+        this.checkpointDir = dir;
+    }
+
+    private void writeCheckpointIfDue(int minute) {
+        if (checkpointEveryMinutes <= 0 || minute <= 0 || minute % checkpointEveryMinutes != 0) return;
+        Path file = checkpointDir.resolve("checkpoint-" + (minute + 1) + ".bin");
+        try {
+            long start = System.nanoTime();
+            SimulationCheckpoint.write(ctx, minute + 1, file);
+            ctx.log.info(SIM, "💾 Checkpoint t=" + (minute + 1) + " escrito en " + file + " (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
+        } catch (IOException e) {
+            ctx.log.error(SIM, "ERROR: No se pudo escribir el checkpoint " + file + ": " + e.getMessage());
         }
-        System.out.println("\n✅ Simulación finalizada en minuto " + (currentSimTime - 1));
     }
 
-    public void updateTrucks(int minute) {
-        for (TruckState ts : truckStates.values()) {
-            if (ts.status == TruckState.Status.INACTIVE || minute < ts.timeAvailable) {
-                continue;
+    // Eventos derivados del estado actual, de modo que la corrida puede comenzar en cualquier minuto
+    private void seedEvents(PriorityQueue<SimulationEvent> events, int startMinute, int durationMinutes) {
+        // El primer minuto se procesa siempre, como en el bucle por ticks (recoge bloqueos ya vigentes y planes pendientes)
+        events.add(new SimulationEvent(startMinute, SimulationEvent.Type.CLOCK));
+        int firstHour = (startMinute / 60 + 1) * 60;
+        if (startMinute % 60 != 0 && firstHour <= durationMinutes) {
+            events.add(new SimulationEvent(firstHour, SimulationEvent.Type.CLOCK));
+        }
+        int firstMidnight = Math.max(24 * 60, (startMinute + 24 * 60 - 1) / (24 * 60) * (24 * 60));
+        if (firstMidnight <= durationMinutes) {
+            events.add(new SimulationEvent(firstMidnight, SimulationEvent.Type.DEPOT_REFILL));
+        }
+        // Un solo evento de pedido a la vez: el siguiente se programa desde la cola de liberación
+        scheduleNextOrder(events, durationMinutes);
+        scheduleNextBlockage(events, durationMinutes);
+    }
+
+    private void scheduleNextOrder(PriorityQueue<SimulationEvent> events, int durationMinutes) {
+        int next = ctx.pendingPedidos.peekTime();
+        if (next <= durationMinutes) {
+            events.add(new SimulationEvent(Math.max(next, ctx.currentSimTime), SimulationEvent.Type.ORDER_ARRIVAL));
+        }
+    }
+
+    // Igual que los pedidos: un evento para el siguiente borde del calendario de bloqueos
+    private void scheduleNextBlockage(PriorityQueue<SimulationEvent> events, int durationMinutes) {
+        int next = ctx.blockageCalendar.nextEventTime();
+        if (next <= durationMinutes) {
+            SimulationEvent.Type type = ctx.blockageCalendar.nextEventIsStart() ? SimulationEvent.Type.BLOCKAGE_START : SimulationEvent.Type.BLOCKAGE_END;
+            events.add(new SimulationEvent(Math.max(next, ctx.currentSimTime), type));
+        }
+    }
+
+    // Un minuto de simulación: pedidos, bloqueos, depósitos, camiones y replanificación
+    private void processMinute(int minute, boolean enableReplanning) {
+        long minuteStart = System.nanoTime();
+        int partsBefore = ctx.nextPartId;
+        if (occupancy.attach(ctx.blockageCalendar)) {
+            // Índice nuevo: todos los camiones, y se descartan los cambios ya registrados
+            ctx.fleetStore.drainChanged(ts -> { });
+            for (TruckState ts : ctx.fleetStore.all()) occupancy.sync(ts);
+        }
+        boolean newOrderActivated = activateNewPedidos(minute);
+        ctx.customerParts.expireUpTo(minute);
+        boolean blockadeChanged = updateBlockages(minute);
+        boolean partsReleased = blockadeChanged && handleNewBlockages(minute);
+        refillIntermediateDepotsIfNeeded(minute);
+
+        // Punto seguro: aplicar mejoras del optimizador en segundo plano antes de que los camiones avancen
+        if (backgroundOptimizer != null) {
+            applyBackgroundImprovement(minute);
+        }
+
+        // Actualizar estado de los camiones (útil luego para averías y mantenimientos)
+        updateTrucks(minute);
+
+        // Replanificación (con lotes, el ReplanBatcher decide cuándo se cierra el grupo de llegadas)
+        boolean replanDue = newOrderActivated;
+        List<CustomerPart> unservedParts = null;
+        if (enableReplanning && replanBatcher != null) {
+            replanBatcher.onArrivals(minute, ctx.nextPartId - partsBefore);
+            replanDue = false;
+            if (replanBatcher.hasPending()) {
+                unservedParts = getUnservedCustomerParts();
+                replanDue = replanBatcher.shouldReplan(minute, unservedParts);
             }
+        }
+        // Partes que un bloqueo dejó sin camino vuelven a planificarse sin esperar al lote
+        if (enableReplanning && (replanDue || partsReleased /*|| truckBecameInactive */ )) {
+            if (unservedParts == null) unservedParts = getUnservedCustomerParts();
+            if (unservedParts.isEmpty() && replanBatcher != null) replanBatcher.onReplan(minute, 0, 0);
+            if (!unservedParts.isEmpty() && asyncPlanner != null) {
+                int backlog = unservedParts.size();
+                ctx.log.debug(PLANNER, () -> "\n=== REPLANIFICACIÓN ASÍNCRONA enviada en t=" + minute + " para " + backlog + " partes ===");
+                if (replanBatcher != null) replanBatcher.closeBatch(minute);
+                asyncPlanner.submit(ctx, planner, unservedParts, minute);
+            } else if (!unservedParts.isEmpty()) {
+                int backlog = unservedParts.size();
+                ctx.log.debug(PLANNER, () -> "\n=== REPLANIFICANDO RUTAS en t=" + minute + " para " + backlog + " partes ===");
+                // La replanificación debería considerar el estado ACTUAL de los camiones
+                JfrEvents.Replan replanEvent = new JfrEvents.Replan();
+                replanEvent.begin();
+                long planStart = System.nanoTime();
+                PlanningSolution replannedSolution = planner.plan(ctx, unservedParts, minute); // Pasar tiempo actual
+                long planNanos = System.nanoTime() - planStart;
+                if (replanEvent.shouldCommit()) {
+                    replanEvent.minute = minute;
+                    replanEvent.parts = unservedParts.size();
+                    replanEvent.planner = planner.getName();
+                    replanEvent.cost = replannedSolution == null ? Double.NaN : replannedSolution.totalCost;
+                    replanEvent.unassigned = replannedSolution == null ? unservedParts.size() : replannedSolution.unassignedParts.size();
+                    replanEvent.commit();
+                }
+                ctx.planningNanos.add(planNanos);
+                recordReplan(planNanos);
+                if (replanBatcher != null) replanBatcher.onReplan(minute, unservedParts.size(), planNanos);
+                if (replannedSolution != null) {
+                    ctx.log.debug(PLANNER, () -> "  (Replanificación completada, costo: " + formatCost(replannedSolution.totalCost) + ", Sin asignar: " + replannedSolution.unassignedParts.size() + ")");
+                    // APLICAR la nueva planificación a los camiones IDLE o que puedan ser redirigidos
+                    applyPlannedRoutes(replannedSolution, minute);
+                    submitBackgroundSnapshot(minute);
+                } else {
+                    ctx.log.warn(PLANNER, "  (Replanificación falló o no fue necesaria)");
+                }
+            }
+        }
 
-            // Procesar estado actual y transicionar
-            switch (ts.status) {
-                case IDLE:
-                    if (!ts.currentRoutePlan.isEmpty()) {
-                        System.out.println("Truck " + ts.truck.id + " iniciando PRE_TRIP en t=" + minute);
-                        ts.status = TruckState.Status.PRE_TRIP;
-                        ts.timeAvailable = minute + PRE_TRIP_CHECK_MINUTES;
-                        ts.currentLoadM3 = calculateRequiredLoadForPlan(ts.currentRoutePlan);
-                        if (ts.currentLoadM3 > ts.truck.type.capacidadM3) {
-                            System.err.println("ERROR: Plan asigna carga > capacidad a " + ts.truck.id);
-                            ts.currentRoutePlan.clear();
-                            ts.status = TruckState.Status.IDLE;
-                            ts.timeAvailable = minute;
-                        } else {
-                            System.out.println("  Truck " + ts.truck.id + " cargado con " + ts.currentLoadM3 + " m3.");
-                        }
-                        // Recarga de combustible en Home Depot
-                        if(ts.currentLocation.equals(ts.truck.homeDepot)) {
-                            if (ts.currentFuelGal < MAX_FUEL_GAL) {
-                                // System.out.println("  Truck " + ts.truck.id + " recargando combustible.");
-                                ts.currentFuelGal = MAX_FUEL_GAL;
-                            }
+        if (asyncPlanner != null) {
+            applyAsyncPlan(minute);
+        }
+        syncOccupancy();
+
+        if (minute > 0 && minute % 60 == 0) {
+            ctx.log.info(SIM, "--- Tiempo: " + formatTime(minute) + " --- (" + ctx.customerParts.activeCount() + " partes activas)");
+        }
+        if (minuteNanos != null) minuteNanos.record(System.nanoTime() - minuteStart);
+    }
+
+    // Solo los camiones que vencen en 'minute' según el fleetStore, en orden de flota. Con muchos camiones a la vez
+    // y transiciones en paralelo activadas, se calculan en hilos y se fusionan en el mismo orden (ParallelTransitions).
+    public void updateTrucks(int minute) {
+        List<TruckState> due = ctx.fleetStore.dueTrucks(minute);
+        if (parallelTransitions != null && parallelTransitions.worthIt(due.size())) {
+            parallelTransitions.run(ctx, due, minute, this::transition);
+            return;
+        }
+        TransitionEffects fx = TransitionEffects.direct(ctx);   // Escribe en el momento: una sola para todo el minuto
+        for (TruckState ts : due) {
+            ctx.fleetStore.reschedule(ts);   // Si el minuto no lo cambia, vuelve a vencer en el siguiente, como en el barrido completo
+            transition(ts, minute, fx);
+        }
+    }
+
+    // Transición de un camión en 'minute'. Escribe solo el estado del camión; lo compartido (registro de partes,
+    // indicadores, GLP de los depósitos y salida) pasa por 'fx'
+    private void transition(TruckState ts, int minute, TransitionEffects fx) {
+        if (ts.getStatus() == TruckState.Status.INACTIVE || minute < ts.getTimeAvailable()) {
+            return;
+        }
+
+        // Procesar estado actual y transicionar
+        switch (ts.getStatus()) {
+            case IDLE:
+                if (!ts.currentRoutePlan.isEmpty()) {
+                    if (fx.verbose) fx.debug("Truck " + ts.truck.id + " iniciando PRE_TRIP en t=" + minute);
+                    ts.setStatus(TruckState.Status.PRE_TRIP);
+                    ts.setTimeAvailable(minute + PRE_TRIP_CHECK_MINUTES);
+                    for (Object step : ts.currentRoutePlan) {
+                        if (step instanceof CustomerPart) fx.dispatch((CustomerPart) step, ts.truck.id);
+                    }
+                    ts.setCurrentLoadM3(calculateRequiredLoadForPlan(ts.currentRoutePlan));
+                    if (ts.getCurrentLoadM3() > ts.truck.type.capacidadM3) {
+                        fx.error("ERROR: Plan asigna carga > capacidad a " + ts.truck.id);
+                        abandonPlan(ts, fx);
+                        ts.setStatus(TruckState.Status.IDLE);
+                        ts.setTimeAvailable(minute);
+                    } else {
+                        if (fx.verbose) fx.debug("  Truck " + ts.truck.id + " cargado con " + ts.getCurrentLoadM3() + " m3.");
+                    }
+                    // Recarga de combustible en Home Depot
+                    if(ts.getCurrentLocation().equals(ts.truck.homeDepot)) {
+                        if (ts.getCurrentFuelGal() < MAX_FUEL_GAL) {
+                            // ctx.out.println("  Truck " + ts.truck.id + " recargando combustible.");
+                            ts.setCurrentFuelGal(MAX_FUEL_GAL);
                         }
                     }
-                    break;
-
-                case PRE_TRIP:
-                    Object nextDestinationObj = ts.currentRoutePlan.get(0);
-                    if (nextDestinationObj instanceof Location) {
-                        ts.destination = (Location) nextDestinationObj;
-                        int dist = ts.currentLocation.distanceTo(ts.destination);
-                        if (dist == Integer.MAX_VALUE) {
-                            System.err.println("ERROR: Ruta bloqueada desde depot para " + ts.truck.id + ". Abortando.");
-                            ts.status = TruckState.Status.IDLE; ts.currentRoutePlan.clear(); ts.timeAvailable = minute;
+                }
+                break;
+
+            case PRE_TRIP:
+                Object nextDestinationObj = ts.currentRoutePlan.get(0);
+                if (nextDestinationObj instanceof Location) {
+                    ts.setDestination((Location) nextDestinationObj);
+                    TruckLeg leg = TruckLeg.plan(ctx, ts.truck, ts.getCurrentLocation(), ts.getDestination(), minute, ts.getCurrentLoadM3());
+                    if (leg == null) {
+                        fx.error("ERROR: Ruta bloqueada desde depot para " + ts.truck.id + ". Abortando.");
+                        ts.setStatus(TruckState.Status.IDLE); abandonPlan(ts, fx); ts.setTimeAvailable(minute);
+                    } else {
+                        if (leg.fuelGal > ts.getCurrentFuelGal()) {
+                            fx.error("ERROR: Combustible insuficiente para primer tramo para " + ts.truck.id + ". Abortando.");
+                            ts.setStatus(TruckState.Status.IDLE); abandonPlan(ts, fx); ts.setTimeAvailable(minute);
                         } else {
-                            int travelTime = (int) Math.round(dist * MINUTOS_POR_KM);
-                            double fuelNeeded = calculateFuelConsumed(dist, ts.currentLoadM3, ts.truck);
-                            if (fuelNeeded > ts.currentFuelGal) {
-                                System.err.println("ERROR: Combustible insuficiente para primer tramo para " + ts.truck.id + ". Abortando.");
-                                ts.status = TruckState.Status.IDLE; ts.currentRoutePlan.clear(); ts.timeAvailable = minute;
-                            } else {
-                                System.out.println("Truck " + ts.truck.id + " saliendo hacia " + ts.destination + " en t=" + minute);
-                                ts.status = TruckState.Status.EN_ROUTE;
-                                ts.arrivalTimeAtDestination = minute + travelTime;
-                                ts.timeAvailable = ts.arrivalTimeAtDestination;
-                            }
+                            if (fx.verbose) fx.debug("Truck " + ts.truck.id + " saliendo hacia " + ts.getDestination() + " en t=" + minute);
+                            ts.setStatus(TruckState.Status.EN_ROUTE);
+                            ts.setCurrentLeg(leg);
+                            ts.setArrivalTimeAtDestination(leg.arrivalMinute);
+                            ts.setTimeAvailable(ts.getArrivalTimeAtDestination());
                         }
+                    }
+                } else {
+                    fx.error("ERROR: Plan de ruta inválido para " + ts.truck.id);
+                    ts.setStatus(TruckState.Status.IDLE); abandonPlan(ts, fx); ts.setTimeAvailable(minute);
+                }
+                break;
+
+            case EN_ROUTE:
+                if (fx.verbose) fx.debug("Truck " + ts.truck.id + " llegó a " + ts.getDestination() + " en t=" + minute);
+                double fuelConsumed = finishLeg(ts, ts.getCurrentLoadM3(), fx);
+                ts.setCurrentFuelGal(ts.getCurrentFuelGal() - fuelConsumed);
+                fx.fuelConsumed(fuelConsumed);
+                if (ts.getCurrentFuelGal() < 0) fx.warn("ALERTA: Combustible negativo para " + ts.truck.id);
+
+                ts.setCurrentLocation(ts.getDestination());
+
+                if (ts.getDestination() instanceof CustomerPart) {
+                    if (fx.verbose) fx.debug("  Truck " + ts.truck.id + " iniciando descarga...");
+                    ts.setStatus(TruckState.Status.DISCHARGING);
+                    ts.setTimeAvailable(minute + DISCHARGE_TIME_MINUTES);
+                } else if (ts.getDestination() instanceof Depot) {   // Recarga
+                    if (fx.verbose) fx.debug("  Truck " + ts.truck.id + " llegó a Depot " + ((Depot)ts.getDestination()).id);
+                    ts.setCurrentFuelGal(MAX_FUEL_GAL);
+                    if (fx.verbose) fx.debug("  Truck " + ts.truck.id + " combustible recargado en Planta.");
+                    ts.currentRoutePlan.remove(0);
+                    if (ts.currentRoutePlan.isEmpty()) {
+                        if (fx.verbose) fx.debug("  Truck " + ts.truck.id + " completó ruta. IDLE.");
+                        ts.setStatus(TruckState.Status.IDLE);
+                        ts.setTimeAvailable(minute);
                     } else {
-                        System.err.println("ERROR: Plan de ruta inválido para " + ts.truck.id);
-                        ts.status = TruckState.Status.IDLE; ts.currentRoutePlan.clear(); ts.timeAvailable = minute;
+                        if (fx.verbose) fx.debug("  Truck " + ts.truck.id + " iniciando PRE_TRIP para siguiente parte de ruta.");
+                        ts.setStatus(TruckState.Status.PRE_TRIP);
+                        ts.setTimeAvailable(minute + PRE_TRIP_CHECK_MINUTES);
+                        // No se recarga GLP aquí, se asume que cargó todo al inicio
                     }
-                    break;
-
-                case EN_ROUTE:
-                    System.out.println("Truck " + ts.truck.id + " llegó a " + ts.destination + " en t=" + minute);
-                    int distTraveled = ts.currentLocation.distanceTo(ts.destination);
-                    double fuelConsumed = calculateFuelConsumed(distTraveled, ts.currentLoadM3, ts.truck);
-                    ts.currentFuelGal -= fuelConsumed;
-                    if (ts.currentFuelGal < 0) System.err.println("ALERTA: Combustible negativo para " + ts.truck.id);
-
-                    ts.currentLocation = ts.destination;
-
-                    if (ts.destination instanceof CustomerPart) {
-                        System.out.println("  Truck " + ts.truck.id + " iniciando descarga...");
-                        ts.status = TruckState.Status.DISCHARGING;
-                        ts.timeAvailable = minute + DISCHARGE_TIME_MINUTES;
-                    } else if (ts.destination instanceof Depot) {   // Recarga
-                        System.out.println("  Truck " + ts.truck.id + " llegó a Depot " + ((Depot)ts.destination).id);
-                        ts.currentFuelGal = MAX_FUEL_GAL;
-                        System.out.println("  Truck " + ts.truck.id + " combustible recargado en Planta.");
+                }
+                break;
+
+            case DISCHARGING:
+                if (minute >= ts.getTimeAvailable()) {
+                    CustomerPart servedPart = (CustomerPart) ts.getDestination();
+                    if (fx.verbose) fx.debug("Truck " + ts.truck.id + " terminó descarga en CPart " + servedPart.partId + " en t=" + minute);
+                    ts.setCurrentLoadM3(ts.getCurrentLoadM3() - servedPart.demandM3);
+                    if (ts.getCurrentLoadM3() < -0.01) { ts.setCurrentLoadM3(0); }
+                    servedPart.served = true;
+                    fx.served(servedPart, minute > servedPart.deadlineMinutes);
+
+                    // Quitar el cliente recién servido del plan de acción
+                    if (!ts.currentRoutePlan.isEmpty() && ts.currentRoutePlan.get(0).equals(servedPart)) {
                         ts.currentRoutePlan.remove(0);
-                        if (ts.currentRoutePlan.isEmpty()) {
-                            System.out.println("  Truck " + ts.truck.id + " completó ruta. IDLE.");
-                            ts.status = TruckState.Status.IDLE;
-                            ts.timeAvailable = minute;
-                        } else {
-                            System.out.println("  Truck " + ts.truck.id + " iniciando PRE_TRIP para siguiente parte de ruta.");
-                            ts.status = TruckState.Status.PRE_TRIP;
-                            ts.timeAvailable = minute + PRE_TRIP_CHECK_MINUTES;
-                            // No se recarga GLP aquí, se asume que cargó todo al inicio
-                        }
+                    } else {
+                        fx.warn("WARN: CPart " + servedPart.partId + " no era el primer elemento del plan de " + ts.truck.id + " al terminar descarga?");
                     }
-                    break;
-
-                case DISCHARGING:
-                    if (minute >= ts.timeAvailable) {
-                        CustomerPart servedPart = (CustomerPart) ts.destination;
-                        System.out.println("Truck " + ts.truck.id + " terminó descarga en CPart " + servedPart.partId + " en t=" + minute);
-                        ts.currentLoadM3 -= servedPart.demandM3;
-                        if (ts.currentLoadM3 < -0.01) { ts.currentLoadM3 = 0; }
-                        servedPart.served = true;
-                        GlobalState.activeCustomerParts.remove(servedPart);
-
-                        // Quitar el cliente recién servido del plan de acción
-                        if (!ts.currentRoutePlan.isEmpty() && ts.currentRoutePlan.get(0).equals(servedPart)) {
-                            ts.currentRoutePlan.remove(0);
-                        } else {
-                            System.err.println("WARN: CPart " + servedPart.partId + " no era el primer elemento del plan de " + ts.truck.id + " al terminar descarga?");
-                        }
 
 
-                        if (ts.currentRoutePlan.isEmpty()) {
-                            // Última entrega, regresar a casa
-                            System.out.println("  Truck " + ts.truck.id + " última entrega, regresando a " + ts.truck.homeDepot);
-                            ts.destination = ts.truck.homeDepot;
-                            ts.status = TruckState.Status.RETURNING;
-                            int distRet = SimulationUtils.distanciaReal(ts.currentLocation, ts.destination);
-                            if (distRet == Integer.MAX_VALUE) {
-                                System.err.println("ERROR: Ruta bloqueada para retorno de " + ts.truck.id + ". INACTIVE.");
-                                ts.status = TruckState.Status.INACTIVE; ts.timeAvailable = Integer.MAX_VALUE;
+                    if (ts.currentRoutePlan.isEmpty()) {
+                        // Última entrega, regresar a casa
+                        if (fx.verbose) fx.debug("  Truck " + ts.truck.id + " última entrega, regresando a " + ts.truck.homeDepot);
+                        ts.setDestination(ts.truck.homeDepot);
+                        ts.setStatus(TruckState.Status.RETURNING);
+                        // El retorno se cobra vacío, como siempre; la verificación usa la carga que queda
+                        TruckLeg leg = TruckLeg.plan(ctx, ts.truck, ts.getCurrentLocation(), ts.getDestination(), minute, 0.0);
+                        if (leg == null) {
+                            fx.error("ERROR: Ruta bloqueada para retorno de " + ts.truck.id + ". INACTIVE.");
+                            ts.setStatus(TruckState.Status.INACTIVE); ts.setTimeAvailable(Integer.MAX_VALUE);
+                        } else {
+                            double fuelNeededRet = SimulationUtils.calculateFuelConsumed(leg.distance, ts.getCurrentLoadM3(), ts.truck);
+                            if (fuelNeededRet > ts.getCurrentFuelGal()) {
+                                fx.error("ERROR CRITICO: Combustible insuficiente para RETORNO " + ts.truck.id + ". INACTIVE.");
+                                ts.setStatus(TruckState.Status.INACTIVE); ts.setTimeAvailable(Integer.MAX_VALUE);
                             } else {
-                                int travelTimeRet = (int) Math.round(distRet * SimulationUtils.MINUTOS_POR_KM);
-                                double fuelNeededRet = SimulationUtils.calculateFuelConsumed(distRet, ts.currentLoadM3, ts.truck);
-                                if (fuelNeededRet > ts.currentFuelGal) {
-                                    System.err.println("ERROR CRITICO: Combustible insuficiente para RETORNO " + ts.truck.id + ". INACTIVE.");
-                                    ts.status = TruckState.Status.INACTIVE; ts.timeAvailable = Integer.MAX_VALUE;
-                                } else {
-                                    ts.arrivalTimeAtDestination = minute + travelTimeRet;
-                                    ts.timeAvailable = ts.arrivalTimeAtDestination;
-                                }
+                                ts.setCurrentLeg(leg);
+                                ts.setArrivalTimeAtDestination(leg.arrivalMinute);
+                                ts.setTimeAvailable(ts.getArrivalTimeAtDestination());
                             }
-                        } else {
-                            Object nextStep = ts.currentRoutePlan.get(0);
-                            if (nextStep instanceof CustomerPart) {
-                                CustomerPart nextCustomer = (CustomerPart) nextStep;
-                                System.out.println("  Truck " + ts.truck.id + " siguiente destino planificado: CPart " + nextCustomer.partId);
-
-                                // Necesita recargar GLP ANTES de ir al siguiente cliente
-                                if (ts.currentLoadM3 < nextCustomer.demandM3 - 0.01) {
-                                    System.out.println("    ** Necesita recargar GLP (" + String.format("%.2f", ts.currentLoadM3) + " m3) para CPart " + nextCustomer.partId + " (demanda " + nextCustomer.demandM3 + " m3). Buscando depósito...");
-
-                                    Depot chosenDepot = SimulationUtils.findBestDepotForReload(ts.currentLocation, nextCustomer.demandM3);
-
-                                    if (chosenDepot != null) {
-                                        System.out.println("    Depósito elegido para recarga: " + chosenDepot.id);
-                                        int distToDepot = SimulationUtils.distanciaReal(ts.currentLocation, chosenDepot);
-                                        if (distToDepot == Integer.MAX_VALUE) {
-                                            System.err.println("ERROR: Ruta bloqueada hacia depósito de recarga " + chosenDepot.id + " para " + ts.truck.id + ". INACTIVE.");
-                                            ts.status = TruckState.Status.INACTIVE; ts.currentRoutePlan.clear(); ts.timeAvailable = Integer.MAX_VALUE;
-                                        } else {
-                                            int travelTimeToDepot = (int) Math.round(distToDepot * SimulationUtils.MINUTOS_POR_KM);
-                                            double fuelNeededToDepot = SimulationUtils.calculateFuelConsumed(distToDepot, ts.currentLoadM3, ts.truck);
-
-                                            if (fuelNeededToDepot > ts.currentFuelGal) {
-                                                System.err.println("ERROR CRITICO: Combustible insuficiente para ir a recargar GLP a " + chosenDepot.id + " para " + ts.truck.id + ". INACTIVE.");
-                                                ts.status = TruckState.Status.INACTIVE; ts.currentRoutePlan.clear(); ts.timeAvailable = Integer.MAX_VALUE;
-                                            } else {
-                                                // Ruta a depósito de recarga es viable
-                                                ts.destination = chosenDepot;
-                                                ts.status = TruckState.Status.EN_ROUTE_TO_RELOAD;
-                                                ts.arrivalTimeAtDestination = minute + travelTimeToDepot;
-                                                ts.timeAvailable = ts.arrivalTimeAtDestination;
-                                                System.out.println("    Dirigiéndose a " + chosenDepot.id + " para recargar GLP. Llegada estimada: " + SimulationUtils.formatTime(ts.arrivalTimeAtDestination));
-                                            }
-                                        }
-                                    } else {
-                                        System.err.println("ERROR CRITICO: No se encontró depósito intermedio viable con suficiente GLP para CPart " + nextCustomer.partId + " para camión " + ts.truck.id + ". INACTIVE.");
-                                        ts.status = TruckState.Status.INACTIVE; ts.currentRoutePlan.clear(); ts.timeAvailable = Integer.MAX_VALUE;
-                                    }
-                                } else {
-                                    System.out.println("    Tiene suficiente GLP. Dirigiéndose a CPart " + nextCustomer.partId);
-                                    ts.destination = nextCustomer;
-                                    ts.status = TruckState.Status.EN_ROUTE;
-                                    int distNext = SimulationUtils.distanciaReal(ts.currentLocation, ts.destination);
-                                    if (distNext == Integer.MAX_VALUE) {
-                                        System.err.println("ERROR: Ruta bloqueada para siguiente tramo de " + ts.truck.id + ". INACTIVE.");
-                                        ts.status = TruckState.Status.INACTIVE; ts.currentRoutePlan.clear(); ts.timeAvailable = Integer.MAX_VALUE;
+                        }
+                    } else {
+                        Object nextStep = ts.currentRoutePlan.get(0);
+                        if (nextStep instanceof CustomerPart) {
+                            CustomerPart nextCustomer = (CustomerPart) nextStep;
+                            if (fx.verbose) fx.debug("  Truck " + ts.truck.id + " siguiente destino planificado: CPart " + nextCustomer.partId);
+
+                            // Necesita recargar GLP ANTES de ir al siguiente cliente
+                            if (ts.getCurrentLoadM3() < nextCustomer.demandM3 - 0.01) {
+                                if (fx.verbose) fx.debug("    ** Necesita recargar GLP (" + String.format("%.2f", ts.getCurrentLoadM3()) + " m3) para CPart " + nextCustomer.partId + " (demanda " + nextCustomer.demandM3 + " m3). Buscando depósito...");
+
+                                Depot chosenDepot = SimulationUtils.findBestDepotForReload(ctx, ts.getCurrentLocation(), nextCustomer.demandM3, fx::capacity);
+
+                                if (chosenDepot != null) {
+                                    if (fx.verbose) fx.debug("    Depósito elegido para recarga: " + chosenDepot.id);
+                                    TruckLeg leg = TruckLeg.plan(ctx, ts.truck, ts.getCurrentLocation(), chosenDepot, minute, ts.getCurrentLoadM3());
+                                    if (leg == null) {
+                                        fx.error("ERROR: Ruta bloqueada hacia depósito de recarga " + chosenDepot.id + " para " + ts.truck.id + ". INACTIVE.");
+                                        ts.setStatus(TruckState.Status.INACTIVE); abandonPlan(ts, fx); ts.setTimeAvailable(Integer.MAX_VALUE);
                                     } else {
-                                        int travelTimeNext = (int) Math.round(distNext * SimulationUtils.MINUTOS_POR_KM);
-                                        double fuelNeededNext = SimulationUtils.calculateFuelConsumed(distNext, ts.currentLoadM3, ts.truck);
-                                        if (fuelNeededNext > ts.currentFuelGal) {
-                                            System.err.println("ERROR CRITICO: Combustible insuficiente para tramo post-descarga " + ts.truck.id + ". INACTIVE.");
-                                            ts.status = TruckState.Status.INACTIVE; ts.currentRoutePlan.clear(); ts.timeAvailable = Integer.MAX_VALUE;
+                                        if (leg.fuelGal > ts.getCurrentFuelGal()) {
+                                            fx.error("ERROR CRITICO: Combustible insuficiente para ir a recargar GLP a " + chosenDepot.id + " para " + ts.truck.id + ". INACTIVE.");
+                                            ts.setStatus(TruckState.Status.INACTIVE); abandonPlan(ts, fx); ts.setTimeAvailable(Integer.MAX_VALUE);
                                         } else {
-                                            ts.arrivalTimeAtDestination = minute + travelTimeNext;
-                                            ts.timeAvailable = ts.arrivalTimeAtDestination;
+                                            // Ruta a depósito de recarga es viable
+                                            ts.setDestination(chosenDepot);
+                                            ts.setStatus(TruckState.Status.EN_ROUTE_TO_RELOAD);
+                                            ts.setCurrentLeg(leg);
+                                            ts.setArrivalTimeAtDestination(leg.arrivalMinute);
+                                            ts.setTimeAvailable(ts.getArrivalTimeAtDestination());
+                                            if (fx.verbose) fx.debug("    Dirigiéndose a " + chosenDepot.id + " para recargar GLP. Llegada estimada: " + SimulationUtils.formatTime(ts.getArrivalTimeAtDestination()));
                                         }
                                     }
+                                } else {
+                                    fx.error("ERROR CRITICO: No se encontró depósito intermedio viable con suficiente GLP para CPart " + nextCustomer.partId + " para camión " + ts.truck.id + ". INACTIVE.");
+                                    ts.setStatus(TruckState.Status.INACTIVE); abandonPlan(ts, fx); ts.setTimeAvailable(Integer.MAX_VALUE);
                                 }
-                            } else if (nextStep instanceof Depot) {
-                                System.out.println("  Truck " + ts.truck.id + " siguiente destino planificado: Depot " + ((Depot)nextStep).id);
-                                ts.destination = (Location) nextStep;
-                                ts.status = TruckState.Status.EN_ROUTE;
-                                int distNext = SimulationUtils.distanciaReal(ts.currentLocation, ts.destination);
-                                if (distNext == Integer.MAX_VALUE) {
-                                    System.err.println("ERROR: Ruta bloqueada para tramo final a Depot para " + ts.truck.id + ". INACTIVE.");
-                                    ts.status = TruckState.Status.INACTIVE; ts.currentRoutePlan.clear(); ts.timeAvailable = Integer.MAX_VALUE;
+                            } else {
+                                if (fx.verbose) fx.debug("    Tiene suficiente GLP. Dirigiéndose a CPart " + nextCustomer.partId);
+                                ts.setDestination(nextCustomer);
+                                ts.setStatus(TruckState.Status.EN_ROUTE);
+                                TruckLeg leg = TruckLeg.plan(ctx, ts.truck, ts.getCurrentLocation(), ts.getDestination(), minute, ts.getCurrentLoadM3());
+                                if (leg == null) {
+                                    fx.error("ERROR: Ruta bloqueada para siguiente tramo de " + ts.truck.id + ". INACTIVE.");
+                                    ts.setStatus(TruckState.Status.INACTIVE); abandonPlan(ts, fx); ts.setTimeAvailable(Integer.MAX_VALUE);
                                 } else {
-                                    int travelTimeNext = (int) Math.round(distNext * SimulationUtils.MINUTOS_POR_KM);
-                                    double fuelNeededNext = SimulationUtils.calculateFuelConsumed(distNext, ts.currentLoadM3, ts.truck);
-                                    if (fuelNeededNext > ts.currentFuelGal) {
-                                        System.err.println("ERROR CRITICO: Combustible insuficiente para tramo final a Depot " + ts.truck.id + ". INACTIVE.");
-                                        ts.status = TruckState.Status.INACTIVE; ts.currentRoutePlan.clear(); ts.timeAvailable = Integer.MAX_VALUE;
+                                    if (leg.fuelGal > ts.getCurrentFuelGal()) {
+                                        fx.error("ERROR CRITICO: Combustible insuficiente para tramo post-descarga " + ts.truck.id + ". INACTIVE.");
+                                        ts.setStatus(TruckState.Status.INACTIVE); abandonPlan(ts, fx); ts.setTimeAvailable(Integer.MAX_VALUE);
                                     } else {
-                                        ts.arrivalTimeAtDestination = minute + travelTimeNext;
-                                        ts.timeAvailable = ts.arrivalTimeAtDestination;
+                                        ts.setCurrentLeg(leg);
+                                        ts.setArrivalTimeAtDestination(leg.arrivalMinute);
+                                        ts.setTimeAvailable(ts.getArrivalTimeAtDestination());
                                     }
                                 }
+                            }
+                        } else if (nextStep instanceof Depot) {
+                            if (fx.verbose) fx.debug("  Truck " + ts.truck.id + " siguiente destino planificado: Depot " + ((Depot)nextStep).id);
+                            ts.setDestination((Location) nextStep);
+                            ts.setStatus(TruckState.Status.EN_ROUTE);
+                            TruckLeg leg = TruckLeg.plan(ctx, ts.truck, ts.getCurrentLocation(), ts.getDestination(), minute, ts.getCurrentLoadM3());
+                            if (leg == null) {
+                                fx.error("ERROR: Ruta bloqueada para tramo final a Depot para " + ts.truck.id + ". INACTIVE.");
+                                ts.setStatus(TruckState.Status.INACTIVE); abandonPlan(ts, fx); ts.setTimeAvailable(Integer.MAX_VALUE);
                             } else {
-                                System.err.println("ERROR INESPERADO: Siguiente paso en plan no es Cliente ni Deposito: " + nextStep);
-                                ts.status = TruckState.Status.IDLE; ts.currentRoutePlan.clear(); ts.timeAvailable = minute;
+                                if (leg.fuelGal > ts.getCurrentFuelGal()) {
+                                    fx.error("ERROR CRITICO: Combustible insuficiente para tramo final a Depot " + ts.truck.id + ". INACTIVE.");
+                                    ts.setStatus(TruckState.Status.INACTIVE); abandonPlan(ts, fx); ts.setTimeAvailable(Integer.MAX_VALUE);
+                                } else {
+                                    ts.setCurrentLeg(leg);
+                                    ts.setArrivalTimeAtDestination(leg.arrivalMinute);
+                                    ts.setTimeAvailable(ts.getArrivalTimeAtDestination());
+                                }
                             }
+                        } else {
+                            fx.error("ERROR INESPERADO: Siguiente paso en plan no es Cliente ni Deposito: " + nextStep);
+                            ts.setStatus(TruckState.Status.IDLE); abandonPlan(ts, fx); ts.setTimeAvailable(minute);
                         }
-                    } // else { // Aún no ha terminado la descarga }
-                    break;
-
-                case EN_ROUTE_TO_RELOAD:
-                    if (minute >= ts.arrivalTimeAtDestination) {
-                        Depot arrivedDepot = (Depot) ts.destination;
-                        System.out.println("Truck " + ts.truck.id + " llegó a " + arrivedDepot.id + " para recargar GLP en t=" + minute);
-
-                        distTraveled = SimulationUtils.distanciaReal(ts.currentLocation, arrivedDepot);
-                        fuelConsumed = SimulationUtils.calculateFuelConsumed(distTraveled, ts.currentLoadM3, ts.truck);
-                        ts.currentFuelGal -= fuelConsumed;
-                        if (ts.currentFuelGal < 0) System.err.println("ALERTA: Combustible negativo para " + ts.truck.id + " al llegar a recargar GLP.");
-                        ts.currentLocation = arrivedDepot;
-
-                        if (ts.currentFuelGal < GlobalState.MAX_FUEL_GAL) {
-                            System.out.println("    Recargando combustible...");
-                            ts.currentFuelGal = GlobalState.MAX_FUEL_GAL;
-                        }
+                    }
+                } // else { // Aún no ha terminado la descarga }
+                break;
 
-                        double neededForRestOfPlan = SimulationUtils.calculateRequiredLoadForPlan(ts.currentRoutePlan);
-                        double spaceInTruck = ts.truck.type.capacidadM3 - ts.currentLoadM3;
-                        double glpToRequest = Math.min(neededForRestOfPlan, spaceInTruck);
-                        double amountToLoad = 0;
-
-                        if (glpToRequest > 0.01) {
-                            double glpAvailableAtDepot = arrivedDepot.capacidadActualM3;
-                            amountToLoad = Math.min(glpToRequest, glpAvailableAtDepot);
-
-                            if (amountToLoad > 0.01) {
-                                ts.currentLoadM3 += amountToLoad;
-                                arrivedDepot.capacidadActualM3 -= amountToLoad;
-                                ts.timeAvailable = minute + GlobalState.RELOAD_GLP_MINUTES;
-                                System.out.println("    Recargó " + String.format("%.2f", amountToLoad) + " m3 GLP. Nueva Carga: " + String.format("%.2f", ts.currentLoadM3) + " m3.");
-                                System.out.println("    Capacidad restante en " + arrivedDepot.id + ": " + String.format("%.2f", arrivedDepot.capacidadActualM3) + " m3.");
-                            } else {
-                                System.out.println("    No se pudo recargar GLP (Depósito vacío o camión lleno/sin necesidad).");
-                                ts.timeAvailable = minute;
-                            }
+            case EN_ROUTE_TO_RELOAD:
+                if (minute >= ts.getArrivalTimeAtDestination()) {
+                    Depot arrivedDepot = (Depot) ts.getDestination();
+                    if (fx.verbose) fx.debug("Truck " + ts.truck.id + " llegó a " + arrivedDepot.id + " para recargar GLP en t=" + minute);
+
+                    fuelConsumed = finishLeg(ts, ts.getCurrentLoadM3(), fx);
+                    ts.setCurrentFuelGal(ts.getCurrentFuelGal() - fuelConsumed);
+                    fx.fuelConsumed(fuelConsumed);
+                    if (ts.getCurrentFuelGal() < 0) fx.warn("ALERTA: Combustible negativo para " + ts.truck.id + " al llegar a recargar GLP.");
+                    ts.setCurrentLocation(arrivedDepot);
+
+                    if (ts.getCurrentFuelGal() < GlobalState.MAX_FUEL_GAL) {
+                        if (fx.verbose) fx.debug("    Recargando combustible...");
+                        ts.setCurrentFuelGal(GlobalState.MAX_FUEL_GAL);
+                    }
+
+                    double neededForRestOfPlan = SimulationUtils.calculateRequiredLoadForPlan(ts.currentRoutePlan);
+                    double spaceInTruck = ts.truck.type.capacidadM3 - ts.getCurrentLoadM3();
+                    double glpToRequest = Math.min(neededForRestOfPlan, spaceInTruck);
+                    double amountToLoad = 0;
+
+                    if (glpToRequest > 0.01) {
+                        double glpAvailableAtDepot = fx.capacity(arrivedDepot);
+                        amountToLoad = Math.min(glpToRequest, glpAvailableAtDepot);
+
+                        if (amountToLoad > 0.01) {
+                            ts.setCurrentLoadM3(ts.getCurrentLoadM3() + amountToLoad);
+                            fx.withdraw(arrivedDepot, amountToLoad);
+                            ts.setTimeAvailable(minute + GlobalState.RELOAD_GLP_MINUTES);
+                            if (fx.verbose) fx.debug("    Recargó " + String.format("%.2f", amountToLoad) + " m3 GLP. Nueva Carga: " + String.format("%.2f", ts.getCurrentLoadM3()) + " m3.");
+                            if (fx.verbose) fx.debug("    Capacidad restante en " + arrivedDepot.id + ": " + String.format("%.2f", fx.capacity(arrivedDepot)) + " m3.");
                         } else {
-                            System.out.println("    No necesita o no puede cargar más GLP en este momento.");
-                            ts.timeAvailable = minute;
+                            if (fx.verbose) fx.debug("    No se pudo recargar GLP (Depósito vacío o camión lleno/sin necesidad).");
+                            ts.setTimeAvailable(minute);
                         }
+                    } else {
+                        if (fx.verbose) fx.debug("    No necesita o no puede cargar más GLP en este momento.");
+                        ts.setTimeAvailable(minute);
+                    }
 
-                        // Establecer el siguiente destino (el cliente original)
-                        if (ts.currentRoutePlan.isEmpty()) {
-                            System.err.println("ERROR INESPERADO: Plan vacío después de recargar GLP para " + ts.truck.id + ". INACTIVE.");
-                            ts.status = TruckState.Status.INACTIVE; ts.timeAvailable = Integer.MAX_VALUE;
+                    // Establecer el siguiente destino (el cliente original)
+                    if (ts.currentRoutePlan.isEmpty()) {
+                        fx.error("ERROR INESPERADO: Plan vacío después de recargar GLP para " + ts.truck.id + ". INACTIVE.");
+                        ts.setStatus(TruckState.Status.INACTIVE); ts.setTimeAvailable(Integer.MAX_VALUE);
+                    } else {
+                        nextDestinationObj = ts.currentRoutePlan.get(0);
+                        if (!(nextDestinationObj instanceof CustomerPart)) {
+                            fx.error("ERROR INESPERADO: Siguiente paso después de recarga no es Cliente: " + nextDestinationObj + ". INACTIVE.");
+                            ts.setStatus(TruckState.Status.INACTIVE); abandonPlan(ts, fx); ts.setTimeAvailable(Integer.MAX_VALUE);
                         } else {
-                            nextDestinationObj = ts.currentRoutePlan.get(0);
-                            if (!(nextDestinationObj instanceof CustomerPart)) {
-                                System.err.println("ERROR INESPERADO: Siguiente paso después de recarga no es Cliente: " + nextDestinationObj + ". INACTIVE.");
-                                ts.status = TruckState.Status.INACTIVE; ts.currentRoutePlan.clear(); ts.timeAvailable = Integer.MAX_VALUE;
+                            ts.setDestination((Location) nextDestinationObj);
+                            ts.setStatus(TruckState.Status.EN_ROUTE);
+                            if (fx.verbose) fx.debug("  Truck " + ts.truck.id + " saliendo de " + arrivedDepot.id + " hacia " + ts.getDestination());
+
+                            TruckLeg leg = TruckLeg.plan(ctx, ts.truck, ts.getCurrentLocation(), ts.getDestination(), ts.getTimeAvailable(), ts.getCurrentLoadM3());
+                            if (leg == null) {
+                                fx.error("ERROR: Ruta bloqueada desde depot de recarga a cliente para " + ts.truck.id + ". INACTIVE.");
+                                ts.setStatus(TruckState.Status.INACTIVE); abandonPlan(ts, fx); ts.setTimeAvailable(Integer.MAX_VALUE);
                             } else {
-                                ts.destination = (Location) nextDestinationObj;
-                                ts.status = TruckState.Status.EN_ROUTE;
-                                System.out.println("  Truck " + ts.truck.id + " saliendo de " + arrivedDepot.id + " hacia " + ts.destination);
-
-                                int distNext = SimulationUtils.distanciaReal(ts.currentLocation, ts.destination);
-                                if (distNext == Integer.MAX_VALUE) {
-                                    System.err.println("ERROR: Ruta bloqueada desde depot de recarga a cliente para " + ts.truck.id + ". INACTIVE.");
-                                    ts.status = TruckState.Status.INACTIVE; ts.currentRoutePlan.clear(); ts.timeAvailable = Integer.MAX_VALUE;
+                                if (leg.fuelGal > ts.getCurrentFuelGal()) {
+                                    fx.error("ERROR CRITICO: Combustible insuficiente DESPUÉS de recarga GLP para tramo a cliente " + ts.truck.id + ". INACTIVE.");
+                                    ts.setStatus(TruckState.Status.INACTIVE); abandonPlan(ts, fx); ts.setTimeAvailable(Integer.MAX_VALUE);
                                 } else {
-                                    int travelTimeNext = (int) Math.round(distNext * SimulationUtils.MINUTOS_POR_KM);
-                                    double fuelNeededNext = SimulationUtils.calculateFuelConsumed(distNext, ts.currentLoadM3, ts.truck);
-                                    if (fuelNeededNext > ts.currentFuelGal) {
-                                        System.err.println("ERROR CRITICO: Combustible insuficiente DESPUÉS de recarga GLP para tramo a cliente " + ts.truck.id + ". INACTIVE.");
-                                        ts.status = TruckState.Status.INACTIVE; ts.currentRoutePlan.clear(); ts.timeAvailable = Integer.MAX_VALUE;
-                                    } else {
-                                        ts.arrivalTimeAtDestination = ts.timeAvailable + travelTimeNext;
-                                        ts.timeAvailable = ts.arrivalTimeAtDestination;
-                                    }
+                                    ts.setCurrentLeg(leg);
+                                    ts.setArrivalTimeAtDestination(leg.arrivalMinute);
+                                    ts.setTimeAvailable(ts.getArrivalTimeAtDestination());
                                 }
                             }
                         }
-                    } // else { // Aún no ha llegado al depósito de recarga }
-                    break;
-
-                case RETURNING:
-                    System.out.println("Truck " + ts.truck.id + " regresó a Depot " + ((Depot)ts.destination).id + " en t=" + minute);
-                    int distRet = ts.currentLocation.distanceTo(ts.destination);
-                    double fuelRet = calculateFuelConsumed(distRet, 0.0, ts.truck);
-                    ts.currentFuelGal -= fuelRet;
-                    ts.currentLocation = ts.destination;
-                    if (((Depot)ts.destination).isMainPlant()) {
-                        ts.currentFuelGal = MAX_FUEL_GAL;
-                        System.out.println("  Truck " + ts.truck.id + " combustible recargado.");
                     }
-                    ts.status = TruckState.Status.IDLE;
-                    ts.timeAvailable = minute;
-                    ts.destination = null;
-                    ts.currentLoadM3 = 0;
-                    break;
-
-                case INACTIVE:
-                    break;
-            }
+                } // else { // Aún no ha llegado al depósito de recarga }
+                break;
+
+            case RETURNING:
+                if (fx.verbose) fx.debug("Truck " + ts.truck.id + " regresó a Depot " + ((Depot)ts.getDestination()).id + " en t=" + minute);
+                double fuelRet = finishLeg(ts, 0.0, fx);
+                ts.setCurrentFuelGal(ts.getCurrentFuelGal() - fuelRet);
+                fx.fuelConsumed(fuelRet);
+                ts.setCurrentLocation(ts.getDestination());
+                // Fuera de casa solo se vuelve por un desvío sin combustible (divertForFuel): ese depósito también carga
+                if (((Depot)ts.getDestination()).isMainPlant() || ts.getDestination() != ts.truck.homeDepot) {
+                    ts.setCurrentFuelGal(MAX_FUEL_GAL);
+                    if (fx.verbose) fx.debug("  Truck " + ts.truck.id + " combustible recargado.");
+                }
+                // Tras la última entrega se vuelve vacío; con carga solo se vuelve por un desvío sin combustible
+                // (divertForFuel): ese GLP vuelve al inventario del depósito, hasta su capacidad
+                if (ts.getCurrentLoadM3() > 0.01) {
+                    Depot arrived = (Depot) ts.getDestination();
+                    double returned = ts.getCurrentLoadM3();
+                    if (!arrived.isMainPlant()) {
+                        returned = Math.min(returned, arrived.capacidadMaximaM3 - fx.capacity(arrived));
+                        fx.withdraw(arrived, -returned);
+                    }
+                    double lost = ts.getCurrentLoadM3() - returned;
+                    fx.warn("  Truck " + ts.truck.id + " devolvió " + String.format("%.2f", returned) + " m3 de GLP a " + arrived.id +
+                            (lost > 0.01 ? "; " + String.format("%.2f", lost) + " m3 no entraron en el depósito y se descartan." : "."));
+                }
+                ts.setStatus(TruckState.Status.IDLE);
+                ts.setTimeAvailable(minute);
+                ts.setDestination(null);
+                ts.setCurrentLoadM3(0);
+                break;
+
+            case INACTIVE:
+                break;
         }
     }
 
-    public boolean activateNewPedidos(int minute) {
-        boolean added = false;
-        Iterator<Pedido> it = pendingPedidos.iterator();
-        int originalOrderId = activeCustomerParts.size();
-
-        while (it.hasNext()) {
-            Pedido p = it.next();
-            if (p.momentoPedido == minute) {
-                originalOrderId++;
-                double remainingDemand = p.volumen;
-                int partCount = 0;
-                // Dividir pedido si es necesario
-                while (remainingDemand > 0) {
-                    partCount++;
-                    double partDemand = Math.min(remainingDemand, MAX_TRUCK_CAPACITY_M3);
-                    CustomerPart part = new CustomerPart(originalOrderId, p.x, p.y, partDemand,
-                            p.momentoPedido, p.momentoPedido + p.horaLimite * 60, p.idCliente);
-                    activeCustomerParts.add(part);
-                    remainingDemand -= partDemand;
-                    System.out.println("⏰ t=" + minute + " -> Nueva Parte Pedido ID:" + part.partId + "(Orig:"+originalOrderId+"."+partCount+") en " + part + " recibida.");
+    // Bloqueos recién activados: desvía los tramos en curso que los cruzan por delante del camión y quita de las rutas
+    // afectadas las partes que quedaron sin camino. Solo mira los camiones que el índice de ocupación marcó.
+    // Devuelve true si alguna parte volvió a quedar sin asignar.
+    private boolean handleNewBlockages(int minute) {
+        boolean released = false;
+        for (TruckState ts : occupancy.takeAffectedLegs()) {
+            TruckLeg leg = ts.getCurrentLeg();
+            if (leg == null || minute >= leg.arrivalMinute || !leg.blockedAhead(ctx, minute)) continue;
+            if (ts.getStatus() != TruckState.Status.EN_ROUTE && ts.getStatus() != TruckState.Status.EN_ROUTE_TO_RELOAD
+                    && ts.getStatus() != TruckState.Status.RETURNING) continue;
+            TruckLeg detour = leg.rerouteAt(ctx, minute);
+            if (detour == null) {
+                ctx.log.warn(BLOCKAGES, "WARN: Bloqueo en el camino de " + ts.truck.id + " sin desvío posible en t=" + minute + "; sigue su camino.");
+                continue;
+            }
+            // El tanque todavía no descontó este tramo: alcanza si el desvío completo (lo recorrido + lo que falta) entra en él
+            if (detour.fuelGal > ts.getCurrentFuelGal()) {
+                released |= divertForFuel(ts, leg, detour, minute);
+                continue;
+            }
+            if (ctx.log.on(SimLog.Level.DEBUG, BLOCKAGES)) ctx.log.debug(BLOCKAGES, "Truck " + ts.truck.id + " desviado por bloqueo en t=" + minute + " cerca de " + leg.positionAt(minute) +
+                    ": +" + (detour.distance - leg.distance) + " km, llegada " + formatTime(leg.arrivalMinute) + " -> " + formatTime(detour.arrivalMinute));
+            ts.setCurrentLeg(detour);
+            ts.setArrivalTimeAtDestination(detour.arrivalMinute);
+            ts.setTimeAvailable(detour.arrivalMinute);
+            occupancy.legsRerouted++;
+        }
+
+        for (TruckState ts : occupancy.takeAffectedRoutes()) {
+            occupancy.routesChecked++;
+            occupancy.invalidateRoute(ts.truck.id);
+            Location prev = ts.getDestination() != null ? ts.getDestination() : ts.getCurrentLocation();
+            Iterator<Object> it = ts.currentRoutePlan.iterator();
+            while (it.hasNext()) {
+                Object step = it.next();
+                if (step == prev) continue;
+                if (step instanceof CustomerPart && distanciaReal(ctx, prev, (Location) step) == Integer.MAX_VALUE) {
+                    if (ctx.log.on(SimLog.Level.DEBUG, BLOCKAGES)) ctx.log.debug(BLOCKAGES, "  CPart " + ((CustomerPart) step).partId + " quedó sin camino en la ruta de " + ts.truck.id +
+                            " por un bloqueo en t=" + minute + "; vuelve a planificarse.");
+                    it.remove();
+                    ctx.customerParts.release((CustomerPart) step, ts.truck.id);
+                    occupancy.partsReleased++;
+                    released = true;
+                } else {
+                    prev = (Location) step;
                 }
-                it.remove();
-                added = true;
-            } else if (p.momentoPedido > minute) {
-                // break; // Si está ordenado
             }
         }
-        return added;
+        return released;
     }
 
-    public boolean updateBlockages(int minute) {
-        boolean changed = false;
-        for (Bloqueo b : definedBloqueos) {
-            boolean currentState = blockedNodes[b.puntosBloqueados.get(0)[0]][b.puntosBloqueados.get(0)[1]];
-            boolean shouldBeActive = minute >= b.inicioMinutos && minute < b.finMinutos;
-            if (currentState != shouldBeActive) {
-                changed = true;
-                activateOrDeactivateBloqueo(b, shouldBeActive);
-                // System.out.println("Bloqueo en " + b.puntosBloqueados.get(0)[0]+","+b.puntosBloqueados.get(0)[1] + " cambiado a " + shouldBeActive + " en t="+minute);
+    // El desvío por bloqueo no entra en el tanque: el camión abandona su plan (las partes vuelven a planificarse) y va
+    // al depósito alcanzable más cercano con el combustible que le queda; si no llega a ninguno queda INACTIVE donde
+    // está. Devuelve true si alguna parte volvió a quedar sin asignar.
+    private boolean divertForFuel(TruckState ts, TruckLeg leg, TruckLeg detour, int minute) {
+        TruckLeg best = null;
+        for (Depot d : ctx.depots) {
+            TruckLeg toDepot = leg.divertAt(ctx, minute, d);
+            if (toDepot != null && toDepot.fuelGal <= ts.getCurrentFuelGal() && (best == null || toDepot.distance < best.distance)) best = toDepot;
+        }
+        boolean released = false;
+        for (Object step : ts.currentRoutePlan) {
+            if (step instanceof CustomerPart) {
+                ctx.customerParts.release((CustomerPart) step, ts.truck.id);
+                occupancy.partsReleased++;
+                released = true;
             }
         }
-        return changed;
+        ts.currentRoutePlan.clear();
+        if (best != null) {
+            ctx.log.error(BLOCKAGES, "ERROR: Combustible insuficiente para el desvío de " + ts.truck.id + " en t=" + minute + " (" +
+                    formatCost(detour.fuelGal) + " de " + formatCost(ts.getCurrentFuelGal()) + "); vuelve a " + ((Depot) best.destination).id +
+                    " con " + String.format("%.2f", ts.getCurrentLoadM3()) + " m3 de GLP a bordo.");
+            ts.setStatus(TruckState.Status.RETURNING);
+            ts.setDestination(best.destination);
+            ts.setCurrentLeg(best);
+            ts.setArrivalTimeAtDestination(best.arrivalMinute);
+            ts.setTimeAvailable(best.arrivalMinute);
+            occupancy.legsRerouted++;
+        } else {
+            ctx.log.error(BLOCKAGES, "ERROR CRITICO: Combustible insuficiente para el desvío de " + ts.truck.id + " en t=" + minute +
+                    " y ningún depósito alcanzable. INACTIVE con " + String.format("%.2f", ts.getCurrentLoadM3()) + " m3 de GLP a bordo.");
+            double burned = leg.fuelBurnedAt(minute);
+            ts.setCurrentFuelGal(ts.getCurrentFuelGal() - burned);
+            ctx.fuelConsumedGal += burned;
+            ts.setCurrentLocation(leg.positionAt(minute));
+            ts.setCurrentLeg(null);
+            ts.setDestination(null);
+            ts.setStatus(TruckState.Status.INACTIVE);
+            ts.setTimeAvailable(Integer.MAX_VALUE);
+        }
+        return released;
     }
 
-    public void activateOrDeactivateBloqueo(Bloqueo b, boolean activate) {
-        for (int[] punto : b.puntosBloqueados) {
-            if (punto[0] >= 0 && punto[0] < GRID_WIDTH && punto[1] >= 0 && punto[1] < GRID_HEIGHT) {
-                blockedNodes[punto[0]][punto[1]] = activate;
+    // Reemplaza el plan del camión y lleva el registro de partes: las que salen del plan vuelven a PENDING y las que
+    // entran quedan PLANNED (camión IDLE) o DISPATCHED (camión ya en marcha)
+    private void setPlan(TruckState ts, List<Object> plan) {
+        plan = new ArrayList<>(plan);   // Puede ser una vista del plan actual
+        for (Object step : ts.currentRoutePlan) {
+            if (step instanceof CustomerPart) ctx.customerParts.release((CustomerPart) step, ts.truck.id);
+        }
+        ts.currentRoutePlan.clear();
+        ts.currentRoutePlan.addAll(plan);
+        boolean dispatched = ts.getStatus() != TruckState.Status.IDLE && ts.getStatus() != TruckState.Status.INACTIVE;
+        for (Object step : plan) {
+            if (step instanceof CustomerPart) ctx.customerParts.assign((CustomerPart) step, ts.truck.id, dispatched);
+        }
+    }
+
+    // Vacía el plan dentro de una transición: las partes vuelven a PENDING al fusionar
+    private void abandonPlan(TruckState ts, TransitionEffects fx) {
+        for (Object step : ts.currentRoutePlan) {
+            if (step instanceof CustomerPart) fx.release((CustomerPart) step, ts.truck.id);
+        }
+        ts.currentRoutePlan.clear();
+    }
+
+    // Solo los camiones modificados en el minuto y las rutas invalidadas por bloqueos: O(cambios), no O(flota)
+    private void syncOccupancy() {
+        ctx.fleetStore.drainChanged(occupancy::sync);
+        occupancy.syncStale();
+    }
+
+    // Combustible del tramo que termina según el registro hecho al salir. Sin registro (no debería pasar) se recalcula
+    // la distancia con los bloqueos actuales, como se hacía antes.
+    private double finishLeg(TruckState ts, double loadM3, TransitionEffects fx) {
+        TruckLeg leg = ts.getCurrentLeg();
+        ts.setCurrentLeg(null);
+        if (leg != null) return leg.fuelGal;
+        fx.warn("WARN: " + ts.truck.id + " llegó a " + ts.getDestination() + " sin tramo registrado; se recalcula la distancia.");
+        return calculateFuelConsumed(distanciaReal(ctx, ts.getCurrentLocation(), ts.getDestination()), loadM3, ts.truck);
+    }
+
+    public boolean activateNewPedidos(int minute) {
+        List<Pedido> released = ctx.pendingPedidos.release(minute);
+        for (Pedido p : released) {
+            int originalOrderId = p.idPedido;
+            double remainingDemand = p.volumen;
+            int partCount = 0;
+            // Dividir pedido si es necesario
+            while (remainingDemand > 0) {
+                partCount++;
+                double partDemand = Math.min(remainingDemand, MAX_TRUCK_CAPACITY_M3);
+                CustomerPart part = new CustomerPart(ctx.newPartId(), originalOrderId, p.x, p.y, partDemand,
+                        p.momentoPedido, p.momentoPedido + p.horaLimite * 60, p.idCliente);
+                ctx.customerParts.add(part);
+                remainingDemand -= partDemand;
+                if (ctx.log.on(SimLog.Level.DEBUG, ORDERS)) ctx.log.debug(ORDERS, "⏰ t=" + minute + " -> Nueva Parte Pedido ID:" + part.partId + "(Orig:"+originalOrderId+"."+partCount+") en " + part + " recibida.");
             }
         }
+        return !released.isEmpty();
+    }
+
+    // Aplica los inicios y fines de bloqueo hasta 'minute'; el calendario notifica las celdas afectadas
+    public boolean updateBlockages(int minute) {
+        return ctx.blockageCalendar.advanceTo(minute);
     }
 
     public void refillIntermediateDepotsIfNeeded(int minute) {
         if (minute > 0 && minute % (24 * 60) == 0) {
-            System.out.println("--- Medianoche día " + (minute / (24 * 60)) + ": Reabasteciendo Depósitos Intermedios ---");
-            for (Depot d : depots) {
+            ctx.log.info(SIM, "--- Medianoche día " + (minute / (24 * 60)) + ": Reabasteciendo Depósitos Intermedios ---");
+            for (Depot d : ctx.depots) {
                 if (!d.isMainPlant()) {
                     d.capacidadActualM3 = d.capacidadMaximaM3;
                 }
@@ -429,66 +822,253 @@ public class Simulator {
         }
     }
 
+    // Partes sin servir que no van en un camión en marcha: las que la replanificación puede (re)asignar
     public List<CustomerPart> getUnservedCustomerParts() {
-        Set<Integer> partsInProgressIds = new HashSet<>();
-        for (TruckState ts : GlobalState.truckStates.values()) {
-            // Considerar camiones que están trabajando activamente en una ruta
-            if (ts.status != TruckState.Status.IDLE && ts.status != TruckState.Status.INACTIVE) {
-                if (ts.currentRoutePlan != null) {
-                    for (Object step : ts.currentRoutePlan) {
-                        if (step instanceof CustomerPart) {
-                            partsInProgressIds.add(((CustomerPart) step).partId);
-                        }
-                        if (ts.destination instanceof CustomerPart) {
-                            partsInProgressIds.add(((CustomerPart) ts.destination).partId);
-                        }
-                    }
-                }
-            }
-        }
-
-        // Filtrar la lista global de partes activas
-        List<CustomerPart> needingAssignment = new ArrayList<>();
-        for (CustomerPart part : GlobalState.activeCustomerParts) {
-            if (!partsInProgressIds.contains(part.partId)) {
-                needingAssignment.add(part);
-            }
-        }
-
-        return needingAssignment;
+        return ctx.customerParts.unserved();
     }
 
     public void applyPlannedRoutes(PlanningSolution solution, int applyTime) {
         if (solution == null) return;
 
-        System.out.println("Aplicando rutas planificadas a camiones IDLE...");
+        ctx.log.debug(PLANNER, "Aplicando rutas planificadas a camiones IDLE...");
         Set<String> assignedTrucks = new HashSet<>();
+        planVersion++;
 
         for (PlannedRoute route : solution.routes) {
-            TruckState ts = truckStates.get(route.truck.id);
-            if (ts != null && ts.status == TruckState.Status.IDLE && ts.timeAvailable <= applyTime) {
+            TruckState ts = ctx.truckStates.get(route.truck.id);
+            if (ts != null && ts.getStatus() == TruckState.Status.IDLE && ts.getTimeAvailable() <= applyTime) {
                 // Construir el plan de acción: Lista de CustomerPart y Depot final
                 List<Object> actionPlan = new LinkedList<>();
                 actionPlan.addAll(route.sequence);
                 actionPlan.add(route.endDepot);
 
-                ts.currentRoutePlan = actionPlan;
+                setPlan(ts, actionPlan);
                 ts.routes.add(route);
                 assignedTrucks.add(ts.truck.id);
-                System.out.println("  Ruta asignada a " + ts.truck.id + " (#Clientes: " + route.sequence.size() + ")");
-            } else if (ts != null && ts.status != TruckState.Status.IDLE) {
+                if (ctx.log.on(SimLog.Level.DEBUG, PLANNER)) ctx.log.debug(PLANNER, "  Ruta asignada a " + ts.truck.id + " (#Clientes: " + route.sequence.size() + ")");
+            } else if (ts != null && ts.getStatus() != TruckState.Status.IDLE) {
                 // El camión estaba ocupado, la replanificación idealmente lo consideraría
-                // System.out.println("  WARN: Camión " + ts.truck.id + " está ocupado ("+ts.status+"), no se pudo asignar nueva ruta planificada.");
+                // ctx.out.println("  WARN: Camión " + ts.truck.id + " está ocupado ("+ts.getStatus()+"), no se pudo asignar nueva ruta planificada.");
+            }
+        }
+        ctx.log.debug(PLANNER, () -> "Total de camiones con nuevas rutas asignadas: " + assignedTrucks.size());
+    }
+
+    // Activa el hilo que sigue optimizando los planes de camiones aún en depósito (resultados no deterministas)
+    public void enableBackgroundOptimization() {
+        if (backgroundOptimizer == null) {
+            backgroundOptimizer = new BackgroundRouteOptimizer(ctx);
+        }
+    }
+
+    // Camiones que todavía pueden cambiar de plan sin efecto físico: IDLE o en PRE_TRIP en su depósito base
+    private boolean isPlanRevisable(TruckState ts) {
+        if (ts.getStatus() != TruckState.Status.IDLE && ts.getStatus() != TruckState.Status.PRE_TRIP) return false;
+        if (!ts.getCurrentLocation().equals(ts.truck.homeDepot)) return false;
+        if (ts.currentRoutePlan.isEmpty()) return ts.getStatus() == TruckState.Status.IDLE;
+        for (int i = 0; i < ts.currentRoutePlan.size() - 1; i++) {
+            if (!(ts.currentRoutePlan.get(i) instanceof CustomerPart)) return false;
+        }
+        return ts.currentRoutePlan.get(ts.currentRoutePlan.size() - 1) instanceof Depot;
+    }
+
+    private List<Integer> currentPlanPartIds(TruckState ts) {
+        List<Integer> ids = new ArrayList<>();
+        for (Object step : ts.currentRoutePlan) {
+            if (step instanceof CustomerPart) ids.add(((CustomerPart) step).partId);
+        }
+        return ids;
+    }
+
+    public void submitBackgroundSnapshot(int minute) {
+        if (backgroundOptimizer == null) return;
+        PlanningSolution snapshot = new PlanningSolution();
+        snapshot.unassignedParts.clear();
+        Map<String, List<Integer>> originalPartIds = new HashMap<>();
+        int plannedParts = 0;
+        for (Truck truck : ctx.fleet) {
+            TruckState ts = ctx.truckStates.get(truck.id);
+            if (!isPlanRevisable(ts)) continue;
+            PlannedRoute route = new PlannedRoute(truck, truck.homeDepot);
+            for (Object step : ts.currentRoutePlan) {
+                if (step instanceof CustomerPart) route.sequence.add((CustomerPart) step);
+            }
+            if (!ts.currentRoutePlan.isEmpty()) route.endDepot = (Depot) ts.currentRoutePlan.get(ts.currentRoutePlan.size() - 1);
+            // IDLE arranca el PRE_TRIP en el siguiente minuto; PRE_TRIP ya tiene su salida fijada en timeAvailable
+            route.startTime = ts.getStatus() == TruckState.Status.IDLE ? Math.max(minute + 1, ts.getTimeAvailable())
+                    : ts.getTimeAvailable() - PRE_TRIP_CHECK_MINUTES;
+            snapshot.routes.add(route);
+            originalPartIds.put(truck.id, currentPlanPartIds(ts));
+            plannedParts += route.sequence.size();
+        }
+        if (plannedParts < 2) return;
+        TabuSearchPlanner.evaluateSolution(ctx, snapshot, minute);
+        // El hilo busca sobre una bifurcación: el contexto vivo sigue cambiando mientras tanto
+        SimulationContext fork = ctx.fork();
+        fork.silence();
+        Map<Integer, CustomerPart> forkParts = new HashMap<>();
+        for (PlannedRoute route : snapshot.routes) {
+            for (CustomerPart cp : route.sequence) forkParts.put(cp.partId, fork.customerParts.get(cp.partId));
+        }
+        PlanningSolution forkSolution = snapshot.remapTo(fork, forkParts);
+        backgroundOptimizer.submit(new BackgroundRouteOptimizer.Snapshot(planVersion, snapshot, originalPartIds, fork, forkSolution));
+    }
+
+    private void applyBackgroundImprovement(int minute) {
+        BackgroundRouteOptimizer.Improvement improvement = backgroundOptimizer.takeImprovement();
+        if (improvement == null) return;
+
+        // Todo o nada: cada camión de la copia debe seguir en depósito con exactamente el plan copiado
+        boolean valid = improvement.base.version == planVersion;
+        for (PlannedRoute route : improvement.solution.routes) {
+            if (!valid) break;
+            TruckState ts = ctx.truckStates.get(route.truck.id);
+            valid = isPlanRevisable(ts) && currentPlanPartIds(ts).equals(improvement.base.originalPartIds.get(route.truck.id));
+        }
+        if (!valid) {
+            backgroundOptimizer.improvementsDiscarded++;
+            return;
+        }
+
+        // Re-evaluar con el estado actual (bloqueos y depósitos pudieron cambiar mientras el hilo trabajaba), con las
+        // partes, camiones y depósitos vivos en lugar de los de la bifurcación
+        Map<Integer, CustomerPart> liveParts = new HashMap<>();
+        for (PlannedRoute route : improvement.base.solution.routes) {
+            for (CustomerPart cp : route.sequence) liveParts.put(cp.partId, cp);
+        }
+        PlanningSolution original = new PlanningSolution(improvement.base.solution);
+        PlanningSolution candidate = improvement.solution.remapTo(ctx, liveParts);
+        TabuSearchPlanner.evaluateSolution(ctx, original, minute);
+        TabuSearchPlanner.evaluateSolution(ctx, candidate, minute);
+        if (!(candidate.totalCost < original.totalCost)) {
+            backgroundOptimizer.improvementsDiscarded++;
+            return;
+        }
+
+        for (PlannedRoute route : candidate.routes) {
+            TruckState ts = ctx.truckStates.get(route.truck.id);
+            boolean hadPlan = !ts.currentRoutePlan.isEmpty();
+            if (hadPlan && !ts.routes.isEmpty()) ts.routes.remove(ts.routes.size() - 1);
+            List<Object> actionPlan = new LinkedList<>();
+            if (!route.sequence.isEmpty()) {
+                actionPlan.addAll(route.sequence);
+                actionPlan.add(route.endDepot);
+                ts.routes.add(route);
+            }
+            setPlan(ts, actionPlan);
+            if (ts.getStatus() == TruckState.Status.PRE_TRIP) {
+                if (actionPlan.isEmpty()) {
+                    ts.setStatus(TruckState.Status.IDLE);
+                    ts.setTimeAvailable(minute);
+                    ts.setCurrentLoadM3(0);
+                } else {
+                    ts.setCurrentLoadM3(calculateRequiredLoadForPlan(actionPlan));
+                }
             }
         }
-        System.out.println("Total de camiones con nuevas rutas asignadas: " + assignedTrucks.size());
+        backgroundOptimizer.improvementsApplied++;
+        ctx.log.debug(PLANNER, () -> "Optimizador en segundo plano: mejora aplicada en t=" + minute + " | Costo: " +
+                formatCost(original.totalCost) + " -> " + formatCost(candidate.totalCost));
+        planVersion++;
+        submitBackgroundSnapshot(minute);
+    }
+
+    // Aplica el plan asíncrono si ya terminó (o espera si se alcanzó su retraso máximo). Las partes servidas o tomadas
+    // por otro camión mientras tanto se quitan, y applyPlannedRoutes vuelve a comprobar que cada camión siga IDLE.
+    private void applyAsyncPlan(int minute) {
+        AsyncPlanningRunner.Result result = asyncPlanner.poll(ctx, minute);
+        if (result == null) return;
+        ctx.planningNanos.add(result.planNanos);
+        recordReplan(result.planNanos);
+        if (replanBatcher != null) replanBatcher.recordPlanTime(result.backlogSize, result.planNanos);
+        if (result.solution == null) {
+            ctx.log.warn(PLANNER, "  (Replanificación asíncrona de t=" + result.submitMinute + " falló o no fue necesaria)");
+            return;
+        }
+        Map<Integer, CustomerPart> assignable = new HashMap<>();
+        for (CustomerPart part : getUnservedCustomerParts()) assignable.put(part.partId, part);
+        PlanningSolution liveSolution = result.solution.remapTo(ctx, assignable);
+        ctx.log.debug(PLANNER, () -> "  (Plan asíncrono de t=" + result.submitMinute + " aplicado en t=" + minute + " (+" + (minute - result.firstSubmitMinute) +
+                " min, " + result.planNanos / 1_000_000 + " ms), costo: " + formatCost(liveSolution.totalCost) +
+                ", Sin asignar: " + liveSolution.unassignedParts.size() + ")");
+        applyPlannedRoutes(liveSolution, minute);
+        submitBackgroundSnapshot(minute);
+    }
+
+    // Planifica en un hilo aparte sobre una bifurcación del estado (ver AsyncPlanningRunner)
+    public void enableAsyncPlanning(int maxLagMinutes) {
+        this.asyncPlanner = new AsyncPlanningRunner(maxLagMinutes);
+    }
+
+    // Reparte entre 'threads' hilos las transiciones de los minutos en que vencen al menos 'minTrucks' camiones;
+    // el resultado es el mismo que en serie (ver ParallelTransitions)
+    public void enableParallelTransitions(int threads, int minTrucks) {
+        this.parallelTransitions = new ParallelTransitions(threads, minTrucks);
+    }
+
+    public void enableParallelTransitions(int threads) {
+        enableParallelTransitions(threads, PARALLEL_TRANSITIONS_MIN_TRUCKS);
+    }
+
+    // Indicadores de la corrida en ctx.metrics (sim.*); en un contexto bifurcado no se registran
+    private void registerRunMetrics() {
+        if (ctx.metrics.isFork()) return;
+        runStartNanos = System.nanoTime();
+        runEndNanos = 0;
+        runStartMinute = ctx.currentSimTime;
+        SimMetrics m = ctx.metrics;
+        m.gauge("sim.minutes", () -> ctx.currentSimTime - runStartMinute);
+        m.gauge("sim.minutes_per_wall_second", () -> {
+            long end = runEndNanos != 0 ? runEndNanos : System.nanoTime();
+            return (ctx.currentSimTime - runStartMinute) / Math.max(1e-9, (end - runStartNanos) / 1e9);
+        });
+        m.gauge("sim.replans_per_day", () -> {
+            int minutes = ctx.currentSimTime - runStartMinute;
+            return minutes <= 0 ? 0.0 : m.count("sim.replans") * 1440.0 / minutes;
+        });
+    }
+
+    private void recordReplan(long planNanos) {
+        if (ctx.metrics.isFork()) return;
+        ctx.metrics.counter("sim.replans").increment();
+        ctx.metrics.histogram("sim.replan").record(planNanos);
+    }
+
+    // Archivo JSON con ctx.metrics al terminar runSimulation; null: no se escribe
+    public void setMetricsFile(Path metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    public ParallelTransitions getParallelTransitions() {
+        return parallelTransitions;
+    }
+
+    public AsyncPlanningRunner getAsyncPlanner() {
+        return asyncPlanner;
+    }
+
+    // Agrupa las llegadas antes de replanificar (ver ReplanBatcher); null vuelve a replanificar en cada minuto con llegadas
+    public void setReplanBatcher(ReplanBatcher replanBatcher) {
+        this.replanBatcher = replanBatcher;
+    }
+
+    public ReplanBatcher getReplanBatcher() {
+        return replanBatcher;
+    }
+
+    public boolean isEventDriven() {
+        return eventDriven;
+    }
+
+    public void setEventDriven(boolean eventDriven) {
+        this.eventDriven = eventDriven;
     }
 
-    public TabuSearchPlanner getPlanner() {
+    public RoutePlanner getPlanner() {
         return planner;
     }
 
-    public void setPlanner(TabuSearchPlanner planner) {
+    public void setPlanner(RoutePlanner planner) {
         this.planner = planner;
     }
 }
@@ -22,6 +22,11 @@ public class TiempoUtils {
         }
     }
 
+    // Inversa de parsearMarcaDeTiempo: 1464 -> "01d00h24m"
+    public static String formatearMarcaDeTiempo(int minutos) {
+        return String.format("%02dd%02dh%02dm", minutos / (24 * 60), minutos / 60 % 24, minutos % 60);
+    }
+
     public static int parsearHoras(String limite) {
         try {
             String horasStr = limite.replace("h", "").trim();
@@ -0,0 +1,144 @@
+package mdvrp.simulation;
+
+import mdvrp.model.CustomerPart;
+import mdvrp.model.Depot;
+import mdvrp.state.SimulationContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Efectos de la transición de un camión sobre el estado compartido del contexto: registro de partes, indicadores,
+// inventario de GLP de los depósitos y bitácora. Se acumulan como intenciones y apply() los vuelca, así que las
+// transiciones de un mismo minuto pueden calcularse en paralelo y fusionarse en orden de flota. En serie (direct) no hay
+// nada que fusionar: cada efecto se escribe en el contexto en el momento y no se reservan los buffers.
+// El estado propio del camión (fila del FleetStore) sí se escribe directamente.
+class TransitionEffects {
+
+    final boolean verbose;                                           // DEBUG de TRUCKS activo: armar los mensajes
+    private final SimulationContext target;                          // null: todo se guarda y se vuelca al fusionar
+    private final List<Object[]> messages;                           // {nivel, mensaje} guardados
+    private final List<Consumer<SimulationContext>> intents;
+    private final Map<Depot, Double> depotLevels;                    // Inventario según esta transición
+    private final Set<Depot> depotsRead;
+
+    private TransitionEffects(boolean verbose, SimulationContext target) {
+        this.verbose = verbose;
+        this.target = target;
+        boolean buffered = target == null;
+        this.messages = buffered ? new ArrayList<>() : null;
+        this.intents = buffered ? new ArrayList<>() : null;
+        this.depotLevels = buffered ? new LinkedHashMap<>() : null;
+        this.depotsRead = buffered ? new HashSet<>() : null;
+    }
+
+    // Para el recorrido en serie: se escribe en el contexto en el momento. Una sola instancia sirve para todo el minuto
+    static TransitionEffects direct(SimulationContext ctx) {
+        return new TransitionEffects(ctx.log.on(SimLog.Level.DEBUG, SimLog.Subsystem.TRUCKS), ctx);
+    }
+
+    // Para un hilo de trabajo: todo se guarda y se reproduce al fusionar
+    static TransitionEffects buffered(SimulationContext ctx) {
+        return new TransitionEffects(ctx.log.on(SimLog.Level.DEBUG, SimLog.Subsystem.TRUCKS), null);
+    }
+
+    void debug(String message) {
+        message(SimLog.Level.DEBUG, message);
+    }
+
+    void warn(String message) {
+        message(SimLog.Level.WARN, message);
+    }
+
+    void error(String message) {
+        message(SimLog.Level.ERROR, message);
+    }
+
+    private void message(SimLog.Level level, String message) {
+        if (target != null) {
+            target.log.log(level, SimLog.Subsystem.TRUCKS, message);
+        } else {
+            messages.add(new Object[]{level, message});
+        }
+    }
+
+    void dispatch(CustomerPart part, String truckId) {
+        if (target != null) {
+            target.customerParts.dispatch(part, truckId);
+        } else {
+            intents.add(ctx -> ctx.customerParts.dispatch(part, truckId));
+        }
+    }
+
+    void release(CustomerPart part, String truckId) {
+        if (target != null) {
+            target.customerParts.release(part, truckId);
+        } else {
+            intents.add(ctx -> ctx.customerParts.release(part, truckId));
+        }
+    }
+
+    void served(CustomerPart part, boolean late) {
+        if (target != null) {
+            markServed(target, part, late);
+        } else {
+            intents.add(ctx -> markServed(ctx, part, late));
+        }
+    }
+
+    private static void markServed(SimulationContext ctx, CustomerPart part, boolean late) {
+        ctx.customerParts.markServed(part);
+        ctx.partsServed++;
+        if (late) ctx.partsServedLate++;
+    }
+
+    void fuelConsumed(double gal) {
+        if (target != null) {
+            target.fuelConsumedGal += gal;
+        } else {
+            intents.add(ctx -> ctx.fuelConsumedGal += gal);
+        }
+    }
+
+    // GLP disponible en el depósito visto por esta transición (lo deja anotado como leído)
+    double capacity(Depot depot) {
+        if (target != null) return depot.capacidadActualM3;
+        depotsRead.add(depot);
+        Double level = depotLevels.get(depot);
+        return level != null ? level : depot.capacidadActualM3;
+    }
+
+    void withdraw(Depot depot, double amountM3) {
+        if (target != null) {
+            depot.capacidadActualM3 -= amountM3;
+        } else {
+            depotLevels.put(depot, capacity(depot) - amountM3);
+        }
+    }
+
+    // true si esta transición leyó algún depósito de 'written' (calculada con un inventario que ya no es el vigente).
+    // Solo tiene sentido en modo buffered
+    boolean readAny(Collection<Depot> written) {
+        for (Depot d : written) {
+            if (depotsRead.contains(d)) return true;
+        }
+        return false;
+    }
+
+    Set<Depot> depotsWritten() {
+        return depotLevels.keySet();
+    }
+
+    // Vuelca lo guardado; en modo direct ya está todo escrito
+    void apply(SimulationContext ctx) {
+        if (target != null) return;
+        for (Object[] m : messages) ctx.log.log((SimLog.Level) m[0], SimLog.Subsystem.TRUCKS, (String) m[1]);
+        for (Consumer<SimulationContext> intent : intents) intent.accept(ctx);
+        for (Map.Entry<Depot, Double> e : depotLevels.entrySet()) e.getKey().capacidadActualM3 = e.getValue();
+    }
+}
@@ -0,0 +1,100 @@
+package mdvrp.simulation;
+
+import mdvrp.model.Location;
+import mdvrp.model.Truck;
+import mdvrp.state.SimulationContext;
+
+// Tramo de un camión calculado una sola vez al salir: camino (celdas), distancia, combustible y hora de llegada.
+// La llegada consume este registro en vez de volver a buscar el camino, así que el combustible cobrado es el del
+// camino que se recorrió aunque los bloqueos cambien durante el viaje.
+public class TruckLeg {
+
+    public final Location destination;
+    public final int departureMinute;
+    public final int arrivalMinute;
+    public final int distance;
+    public final double fuelGal;
+    public final int[] cells;   // Celdas del camino (x * gridHeight + y), con origen y destino
+    private final int gridHeight;
+
+    public TruckLeg(Location destination, int departureMinute, int arrivalMinute, int distance, double fuelGal, int[] cells, int gridHeight) {
+        this.destination = destination;
+        this.departureMinute = departureMinute;
+        this.arrivalMinute = arrivalMinute;
+        this.distance = distance;
+        this.fuelGal = fuelGal;
+        this.cells = cells;
+        this.gridHeight = gridHeight;
+    }
+
+    // Tramo desde 'from' saliendo en 'departureMinute' con 'loadM3' a bordo; null si los bloqueos vigentes no dejan camino
+    public static TruckLeg plan(SimulationContext ctx, Truck truck, Location from, Location to, int departureMinute, double loadM3) {
+        int[] cells = ctx.distanceOracle.path(from, to);
+        if (cells == null) return null;
+        int distance = cells.length - 1;
+        int travelTime = (int) Math.round(distance * SimulationUtils.MINUTOS_POR_KM);
+        double fuel = SimulationUtils.calculateFuelConsumed(distance, loadM3, truck);
+        return new TruckLeg(to, departureMinute, departureMinute + travelTime, distance, fuel, cells, ctx.gridHeight);
+    }
+
+    // Mismo tramo con otro objeto destino (copia de la parte o depósito en un contexto bifurcado)
+    public TruckLeg withDestination(Location destination) {
+        return new TruckLeg(destination, departureMinute, arrivalMinute, distance, fuelGal, cells, gridHeight);
+    }
+
+    public int travelMinutes() {
+        return arrivalMinute - departureMinute;
+    }
+
+    // Celda en la que está el camión en 'minute', interpolando a velocidad constante sobre el camino
+    public Location positionAt(int minute) {
+        int cell = cells[stepAt(minute)];
+        return new Location(cell / gridHeight, cell % gridHeight);
+    }
+
+    // Índice en 'cells' de la celda alcanzada en 'minute'
+    public int stepAt(int minute) {
+        if (minute <= departureMinute) return 0;
+        if (minute >= arrivalMinute) return distance;
+        return (int) ((long) distance * (minute - departureMinute) / (arrivalMinute - departureMinute));
+    }
+
+    // true si alguna celda que falta recorrer después de 'minute' está bloqueada (el destino se acepta bloqueado, como en el BFS)
+    public boolean blockedAhead(SimulationContext ctx, int minute) {
+        for (int k = stepAt(minute) + 1; k < cells.length - 1; k++) {
+            if (ctx.blockedNodes[cells[k] / gridHeight][cells[k] % gridHeight]) return true;
+        }
+        return false;
+    }
+
+    // Desvío con los bloqueos vigentes desde la celda alcanzada en 'minute' (o desde el origen si aún no salió).
+    // Conserva lo ya recorrido y el consumo por km del tramo (la carga no cambia en viaje); null si no hay camino.
+    public TruckLeg rerouteAt(SimulationContext ctx, int minute) {
+        return divertAt(ctx, minute, destination);
+    }
+
+    // Como rerouteAt pero hacia otro destino (un depósito cuando el desvío no alcanza con el combustible)
+    public TruckLeg divertAt(SimulationContext ctx, int minute, Location newDestination) {
+        int step = stepAt(minute);
+        int here = cells[step];
+        int[] rest = ctx.distanceOracle.path(new Location(here / gridHeight, here % gridHeight), newDestination);
+        if (rest == null) return null;
+        int[] merged = new int[step + rest.length];
+        System.arraycopy(cells, 0, merged, 0, step);
+        System.arraycopy(rest, 0, merged, step, rest.length);
+        int newDistance = merged.length - 1;
+        double fuel = distance == 0 ? 0.0 : fuelGal * newDistance / distance;
+        int restTravel = (int) Math.round((rest.length - 1) * SimulationUtils.MINUTOS_POR_KM);
+        return new TruckLeg(newDestination, departureMinute, Math.max(minute, departureMinute) + restTravel, newDistance, fuel, merged, gridHeight);
+    }
+
+    // Combustible de lo ya recorrido en 'minute', al consumo por km del tramo
+    public double fuelBurnedAt(int minute) {
+        return distance == 0 ? 0.0 : fuelGal * stepAt(minute) / distance;
+    }
+
+    @Override
+    public String toString() {
+        return "tramo a " + destination + " (" + distance + " km, " + SimulationUtils.formatTime(departureMinute) + " -> " + SimulationUtils.formatTime(arrivalMinute) + ")";
+    }
+}
@@ -4,30 +4,92 @@ import mdvrp.model.Location;
 import mdvrp.model.Truck;
 import mdvrp.planner.PlannedRoute;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.AbstractList;
 import java.util.List;
 
-import static mdvrp.state.GlobalState.MAX_FUEL_GAL;
-
+// Vista de un camión sobre el FleetStore: los datos calientes viven en los arreglos del store, aquí solo quedan el
+// camión, su historial de rutas y el plan como List (una vista sobre la cola de enteros del store).
 public class TruckState {
-    Truck truck;
     public enum Status { IDLE, PRE_TRIP, EN_ROUTE, EN_ROUTE_TO_RELOAD, DISCHARGING, RETURNING, INACTIVE }
-    public Status status = Status.IDLE;
-    Location currentLocation;
-    double currentLoadM3 = 0.0;
-    double currentFuelGal;
-    public int timeAvailable;
-    List<Object> currentRoutePlan = new LinkedList<>();
-    Location destination = null;
-    int arrivalTimeAtDestination = -1;
+
+    final FleetStore store;
+    final int index;
+    Truck truck;
+    final List<Object> currentRoutePlan;
     public List<PlannedRoute> routes;
 
-    public TruckState(Truck truck) {
+    TruckState(FleetStore store, int index, Truck truck, List<PlannedRoute> routes) {
+        this.store = store;
+        this.index = index;
         this.truck = truck;
-        this.currentLocation = truck.homeDepot;
-        this.currentFuelGal = MAX_FUEL_GAL;
-        this.timeAvailable = 0;
-        this.routes = new ArrayList<>();
+        this.routes = routes;
+        this.currentRoutePlan = new PlanView();
+    }
+
+    public Truck getTruck() { return truck; }
+    public int getIndex() { return index; }
+
+    public Status getStatus() { return store.status(index); }
+    public void setStatus(Status status) { store.setStatus(index, status); }
+
+    public Location getCurrentLocation() { return store.location[index]; }
+    public void setCurrentLocation(Location location) { store.setLocation(index, location); }
+    public int getCurrentCell() { return store.cell[index]; }
+
+    public double getCurrentLoadM3() { return store.load[index]; }
+    public void setCurrentLoadM3(double load) { store.load[index] = load; }
+
+    public double getCurrentFuelGal() { return store.fuel[index]; }
+    public void setCurrentFuelGal(double fuel) { store.fuel[index] = fuel; }
+
+    public int getTimeAvailable() { return store.timeAvailable[index]; }
+    public void setTimeAvailable(int time) { store.setTimeAvailable(index, time); }
+
+    public Location getDestination() { return store.destination[index]; }
+    public void setDestination(Location destination) { store.destination[index] = destination; store.markChanged(index); }
+
+    public int getArrivalTimeAtDestination() { return store.eta[index]; }
+    public void setArrivalTimeAtDestination(int time) { store.eta[index] = time; }
+
+    public TruckLeg getCurrentLeg() { return store.leg[index]; }   // Tramo en curso, calculado al salir
+    public void setCurrentLeg(TruckLeg leg) { store.leg[index] = leg; store.markChanged(index); }
+
+    public List<Object> getCurrentRoutePlan() { return currentRoutePlan; }
+
+    // Cambia cada vez que algo del camión cambia
+    public int getVersion() { return store.version[index]; }
+
+    // El plan (partes y depósitos) decodificado desde la cola del store
+    private class PlanView extends AbstractList<Object> {
+        @Override public Object get(int position) {
+            checkIndex(position);
+            return store.decode(store.planStep(index, position));
+        }
+        @Override public int size() {
+            return store.planSize[index];
+        }
+        @Override public void add(int position, Object step) {
+            if (position < 0 || position > size()) throw new IndexOutOfBoundsException("Posición " + position + ", tamaño " + size());
+            store.planInsert(index, position, store.encode(step));
+            modCount++;
+        }
+        @Override public Object remove(int position) {
+            checkIndex(position);
+            Location step = store.decode(store.planRemove(index, position));
+            modCount++;
+            return step;
+        }
+        @Override public Object set(int position, Object step) {
+            Object old = remove(position);
+            add(position, step);
+            return old;
+        }
+        @Override public void clear() {
+            store.planClear(index);
+            modCount++;
+        }
+        private void checkIndex(int position) {
+            if (position < 0 || position >= size()) throw new IndexOutOfBoundsException("Posición " + position + ", tamaño " + size());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,202 @@
+package mdvrp.state;
+
+import mdvrp.model.CustomerPart;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Registro de partes de pedido indexado por partId, con el ciclo de vida explícito:
+//   PENDING -> PLANNED (en el plan de un camión IDLE) -> DISPATCHED (camión en marcha) -> SERVED
+// Una parte sin despachar cuya hora límite pasó queda EXPIRED; se sigue ofreciendo al planificador (se atiende tarde).
+// Cada estado es un BitSet sobre partId, así que cambiar de estado y buscar una parte cuestan O(1), y listar un
+// estado cuesta O(resultado) más un barrido de palabras de 64 bits. Los listados salen ordenados por partId, que es el
+// orden de llegada (el mismo que tenía la lista de partes activas).
+public class CustomerPartRegistry {
+
+    public enum State { PENDING, PLANNED, DISPATCHED, SERVED, EXPIRED }
+
+    private static final State[] STATES = State.values();
+    private static final byte NONE = -1;
+
+    private CustomerPart[] parts = new CustomerPart[256];
+    private byte[] states = new byte[256];
+    private String[] assignedTruck = new String[256];
+    private final BitSet[] byState = new BitSet[STATES.length];
+    private final BitSet active = new BitSet();        // Todo lo no servido
+    private final BitSet assignable = new BitSet();    // PENDING, PLANNED y EXPIRED: lo que se replanifica
+    private final int[] counts = new int[STATES.length];
+    private final PriorityQueue<long[]> deadlines = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));   // {límite, partId} de partes PENDING
+    private int clock = Integer.MIN_VALUE;
+
+    public CustomerPartRegistry() {
+        Arrays.fill(states, NONE);
+        for (int i = 0; i < byState.length; i++) byState[i] = new BitSet();
+    }
+
+    // Copia con las partes reemplazadas por 'copies' (partId -> copia), para un contexto bifurcado
+    public CustomerPartRegistry fork(Map<Integer, CustomerPart> copies) {
+        CustomerPartRegistry f = new CustomerPartRegistry();
+        f.parts = parts.clone();   // Las servidas se comparten
+        for (int id = active.nextSetBit(0); id >= 0; id = active.nextSetBit(id + 1)) {
+            CustomerPart copy = copies.get(id);
+            f.parts[id] = copy != null ? copy : parts[id];
+        }
+        f.states = states.clone();
+        f.assignedTruck = assignedTruck.clone();
+        for (int i = 0; i < byState.length; i++) f.byState[i] = (BitSet) byState[i].clone();
+        f.active.or(active);
+        f.assignable.or(assignable);
+        System.arraycopy(counts, 0, f.counts, 0, counts.length);
+        f.deadlines.addAll(deadlines);
+        f.clock = clock;
+        return f;
+    }
+
+    public void clear() {
+        parts = new CustomerPart[256];
+        states = new byte[256];
+        Arrays.fill(states, NONE);
+        assignedTruck = new String[256];
+        for (BitSet bits : byState) bits.clear();
+        active.clear();
+        assignable.clear();
+        Arrays.fill(counts, 0);
+        deadlines.clear();
+        clock = Integer.MIN_VALUE;
+    }
+
+    // Parte recién liberada
+    public void add(CustomerPart part) {
+        ensureCapacity(part.partId);
+        parts[part.partId] = part;
+        active.set(part.partId);
+        setPending(part.partId);
+    }
+
+    // Parte ya servida (al restaurar un checkpoint)
+    public void addServed(CustomerPart part) {
+        ensureCapacity(part.partId);
+        parts[part.partId] = part;
+        setState(part.partId, State.SERVED);
+    }
+
+    public CustomerPart get(int partId) {
+        return partId >= 0 && partId < parts.length ? parts[partId] : null;
+    }
+
+    public State state(int partId) {
+        if (partId < 0 || partId >= states.length || states[partId] == NONE) return null;
+        return STATES[states[partId]];
+    }
+
+    // Camión en cuyo plan está la parte (PLANNED o DISPATCHED); null si no tiene
+    public String assignedTruck(int partId) {
+        return partId >= 0 && partId < assignedTruck.length ? assignedTruck[partId] : null;
+    }
+
+    // La parte entra al plan de 'truckId'; 'dispatched' si el camión ya está en marcha
+    public void assign(CustomerPart part, String truckId, boolean dispatched) {
+        if (!isActive(part.partId)) return;
+        assignedTruck[part.partId] = truckId;
+        setState(part.partId, dispatched ? State.DISPATCHED : State.PLANNED);
+    }
+
+    // El camión arrancó con la parte en su plan
+    public void dispatch(CustomerPart part, String truckId) {
+        assign(part, truckId, true);
+    }
+
+    // La parte sale del plan de 'truckId' sin servirse; si otro camión ya la tomó, no cambia
+    public void release(CustomerPart part, String truckId) {
+        int id = part.partId;
+        if (!isActive(id) || !truckId.equals(assignedTruck[id])) return;
+        setPending(id);
+    }
+
+    public void markServed(CustomerPart part) {
+        int id = part.partId;
+        if (!isActive(id)) return;
+        setState(id, State.SERVED);
+        active.clear(id);
+    }
+
+    // Marca EXPIRED las partes aún pendientes cuya hora límite es anterior a 'minute'
+    public void expireUpTo(int minute) {
+        clock = Math.max(clock, minute);
+        while (!deadlines.isEmpty() && deadlines.peek()[0] < minute) {
+            int id = (int) deadlines.poll()[1];
+            if (states[id] == State.PENDING.ordinal()) setState(id, State.EXPIRED);
+        }
+    }
+
+    // Partes sin servir y sin camión en marcha (PENDING, PLANNED, EXPIRED), en orden de llegada
+    public List<CustomerPart> unserved() {
+        return list(assignable);
+    }
+
+    // Partes sin servir en cualquier estado, en orden de llegada
+    public List<CustomerPart> active() {
+        return list(active);
+    }
+
+    public List<CustomerPart> inState(State state) {
+        return list(byState[state.ordinal()]);
+    }
+
+    public int activeCount() {
+        return counts[State.PENDING.ordinal()] + counts[State.PLANNED.ordinal()] + counts[State.DISPATCHED.ordinal()] + counts[State.EXPIRED.ordinal()];
+    }
+
+    public int count(State state) {
+        return counts[state.ordinal()];
+    }
+
+    public boolean isActive(int partId) {
+        return partId >= 0 && active.get(partId);
+    }
+
+    private List<CustomerPart> list(BitSet bits) {
+        List<CustomerPart> result = new ArrayList<>();
+        for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)) result.add(parts[id]);
+        return result;
+    }
+
+    private void setPending(int id) {
+        assignedTruck[id] = null;
+        CustomerPart part = parts[id];
+        if (part.deadlineMinutes < clock) {
+            setState(id, State.EXPIRED);
+        } else {
+            setState(id, State.PENDING);
+            deadlines.add(new long[]{part.deadlineMinutes, id});
+        }
+    }
+
+    private void setState(int id, State state) {
+        byte old = states[id];
+        if (old != NONE) {
+            byState[old].clear(id);
+            counts[old]--;
+        }
+        states[id] = (byte) state.ordinal();
+        byState[state.ordinal()].set(id);
+        counts[state.ordinal()]++;
+        if (state == State.PENDING || state == State.PLANNED || state == State.EXPIRED) assignable.set(id);
+        else assignable.clear(id);
+        if (state != State.PLANNED && state != State.DISPATCHED) assignedTruck[id] = null;
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < parts.length) return;
+        int size = Math.max(parts.length * 2, id + 1);
+        parts = Arrays.copyOf(parts, size);
+        assignedTruck = Arrays.copyOf(assignedTruck, size);
+        int old = states.length;
+        states = Arrays.copyOf(states, size);
+        Arrays.fill(states, old, size, NONE);
+    }
+}
@@ -1,14 +1,6 @@
 package mdvrp.state;
 
-import mdvrp.model.*;
-import mdvrp.simulation.IOUtils;
-import mdvrp.simulation.TruckState;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
+// Constantes del problema. El estado de cada simulación vive en su SimulationContext.
 public class GlobalState {
 
     // Constantes del problema principal
@@ -22,68 +14,32 @@ public class GlobalState {
     public static final double MAX_TRUCK_CAPACITY_M3 = 25.0;
     public static final int TS_MAX_ITERATIONS = 400;
     public static final int TS_TABU_TENURE = 15;
+    public static final long TS_RANDOM_SEED = 12345L;
+    public static final int TS_OPERATOR_SEGMENT = 20;        // Iteraciones entre actualizaciones de pesos de operadores
+    public static final double TS_OPERATOR_REACTION = 0.3;   // Qué tanto pesa el último segmento en el peso de un operador
+    public static final double TS_MIN_SAMPLING_RATE = 0.1;   // Fracción mínima que se muestrea de un vecindario poco productivo
+    public static final int TS_OR_OPT_MAX_SEGMENT = 3;
+    public static final int SAVINGS_MIN_PARTS = 40;          // Desde este tamaño de lote AUTO construye con ahorros
+    public static final int PARALLEL_TS_RUNS = 4;            // Búsquedas independientes del planificador tabú paralelo
+    public static final int TIER_BURST_PARTS = 60;           // Backlog desde el cual se planifica solo con Greedy
+    public static final int TIER_URGENT_SLACK_MINUTES = 90;  // Con una hora límite más cercana que esto, también Greedy
+    public static final int TIER_QUIET_PARTS = 15;           // Backlog hasta el cual se permite la búsqueda paralela...
+    public static final int TIER_QUIET_SLACK_MINUTES = 360;  // ...si además ningún plazo vence antes de esto
+    public static final int BACKGROUND_TS_ITERATIONS = 100;  // Iteraciones por ronda del optimizador en segundo plano
+    public static final int BACKGROUND_MAX_ROUNDS = 5;       // Rondas seguidas mientras siga mejorando
+    public static final int REPLAN_DEBOUNCE_MINUTES = 10;    // Ventana en que se agrupan llegadas antes de replanificar
+    public static final int REPLAN_DEADLINE_MARGIN_MINUTES = 120; // El lote se cierra si la hora límite más cercana está a menos de esto
+    public static final double REPLAN_BUDGET_MS = 200.0;     // Tiempo de planificación con el que se dimensiona el lote
+    public static final double REPLAN_THROUGHPUT_SMOOTHING = 0.3;
+    public static final int FORWARD_SIM_CANDIDATES = 4;      // Planes candidatos que se simulan hacia adelante por replanificación
+    public static final int FORWARD_SIM_HORIZON_MINUTES = 24 * 60;
+    public static final double FORWARD_SIM_LATE_PENALTY_GAL = 50.0;      // Por parte servida fuera de plazo en la simulación
+    public static final double FORWARD_SIM_UNSERVED_PENALTY_GAL = 100.0; // Por parte sin servir al final del horizonte
+    public static final double FORWARD_SIM_INACTIVE_PENALTY_GAL = 200.0; // Por camión que quedó INACTIVE
+    public static final int PARALLEL_TRANSITIONS_MIN_TRUCKS = 32; // Camiones que vencen en el mismo minuto desde los cuales se reparten entre hilos
+    public static final int DISTANCE_CACHE_MAX_ENTRIES = 200_000; // Al superarlo se vacía la caché de distancias
     public static final double RELOAD_PENALTY_COST_GAL = 0.1;
 
-    // Estado global de la simulación
-    public static boolean[][] blockedNodes = new boolean[GRID_WIDTH][GRID_HEIGHT];
-    public static List<Depot> depots = new ArrayList<>();
-    public static List<Truck> fleet = new ArrayList<>();
-    public static Map<String, TruckState> truckStates = new HashMap<>();
-    public static List<CustomerPart> activeCustomerParts = new ArrayList<>();
-    public static List<Pedido> pendingPedidos = new ArrayList<>();
-    public static List<Bloqueo> definedBloqueos = new ArrayList<>();
-    public static int currentSimTime = 0;
-
-    public static void initialize(String pedidosFile, String bloqueosFile) throws Exception {
-        System.out.println("Inicializando estado global...");
-
-        // Limpiar estado previo si es necesario
-        depots.clear();
-        fleet.clear();
-        truckStates.clear();
-        activeCustomerParts.clear();
-        pendingPedidos.clear();
-        definedBloqueos.clear();
-        blockedNodes = new boolean[GRID_WIDTH][GRID_HEIGHT];
-        currentSimTime = 0;
-        CustomerPart.nextPartId = 0;
-
-        // Cargar datos de archivos
-        pendingPedidos = IOUtils.cargarPedidos(pedidosFile);
-        definedBloqueos = IOUtils.cargarBloqueos(bloqueosFile);
-
-        // Crear Depósitos
-        depots.add(new Depot("Planta", 12, 8, Double.POSITIVE_INFINITY));
-        depots.add(new Depot("Norte", 42, 42, 160.0));
-        depots.add(new Depot("Este", 63, 3, 160.0));
-        System.out.println("Depósitos creados: " + depots.size());
-
-        // Crear Flota y Estados de Camión
-        Depot mainDepot = depots.get(0);
-        int count = 0;
-        String[] types = {"TA", "TB", "TC", "TD"};
-        int[] counts = {2, 4, 4, 10};
-        TruckType[] enumTypes = TruckType.values();
-
-        if (types.length != enumTypes.length || types.length != counts.length) {
-            throw new IllegalStateException("Configuración de tipos/conteos de camiones inconsistente.");
-        }
-
-        for (int typeIdx = 0; typeIdx < types.length; typeIdx++) {
-            TruckType currentType = enumTypes[typeIdx];
-            // Validar que el nombre coincida si es necesario: assert types[typeIdx].equals(currentType.name());
-            for (int i = 1; i <= counts[typeIdx]; i++) {
-                String truckId = String.format("%s%02d", types[typeIdx], i);
-                Truck truck = new Truck(truckId, currentType, mainDepot);
-                fleet.add(truck);
-                truckStates.put(truckId, new TruckState(truck));
-                count++;
-            }
-        }
-        System.out.println("Flota creada: " + count + " camiones.");
-        System.out.println("Inicialización completa.");
-    }
-
     // Prevenir instanciación si solo contiene estáticos
     private GlobalState() {}
 
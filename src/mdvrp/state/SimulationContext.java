@@ -0,0 +1,242 @@
+package mdvrp.state;
+
+import mdvrp.model.*;
+import mdvrp.planner.InitialSolutionStrategy;
+import mdvrp.planner.SearchTrace;
+import mdvrp.simulation.BlockageCalendar;
+import mdvrp.simulation.DistanceOracle;
+import mdvrp.simulation.FleetStore;
+import mdvrp.simulation.IOUtils;
+import mdvrp.simulation.OrderReleaseQueue;
+import mdvrp.simulation.SimLog;
+import mdvrp.simulation.SimMetrics;
+import mdvrp.simulation.TruckState;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static mdvrp.state.GlobalState.*;
+
+// Estado de una simulación. Cada escenario tiene su propio contexto, así que varias simulaciones pueden correr a la vez
+// en la misma JVM; GlobalState solo conserva las constantes del problema.
+public class SimulationContext {
+
+    // Parámetros del escenario (se fijan antes de initialize)
+    public int gridWidth = GRID_WIDTH;
+    public int gridHeight = GRID_HEIGHT;
+    public String[] fleetTypes = {"TA", "TB", "TC", "TD"};
+    public int[] fleetCounts = {2, 4, 4, 10};
+    public String fleetFile = null;       // Si no es null, flota desde archivo ("TIPO cantidad [depósito]" por línea)
+    public String depotFile = null;       // Si no es null, depósitos desde archivo ("nombre x y capacidad|inf" por línea)
+    public int tsMaxIterations = TS_MAX_ITERATIONS;
+    public int tsTabuTenure = TS_TABU_TENURE;
+    public long tsRandomSeed = TS_RANDOM_SEED;
+    public InitialSolutionStrategy initialSolutionStrategy = InitialSolutionStrategy.AUTO;
+    public boolean streamPedidos = false; // Leer pedidos del archivo a medida que se liberan (archivos de varios meses)
+    public SearchTrace searchTrace = null; // Traza por iteración del tabú (CSV); null: sin traza
+
+    // Salida de la simulación (un escenario en lote la redirige a su propio archivo)
+    public PrintStream out = System.out;
+    public PrintStream err = System.err;
+    public SimLog log = new SimLog(this);   // Niveles por subsistema; escribe en out/err (o en CSV)
+    public SimMetrics metrics = new SimMetrics(this);   // Contadores e histogramas (JMX, JSON); antes que distanceOracle
+
+    // Estado de la simulación
+    public boolean[][] blockedNodes = new boolean[GRID_WIDTH][GRID_HEIGHT];
+    public List<Depot> depots = new ArrayList<>();
+    public List<Truck> fleet = new ArrayList<>();
+    public FleetStore fleetStore = new FleetStore(this);                     // Estado de los camiones, por número de camión
+    public Map<String, TruckState> truckStates = new HashMap<>();            // Vistas del fleetStore por id
+    public CustomerPartRegistry customerParts = new CustomerPartRegistry();   // Partes por partId y estado
+    public OrderReleaseQueue pendingPedidos = new OrderReleaseQueue(new ArrayList<>());
+    public List<Bloqueo> definedBloqueos = new ArrayList<>();
+    public BlockageCalendar blockageCalendar = new BlockageCalendar(this, new ArrayList<>());
+    public DistanceOracle distanceOracle = new DistanceOracle(this);
+    public int currentSimTime = 0;
+    public int nextPartId = 0;
+
+    // Indicadores acumulados por el simulador
+    public double fuelConsumedGal = 0.0;
+    public int partsServed = 0;
+    public int partsServedLate = 0;
+    public List<Long> planningNanos = new ArrayList<>();   // Duración de cada llamada al planificador
+
+    public void initialize(String pedidosFile, String bloqueosFile) throws Exception {
+        log.info(SimLog.Subsystem.IO, "Inicializando estado global...");
+
+        // Limpiar estado previo si es necesario
+        depots.clear();
+        fleet.clear();
+        fleetStore = new FleetStore(this);
+        truckStates.clear();
+        customerParts.clear();
+        definedBloqueos.clear();
+        blockedNodes = new boolean[gridWidth][gridHeight];
+        currentSimTime = 0;
+        nextPartId = 0;
+        fuelConsumedGal = 0.0;
+        partsServed = 0;
+        partsServedLate = 0;
+        planningNanos.clear();
+        metrics.reset();
+
+        // Cargar datos de archivos
+        PrintStream ioOut = log.stream(SimLog.Level.INFO, SimLog.Subsystem.IO);
+        PrintStream ioErr = log.stream(SimLog.Level.WARN, SimLog.Subsystem.IO);
+        if (streamPedidos) {
+            pendingPedidos = OrderReleaseQueue.streaming(pedidosFile, ioOut, ioErr);
+        } else {
+            pendingPedidos = new OrderReleaseQueue(IOUtils.cargarPedidos(pedidosFile, ioOut, ioErr));
+            pendingPedidos.setErr(ioErr);
+        }
+        definedBloqueos = IOUtils.cargarBloqueos(bloqueosFile, ioOut, ioErr);
+        distanceOracle = new DistanceOracle(this);
+        blockageCalendar = new BlockageCalendar(this, definedBloqueos);
+        blockageCalendar.addListener(distanceOracle);
+
+        // Crear Depósitos
+        if (depotFile != null) {
+            depots.addAll(IOUtils.cargarDepositos(depotFile, ioOut, ioErr));
+            if (depots.isEmpty()) throw new IllegalStateException("El archivo de depósitos no define ninguno: " + depotFile);
+            for (Depot d : depots) {
+                if (!inGrid(d.x, d.y)) throw new IllegalStateException("Depósito fuera de la grilla: " + d.id + " " + d);
+            }
+        } else {
+            depots.add(new Depot("Planta", 12, 8, Double.POSITIVE_INFINITY));
+            depots.add(new Depot("Norte", 42, 42, 160.0));
+            depots.add(new Depot("Este", 63, 3, 160.0));
+        }
+        log.info(SimLog.Subsystem.IO, "Depósitos creados: " + depots.size());
+
+        // Crear Flota y Estados de Camión
+        int count = 0;
+        if (fleetFile != null) {
+            int[] perType = new int[TruckType.values().length];
+            for (String[] entry : IOUtils.cargarFlota(fleetFile, ioOut, ioErr)) {
+                TruckType type = TruckType.valueOf(entry[0]);
+                Depot home = depotById(entry[2]);
+                if (home == null) throw new IllegalStateException("Depósito desconocido en la flota: " + entry[2]);
+                for (int i = 0, n = Integer.parseInt(entry[1]); i < n; i++) {
+                    addTruck(new Truck(String.format("%s%02d", type.name(), ++perType[type.ordinal()]), type, home));
+                    count++;
+                }
+            }
+        } else {
+            Depot mainDepot = depots.get(0);
+            TruckType[] enumTypes = TruckType.values();
+
+            if (fleetTypes.length != enumTypes.length || fleetTypes.length != fleetCounts.length) {
+                throw new IllegalStateException("Configuración de tipos/conteos de camiones inconsistente.");
+            }
+
+            for (int typeIdx = 0; typeIdx < fleetTypes.length; typeIdx++) {
+                TruckType currentType = enumTypes[typeIdx];
+                for (int i = 1; i <= fleetCounts[typeIdx]; i++) {
+                    String truckId = String.format("%s%02d", fleetTypes[typeIdx], i);
+                    addTruck(new Truck(truckId, currentType, mainDepot));
+                    count++;
+                }
+            }
+        }
+        log.info(SimLog.Subsystem.IO, "Flota creada: " + count + " camiones.");
+        log.info(SimLog.Subsystem.IO, "Inicialización completa.");
+    }
+
+    // Copia aislada del estado para simular hacia adelante sin tocar este contexto. Se copia solo lo que la simulación
+    // modifica (depósitos, camiones y sus planes, partes activas, celdas bloqueadas, contadores); los bloqueos
+    // compilados, la lista de pedidos, el historial de rutas y la caché de distancias se comparten hasta que la copia
+    // diverge. Debe llamarse con la simulación detenida (por ejemplo, desde el planificador).
+    public SimulationContext fork() {
+        SimulationContext f = new SimulationContext();
+        f.gridWidth = gridWidth;
+        f.gridHeight = gridHeight;
+        f.fleetTypes = fleetTypes;
+        f.fleetCounts = fleetCounts;
+        f.tsMaxIterations = tsMaxIterations;
+        f.tsTabuTenure = tsTabuTenure;
+        f.tsRandomSeed = tsRandomSeed;
+        f.initialSolutionStrategy = initialSolutionStrategy;
+        f.streamPedidos = streamPedidos;
+        f.searchTrace = searchTrace;
+        f.out = out;
+        f.err = err;
+        f.log = log.fork(f);
+        f.metrics = metrics.fork();
+
+        f.currentSimTime = currentSimTime;
+        f.nextPartId = nextPartId;
+        f.fuelConsumedGal = fuelConsumedGal;
+        f.partsServed = partsServed;
+        f.partsServedLate = partsServedLate;
+
+        Map<String, Depot> depotCopies = new HashMap<>();
+        for (Depot d : depots) {
+            Depot copy = new Depot(d.id, d.x, d.y, d.capacidadMaximaM3);
+            copy.capacidadActualM3 = d.capacidadActualM3;
+            f.depots.add(copy);
+            depotCopies.put(copy.id, copy);
+        }
+        Map<Integer, CustomerPart> partCopies = new HashMap<>();
+        for (CustomerPart cp : customerParts.active()) {
+            CustomerPart copy = new CustomerPart(cp.partId, cp.originalOrderId, cp.x, cp.y, cp.demandM3,
+                    cp.arrivalTimeMinutes, cp.deadlineMinutes, cp.originalClientId);
+            copy.served = cp.served;
+            partCopies.put(copy.partId, copy);
+        }
+        f.customerParts = customerParts.fork(partCopies);
+        for (Truck t : fleet) {
+            f.fleet.add(new Truck(t.id, t.type, depotCopies.getOrDefault(t.homeDepot.id, t.homeDepot)));
+        }
+        f.fleetStore = fleetStore.fork(f, f.fleet, partCopies, depotCopies);
+        for (TruckState ts : f.fleetStore.all()) f.truckStates.put(ts.getTruck().id, ts);
+
+        f.blockedNodes = new boolean[blockedNodes.length][];
+        for (int x = 0; x < blockedNodes.length; x++) f.blockedNodes[x] = blockedNodes[x].clone();
+        f.definedBloqueos = definedBloqueos;
+        f.pendingPedidos = pendingPedidos.fork();
+        f.distanceOracle = distanceOracle.fork(f);
+        f.blockageCalendar = blockageCalendar.fork(f);
+        f.blockageCalendar.addListener(f.distanceOracle);
+        return f;
+    }
+
+    // Descarta toda la salida (simulaciones auxiliares, escenarios sin log)
+    public void silence() {
+        PrintStream discard = new PrintStream(new OutputStream() {
+            @Override public void write(int b) {}
+            @Override public void write(byte[] b, int off, int len) {}
+        });
+        out = discard;
+        err = discard;
+        log.setLevel(SimLog.Level.OFF);   // Ni siquiera se arman los mensajes
+    }
+
+    // Agrega el camión a la flota y al fleetStore (queda IDLE en su depósito)
+    public TruckState addTruck(Truck truck) {
+        fleet.add(truck);
+        TruckState ts = fleetStore.add(truck);
+        truckStates.put(truck.id, ts);
+        return ts;
+    }
+
+    // null: el depósito principal
+    public Depot depotById(String id) {
+        if (id == null) return depots.get(0);
+        for (Depot d : depots) {
+            if (d.id.equals(id)) return d;
+        }
+        return null;
+    }
+
+    public int newPartId() {
+        return nextPartId++;
+    }
+
+    public boolean inGrid(int x, int y) {
+        return x >= 0 && x < gridWidth && y >= 0 && y < gridHeight;
+    }
+}
@@ -10,8 +10,6 @@ import java.util.List;
 public class GridVisualizer extends JPanel {
 
     // Constantes
-    static final int GRID_WIDTH = GlobalState.GRID_WIDTH;
-    static final int GRID_HEIGHT = GlobalState.GRID_HEIGHT;
     static final int CELL_SIZE = 12;
     static final int NODE_SIZE = CELL_SIZE - 4;
     static final int NODE_OFFSET = 2;
@@ -92,6 +90,8 @@ public class GridVisualizer extends JPanel {
     }
 
     // Campos de instancia para los datos a visualizar
+    private final int gridWidth;   // Dimensiones del grid del contexto, tomadas de la matriz de bloqueos
+    private final int gridHeight;
     private final List<Punto> depots;
     private final List<Punto> customers;
     private final List<RutaVisual> routesToDraw;
@@ -105,13 +105,15 @@ public class GridVisualizer extends JPanel {
         this.customers = (customers != null) ? new ArrayList<>(customers) : new ArrayList<>();
         this.routesToDraw = (routes != null) ? new ArrayList<>(routes) : new ArrayList<>();
         this.matrizBloqueado = bloqueadoActual;
+        this.gridWidth = bloqueadoActual != null ? bloqueadoActual.length : GlobalState.GRID_WIDTH;
+        this.gridHeight = bloqueadoActual != null && bloqueadoActual.length > 0 ? bloqueadoActual[0].length : GlobalState.GRID_HEIGHT;
 
         this.puntosBloqueadosGrid = new ArrayList<>();
         this.bloqueosEnRutas = new ArrayList<>();
 
         if (this.matrizBloqueado != null) {
-            for (int i = 0; i < GRID_WIDTH; i++) {
-                for (int j = 0; j < GRID_HEIGHT; j++) {
+            for (int i = 0; i < gridWidth; i++) {
+                for (int j = 0; j < gridHeight; j++) {
                     if (this.matrizBloqueado[i][j]) {
                         puntosBloqueadosGrid.add(new Punto(i, j, null, "Bloqueado"));
                     }
@@ -119,7 +121,7 @@ public class GridVisualizer extends JPanel {
             }
         }
         setBackground(Color.WHITE);
-        setPreferredSize(new Dimension(GRID_WIDTH * CELL_SIZE + 1, GRID_HEIGHT * CELL_SIZE + 1));
+        setPreferredSize(new Dimension(gridWidth * CELL_SIZE + 1, gridHeight * CELL_SIZE + 1));
     }
 
     @Override
@@ -143,10 +145,10 @@ public class GridVisualizer extends JPanel {
         g.setColor(new Color(230, 230, 230)); // Gris claro
         int panelWidth = getWidth(); // Usar tamaño real del panel
         int panelHeight = getHeight();
-        int width = GRID_WIDTH * CELL_SIZE;
-        int height = GRID_HEIGHT * CELL_SIZE;
-        for (int i = 0; i <= GRID_WIDTH; i++) g.drawLine(i * CELL_SIZE, 0, i * CELL_SIZE, height);
-        for (int j = 0; j <= GRID_HEIGHT; j++) g.drawLine(0, j * CELL_SIZE, width, j * CELL_SIZE);
+        int width = gridWidth * CELL_SIZE;
+        int height = gridHeight * CELL_SIZE;
+        for (int i = 0; i <= gridWidth; i++) g.drawLine(i * CELL_SIZE, 0, i * CELL_SIZE, height);
+        for (int j = 0; j <= gridHeight; j++) g.drawLine(0, j * CELL_SIZE, width, j * CELL_SIZE);
     }
 
     private void drawBlockedCells(Graphics2D g) {
@@ -271,7 +273,7 @@ public class GridVisualizer extends JPanel {
 
     // Verifica si una celda está bloqueada (usando la matriz actual)
     private boolean esBloqueado(int x, int y) {
-        if (matrizBloqueado == null || x < 0 || x >= GRID_WIDTH || y < 0 || y >= GRID_HEIGHT) {
+        if (matrizBloqueado == null || x < 0 || x >= gridWidth || y < 0 || y >= gridHeight) {
             return true;
         }
         return matrizBloqueado[x][y];
@@ -310,7 +312,7 @@ public class GridVisualizer extends JPanel {
                 Point nextPoint = new Point(nx, ny);
 
                 // Validar límites y si ya fue visitado
-                if (nx >= 0 && nx < GRID_WIDTH && ny >= 0 && ny < GRID_HEIGHT && !visited.contains(nextPoint)) {
+                if (nx >= 0 && nx < gridWidth && ny >= 0 && ny < gridHeight && !visited.contains(nextPoint)) {
                     if (!esBloqueado(nx, ny)) {
                         visited.add(nextPoint);
                         predecesores.put(nextPoint, currentPoint);
@@ -336,7 +338,7 @@ public class GridVisualizer extends JPanel {
                 path.addFirst(step);
             }
             step = predecesores.get(step);
-            if (path.size() > GRID_WIDTH * GRID_HEIGHT) {
+            if (path.size() > gridWidth * gridHeight) {
                 System.err.println("ERROR: Posible bucle infinito reconstruyendo camino BFS.");
                 return null;
             }
@@ -4,6 +4,7 @@ import mdvrp.model.CustomerPart;
 import mdvrp.planner.PlannedRoute;
 import mdvrp.planner.PlanningSolution;
 import mdvrp.simulation.TruckState;
+import mdvrp.state.SimulationContext;
 
 import javax.swing.*;
 import java.awt.*;
@@ -11,11 +12,9 @@ import java.util.*;
 import java.util.List;
 import java.util.stream.Collectors;
 
-import static mdvrp.state.GlobalState.*;
-
 public class SimulationVisualizer {
 
-    public static void visualizeSolution() {
+    public static void visualizeSolution(SimulationContext ctx) {
         System.out.println("Preparando visualización...");
 
         System.out.println("Preparando visualización final del estado de los camiones...");
@@ -28,7 +27,7 @@ public class SimulationVisualizer {
         int ci = 0;
 
         // Iterar por TODOS los estados de camión para obtener su última ruta
-        for (TruckState ts : truckStates.values()) {
+        for (TruckState ts : ctx.fleetStore.all()) {
             for(PlannedRoute route : ts.routes) {
                 // Solo visualizar si la ruta existe, tiene secuencia y no está vacía
                 if (route != null && route.sequence != null && !route.sequence.isEmpty() && route.startDepot != null && route.endDepot != null) {
@@ -78,7 +77,7 @@ public class SimulationVisualizer {
                 .collect(Collectors.toList());
 
 
-        List<GridVisualizer.Punto> depVis_temp = depots.stream()
+        List<GridVisualizer.Punto> depVis_temp = ctx.depots.stream()
                 .map(d -> new GridVisualizer.Punto(d.x, d.y, GridVisualizer.PuntoTipo.DEPOSITO, d.id))
                 .collect(Collectors.toList());
 
@@ -98,8 +97,8 @@ public class SimulationVisualizer {
             JFrame f = new JFrame("Visualización GLP - Rutas MDVRP (TS) - Estado Final Camiones");
             f.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
             // Asegurarse que blockedNodes está actualizado al estado final de la simulación
-            GridVisualizer p = new GridVisualizer(finalDepVis, finalCliVis, finalRutVis, blockedNodes);
-            p.setPreferredSize(new Dimension(GRID_WIDTH * 12 + 50, GRID_HEIGHT * 12 + 50));
+            GridVisualizer p = new GridVisualizer(finalDepVis, finalCliVis, finalRutVis, ctx.blockedNodes);
+            p.setPreferredSize(new Dimension(ctx.gridWidth * 12 + 50, ctx.gridHeight * 12 + 50));
             JScrollPane sp = new JScrollPane(p);
             f.add(sp);
             f.setSize(900, 700);